@@ -6,18 +6,19 @@ import java.net.URI;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import net.sf.jabref.BibtexDatabase;
 import net.sf.jabref.BibtexEntry;
-import net.sf.jabref.GUIGlobals;
 import net.sf.jabref.Globals;
 import net.sf.jabref.export.DocearReferenceUpdateController;
 import net.sf.jabref.labelPattern.LabelPatternUtil;
 
 import org.docear.plugin.bibtex.jabref.DuplicateResolver;
 import org.docear.plugin.bibtex.jabref.JabRefAttributes;
+import org.docear.plugin.bibtex.jabref.JabRefBaseHandle;
+import org.docear.plugin.bibtex.jabref.ReferenceIndex;
 import org.docear.plugin.bibtex.jabref.ResolveDuplicateEntryAbortedException;
 import org.docear.plugin.core.DocearController;
 import org.docear.plugin.core.features.DocearMapModelExtension;
@@ -37,19 +38,21 @@ import org.freeplane.view.swing.map.NodeView;
 public class ReferenceUpdater extends AMindmapUpdater {
 
 	private final HashMap<BibtexEntry, Set<NodeModel>> referenceNodes;
-	private final HashMap<String, BibtexEntry> pdfReferences;
-	private final HashMap<String, BibtexEntry> urlReferences;
+	// duplicate links which have been resolved during this update
+	private final HashMap<String, BibtexEntry> resolvedFileNames;
+	private final HashMap<String, BibtexEntry> resolvedUrls;
 
 	private JabRefAttributes jabRefAttributes;
-	private BibtexDatabase database;
+	private JabRefBaseHandle baseHandle;
+	private ReferenceIndex referenceIndex;
 	private MapModificationSession session;
 	
 
 	public ReferenceUpdater(String title) {
 		super(title);
 		referenceNodes = new HashMap<BibtexEntry, Set<NodeModel>>();
-		pdfReferences = new HashMap<String, BibtexEntry>();
-		urlReferences = new HashMap<String, BibtexEntry>();
+		resolvedFileNames = new HashMap<String, BibtexEntry>();
+		resolvedUrls = new HashMap<String, BibtexEntry>();
 	}
 
 	public boolean updateMindmap(MapModel map) {
@@ -73,25 +76,23 @@ public class ReferenceUpdater extends AMindmapUpdater {
     			//DOCEAR - todo: what to do?
     			return false;
     		}
-    		else {    			
-    			JabRefProjectExtension prjExt = (JabRefProjectExtension) mapExt.getProject().getExtensions(JabRefProjectExtension.class);
-    			if(prjExt == null) {
-    				return false;
-    			}
-    			ReferencesController.getController().getJabrefWrapper().getJabrefFrame().showBasePanel(prjExt.getBaseHandle().getBasePanel());
+    		JabRefProjectExtension prjExt = (JabRefProjectExtension) mapExt.getProject().getExtensions(JabRefProjectExtension.class);
+    		if(prjExt == null || prjExt.getBaseHandle() == null) {
+    			return false;
     		}
     		
     		jabRefAttributes = ReferencesController.getController().getJabRefAttributes();
-    		database = ReferencesController.getController().getJabrefWrapper().getDatabase();
-    		if (database == null) {
+    		baseHandle = prjExt.getBaseHandle();
+    		referenceIndex = baseHandle.getReferenceIndex();
+    		if (referenceIndex == null) {
     			return false;
     		}
-    		if (this.pdfReferences.size() == 0) {
-    			buildPdfIndex();
+    		if (session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST) == null) {
+    			session.putSessionObject(MapModificationSession.FILE_IGNORE_LIST, new HashSet<String>());
+    		}
+    		if (session.getSessionObject(MapModificationSession.URL_IGNORE_LIST) == null) {
+    			session.putSessionObject(MapModificationSession.URL_IGNORE_LIST, new HashSet<String>());
     		}
-    		if (this.urlReferences.size() == 0) {
-    			buildUrlIndex();
-    		}    		
     		return updateMap(map);
 		}
 		finally {
@@ -114,81 +115,67 @@ public class ReferenceUpdater extends AMindmapUpdater {
 		}
 	}
 
-	private void buildPdfIndex() {
-		if (session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST) == null) {
-			session.putSessionObject(MapModificationSession.FILE_IGNORE_LIST, new HashSet<String>());
+	private BibtexEntry getEntryForFile(File file) {
+		String name = file.getName().toLowerCase();
+		if(((Set<String>) session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST)).contains(name)) {
+			return null;
 		}
-		for (BibtexEntry entry : database.getEntries()) {
-			String paths = entry.getField(GUIGlobals.FILE_FIELD);
-			if (paths == null || paths.trim().length() == 0) {
-				continue;
-			}
-
-			for (String path : JabRefAttributes.parsePathNames(entry, paths)) {
-				if (path.isEmpty()) {
-					continue;
-				}
-				String name = new File(path).getName().toLowerCase();
-				if(((Set<String>) session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST)).contains(name)) {
-					continue;
-				}
-
-				if (entry.getCiteKey() == null) {
-					LabelPatternUtil.makeLabel(Globals.prefs.getKeyPattern(), database, entry);
-				}
-
-				if (this.pdfReferences.get(name) == null) {
-					this.pdfReferences.put(name, entry);
-				}
-				else {
-					try {
-						BibtexEntry singleEntry = DuplicateResolver.getDuplicateResolver().resolveDuplicateLinks(new File(path));
-						this.pdfReferences.put(name, singleEntry);
-					}
-					catch (ResolveDuplicateEntryAbortedException e) {
-						this.pdfReferences.remove(name);
-						((Set<String>) session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST)).add(e.getFile().getName());
-						LogUtils.info("ignore pdf on mindmap update: " + e.getFile());
-					}
-				}
-			}
+		List<BibtexEntry> entries = referenceIndex.getEntriesByFileName(name);
+		if (entries.size() <= 1) {
+			return createCiteKey(entries.isEmpty() ? null : entries.get(0));
+		}
+		if (resolvedFileNames.containsKey(name)) {
+			return resolvedFileNames.get(name);
+		}
+		BibtexEntry entry = null;
+		try {
+			entry = createCiteKey(resolveDuplicateLinks(file));
+		}
+		catch (ResolveDuplicateEntryAbortedException e) {
+			((Set<String>) session.getSessionObject(MapModificationSession.FILE_IGNORE_LIST)).add(e.getFile().getName());
+			LogUtils.info("ignore pdf on mindmap update: " + e.getFile());
 		}
+		resolvedFileNames.put(name, entry);
+		return entry;
 	}
 
-	private void buildUrlIndex() {
-		if (session.getSessionObject(MapModificationSession.URL_IGNORE_LIST) == null) {
-			session.putSessionObject(MapModificationSession.URL_IGNORE_LIST, new HashSet<String>());
+	private BibtexEntry getEntryForUrl(URL url) {
+		String urlString = url.toExternalForm();
+		if (((Set<String>) session.getSessionObject(MapModificationSession.URL_IGNORE_LIST)).contains(urlString)) {
+			return null;
 		}
-		for (BibtexEntry entry : database.getEntries()) {
-			String url = entry.getField("url");
-			if (url == null || url.trim().length() == 0 || ((Set<String>) session.getSessionObject(MapModificationSession.URL_IGNORE_LIST)).contains(url)) {
-				continue;
-			}
-
-			if (entry.getCiteKey() == null) {
-				LabelPatternUtil.makeLabel(Globals.prefs.getKeyPattern(), database, entry);
-			}
+		List<BibtexEntry> entries = referenceIndex.getEntriesByUrl(urlString);
+		if (entries.size() <= 1) {
+			return createCiteKey(entries.isEmpty() ? null : entries.get(0));
+		}
+		if (resolvedUrls.containsKey(urlString)) {
+			return resolvedUrls.get(urlString);
+		}
+		BibtexEntry entry = null;
+		try {
+			entry = createCiteKey(resolveDuplicateLinks(url));
+		}
+		catch (ResolveDuplicateEntryAbortedException e) {
+			((Set<String>) session.getSessionObject(MapModificationSession.URL_IGNORE_LIST)).add(e.getUrl().toExternalForm());
+			LogUtils.info("ignore url on mindmap update: " + e.getUrl());
+		}
+		resolvedUrls.put(urlString, entry);
+		return entry;
+	}
 
-			
-			if (this.urlReferences.get(url) == null) {			
-				this.urlReferences.put(url, entry);
-			}
-			else {
-				try {
-					BibtexEntry singleEntry = DuplicateResolver.getDuplicateResolver().resolveDuplicateLinks(new URL(url));
-					this.urlReferences.put(url, singleEntry);
-				}
-				catch (MalformedURLException e) {
-					LogUtils.warn(e);
-				}
-				catch (ResolveDuplicateEntryAbortedException e) {
-					this.urlReferences.remove(url);
-					((Set<String>) session.getSessionObject(MapModificationSession.URL_IGNORE_LIST)).add(e.getUrl().toExternalForm());
-					LogUtils.info("ignore url on mindmap update: " + e.getUrl());
-				}
+	private BibtexEntry resolveDuplicateLinks(Object link) throws ResolveDuplicateEntryAbortedException {
+		// the duplicate resolver works on the database of the selected base panel
+		if (ReferencesController.getController().getJabrefWrapper().getBasePanel() != baseHandle.getBasePanel()) {
+			baseHandle.showBasePanel();
+		}
+		return DuplicateResolver.getDuplicateResolver().resolveDuplicateLinks(link);
+	}
 
-			}
+	private BibtexEntry createCiteKey(BibtexEntry entry) {
+		if (entry != null && entry.getCiteKey() == null) {
+			LabelPatternUtil.makeLabel(Globals.prefs.getKeyPattern(), referenceIndex.getDatabase(), entry);
 		}
+		return entry;
 	}
 	
 	private boolean isIgnored(Reference reference, NodeModel node) {
@@ -316,15 +303,14 @@ public class ReferenceUpdater extends AMindmapUpdater {
 
 				file = UrlManager.getController().getAbsoluteFile(node.getMap(), uri);
 				if (file != null) {
-					String fileName = file.getName().toLowerCase();
-					BibtexEntry entry = this.pdfReferences.get(fileName);
+					BibtexEntry entry = getEntryForFile(file);
 					if (entry != null) {
 						addReferenceToIndex(node, entry);
 					}
 					return;
 				}
 				
-				BibtexEntry entry = this.urlReferences.get(uri.toURL().toExternalForm());
+				BibtexEntry entry = getEntryForUrl(uri.toURL());
 				if (entry != null) {
 					addReferenceToIndex(node, entry);
 					return;
@@ -332,7 +318,7 @@ public class ReferenceUpdater extends AMindmapUpdater {
 			}
 
 			if (key != null) {
-				BibtexEntry bibtexEntry = database.getEntryByKey(key);
+				BibtexEntry bibtexEntry = referenceIndex.getEntryByKey(key);
 				addReferenceToIndex(node, bibtexEntry);
 				return;
 			}
@@ -9,12 +9,14 @@ import org.docear.plugin.bibtex.ReferencesController;
 import org.docear.plugin.core.workspace.model.DocearWorkspaceProject;
 
 import net.sf.jabref.BasePanel;
+import net.sf.jabref.BibtexDatabase;
 import net.sf.jabref.imports.ParserResult;
 
 public class JabRefBaseHandle {
 	private final ParserResult parserResult;
 	private final BasePanel basePanel;
 	private final Set<DocearWorkspaceProject> connectedProjects = new LinkedHashSet<DocearWorkspaceProject>();
+	private ReferenceIndex referenceIndex;
 	
 	public JabRefBaseHandle(BasePanel basePanel, ParserResult parserResult) {
 		this.parserResult = parserResult;
@@ -63,6 +65,30 @@ public class JabRefBaseHandle {
 		return connectedProjects.size() > 0;
 	}
 	
+	/**
+	 * the reference index of the database of this handle, it is built when it is used for the first time
+	 */
+	public synchronized ReferenceIndex getReferenceIndex() {
+		BibtexDatabase database = getBasePanel().getDatabase();
+		if (database == null) {
+			return null;
+		}
+		if (referenceIndex == null || referenceIndex.getDatabase() != database) {
+			if (referenceIndex != null) {
+				referenceIndex.dispose();
+			}
+			referenceIndex = new ReferenceIndex(database);
+		}
+		return referenceIndex;
+	}
+	
+	public synchronized void disposeReferenceIndex() {
+		if (referenceIndex != null) {
+			referenceIndex.dispose();
+			referenceIndex = null;
+		}
+	}
+	
 	public void showBasePanel() {
 		ReferencesController.getController().getJabrefWrapper().getJabrefFrame().showBasePanel(getBasePanel());		
 	}
@@ -241,6 +241,7 @@ public class JabrefWrapper extends JabRef implements IMapViewChangeListener {
 			synchronized (baseHandles) {	
 				baseHandles.remove(baseHandle.getFile().getAbsoluteFile());
 			}
+			baseHandle.disposeReferenceIndex();
 			closeDatabase(baseHandle.getFile());
 		}		
 	}
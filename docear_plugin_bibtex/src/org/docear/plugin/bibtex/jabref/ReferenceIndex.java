@@ -0,0 +1,214 @@
+package org.docear.plugin.bibtex.jabref;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jabref.BibtexDatabase;
+import net.sf.jabref.BibtexEntry;
+import net.sf.jabref.DatabaseChangeEvent;
+import net.sf.jabref.DatabaseChangeListener;
+import net.sf.jabref.GUIGlobals;
+
+/**
+ * The entries of a bibtex database by the names of their linked files, their
+ * urls and their cite keys.
+ *
+ * The index is built once for the database and then kept up to date with the
+ * changes of the database. It does not use the user interface and can be
+ * queried from any thread.
+ */
+public class ReferenceIndex implements DatabaseChangeListener {
+	private final BibtexDatabase database;
+	private final Map<String, List<BibtexEntry>> fileNames = new HashMap<String, List<BibtexEntry>>();
+	private final Map<String, List<BibtexEntry>> urls = new HashMap<String, List<BibtexEntry>>();
+	private final Map<String, List<BibtexEntry>> citeKeys = new HashMap<String, List<BibtexEntry>>();
+	// the keys an entry is indexed with, to find them again when the entry changes
+	private final Map<BibtexEntry, IndexedKeys> indexedEntries = new HashMap<BibtexEntry, IndexedKeys>();
+
+	public ReferenceIndex(BibtexDatabase database) {
+		if (database == null) {
+			throw new IllegalArgumentException("NULL");
+		}
+		this.database = database;
+		database.addDatabaseChangeListener(this);
+		List<BibtexEntry> entries;
+		// the database fires its events while it is locked, it must not be locked while the index is locked
+		synchronized (database) {
+			entries = new ArrayList<BibtexEntry>(database.getEntries());
+		}
+		synchronized (this) {
+			for (BibtexEntry entry : entries) {
+				index(entry);
+			}
+		}
+	}
+
+	public BibtexDatabase getDatabase() {
+		return database;
+	}
+
+	/**
+	 * stops updating the index
+	 */
+	public void dispose() {
+		database.removeDatabaseChangeListener(this);
+	}
+
+	/**
+	 * the entries which link a file with the name, the case of the name is
+	 * ignored
+	 */
+	public synchronized List<BibtexEntry> getEntriesByFileName(String fileName) {
+		if (fileName == null) {
+			return Collections.emptyList();
+		}
+		return copy(fileNames.get(fileName.toLowerCase()));
+	}
+
+	/**
+	 * the entries whose url field is the same as the url after normalization
+	 */
+	public synchronized List<BibtexEntry> getEntriesByUrl(String url) {
+		return copy(urls.get(normalizeUrl(url)));
+	}
+
+	public synchronized List<BibtexEntry> getEntriesByKey(String citeKey) {
+		return copy(citeKeys.get(citeKey));
+	}
+
+	/**
+	 * the first entry with the cite key, like
+	 * {@link BibtexDatabase#getEntryByKey(String)}
+	 */
+	public synchronized BibtexEntry getEntryByKey(String citeKey) {
+		List<BibtexEntry> entries = citeKeys.get(citeKey);
+		if (entries == null || entries.isEmpty()) {
+			return null;
+		}
+		return entries.get(0);
+	}
+
+	public void databaseChanged(DatabaseChangeEvent e) {
+		BibtexEntry entry = e.getEntry();
+		if (entry == null) {
+			return;
+		}
+		synchronized (this) {
+			if (e.getType() == DatabaseChangeEvent.REMOVED_ENTRY) {
+				remove(entry);
+			}
+			else if (e.getType() == DatabaseChangeEvent.ADDED_ENTRY || e.getType() == DatabaseChangeEvent.CHANGED_ENTRY) {
+				index(entry);
+			}
+		}
+	}
+
+	/**
+	 * lower case scheme and host and a normalized path, so that equal urls
+	 * have the same key
+	 */
+	public static String normalizeUrl(String url) {
+		if (url == null) {
+			return null;
+		}
+		url = url.trim();
+		try {
+			URI uri = new URI(url).normalize();
+			if (uri.isOpaque() || uri.getScheme() == null) {
+				return uri.toString();
+			}
+			String host = uri.getHost() == null ? null : uri.getHost().toLowerCase();
+			String path = uri.getPath();
+			if (path == null || path.length() == 0) {
+				path = "/";
+			}
+			return new URI(uri.getScheme().toLowerCase(), uri.getUserInfo(), host, uri.getPort(), path, uri.getQuery(), uri.getFragment())
+					.toString();
+		}
+		catch (Exception e) {
+			return url;
+		}
+	}
+
+	private void index(BibtexEntry entry) {
+		remove(entry);
+		IndexedKeys keys = new IndexedKeys();
+		String paths = entry.getField(GUIGlobals.FILE_FIELD);
+		if (paths != null && paths.trim().length() > 0) {
+			for (String path : JabRefAttributes.parsePathNames(entry, paths)) {
+				if (path.length() == 0) {
+					continue;
+				}
+				String name = new File(path).getName().toLowerCase();
+				if (!keys.fileNames.contains(name)) {
+					keys.fileNames.add(name);
+					put(fileNames, name, entry);
+				}
+			}
+		}
+		String url = entry.getField("url");
+		if (url != null && url.trim().length() > 0) {
+			keys.url = normalizeUrl(url);
+			put(urls, keys.url, entry);
+		}
+		keys.citeKey = entry.getCiteKey();
+		if (keys.citeKey != null) {
+			put(citeKeys, keys.citeKey, entry);
+		}
+		indexedEntries.put(entry, keys);
+	}
+
+	private void remove(BibtexEntry entry) {
+		IndexedKeys keys = indexedEntries.remove(entry);
+		if (keys == null) {
+			return;
+		}
+		for (String name : keys.fileNames) {
+			remove(fileNames, name, entry);
+		}
+		if (keys.url != null) {
+			remove(urls, keys.url, entry);
+		}
+		if (keys.citeKey != null) {
+			remove(citeKeys, keys.citeKey, entry);
+		}
+	}
+
+	private static void put(Map<String, List<BibtexEntry>> map, String key, BibtexEntry entry) {
+		List<BibtexEntry> entries = map.get(key);
+		if (entries == null) {
+			entries = new ArrayList<BibtexEntry>(1);
+			map.put(key, entries);
+		}
+		entries.add(entry);
+	}
+
+	private static void remove(Map<String, List<BibtexEntry>> map, String key, BibtexEntry entry) {
+		List<BibtexEntry> entries = map.get(key);
+		if (entries == null) {
+			return;
+		}
+		entries.remove(entry);
+		if (entries.isEmpty()) {
+			map.remove(key);
+		}
+	}
+
+	private static List<BibtexEntry> copy(List<BibtexEntry> entries) {
+		if (entries == null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<BibtexEntry>(entries);
+	}
+
+	private static class IndexedKeys {
+		private final List<String> fileNames = new ArrayList<String>(1);
+		private String url;
+		private String citeKey;
+	}
+}
@@ -92,7 +92,7 @@ public class DocearMapWriter extends MapWriter {
 		final MapModel map = (MapModel) node;
 		writer.addExtensionNodes(map, Arrays.asList(map.getExtensions().values().toArray(new IExtension[] {})));
 		final NodeModel rootNode = map.getRootNode();
-		writeNode(writer, rootNode, isSaveInvisible(), true);
+		writeNode(writer, rootNode, isSaveInvisible(writer), true);
 	}
 	
 	public void writeAttributes(final ITreeWriter writer, final Object userObject, final String tag) {
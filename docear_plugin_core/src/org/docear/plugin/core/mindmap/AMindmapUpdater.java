@@ -21,5 +21,13 @@ public abstract class AMindmapUpdater {
 	 */	
 	public abstract boolean updateMindmap(MapModel map);
 	
+	/**
+	 * @return <code>true</code> if this updater only changes the map it is given and keeps no state between maps, 
+	 * so that several maps can be updated at the same time, else <code>false</code>
+	 */
+	public boolean isIndependent() {
+		return false;
+	}
+	
 	
 }
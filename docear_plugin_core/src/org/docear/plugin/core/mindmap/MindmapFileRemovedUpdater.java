@@ -22,6 +22,11 @@ public class MindmapFileRemovedUpdater extends AMindmapUpdater {
 		if(map == null) return false;		
 		return updateLinks(map.getRootNode());		
 	}
+	
+	@Override
+	public boolean isIndependent() {
+		return true;
+	}
 
 	private boolean updateLinks(NodeModel parent) {
 		//TODO: wenn titel des knotens der datei entspricht --> löschen
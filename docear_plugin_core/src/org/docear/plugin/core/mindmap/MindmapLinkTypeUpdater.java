@@ -19,6 +19,10 @@ public class MindmapLinkTypeUpdater extends AMindmapUpdater {
 		return updateNodesRecursive(map.getRootNode());
 	}
 	
+	public boolean isIndependent() {
+		return true;
+	}
+	
 	private boolean updateMindmap(NodeModel node) {
 		try {
     		NodeLinks links = NodeLinks.getLinkExtension(node);
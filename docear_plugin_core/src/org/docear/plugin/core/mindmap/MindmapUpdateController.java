@@ -6,10 +6,20 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingUtilities;
 
@@ -34,6 +44,10 @@ import org.freeplane.view.swing.map.NodeView;
 import org.jdesktop.swingworker.SwingWorker;
 
 public class MindmapUpdateController {
+	// number of maps which are loaded ahead of the maps which are updated
+	private static final int PREFETCH_COUNT = 4;
+	private static final int MAX_UPDATE_THREADS = 4;
+	
 	private final MapModificationSession session = new MapModificationSession();
 	private final ArrayList<AMindmapUpdater> updaters = new ArrayList<AMindmapUpdater>();
 	private boolean showDialog = true;
@@ -221,12 +235,15 @@ public class MindmapUpdateController {
 
 		return new SwingWorker<Void, Void>() {
 			private int totalCount;
-			private boolean mapHasChanged = false;
+			private final AtomicInteger count = new AtomicInteger();
+			// the map reader and writer and the map listeners are not thread safe, closed maps are loaded and saved by the model thread
+			private final Queue<Future<Void>> saving = new ConcurrentLinkedQueue<Future<Void>>();
 
 			private final long start = System.currentTimeMillis();
 
 			@Override
 			protected Void doInBackground() throws Exception {
+				ExecutorService updatePool = null;
 				try {
 					if (maps == null || maps.size() == 0) {
 						return null;
@@ -235,69 +252,55 @@ public class MindmapUpdateController {
 					MapView.setNoRepaint(true);
 					fireStatusUpdate(SwingWorkerDialog.SET_PROGRESS_BAR_INDETERMINATE, null, null);
 					fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, TextUtils.getText("computing_node_count"));
-					totalCount = maps.size()*getMindmapUpdaters().size();
+					totalCount = maps.size();
 					if (canceled())
 						return null;
 					fireStatusUpdate(SwingWorkerDialog.SET_PROGRESS_BAR_DETERMINATE, null, null);
-					int count = 0;
-					fireProgressUpdate(100 * count / totalCount);
+					fireProgressUpdate(0);
 					
-					for (AMindmapUpdater updater : getMindmapUpdaters()) {
-						count++;
-						fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, updater.getTitle());
-						if (canceled())
-							return null;
-						for (MapItem mapItem : maps) {							
-							mapHasChanged = false; 
-							MapModel map = null;
-							try {
-							 map = mapItem.getModel();
-							 if (map==null || map.isReadOnly()) {								
-								 continue;
-							 }
-							AWorkspaceProject project = WorkspaceController.getMapProject(map);
-							if(!workingProject.equals(project)) {
-								fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.otherproject", map.getTitle(), map.getFile()));
-								continue;
-							}
-							if(project == null) {
-								fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.noproject", map.getTitle(), map.getFile()));
-								continue;
-							}
-							if(!project.isLoaded()) {
-								fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.projectnotloaded", map.getTitle(), map.getFile()));
-								continue;
-							}
-							if(!DocearWorkspaceProject.isCompatible(project)) {
-								fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null, TextUtils.format("docear.map.ignore.wrongversion", map.getTitle(), map.getFile()));
-								continue;
+					int threads = getUpdateThreadCount();
+					if (threads > 1) {
+						updatePool = Executors.newFixedThreadPool(threads, new UpdateThreadFactory("mindmap update"));
+					}
+					
+					// all updaters are applied to a map in one visit, the next maps are loaded meanwhile
+					LinkedList<Future<MapModel>> loading = new LinkedList<Future<MapModel>>();
+					LinkedList<Future<Void>> updating = new LinkedList<Future<Void>>();
+					Iterator<MapItem> toLoad = maps.iterator();
+					try {
+						for (final MapItem mapItem : maps) {
+							while (toLoad.hasNext() && loading.size() <= PREFETCH_COUNT + threads) {
+								loading.add(loadMap(toLoad.next()));
 							}
-							 
-							 map.getExtension(DocearMapModelExtension.class).setMapModificationSession(session);
-							} 
-							catch (Exception ex) {
-								LogUtils.warn("MindmapUpdateController$SwingWorker.doInBackground().1 "+ex.getMessage()+" ("+mapItem.getIdentifierForDialog()+")");
+							if (canceled())
+								return null;
+							final Future<MapModel> loadedMap = loading.removeFirst();
+							if (updatePool == null) {
+								updateMap(mapItem, getLoadedMap(mapItem, loadedMap));
 							}
-							
-							fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,
-									updater.getTitle()+": " + mapItem.getIdentifierForDialog());
-							fireStatusUpdate(SwingWorkerDialog.SET_SUB_HEADLINE, null, TextUtils.getText("updating_against_p1")
-									+ getMapTitle(map) + TextUtils.getText("updating_against_p2"));							
-							this.mapHasChanged = updater.updateMindmap(map);
-							fireProgressUpdate(100 * count / totalCount);
-							if (this.mapHasChanged) {
-								if (!mapItem.isMapOpen()) {
-									saveMap(map);
-									MapChangeEvent event = new MapChangeEvent(this, map, UrlManager.MAP_URL, map.getURL(), map.getURL());
-									Controller.getCurrentModeController().getMapController().fireMapChanged(event);
-									map.destroy();
-								}
-								else {
-									map.setSaved(false);
-									map.setReadOnly(false);
+							else {
+								updating.add(updatePool.submit(new Callable<Void>() {
+									public Void call() throws Exception {
+										updateMap(mapItem, getLoadedMap(mapItem, loadedMap));
+										return null;
+									}
+								}));
+								while (updating.size() > threads) {
+									getResult(updating.removeFirst());
 								}
 							}
-
+						}
+						for (Future<Void> update : updating) {
+							getResult(update);
+						}
+					}
+					finally {
+						for (Future<MapModel> loadedMap : loading) {
+							loadedMap.cancel(false);
+						}
+						// pending saves are finished, even if the update was canceled
+						for (Future<Void> save : saving) {
+							getResult(save);
 						}
 					}
 
@@ -310,10 +313,128 @@ public class MindmapUpdateController {
 				catch (Exception e) {
 					LogUtils.warn(e);
 				}
+				finally {
+					if (updatePool != null) {
+						updatePool.shutdownNow();
+					}
+				}
 				return null;
 			}
 
-			
+			/**
+			 * several maps are only updated at the same time if all updaters are independent
+			 */
+			private int getUpdateThreadCount() {
+				for (AMindmapUpdater updater : getMindmapUpdaters()) {
+					if (!updater.isIndependent()) {
+						return 1;
+					}
+				}
+				return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_UPDATE_THREADS));
+			}
+
+			private Future<MapModel> loadMap(final MapItem mapItem) {
+				return runOnModelThread(new Callable<MapModel>() {
+					public MapModel call() throws Exception {
+						MapModel map = mapItem.getModel();
+						if (map != null) {
+							// the updaters may visit all nodes on other threads
+							map.loadAllNodes();
+						}
+						return map;
+					}
+				});
+			}
+
+			/**
+			 * the task is run after the tasks queued before, the calling thread goes on with updating meanwhile
+			 */
+			private <T> Future<T> runOnModelThread(Callable<T> task) {
+				FutureTask<T> future = new FutureTask<T>(task);
+				SwingUtilities.invokeLater(future);
+				return future;
+			}
+
+			private MapModel getLoadedMap(MapItem mapItem, Future<MapModel> loadedMap) throws InterruptedException {
+				try {
+					return loadedMap.get();
+				}
+				catch (ExecutionException e) {
+					LogUtils.warn("MindmapUpdateController$SwingWorker.getLoadedMap() "+e.getCause()+" ("+mapItem.getIdentifierForDialog()+")");
+					return null;
+				}
+			}
+
+			private void getResult(Future<Void> update) throws Exception {
+				try {
+					update.get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			}
+
+			private void updateMap(MapItem mapItem, MapModel map) throws InterruptedException, InvocationTargetException {
+				try {
+					if (map == null || map.isReadOnly() || !isInWorkingProject(map)) {
+						return;
+					}
+					DocearMapModelExtension modelExtension = map.getExtension(DocearMapModelExtension.class);
+					if (modelExtension != null) {
+						modelExtension.setMapModificationSession(session);
+					}
+					
+					fireStatusUpdate(SwingWorkerDialog.SET_SUB_HEADLINE, null, TextUtils.getText("updating_against_p1")
+							+ getMapTitle(map) + TextUtils.getText("updating_against_p2"));
+					boolean mapHasChanged = false;
+					try {
+						for (AMindmapUpdater updater : getMindmapUpdaters()) {
+							fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, updater.getTitle());
+							fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,
+									updater.getTitle()+": " + mapItem.getIdentifierForDialog());
+							mapHasChanged = updater.updateMindmap(map) | mapHasChanged;
+						}
+					}
+					finally {
+						if (mapHasChanged) {
+							if (!mapItem.isMapOpen()) {
+								saveMap(map);
+							}
+							else {
+								map.setSaved(false);
+								map.setReadOnly(false);
+							}
+						}
+					}
+				}
+				finally {
+					fireProgressUpdate(100 * count.incrementAndGet() / totalCount);
+				}
+			}
+
+			private boolean isInWorkingProject(MapModel map) throws InterruptedException, InvocationTargetException {
+				AWorkspaceProject project = WorkspaceController.getMapProject(map);
+				if(!workingProject.equals(project)) {
+					fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.otherproject", map.getTitle(), map.getFile()));
+					return false;
+				}
+				if(project == null) {
+					fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.noproject", map.getTitle(), map.getFile()));
+					return false;
+				}
+				if(!project.isLoaded()) {
+					fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.projectnotloaded", map.getTitle(), map.getFile()));
+					return false;
+				}
+				if(!DocearWorkspaceProject.isCompatible(project)) {
+					fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null, TextUtils.format("docear.map.ignore.wrongversion", map.getTitle(), map.getFile()));
+					return false;
+				}
+				return true;
+			}
 
 			private String getMapTitle(MapModel map) {
 				String mapTitle = "";
@@ -330,7 +451,8 @@ public class MindmapUpdateController {
 				NodeView.setModifyModelWithoutRepaint(false);
 				MapView.setNoRepaint(false);
 				for (MapItem item : maps) {
-					if (item.getModel() != null && item.isMapOpen()) {
+					// closed maps must not be loaded again here
+					if (item.isMapOpen() && item.getModel() != null) {
 						LogUtils.info("updating view for map: " + item.getIdentifierForDialog());
 						long l = System.currentTimeMillis();
 						for(INodeView nodeView : item.getModel().getRootNode().getViewers()) {
@@ -404,18 +526,42 @@ public class MindmapUpdateController {
 			}
 			
 
-			private void saveMap(MapModel map) throws InterruptedException, InvocationTargetException {
-				if (!this.mapHasChanged) {
-					return;
-				}
-				fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null, TextUtils.getText("update_references_save_map")
-						+ map.getURL().getPath());
-
-				map.setSaved(false);
-				((MFileManager) UrlManager.getController()).save(map, false);
+			/**
+			 * the closed map is saved and destroyed by the model thread while the next maps are updated
+			 */
+			private void saveMap(final MapModel map) {
+				saving.add(runOnModelThread(new Callable<Void>() {
+					public Void call() {
+						try {
+							firePropertyChange(SwingWorkerDialog.DETAILS_LOG_TEXT, null, TextUtils.getText("update_references_save_map")
+									+ map.getURL().getPath());
+							map.setSaved(false);
+							((MFileManager) UrlManager.getController()).save(map, false);
+							MapChangeEvent event = new MapChangeEvent(this, map, UrlManager.MAP_URL, map.getURL(), map.getURL());
+							Controller.getCurrentModeController().getMapController().fireMapChanged(event);
+						}
+						catch (Exception e) {
+							LogUtils.warn("could not save map " + map.getURL(), e);
+						}
+						finally {
+							map.destroy();
+						}
+						return null;
+					}
+				}));
 			}
-		
 		};
 	}
 	
+	private static class UpdateThreadFactory implements ThreadFactory {
+		private final String name;
+		
+		public UpdateThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			return new Thread(r, name);
+		}
+	}
 }
@@ -88,6 +88,7 @@ import org.docear.plugin.pdfutilities.features.DocearNodeMonitoringExtensionCont
 import org.docear.plugin.pdfutilities.features.IAnnotation;
 import org.docear.plugin.pdfutilities.features.PDFReaderHandle;
 import org.docear.plugin.pdfutilities.features.PDFReaderHandle.RegistryBranch;
+import org.docear.plugin.pdfutilities.listener.AnnotationIndexListener;
 import org.docear.plugin.pdfutilities.listener.DocearAutoMonitoringListener;
 import org.docear.plugin.pdfutilities.listener.DocearFollowLinkAction;
 import org.docear.plugin.pdfutilities.listener.DocearNodeDropListener;
@@ -1309,6 +1310,10 @@ public class PdfUtilitiesController extends ALanguageController {
 		//setupInitialProjects(modeController);
 
 		modeController.getMapController().addNodeChangeListener(new PdfNodeChangeListener());		
+		AnnotationIndexListener annotationIndexListener = new AnnotationIndexListener();
+		modeController.getMapController().addNodeChangeListener(annotationIndexListener);
+		modeController.getMapController().addMapChangeListener(annotationIndexListener);
+		DocearController.getController().getLifeCycleObserver().addMapLifeCycleListener(annotationIndexListener);
 		DocearAutoMonitoringListener autoMonitoringListener = new DocearAutoMonitoringListener();
 		DocearController.getController().getLifeCycleObserver().addMapLifeCycleListener(autoMonitoringListener);
 		Controller.getCurrentController().getViewController().getJFrame().addWindowFocusListener(autoMonitoringListener);
@@ -26,6 +26,7 @@ import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.url.mindmapmode.SaveAll;
+import org.freeplane.plugin.workspace.io.FolderChangeSet;
 import org.jdesktop.swingworker.SwingWorker;
 
 
@@ -53,12 +54,20 @@ public abstract class AbstractMonitoringAction extends AFreeplaneAction {
 	}
 
 	public static void updateNodesAgainstMonitoringDir(final List<NodeModel> targets, boolean saveall) {
+		updateNodesAgainstMonitoringDir(targets, null, saveall);
+	}
+
+	/**
+	 * updates the nodes with the changed files of their monitoring directory
+	 * only, or with all files if the change set is null
+	 */
+	public static void updateNodesAgainstMonitoringDir(final List<NodeModel> targets, FolderChangeSet changes, boolean saveall) {
 		if (saveall) {
 			new SaveAll().actionPerformed(null);
 		}
 
 		try {
-			SwingWorker<Map<AnnotationID, Collection<IAnnotation>>, AnnotationModel[]> thread = getMonitoringThread(targets);
+			SwingWorker<Map<AnnotationID, Collection<IAnnotation>>, AnnotationModel[]> thread = getMonitoringThread(targets, changes);
 
 			SwingWorkerDialog workerDialog = new SwingWorkerDialog(Controller.getCurrentController().getViewController().getJFrame());
 			workerDialog.setHeadlineText(TextUtils.getText("AbstractMonitoringAction.0")); //$NON-NLS-1$
@@ -99,7 +108,11 @@ public abstract class AbstractMonitoringAction extends AFreeplaneAction {
 	}
 
 	public static SwingWorker<Map<AnnotationID, Collection<IAnnotation>>, AnnotationModel[]> getMonitoringThread(final List<NodeModel> targets) {
-		return new MonitoringWorker(targets);
+		return getMonitoringThread(targets, null);
+	}
+
+	public static SwingWorker<Map<AnnotationID, Collection<IAnnotation>>, AnnotationModel[]> getMonitoringThread(final List<NodeModel> targets, FolderChangeSet changes) {
+		return new MonitoringWorker(targets, changes);
 	}
 	
 	
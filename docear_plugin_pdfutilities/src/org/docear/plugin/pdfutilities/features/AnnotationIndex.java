@@ -0,0 +1,307 @@
+package org.docear.plugin.pdfutilities.features;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.docear.plugin.pdfutilities.features.IAnnotation.AnnotationType;
+import org.docear.plugin.pdfutilities.map.AnnotationController;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.workspace.URIUtils;
+import org.freeplane.plugin.workspace.model.project.AWorkspaceProject;
+import org.freeplane.plugin.workspace.model.project.IWorkspaceProjectExtension;
+
+/**
+ * The annotation nodes of all mind maps of a project, so that monitoring does
+ * not have to open every map to find the nodes of an annotation.
+ *
+ * The index holds the annotation nodes of each map as they are saved in the
+ * map file. The entry of a map is replaced when the map is saved and becomes
+ * outdated when an open map is changed or the map file has been modified
+ * since the map was indexed. Outdated maps have to be read again.
+ */
+public class AnnotationIndex implements IWorkspaceProjectExtension {
+	private static final String INDEX_FILE_NAME = "annotation.index";
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * an annotation node of an indexed map
+	 */
+	public static class IndexedNode {
+		private final File mapFile;
+		private final String nodeID;
+		private final AnnotationID annotationID;
+		private final AnnotationType annotationType;
+		private final String title;
+
+		IndexedNode(File mapFile, String nodeID, AnnotationID annotationID, AnnotationType annotationType, String title) {
+			this.mapFile = mapFile;
+			this.nodeID = nodeID;
+			this.annotationID = annotationID;
+			this.annotationType = annotationType;
+			this.title = title;
+		}
+
+		public File getMapFile() {
+			return mapFile;
+		}
+
+		public String getNodeID() {
+			return nodeID;
+		}
+
+		public AnnotationID getAnnotationID() {
+			return annotationID;
+		}
+
+		public AnnotationType getAnnotationType() {
+			return annotationType;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+	}
+
+	private static class MapEntry {
+		final long lastModified;
+		final List<IndexedNode> nodes;
+		boolean changed = false;
+
+		MapEntry(long lastModified, List<IndexedNode> nodes) {
+			this.lastModified = lastModified;
+			this.nodes = nodes;
+		}
+	}
+
+	private final File indexFile;
+	private final Map<File, MapEntry> maps = new HashMap<File, MapEntry>();
+	private boolean modified = false;
+
+	public AnnotationIndex(File indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * the index of the project, it is loaded when it is used for the first
+	 * time
+	 */
+	public static AnnotationIndex getIndex(AWorkspaceProject project) {
+		if (project == null) {
+			return null;
+		}
+		synchronized (AnnotationIndex.class) {
+			AnnotationIndex index = project.getExtensions(AnnotationIndex.class);
+			if (index == null) {
+				File indexFile = null;
+				File dataDir = URIUtils.getAbsoluteFile(project.getProjectDataPath());
+				if (dataDir != null) {
+					indexFile = new File(dataDir, INDEX_FILE_NAME);
+				}
+				index = new AnnotationIndex(indexFile);
+				index.load();
+				project.addExtension(index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * true if the index contains the annotation nodes of the map file as they
+	 * are saved
+	 */
+	public synchronized boolean isUpToDate(File mapFile) {
+		MapEntry entry = maps.get(getKey(mapFile));
+		return entry != null && !entry.changed && entry.lastModified == mapFile.lastModified();
+	}
+
+	/**
+	 * the indexed annotation nodes of the map file, the index has to be up to
+	 * date for the map file
+	 */
+	public synchronized List<IndexedNode> getNodes(File mapFile) {
+		MapEntry entry = maps.get(getKey(mapFile));
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(entry.nodes);
+	}
+
+	/**
+	 * indexes the annotation nodes of the map, the map has to be saved
+	 */
+	public void update(MapModel map) {
+		File mapFile = map.getFile();
+		if (mapFile == null) {
+			return;
+		}
+		File key = getKey(mapFile);
+		List<IndexedNode> nodes = new ArrayList<IndexedNode>();
+		addAnnotationNodes(key, map.getRootNode(), nodes);
+		synchronized (this) {
+			maps.put(key, new MapEntry(mapFile.lastModified(), nodes));
+			modified = true;
+		}
+	}
+
+	/**
+	 * the map has been changed since it was saved
+	 */
+	public synchronized void mapChanged(File mapFile) {
+		MapEntry entry = maps.get(getKey(mapFile));
+		if (entry != null && !entry.changed) {
+			entry.changed = true;
+			modified = true;
+		}
+	}
+
+	private void addAnnotationNodes(File mapFile, NodeModel node, List<IndexedNode> nodes) {
+		AnnotationNodeModel annotation = AnnotationController.getAnnotationNodeModel(node);
+		if (annotation != null && annotation.getAnnotationID() != null) {
+			nodes.add(new IndexedNode(mapFile, node.createID(), annotation.getAnnotationID(), annotation.getAnnotationType(), annotation.getTitle()));
+		}
+		for (NodeModel child : node.getChildren()) {
+			addAnnotationNodes(mapFile, child, nodes);
+		}
+	}
+
+	/**
+	 * writes the index back to the project, the entries of map files which do
+	 * not exist anymore are dropped
+	 */
+	public synchronized void save() {
+		if (indexFile == null) {
+			return;
+		}
+		Iterator<File> iterator = maps.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (!iterator.next().exists()) {
+				iterator.remove();
+				modified = true;
+			}
+		}
+		if (!modified) {
+			return;
+		}
+		File tempFile = new File(indexFile.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))));
+			try {
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(maps.size());
+				for (Map.Entry<File, MapEntry> mapEntry : maps.entrySet()) {
+					MapEntry entry = mapEntry.getValue();
+					writeString(out, mapEntry.getKey().getPath());
+					// a changed map has to be indexed again
+					out.writeLong(entry.changed ? -1 : entry.lastModified);
+					out.writeInt(entry.nodes.size());
+					for (IndexedNode node : entry.nodes) {
+						writeString(out, node.getNodeID());
+						writeString(out, node.getAnnotationID().getUri().toString());
+						out.writeLong(node.getAnnotationID().getObjectID());
+						writeString(out, node.getAnnotationType() == null ? null : node.getAnnotationType().name());
+						writeString(out, node.getTitle());
+					}
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (indexFile.exists() && !indexFile.delete()) {
+				throw new IOException("could not replace " + indexFile);
+			}
+			if (!tempFile.renameTo(indexFile)) {
+				throw new IOException("could not rename " + tempFile);
+			}
+			modified = false;
+		}
+		catch (IOException e) {
+			LogUtils.warn("could not save annotation index " + indexFile, e);
+			tempFile.delete();
+		}
+	}
+
+	private void load() {
+		if (indexFile == null || !indexFile.exists()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(indexFile))));
+			try {
+				if (in.readInt() != FORMAT_VERSION) {
+					modified = true;
+					return;
+				}
+				int mapCount = in.readInt();
+				for (int i = 0; i < mapCount; i++) {
+					File mapFile = new File(readString(in));
+					long lastModified = in.readLong();
+					int nodeCount = in.readInt();
+					List<IndexedNode> nodes = new ArrayList<IndexedNode>(nodeCount);
+					for (int j = 0; j < nodeCount; j++) {
+						String nodeID = readString(in);
+						URI uri = URI.create(readString(in));
+						long objectID = in.readLong();
+						String type = readString(in);
+						String title = readString(in);
+						nodes.add(new IndexedNode(mapFile, nodeID, new AnnotationID(uri, objectID), type == null ? null : AnnotationType.valueOf(type), title));
+					}
+					maps.put(mapFile, new MapEntry(lastModified, nodes));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (Exception e) {
+			LogUtils.warn("could not load annotation index " + indexFile, e);
+			maps.clear();
+			modified = true;
+		}
+	}
+
+	private static File getKey(File mapFile) {
+		try {
+			return mapFile.getCanonicalFile();
+		}
+		catch (IOException e) {
+			return mapFile.getAbsoluteFile();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -9,10 +9,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
@@ -34,10 +43,12 @@ import org.docear.plugin.core.workspace.AVirtualDirectory;
 import org.docear.plugin.core.workspace.model.DocearWorkspaceProject;
 import org.docear.plugin.pdfutilities.actions.AbstractMonitoringAction;
 import org.docear.plugin.pdfutilities.addons.DocearAddonController;
+import org.docear.plugin.pdfutilities.features.AnnotationIndex.IndexedNode;
 import org.docear.plugin.pdfutilities.features.DocearNodeMonitoringExtension.DocearExtensionKey;
 import org.docear.plugin.pdfutilities.features.IAnnotation.AnnotationType;
 import org.docear.plugin.pdfutilities.map.AnnotationController;
 import org.docear.plugin.pdfutilities.map.MapConverter;
+import org.docear.plugin.pdfutilities.pdf.AnnotationImportCache;
 import org.docear.plugin.pdfutilities.pdf.DocumentReadOnlyException;
 import org.docear.plugin.pdfutilities.pdf.PdfAnnotationImporter;
 import org.docear.plugin.pdfutilities.pdf.PdfFileFilter;
@@ -58,6 +69,7 @@ import org.freeplane.features.mode.Controller;
 import org.freeplane.plugin.workspace.URIUtils;
 import org.freeplane.plugin.workspace.WorkspaceController;
 import org.freeplane.plugin.workspace.features.WorkspaceMapModelExtension;
+import org.freeplane.plugin.workspace.io.FolderChangeSet;
 import org.freeplane.plugin.workspace.model.project.AWorkspaceProject;
 import org.freeplane.view.swing.map.MapView;
 import org.freeplane.view.swing.map.NodeView;
@@ -66,17 +78,23 @@ import org.jdesktop.swingworker.SwingWorker;
 import de.intarsys.pdf.cos.COSRuntimeException;
 
 public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<IAnnotation>>, AnnotationModel[]> {
+	private static final int MAX_PARSER_COUNT = 4;
 	private final List<NodeModel> targets;
+	private final FolderChangeSet changes;
 	List<URI> monitorFiles = new ArrayList<URI>();
 	List<URI> otherFilesLinkedInMindMap = new ArrayList<URI>();
 	List<MapModel> monitoredMindmaps = new ArrayList<MapModel>();
 	Map<AnnotationID, List<NodeModel>> nodeIndex = new HashMap<AnnotationID, List<NodeModel>>();
+	List<File> indexedMindmaps = new ArrayList<File>();
+	Map<AnnotationID, List<IndexedNode>> indexedNodes = new HashMap<AnnotationID, List<IndexedNode>>();
+	Map<File, MapModel> loadedIndexedMindmaps = new HashMap<File, MapModel>();
 	Map<AnnotationID, AnnotationModel> importedFiles = new HashMap<AnnotationID, AnnotationModel>();
 	Map<AnnotationID, AnnotationModel> importedOtherFiles = new HashMap<AnnotationID, AnnotationModel>();
 	List<NodeModel> orphanedNodes = new ArrayList<NodeModel>();
 	List<AnnotationModel> newAnnotations = new ArrayList<AnnotationModel>();
 	Map<String, List<NodeModel>> equalChildIndex = new HashMap<String, List<NodeModel>>();
 	Map<AnnotationID, Collection<IAnnotation>> conflicts = new HashMap<AnnotationID, Collection<IAnnotation>>();
+	private AnnotationIndex annotationIndex;
 	private boolean isfolded;
 	private boolean canceledDuringPasting;
 	private NodeModel currentTarget;
@@ -84,7 +102,17 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 	boolean highlightAddon;
 
 	public MonitoringWorker(List<NodeModel> targets) {
+		this(targets, null);
+	}
+
+	/**
+	 * only imports the added and modified files of the change set and only
+	 * looks for orphaned nodes of the removed and modified files, all files
+	 * are read if the change set is null
+	 */
+	public MonitoringWorker(List<NodeModel> targets, FolderChangeSet changes) {
 		this.targets = targets;
+		this.changes = changes;
 		highlightAddon = DocearAddonController.getController().hasPlugin(IHighlightsImporter.class);
 		time = System.currentTimeMillis();
 	}
@@ -234,6 +262,7 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 			if (importedFiles.containsKey(id)) continue;
 			for (NodeModel node : nodeIndex.get(id)) {
 				if (!isMonitoringNodeChild(target, node)) continue;
+				if (changes != null && !isRemovedOrModified(node)) continue;
 				AnnotationNodeModel annotation = AnnotationController.getAnnotationNodeModel(node);
 				if (annotation == null) continue;
 				if (annotation.getAnnotationType() == null) continue;
@@ -275,6 +304,15 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 		return true;
 	}
 
+	private boolean isRemovedOrModified(NodeModel node) {
+		File file = URIUtils.getAbsoluteFile(URIUtils.getAbsoluteURI(node));
+		if (file == null) {
+			return false;
+		}
+		file = file.getAbsoluteFile();
+		return changes.getRemoved().contains(file) || changes.getModified().contains(file);
+	}
+
 	private boolean isMonitoringNodeChild(NodeModel monitoringNode, NodeModel node) {
 		List<NodeModel> pathToRoot = Arrays.asList(node.getPathToRoot());
 		return pathToRoot.contains(monitoringNode);
@@ -284,6 +322,9 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 		monitorFiles.clear();
 		monitoredMindmaps.clear();
 		nodeIndex.clear();
+		indexedMindmaps.clear();
+		indexedNodes.clear();
+		loadedIndexedMindmaps.clear();
 		importedFiles.clear();
 		newAnnotations.clear();
 		equalChildIndex.clear();
@@ -567,92 +608,232 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 			if (canceled()) return false;
 			fireProgressUpdate(100 * count / importedFiles.keySet().size());
 			System.out.println("");
-			if (!nodeIndex.containsKey(id)) {
+			if (!nodeIndex.containsKey(id) && !indexedNodes.containsKey(id)) {
 				importedFiles.get(id).setNew(true);
 				newAnnotations.add(importedFiles.get(id));
 			}
 			else {
 				AnnotationModel importedAnnotation = importedFiles.get(id);
 				if (importedAnnotation.getAnnotationType().equals(AnnotationType.TRUE_HIGHLIGHTED_TEXT)) continue;
-				for (NodeModel node : nodeIndex.get(id)) {
-					AnnotationNodeModel oldAnnotation = AnnotationController.getAnnotationNodeModel(node);
-					if (oldAnnotation != null) {
-						if (oldAnnotation.getAnnotationType() == null) continue;
-						if (oldAnnotation.getAnnotationType().equals(AnnotationType.PDF_FILE)) continue;
-						if (oldAnnotation.getAnnotationType().equals(AnnotationType.FILE)) continue;						
-						String oldAnnotationWithoutHTML = HtmlUtils.extractText(oldAnnotation.getTitle());
-						String oldAnnotationTitle = oldAnnotation.getTitle().replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
-						String importedAnnotationWithoutHTML = HtmlUtils.extractText(importedAnnotation.getTitle());
-						String importedAnnotationTitle = importedAnnotation.getTitle().replace("\r", "").replace("\n", "").replace("\t", "")
-								/*.replace(" ", "")*/;
-						importedAnnotationWithoutHTML = importedAnnotationWithoutHTML.replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
-						
-						oldAnnotationWithoutHTML = oldAnnotationWithoutHTML.replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
-						if (!importedAnnotationTitle.trim().equals(oldAnnotationTitle.trim())
-								&& !importedAnnotationTitle.trim().equals(oldAnnotationWithoutHTML.trim()) && !importedAnnotationWithoutHTML.trim().equals(oldAnnotationWithoutHTML.trim())) {
-							importedAnnotation.setConflicted(true);
-							AnnotationController.addConflictedAnnotation(importedAnnotation, conflicts);
-							for (NodeModel conflictedNode : nodeIndex.get(id)) {
-								AnnotationNodeModel conflictedAnnotation = AnnotationController.getAnnotationNodeModel(conflictedNode);
-								if (conflictedAnnotation != null) {
-									AnnotationController.addConflictedAnnotation(conflictedAnnotation, conflicts);
-								}
-							}
-							break;
-						}
+				if (isConflicted(importedAnnotation)) {
+					importedAnnotation.setConflicted(true);
+					AnnotationController.addConflictedAnnotation(importedAnnotation, conflicts);
+					for (AnnotationNodeModel conflictedAnnotation : getAnnotationNodes(id)) {
+						AnnotationController.addConflictedAnnotation(conflictedAnnotation, conflicts);
 					}
 				}
-
 			}
 			count++;
 		}
 		return true;
 	}
 
+	private boolean isConflicted(AnnotationModel importedAnnotation) {
+		AnnotationID id = importedAnnotation.getAnnotationID();
+		List<NodeModel> nodes = nodeIndex.get(id);
+		if (nodes != null) {
+			for (NodeModel node : nodes) {
+				AnnotationNodeModel oldAnnotation = AnnotationController.getAnnotationNodeModel(node);
+				if (oldAnnotation != null && isComparable(oldAnnotation.getAnnotationType())
+						&& isTitleConflicted(oldAnnotation.getTitle(), importedAnnotation.getTitle())) {
+					return true;
+				}
+			}
+		}
+		List<IndexedNode> indexed = indexedNodes.get(id);
+		if (indexed != null) {
+			for (IndexedNode node : indexed) {
+				if (isComparable(node.getAnnotationType()) && isTitleConflicted(node.getTitle(), importedAnnotation.getTitle())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isComparable(AnnotationType type) {
+		return type != null && !type.equals(AnnotationType.PDF_FILE) && !type.equals(AnnotationType.FILE);
+	}
+
+	private boolean isTitleConflicted(String oldTitle, String importedTitle) {
+		String oldAnnotationWithoutHTML = HtmlUtils.extractText(oldTitle);
+		String oldAnnotationTitle = oldTitle.replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
+		String importedAnnotationWithoutHTML = HtmlUtils.extractText(importedTitle);
+		String importedAnnotationTitle = importedTitle.replace("\r", "").replace("\n", "").replace("\t", "")
+				/*.replace(" ", "")*/;
+		importedAnnotationWithoutHTML = importedAnnotationWithoutHTML.replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
+
+		oldAnnotationWithoutHTML = oldAnnotationWithoutHTML.replace("\r", "").replace("\n", "").replace("\t", "")/*.replace(" ", "")*/;
+		return !importedAnnotationTitle.trim().equals(oldAnnotationTitle.trim())
+				&& !importedAnnotationTitle.trim().equals(oldAnnotationWithoutHTML.trim()) && !importedAnnotationWithoutHTML.trim().equals(oldAnnotationWithoutHTML.trim());
+	}
+
+	/**
+	 * the nodes of the annotation in all monitored maps, indexed maps which
+	 * contain the annotation are read now
+	 */
+	private List<AnnotationNodeModel> getAnnotationNodes(AnnotationID id) {
+		List<AnnotationNodeModel> result = new ArrayList<AnnotationNodeModel>();
+		List<NodeModel> nodes = nodeIndex.get(id);
+		if (nodes != null) {
+			for (NodeModel node : nodes) {
+				AnnotationNodeModel annotation = AnnotationController.getAnnotationNodeModel(node);
+				if (annotation != null) {
+					result.add(annotation);
+				}
+			}
+		}
+		List<IndexedNode> indexed = indexedNodes.get(id);
+		if (indexed != null) {
+			for (IndexedNode indexedNode : indexed) {
+				NodeModel node = getIndexedNode(indexedNode);
+				AnnotationNodeModel annotation = node == null ? null : AnnotationController.getAnnotationNodeModel(node);
+				if (annotation != null) {
+					result.add(annotation);
+				}
+			}
+		}
+		return result;
+	}
+
+	private NodeModel getIndexedNode(IndexedNode indexedNode) {
+		MapModel map = loadedIndexedMindmaps.get(indexedNode.getMapFile());
+		if (map == null) {
+			try {
+				map = MapUtils.getMapFromUri(indexedNode.getMapFile().toURI());
+			}
+			catch (IOException e) {
+				LogUtils.warn(e);
+				return null;
+			}
+			loadedIndexedMindmaps.put(indexedNode.getMapFile(), map);
+			monitoredMindmaps.add(map);
+		}
+		return map.getNodeForID(indexedNode.getNodeID());
+	}
+
 	private boolean loadMonitoredFiles(NodeModel target) throws InterruptedException, InvocationTargetException {
 		fireStatusUpdate(SwingWorkerDialog.SET_PROGRESS_BAR_DETERMINATE, null, null);
 		fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, TextUtils.getText("AbstractMonitoringAction.23")); //$NON-NLS-1$
 		ReadOnlyExceptionWarningHandler warningHandler = new ReadOnlyExceptionWarningHandler();
-		for (URI uri : monitorFiles) {
-			warningHandler.prepare();
-			if (canceled()) return false;
-			try {
-				fireProgressUpdate(100 * monitorFiles.indexOf(uri) / monitorFiles.size());
-				File file = URIUtils.getAbsoluteFile(uri);
-				fireStatusUpdate(SwingWorkerDialog.NEW_FILE, null, file.getName());
-				if (PdfFileFilter.accept(uri)) {
-					AnnotationModel pdf;
-					while(warningHandler.retry()) {
-						try {
-							pdf = new PdfAnnotationImporter().importPdf(uri);
-							addAnnotationsToImportedFiles(pdf, target);
-							warningHandler.consume();
-						} catch (DocumentReadOnlyException e) {
-							if(warningHandler.skip()) {
-								break;
-							}
-							warningHandler.showDialog(file);
-						} 
-					}
+		AnnotationImportCache importCache = AnnotationImportCache.load(WorkspaceController.getMapProject(target.getMap()));
+		// the PDFs are parsed in parallel, the results are added in the order of the files
+		int parserCount = getParserCount();
+		ExecutorService parser = Executors.newFixedThreadPool(parserCount);
+		LinkedList<Future<AnnotationModel>> parsedFiles = new LinkedList<Future<AnnotationModel>>();
+		int submittedCount = 0;
+		try {
+			for (int i = 0; i < monitorFiles.size(); i++) {
+				if (canceled()) return false;
+				// keep the parsers busy, but do not parse too far ahead
+				while (submittedCount < monitorFiles.size() && submittedCount - i < 2 * parserCount) {
+					parsedFiles.add(submitParsing(parser, monitorFiles.get(submittedCount), importCache));
+					submittedCount++;
 				}
-				else {
-					AnnotationModel annotation = new AnnotationModel(0, AnnotationType.FILE);
-					annotation.setSource(uri);
-					annotation.setTitle(file.getName());
-					AnnotationID id = annotation.getAnnotationID();
-					if (!importedFiles.containsKey(id)) {
-						importedFiles.put(id, annotation);
-					}
+				warningHandler.prepare();
+				fireProgressUpdate(100 * i / monitorFiles.size());
+				loadMonitoredFile(monitorFiles.get(i), parsedFiles.removeFirst(), target, warningHandler, importCache);
+			}
+		}
+		finally {
+			parser.shutdownNow();
+			importCache.save();
+			fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null, TextUtils.format("docear.monitoring.import_cache.stats", importCache.getHits(), importCache.getHits() + importCache.getMisses(), importCache.getHitRate()));
+		}
+		return true;
+	}
+
+	private int getParserCount() {
+		if (highlightAddon) {
+			// the highlights importer is shared and keeps the state of the current document
+			return 1;
+		}
+		return Math.max(1, Math.min(MAX_PARSER_COUNT, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * starts parsing the file if it is a PDF, returns null otherwise
+	 */
+	private Future<AnnotationModel> submitParsing(ExecutorService parser, final URI uri, final AnnotationImportCache importCache) {
+		if (!PdfFileFilter.accept(uri)) {
+			return null;
+		}
+		return parser.submit(new Callable<AnnotationModel>() {
+			public AnnotationModel call() throws Exception {
+				return new PdfAnnotationImporter().importPdf(uri, importCache);
+			}
+		});
+	}
+
+	private void loadMonitoredFile(URI uri, Future<AnnotationModel> parsedFile, NodeModel target, ReadOnlyExceptionWarningHandler warningHandler, AnnotationImportCache importCache) throws InterruptedException, InvocationTargetException {
+		try {
+			File file = URIUtils.getAbsoluteFile(uri);
+			fireStatusUpdate(SwingWorkerDialog.NEW_FILE, null, file.getName());
+			if (PdfFileFilter.accept(uri)) {
+				AnnotationModel pdf;
+				while(warningHandler.retry()) {
+					try {
+						if (parsedFile != null) {
+							Future<AnnotationModel> result = parsedFile;
+							// a retry parses the file again
+							parsedFile = null;
+							pdf = getParsedFile(result);
+						}
+						else {
+							pdf = new PdfAnnotationImporter().importPdf(uri, importCache);
+						}
+						addAnnotationsToImportedFiles(pdf, target);
+						warningHandler.consume();
+					} catch (DocumentReadOnlyException e) {
+						if(warningHandler.skip()) {
+							break;
+						}
+						warningHandler.showDialog(file);
+					} 
 				}
 			}
-			catch (IOException e) {
-				LogUtils.info("IOexception during update file: " + uri); //$NON-NLS-1$
+			else {
+				AnnotationModel annotation = new AnnotationModel(0, AnnotationType.FILE);
+				annotation.setSource(uri);
+				annotation.setTitle(file.getName());
+				AnnotationID id = annotation.getAnnotationID();
+				if (!importedFiles.containsKey(id)) {
+					importedFiles.put(id, annotation);
+				}
+			}
+		}
+		catch (IOException e) {
+			LogUtils.info("IOexception during update file: " + uri); //$NON-NLS-1$
+		}
+		catch (COSRuntimeException e) {
+			LogUtils.info("COSRuntimeException during update file: " + uri); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * waits for the parser and throws its exception as if the file had been
+	 * parsed by the calling thread
+	 */
+	private AnnotationModel getParsedFile(Future<AnnotationModel> parsedFile) throws InterruptedException, IOException, DocumentReadOnlyException {
+		try {
+			return parsedFile.get();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof DocumentReadOnlyException) {
+				throw (DocumentReadOnlyException) cause;
 			}
-			catch (COSRuntimeException e) {
-				LogUtils.info("COSRuntimeException during update file: " + uri); //$NON-NLS-1$
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
 			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
 		}
-		return true;
 	}
 
 	private void addAnnotationsToImportedFiles(AnnotationModel annotation, NodeModel target) throws InterruptedException {
@@ -692,6 +873,30 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 			}
 			if (canceled()) return false;
 			buildAnnotationNodeIndex(map.getRootNode());
+			if (annotationIndex != null && map.getFile() != null && map.isSaved() && annotationIndex == AnnotationIndex.getIndex(project)) {
+				annotationIndex.update(map);
+			}
+		}
+		if (annotationIndex != null) {
+			if (workingProject.equals(WorkspaceController.getMapProject(target.getMap()))) {
+				for (File mapFile : indexedMindmaps) {
+					if (canceled()) return false;
+					for (IndexedNode node : annotationIndex.getNodes(mapFile)) {
+						List<IndexedNode> nodeList = indexedNodes.get(node.getAnnotationID());
+						if (nodeList == null) {
+							nodeList = new ArrayList<IndexedNode>();
+							indexedNodes.put(node.getAnnotationID(), nodeList);
+						}
+						nodeList.add(node);
+					}
+				}
+			}
+			else {
+				for (File mapFile : indexedMindmaps) {
+					fireStatusUpdate(SwingWorkerDialog.DETAILS_LOG_TEXT, null,  TextUtils.format("docear.map.ignore.otherproject", mapFile.getName(), mapFile));
+				}
+			}
+			annotationIndex.save();
 		}
 		buildEqualChildIndex(target.getChildren());
 		if (canceled()) return false;
@@ -746,6 +951,9 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 		CustomFileListFilter monitorFileFilter = new CustomFileListFilter(DocearController.getPropertiesController().getProperty(
 				TextUtils.getText("AbstractMonitoringAction.30"))); //$NON-NLS-1$
 		monitorFiles = getFilteredFileList(monitoringDirectory, monitorFileFilter, MonitoringUtils.isMonitorSubDirectories(target));
+		if (changes != null) {
+			retainChangedFiles(monitorFiles);
+		}
 
 		fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, TextUtils.getText("AbstractMonitoringAction.31")); //$NON-NLS-1$
 		if (canceled()) return false;
@@ -768,14 +976,60 @@ public class MonitoringWorker extends SwingWorker<Map<AnnotationID, Collection<I
 
 		fireStatusUpdate(SwingWorkerDialog.PROGRESS_BAR_TEXT, null, TextUtils.getText("AbstractMonitoringAction.33")); //$NON-NLS-1$
 		if (canceled()) return false;
-		monitoredMindmaps = MapUtils.getMapsFromUris(mindmapFiles);
+		annotationIndex = AnnotationIndex.getIndex(WorkspaceController.getMapProject(target.getMap()));
+		Collection<URI> mindmapsToLoad = getMindmapsToLoad(target, mindmapFiles);
+		monitoredMindmaps = MapUtils.getMapsFromUris(mindmapsToLoad);
 		if (updateMindmaps(monitoredMindmaps)) {
-			monitoredMindmaps = MapUtils.getMapsFromUris(mindmapFiles);
+			monitoredMindmaps = MapUtils.getMapsFromUris(mindmapsToLoad);
 		}
 
 		return true;
 	}
 
+	/**
+	 * the maps which have to be read, the annotation nodes of all other maps
+	 * are taken from the annotation index
+	 */
+	private Collection<URI> getMindmapsToLoad(NodeModel target, Collection<URI> mindmapFiles) {
+		if (annotationIndex == null) {
+			return mindmapFiles;
+		}
+		Set<File> openMaps = new HashSet<File>();
+		if (target.getMap().getFile() != null) {
+			openMaps.add(target.getMap().getFile().getAbsoluteFile());
+		}
+		for (MapModel map : Controller.getCurrentController().getMapViewManager().getMaps().values()) {
+			if (map.getFile() != null) {
+				openMaps.add(map.getFile().getAbsoluteFile());
+			}
+		}
+		Collection<URI> result = new ArrayList<URI>();
+		for (URI uri : mindmapFiles) {
+			File file = URIUtils.getAbsoluteFile(uri);
+			if (file == null || openMaps.contains(file.getAbsoluteFile()) || !annotationIndex.isUpToDate(file)) {
+				result.add(uri);
+			}
+			else {
+				indexedMindmaps.add(file);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * removes all files which have not been added or modified
+	 */
+	private void retainChangedFiles(List<URI> files) {
+		Set<File> changedFiles = new HashSet<File>(changes.getAdded());
+		changedFiles.addAll(changes.getModified());
+		for (Iterator<URI> iterator = files.iterator(); iterator.hasNext();) {
+			File file = URIUtils.getAbsoluteFile(iterator.next());
+			if (file == null || !changedFiles.contains(file.getAbsoluteFile())) {
+				iterator.remove();
+			}
+		}
+	}
+
 	private boolean updateMindmaps(Collection<MapModel> maps) throws InterruptedException, InvocationTargetException {
 		List<MapModel> mapsToUpdate = new ArrayList<MapModel>();
 		for (MapModel map : maps) {
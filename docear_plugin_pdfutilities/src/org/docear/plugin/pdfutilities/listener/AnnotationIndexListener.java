@@ -0,0 +1,82 @@
+package org.docear.plugin.pdfutilities.listener;
+
+import org.docear.plugin.core.features.DocearMapModelController;
+import org.docear.plugin.core.workspace.model.DocearWorkspaceProject;
+import org.docear.plugin.pdfutilities.features.AnnotationIndex;
+import org.freeplane.features.map.IMapChangeListener;
+import org.freeplane.features.map.IMapLifeCycleListener;
+import org.freeplane.features.map.INodeChangeListener;
+import org.freeplane.features.map.MapChangeEvent;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.workspace.WorkspaceController;
+import org.freeplane.plugin.workspace.model.project.AWorkspaceProject;
+
+/**
+ * Keeps the {@link AnnotationIndex} of the projects up to date with the open
+ * maps: a map is marked as changed in the index when one of its nodes changes
+ * and is indexed again from memory when it is saved.
+ */
+public class AnnotationIndexListener implements IMapLifeCycleListener, IMapChangeListener, INodeChangeListener {
+
+	public void onCreate(MapModel map) {
+	}
+
+	public void onRemove(MapModel map) {
+	}
+
+	public void onSavedAs(MapModel map) {
+		onSaved(map);
+	}
+
+	public void onSaved(MapModel map) {
+		if (map == null || map.getFile() == null || DocearMapModelController.getModel(map) == null) {
+			return;
+		}
+		AWorkspaceProject project = WorkspaceController.getMapProject(map);
+		if (project == null || !project.isLoaded() || !DocearWorkspaceProject.isCompatible(project)) {
+			return;
+		}
+		AnnotationIndex index = AnnotationIndex.getIndex(project);
+		index.update(map);
+		index.save();
+	}
+
+	public void nodeChanged(NodeChangeEvent event) {
+		mapChanged(event.getNode().getMap());
+	}
+
+	public void mapChanged(MapChangeEvent event) {
+		mapChanged(event.getMap());
+	}
+
+	public void onNodeDeleted(NodeModel parent, NodeModel child, int index) {
+		mapChanged(parent.getMap());
+	}
+
+	public void onNodeInserted(NodeModel parent, NodeModel child, int newIndex) {
+		mapChanged(parent.getMap());
+	}
+
+	public void onNodeMoved(NodeModel oldParent, int oldIndex, NodeModel newParent, NodeModel child, int newIndex) {
+		mapChanged(newParent.getMap());
+	}
+
+	public void onPreNodeMoved(NodeModel oldParent, int oldIndex, NodeModel newParent, NodeModel child, int newIndex) {
+	}
+
+	public void onPreNodeDelete(NodeModel oldParent, NodeModel selectedNode, int index) {
+	}
+
+	private void mapChanged(MapModel map) {
+		if (map == null || map.getFile() == null) {
+			return;
+		}
+		AnnotationIndex index = AnnotationIndex.getIndex(WorkspaceController.getMapProject(map));
+		if (index != null) {
+			// the map may be written without a save event, e.g. by MapUtils.saveMap()
+			index.mapChanged(map.getFile());
+		}
+	}
+}
@@ -1,93 +1,56 @@
 package org.docear.plugin.pdfutilities.listener;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Map.Entry;
 
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
-import name.pachler.nio.file.WatchKey;
-
+import org.docear.plugin.core.DocearController;
 import org.docear.plugin.core.features.DocearInternallyLoadedMap;
+import org.docear.plugin.core.workspace.AVirtualDirectory;
 import org.docear.plugin.pdfutilities.actions.UpdateMonitoringFolderAction;
 import org.docear.plugin.pdfutilities.map.MapConverter;
+import org.docear.plugin.pdfutilities.util.CustomFileListFilter;
 import org.docear.plugin.pdfutilities.util.MonitoringUtils;
 import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.map.IMapLifeCycleListener;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.workspace.WorkspaceController;
+import org.freeplane.plugin.workspace.io.FolderChangeSet;
+import org.freeplane.plugin.workspace.io.IFolderChangeListener;
 
-public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  WindowFocusListener{
+public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  WindowFocusListener, IFolderChangeListener {
+	private static final int RETRY_DELAY = 5000;
 	
 	private List<NodeModel> autoMonitorNodes = new ArrayList<NodeModel>();
 	private boolean startup = true;
 		
-	Comparator<WatchKey> watchKeyComparator = new Comparator<WatchKey>() {
-
-		public int compare(WatchKey key1, WatchKey key2) {
-			int hash1 = key1.hashCode(); 
-			int hash2 = key2.hashCode();
-			if(hash1 > hash2) {
-				return 1;
-			}
-			else if(hash1 < hash2) {
-				return -1;
-			}
-			return 0;
-		}
-	};
-	//TODO: enable automatic file monitoring
-	//private WatchService watcher = FileSystems.getDefault().newWatchService();
-	private Map<MapModel, List<WatchKey>> mapKeysMap = new HashMap<MapModel, List<WatchKey>>();
-	private Map<WatchKey, MapModel> keyMapMap = new TreeMap<WatchKey, MapModel>(watchKeyComparator);
-	private Map<WatchKey, String> watchables = new TreeMap<WatchKey, String>(watchKeyComparator);
-	
+	// the auto monitoring nodes of the open maps by their watched pdf folders
+	private final Map<File, List<NodeModel>> watchedFolders = new HashMap<File, List<NodeModel>>();
+	// changes which arrived while another monitoring was running
+	private final Map<File, FolderChangeSet> pendingChanges = new LinkedHashMap<File, FolderChangeSet>();
+	private final Timer retryTimer;
 	
 	public DocearAutoMonitoringListener() {
-		//TODO: enable automatic file monitoring
-//		new Thread() {
-//			public void run() {
-//				try {
-//					WatchKey key = null;
-//					while((key = watcher.take()) != null) {
-//						Path watchPath = null;
-//						if(key instanceof PathWatchKey) {
-//							watchPath = (Path) ((PathWatchKey) key).watchable();
-//						}
-//						for(WatchEvent<?> event : key.pollEvents()) {
-//							Object obj = event.context();
-//							File file = new File(watchPath.toString(), obj.toString());
-//							if(StandardWatchEventKind.ENTRY_CREATE.equals(event.kind())) {
-//								onCreateFile(file, key);
-//							}
-//							else if(StandardWatchEventKind.ENTRY_DELETE.equals(event.kind())) {
-//								onDeleteFile(file, key);								
-//							}
-//							else if(StandardWatchEventKind.ENTRY_MODIFY.equals(event.kind())) {
-//								onModifyFile(file, key);
-//							}
-//							else {
-//								LogUtils.info("DirectoryWatcher: unknown event kind"+ event.kind());
-//							}
-//						}
-//						key.reset();
-//					}
-//				} catch (InterruptedException e) {
-//				}
-//				finally {
-//					LogUtils.info("closing directory watcher...");
-//					try {
-//						watcher.close();
-//					} catch (IOException e) {
-//					}
-//				}				
-//			}
-//		}.start();
+		retryTimer = new Timer(RETRY_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				processPendingChanges();
+			}
+		});
+		retryTimer.setRepeats(false);
 	}
 	
 	
@@ -101,8 +64,7 @@ public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  Win
 		}
 		autoMonitorNodes.addAll(monitoringNodes);
 		
-		//TODO: enable automatic file monitoring
-		//registerMonitoredDirectories(map, monitoringNodes);
+		registerMonitoredDirectories(monitoringNodes);
 		
 		if(!startup){
 			SwingUtilities.invokeLater(new Thread() {
@@ -117,13 +79,21 @@ public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  Win
 	}
 
 	public void onRemove(MapModel map) {
-		List<WatchKey> keys = mapKeysMap.get(map);
-		if(keys != null) {
-			for (WatchKey watchKey : keys) {
-				cleanUpWatchKey(watchKey);
+		Iterator<Entry<File, List<NodeModel>>> iterator = watchedFolders.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Entry<File, List<NodeModel>> entry = iterator.next();
+			Iterator<NodeModel> nodes = entry.getValue().iterator();
+			while(nodes.hasNext()) {
+				if(nodes.next().getMap() == map) {
+					nodes.remove();
+				}
+			}
+			if(entry.getValue().isEmpty()) {
+				iterator.remove();
+				pendingChanges.remove(entry.getKey());
+				WorkspaceController.getFolderWatcher().removeFolderChangeListener(entry.getKey(), this);
 			}
 		}
-		
 	}
 
 	public void windowGainedFocus(WindowEvent e) {
@@ -136,6 +106,101 @@ public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  Win
 	public void windowLostFocus(WindowEvent e) {
 	
 	}
+
+	/**
+	 * updates the auto monitoring nodes of the folder with the changed files
+	 * only, instead of reading the whole folder again
+	 */
+	public void folderChanged(FolderChangeSet changes) {
+		File folder = changes.getFolder();
+		if(!watchedFolders.containsKey(folder)) {
+			return;
+		}
+		FolderChangeSet pending = pendingChanges.get(folder);
+		if(pending == null) {
+			pending = new FolderChangeSet(folder);
+			pendingChanges.put(folder, pending);
+		}
+		pending.addAll(changes);
+		processPendingChanges();
+	}
+
+	private void processPendingChanges() {
+		if(pendingChanges.isEmpty()) {
+			return;
+		}
+		if(startup) {
+			// the startup monitoring reads all files anyway
+			pendingChanges.clear();
+			return;
+		}
+		if(MapConverter.currentlyConverting || DocearController.getController().getSemaphoreController().isLocked("MindmapUpdate")) {
+			retryTimer.restart();
+			return;
+		}
+		Iterator<FolderChangeSet> iterator = pendingChanges.values().iterator();
+		FolderChangeSet changes = iterator.next();
+		iterator.remove();
+		List<NodeModel> nodes = watchedFolders.get(changes.getFolder());
+		if(nodes != null && !nodes.isEmpty() && isMonitoredChange(changes)) {
+			LogUtils.info("Monitoring started for " + changes); //$NON-NLS-1$
+			UpdateMonitoringFolderAction.updateNodesAgainstMonitoringDir(new ArrayList<NodeModel>(nodes), changes, false);
+		}
+		if(!pendingChanges.isEmpty()) {
+			retryTimer.restart();
+		}
+	}
+
+	private boolean isMonitoredChange(FolderChangeSet changes) {
+		// the type of removed files cannot be checked anymore
+		if(!changes.getRemoved().isEmpty()) {
+			return true;
+		}
+		CustomFileListFilter monitorFileFilter = new CustomFileListFilter(DocearController.getPropertiesController().getProperty(
+				TextUtils.getText("AbstractMonitoringAction.30"))); //$NON-NLS-1$
+		for(File file : changes.getAdded()) {
+			if(monitorFileFilter.accept(file)) {
+				return true;
+			}
+		}
+		for(File file : changes.getModified()) {
+			if(monitorFileFilter.accept(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void registerMonitoredDirectories(List<? extends NodeModel> monitoringNodes) {
+		for(NodeModel node : monitoringNodes) {
+			File pdfDir = MonitoringUtils.getPdfDirFromMonitoringNode(node);
+			if(pdfDir == null) {
+				continue;
+			}
+			File[] folders = new File[] {pdfDir};
+			if(pdfDir instanceof AVirtualDirectory) {
+				folders = pdfDir.listFiles();
+			}
+			if(folders == null) {
+				continue;
+			}
+			for(File folder : folders) {
+				if(!folder.isDirectory()) {
+					continue;
+				}
+				folder = folder.getAbsoluteFile();
+				List<NodeModel> nodes = watchedFolders.get(folder);
+				if(nodes == null) {
+					nodes = new ArrayList<NodeModel>();
+					watchedFolders.put(folder, nodes);
+					WorkspaceController.getFolderWatcher().addFolderChangeListener(folder, this);
+				}
+				if(!nodes.contains(node)) {
+					nodes.add(node);
+				}
+			}
+		}
+	}
 	
 	private List<? extends NodeModel> getAutoMonitorNodes(NodeModel node) {
 		List<NodeModel> result = new ArrayList<NodeModel>();
@@ -162,12 +227,4 @@ public class DocearAutoMonitoringListener implements IMapLifeCycleListener,  Win
 			autoMonitorNodes.clear();
 		}		
 	}
-	
-	private void cleanUpWatchKey(WatchKey watchKey) {
-		watchKey.cancel();
-		watchables.remove(watchKey);
-		keyMapMap.remove(watchKey);
-	}
-	
-
 }
@@ -0,0 +1,362 @@
+package org.docear.plugin.pdfutilities.pdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.docear.addons.highlights.IHighlightsImporter;
+import org.docear.plugin.core.DocearController;
+import org.docear.plugin.pdfutilities.PdfUtilitiesController;
+import org.docear.plugin.pdfutilities.addons.DocearAddonController;
+import org.docear.plugin.pdfutilities.features.AnnotationModel;
+import org.docear.plugin.pdfutilities.features.IAnnotation.AnnotationType;
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.plugin.workspace.URIUtils;
+import org.freeplane.plugin.workspace.model.project.AWorkspaceProject;
+
+/**
+ * Remembers the annotations imported from the PDFs of a project, so that
+ * monitoring only has to parse new or changed files.
+ *
+ * An entry is found by the canonical path of the file and is valid as long as
+ * the size and the modification time of the file are unchanged. If only the
+ * modification time differs, the MD5 hash of the file content decides. The
+ * whole cache is dropped when the import settings change.
+ *
+ * The annotation trees are kept serialized, every lookup returns new
+ * {@link AnnotationModel} instances. The cache can be used from several
+ * threads.
+ */
+public class AnnotationImportCache {
+	private static final String CACHE_FILE_NAME = "annotation_import.cache";
+	private static final int FORMAT_VERSION = 1;
+
+	private static class Entry {
+		final long size;
+		long lastModified;
+		final String contentHash;
+		final byte[] annotations;
+		boolean used;
+
+		Entry(long size, long lastModified, String contentHash, byte[] annotations) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.contentHash = contentHash;
+			this.annotations = annotations;
+		}
+	}
+
+	private final File cacheFile;
+	private final String settings;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean modified = false;
+	private int hits = 0;
+	private int misses = 0;
+
+	public AnnotationImportCache(File cacheFile, String settings) {
+		this.cacheFile = cacheFile;
+		this.settings = settings;
+	}
+
+	/**
+	 * loads the cache of the project with the current import settings
+	 */
+	public static AnnotationImportCache load(AWorkspaceProject project) {
+		File cacheFile = null;
+		if (project != null) {
+			File dataDir = URIUtils.getAbsoluteFile(project.getProjectDataPath());
+			if (dataDir != null) {
+				cacheFile = new File(dataDir, CACHE_FILE_NAME);
+			}
+		}
+		AnnotationImportCache cache = new AnnotationImportCache(cacheFile, getCurrentImportSettings());
+		cache.load();
+		return cache;
+	}
+
+	/**
+	 * all settings which influence the result of
+	 * {@link PdfAnnotationImporter#importPdf(URI)}
+	 */
+	public static String getCurrentImportSettings() {
+		StringBuilder builder = new StringBuilder();
+		String[] keys = new String[] { PdfUtilitiesController.IMPORT_COMMENTS_KEY, PdfUtilitiesController.IMPORT_HIGHLIGHTED_TEXTS_KEY,
+				PdfUtilitiesController.IMPORT_POP_UP_HIGHLIGHTED_KEY, PdfUtilitiesController.IMPORT_ONLY_POP_UP_KEY,
+				PdfUtilitiesController.IMPORT_BOOKMARKS_KEY, PdfUtilitiesController.REMOVE_LINEBREAKS_KEY, PdfUtilitiesController.REMOVE_DASHES_KEY };
+		for (String key : keys) {
+			builder.append(key).append('=').append(DocearController.getPropertiesController().getBooleanProperty(key)).append(';');
+		}
+		builder.append("highlightsAddon=").append(DocearAddonController.getController().hasPlugin(IHighlightsImporter.class));
+		return builder.toString();
+	}
+
+	/**
+	 * returns the cached annotations of the file, or null if the file is not
+	 * cached or has changed
+	 */
+	public synchronized AnnotationModel get(File file) {
+		String key = getKey(file);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == file.length()) {
+			long lastModified = file.lastModified();
+			if (entry.lastModified != lastModified && entry.contentHash != null && entry.contentHash.equals(getContentHash(file))) {
+				// touched, but not changed
+				entry.lastModified = lastModified;
+				modified = true;
+			}
+			if (entry.lastModified == lastModified) {
+				try {
+					AnnotationModel annotation = readAnnotation(new DataInputStream(new ByteArrayInputStream(entry.annotations)));
+					entry.used = true;
+					hits++;
+					return annotation;
+				}
+				catch (Exception e) {
+					LogUtils.warn("could not read cached annotations of " + file, e);
+				}
+			}
+		}
+		if (entry != null) {
+			entries.remove(key);
+			modified = true;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * stores the annotations imported from the file, the file must not have
+	 * changed since the import
+	 */
+	public synchronized void put(File file, AnnotationModel annotation) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			writeAnnotation(out, annotation);
+			out.flush();
+			Entry entry = new Entry(file.length(), file.lastModified(), getContentHash(file), bytes.toByteArray());
+			entry.used = true;
+			entries.put(getKey(file), entry);
+			modified = true;
+		}
+		catch (IOException e) {
+			LogUtils.warn("could not cache annotations of " + file, e);
+		}
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized int getHitRate() {
+		int lookups = hits + misses;
+		return lookups == 0 ? 0 : 100 * hits / lookups;
+	}
+
+	/**
+	 * writes the cache back to the project, entries of files which do not
+	 * exist anymore are dropped
+	 */
+	public synchronized void save() {
+		if (cacheFile == null) {
+			return;
+		}
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Entry> mapEntry = iterator.next();
+			if (!mapEntry.getValue().used && !new File(mapEntry.getKey()).exists()) {
+				iterator.remove();
+				modified = true;
+			}
+		}
+		if (!modified) {
+			return;
+		}
+		File tempFile = new File(cacheFile.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))));
+			try {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(settings);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+					Entry entry = mapEntry.getValue();
+					writeString(out, mapEntry.getKey());
+					out.writeLong(entry.size);
+					out.writeLong(entry.lastModified);
+					writeString(out, entry.contentHash);
+					out.writeInt(entry.annotations.length);
+					out.write(entry.annotations);
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (cacheFile.exists() && !cacheFile.delete()) {
+				throw new IOException("could not replace " + cacheFile);
+			}
+			if (!tempFile.renameTo(cacheFile)) {
+				throw new IOException("could not rename " + tempFile);
+			}
+			modified = false;
+		}
+		catch (IOException e) {
+			LogUtils.warn("could not save annotation import cache " + cacheFile, e);
+			tempFile.delete();
+		}
+	}
+
+	private void load() {
+		if (cacheFile == null || !cacheFile.exists()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))));
+			try {
+				if (in.readInt() != FORMAT_VERSION || !settings.equals(in.readUTF())) {
+					modified = true;
+					return;
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String key = readString(in);
+					long size = in.readLong();
+					long lastModified = in.readLong();
+					String contentHash = readString(in);
+					byte[] annotations = new byte[in.readInt()];
+					in.readFully(annotations);
+					entries.put(key, new Entry(size, lastModified, contentHash, annotations));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException e) {
+			LogUtils.warn("could not load annotation import cache " + cacheFile, e);
+			entries.clear();
+			modified = true;
+		}
+	}
+
+	private static String getKey(File file) {
+		try {
+			return file.getCanonicalPath();
+		}
+		catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private static String getContentHash(File file) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[64 * 1024];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			}
+			finally {
+				FileUtils.silentlyClose(in);
+			}
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return hash.toString();
+		}
+		catch (IOException e) {
+			return null;
+		}
+		catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	private static void writeAnnotation(DataOutputStream out, AnnotationModel annotation) throws IOException {
+		out.writeLong(annotation.getObjectID());
+		writeString(out, annotation.getAnnotationType() == null ? null : annotation.getAnnotationType().name());
+		out.writeInt(annotation.getPage() == null ? -1 : annotation.getPage());
+		writeString(out, annotation.getDestinationUri() == null ? null : annotation.getDestinationUri().toString());
+		writeString(out, annotation.getTitle());
+		out.writeInt(annotation.getOldObjectNumber());
+		out.writeBoolean(annotation.getAnnotationID() != null && annotation.getAnnotationID().isNewCreated());
+		writeString(out, annotation.getSource() == null ? null : annotation.getSource().toString());
+		out.writeInt(annotation.getChildren().size());
+		for (AnnotationModel child : annotation.getChildren()) {
+			writeAnnotation(out, child);
+		}
+	}
+
+	private static AnnotationModel readAnnotation(DataInputStream in) throws IOException {
+		long objectID = in.readLong();
+		String type = readString(in);
+		AnnotationModel annotation = new AnnotationModel(objectID, type == null ? null : AnnotationType.valueOf(type));
+		int page = in.readInt();
+		if (page != -1) {
+			annotation.setPage(page);
+		}
+		String destinationUri = readString(in);
+		if (destinationUri != null) {
+			annotation.setDestinationUri(URI.create(destinationUri));
+		}
+		annotation.setTitle(readString(in));
+		int oldObjectNumber = in.readInt();
+		boolean isNewID = in.readBoolean();
+		String source = readString(in);
+		if (source != null) {
+			annotation.setSource(URI.create(source));
+		}
+		annotation.setOldObjectNumber(oldObjectNumber);
+		annotation.setIsNewID(isNewID);
+		int childCount = in.readInt();
+		for (int i = 0; i < childCount; i++) {
+			annotation.getChildren().add(readAnnotation(in));
+		}
+		return annotation;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
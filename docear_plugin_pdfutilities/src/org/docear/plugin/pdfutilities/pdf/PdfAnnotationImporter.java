@@ -60,6 +60,7 @@ public class PdfAnnotationImporter implements IAnnotationImporter {
 	private boolean setPDObject = false;
 	private int removeLinebreaksDialogResult = JOptionPane.OK_OPTION;
 	private boolean modifiedDocument;
+	private boolean importFailed;
 	
 	public PdfAnnotationImporter(){
 	}
@@ -86,6 +87,7 @@ public class PdfAnnotationImporter implements IAnnotationImporter {
 			this.importAnnotations(document, annotations);			
 			this.importBookmarks(document, annotations);			
 		} catch(Exception e){			
+			this.importFailed = true;
 			LogUtils.warn(e);
 			return annotations;
 		} finally {			
@@ -105,6 +107,7 @@ public class PdfAnnotationImporter implements IAnnotationImporter {
 		try{
 			importedAnnotations = importAnnotations(uri);
 		} catch(RuntimeException e){
+			this.importFailed = true;
 			LogUtils.info("IOexception during update file: "+ uri); //$NON-NLS-1$
 			LogUtils.warn(e);
 		}
@@ -116,6 +119,29 @@ public class PdfAnnotationImporter implements IAnnotationImporter {
 		return root;
 	}
 	
+	/**
+	 * like {@link #importPdf(URI)}, but takes the annotations from the cache
+	 * if the file has not changed since it was cached. Imports which changed
+	 * the document or failed are not cached.
+	 */
+	public AnnotationModel importPdf(URI uri, AnnotationImportCache cache) throws IOException, DocumentReadOnlyException {
+		File file = URIUtils.getAbsoluteFile(uri);
+		if(cache == null || file == null || !file.exists()) {
+			return importPdf(uri);
+		}
+		AnnotationModel root = cache.get(file);
+		if(root != null) {
+			return root;
+		}
+		this.importFailed = false;
+		this.modifiedDocument = false;
+		root = importPdf(uri);
+		if(!this.importFailed && !this.modifiedDocument) {
+			cache.put(file, root);
+		}
+		return root;
+	}
+	
 	public boolean renameAnnotation(IAnnotation annotation, String newTitle) throws IOException, DocumentReadOnlyException {
 		if(newTitle.startsWith("<HTML>") || newTitle.startsWith("<html>")){
 			newTitle = HtmlUtils.extractText(newTitle);
@@ -0,0 +1,31 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io;
+
+/**
+ * An element handler which can receive elements as their xml source instead
+ * of creating them.
+ */
+public interface IUnparsedElementHandler extends IElementHandler {
+	/**
+	 * returns true if the element starting now is not parsed but passed to
+	 * {@link #unparsedElement(Object, String, String)}
+	 */
+	boolean keepsUnparsed(Object parent, String tag);
+
+	void unparsedElement(Object parent, String tag, String xml);
+}
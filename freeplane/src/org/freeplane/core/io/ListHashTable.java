@@ -46,6 +46,19 @@ public class ListHashTable<K, V> {
 
 	final private Map<K, List<V>> table = new Hashtable<K, List<V>>();
 
+	public ListHashTable() {
+	}
+
+	/**
+	 * A copy whose lists can be changed without changing the lists of the
+	 * source.
+	 */
+	public ListHashTable(final ListHashTable<K, V> source) {
+		for (final Map.Entry<K, List<V>> entry : source.table.entrySet()) {
+			table.put(entry.getKey(), new LinkedList<V>(entry.getValue()));
+		}
+	}
+
 	public void add(final K tag, final V element) {
 		List<V> elementsForTag = table.get(tag);
 		if (elementsForTag == null) {
@@ -22,10 +22,30 @@ package org.freeplane.core.io;
 import org.freeplane.core.extension.IExtension;
 
 public class WriteManager {
-	final private ListHashTable<String, IAttributeWriter> attributeWriters = new ListHashTable<String, IAttributeWriter>();
-	final private ListHashTable<String, IElementWriter> elementWriters = new ListHashTable<String, IElementWriter>();
-	final private ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter> extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>();;
-	final private ListHashTable<Class<? extends IExtension>, IExtensionElementWriter> extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>();
+	final private ListHashTable<String, IAttributeWriter> attributeWriters;
+	final private ListHashTable<String, IElementWriter> elementWriters;
+	final private ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter> extensionAttributeWriters;
+	final private ListHashTable<Class<? extends IExtension>, IExtensionElementWriter> extensionElementWriters;
+
+	public WriteManager() {
+		attributeWriters = new ListHashTable<String, IAttributeWriter>();
+		elementWriters = new ListHashTable<String, IElementWriter>();
+		extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>();
+		extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>();
+	}
+
+	/**
+	 * A copy of the writers which can be added and removed while the original
+	 * is used by other threads.
+	 */
+	public WriteManager(final WriteManager writeManager) {
+		attributeWriters = new ListHashTable<String, IAttributeWriter>(writeManager.attributeWriters);
+		elementWriters = new ListHashTable<String, IElementWriter>(writeManager.elementWriters);
+		extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>(
+		    writeManager.extensionAttributeWriters);
+		extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>(
+		    writeManager.extensionElementWriters);
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -0,0 +1,868 @@
+package org.freeplane.core.io.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.freeplane.n3.nanoxml.IXMLBuilder;
+import org.freeplane.n3.nanoxml.IXMLEntityResolver;
+import org.freeplane.n3.nanoxml.IXMLReader;
+import org.freeplane.n3.nanoxml.IXMLValidator;
+import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLParseException;
+
+/**
+ * A parser which scans the input in a character buffer instead of reading it
+ * character by character through the stacked readers of nanoxml.
+ *
+ * The builder is called in the same order and with the same values as by
+ * {@link XMLParser}: line ends are normalized, white space in attribute values
+ * is replaced by blanks, leading white space of character data is kept,
+ * character references and the predefined entities are resolved and the
+ * content of elements which are not to be parsed is passed as text. Internal
+ * entities of a resolver which has been set are replaced by their text;
+ * document type declarations are skipped and external entities are not
+ * supported. The validator is not called.
+ */
+class FastXMLParser implements ITreeXmlParser {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String SYSTEM_ID = "file:.";
+
+	private IXMLBuilder builder;
+	private IXMLReader reader;
+	private IXMLEntityResolver resolver;
+	private IXMLValidator validator;
+	private Reader input;
+	private boolean skipNextElementContent = false;
+
+	private char[] buffer;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private boolean afterCarriageReturn;
+	private int lineNr;
+	private int lineCountedUntil;
+
+	private String[] attributeNames = new String[8];
+	private String[] attributeValues = new String[8];
+	private int attributeCount;
+	private final StringBuilder text = new StringBuilder();
+	private final NameCache names = new NameCache();
+	private final TextReader textReader = new TextReader();
+
+	public IXMLBuilder getBuilder() {
+		return builder;
+	}
+
+	public IXMLReader getReader() {
+		return reader;
+	}
+
+	public IXMLEntityResolver getResolver() {
+		return resolver;
+	}
+
+	public IXMLValidator getValidator() {
+		return validator;
+	}
+
+	public void setBuilder(final IXMLBuilder builder) {
+		this.builder = builder;
+	}
+
+	/**
+	 * reads the data from a nanoxml reader, {@link #setInput(Reader)} is faster
+	 */
+	public void setReader(final IXMLReader reader) {
+		this.reader = reader;
+		input = new Reader() {
+			@Override
+			public int read(final char[] cbuf, final int off, final int len) throws IOException {
+				int count = 0;
+				while (count < len && !reader.atEOF()) {
+					cbuf[off + count++] = reader.read();
+				}
+				return count == 0 ? -1 : count;
+			}
+
+			@Override
+			public void close() throws IOException {
+			}
+		};
+	}
+
+	public void setInput(final Reader input) {
+		this.reader = null;
+		this.input = input;
+	}
+
+	public void setResolver(final IXMLEntityResolver resolver) {
+		this.resolver = resolver;
+	}
+
+	public void setValidator(final IXMLValidator validator) {
+		this.validator = validator;
+	}
+
+	public void notParseNextElementContent() {
+		skipNextElementContent = true;
+	}
+
+	public Object parse() throws XMLException {
+		buffer = new char[BUFFER_SIZE];
+		pos = 0;
+		limit = 0;
+		eof = false;
+		afterCarriageReturn = false;
+		lineNr = 1;
+		lineCountedUntil = 0;
+		try {
+			builder.startBuilding(SYSTEM_ID, lineNr);
+			scanData();
+			return builder.getResult();
+		}
+		catch (final XMLException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			buffer = null;
+		}
+	}
+
+	private void scanData() throws Exception {
+		if (peek() == '\uFEFF') {
+			pos++;
+		}
+		while (builder.getResult() == null) {
+			final int ch = read();
+			switch (ch) {
+				case -1:
+					return;
+				case '<':
+					scanSomeTag(false, null, null);
+					break;
+				case ' ':
+				case '\t':
+				case '\n':
+					break;
+				default:
+					throw error("Invalid input: `" + (char) ch + "' (0x" + Integer.toHexString(ch) + ')');
+			}
+		}
+	}
+
+	private void scanSomeTag(final boolean allowCDATA, final String defaultNamespace,
+	                         final Map<String, String> namespaces) throws Exception {
+		final char ch = readChar();
+		switch (ch) {
+			case '?':
+				processPI();
+				break;
+			case '!':
+				processSpecialTag(allowCDATA);
+				break;
+			default:
+				pos--;
+				processElement(defaultNamespace, namespaces);
+		}
+	}
+
+	private void processSpecialTag(final boolean allowCDATA) throws Exception {
+		final char ch = readChar();
+		switch (ch) {
+			case '[':
+				if (!allowCDATA) {
+					throw error("No CDATA section is expected here");
+				}
+				processCDATA();
+				return;
+			case 'D':
+				processDocType();
+				return;
+			case '-':
+				skipComment();
+				return;
+			default:
+				throw error("Invalid input: <!" + ch);
+		}
+	}
+
+	private void processElement(String defaultNamespace, Map<String, String> namespaces) throws Exception {
+		try {
+			final String fullName = scanName();
+			String name = fullName;
+			String prefix = null;
+			final int colonIndex = fullName.indexOf(':');
+			if (colonIndex > 0) {
+				prefix = fullName.substring(0, colonIndex);
+				name = fullName.substring(colonIndex + 1);
+			}
+			attributeCount = 0;
+			char ch;
+			for (;;) {
+				skipWhitespace();
+				ch = readChar();
+				if (ch == '/' || ch == '>') {
+					break;
+				}
+				pos--;
+				processAttribute();
+			}
+			final int count = attributeCount;
+			final String[] keys = new String[count];
+			final String[] values = new String[count];
+			System.arraycopy(attributeNames, 0, keys, 0, count);
+			System.arraycopy(attributeValues, 0, values, 0, count);
+			for (int i = 0; i < count; i++) {
+				final String key = keys[i];
+				if (key.equals("xmlns")) {
+					defaultNamespace = values[i];
+				}
+				else if (key.startsWith("xmlns:")) {
+					namespaces = namespaces == null ? new HashMap<String, String>() : new HashMap<String, String>(
+					    namespaces);
+					namespaces.put(key.substring(6), values[i]);
+				}
+			}
+			final String nsURI = prefix == null ? defaultNamespace : getNamespace(namespaces, prefix);
+			builder.startElement(name, prefix, nsURI, SYSTEM_ID, getLineNr());
+			for (int i = 0; i < count; i++) {
+				String key = keys[i];
+				if (key.startsWith("xmlns")) {
+					continue;
+				}
+				final int attColonIndex = key.indexOf(':');
+				if (attColonIndex > 0) {
+					final String attPrefix = key.substring(0, attColonIndex);
+					key = key.substring(attColonIndex + 1);
+					builder.addAttribute(key, attPrefix, getNamespace(namespaces, attPrefix), values[i], "CDATA");
+				}
+				else {
+					builder.addAttribute(key, null, null, values[i], "CDATA");
+				}
+			}
+			builder.elementAttributesProcessed(name, prefix, nsURI);
+			if (ch == '/') {
+				if (readChar() != '>') {
+					throw error("Expected: `>'");
+				}
+				builder.endElement(name, prefix, nsURI);
+				return;
+			}
+			processElementContent(defaultNamespace, namespaces);
+			skipWhitespace();
+			final String closingName = scanName();
+			if (!closingName.equals(fullName)) {
+				throw error("Closing tag does not match opening tag: `" + closingName + "' != `" + name + "'");
+			}
+			skipWhitespace();
+			if (readChar() != '>') {
+				throw error("Closing tag must be empty");
+			}
+			builder.endElement(name, prefix, nsURI);
+		}
+		finally {
+			skipNextElementContent = false;
+		}
+	}
+
+	private static String getNamespace(final Map<String, String> namespaces, final String prefix) {
+		return namespaces == null ? null : namespaces.get(prefix);
+	}
+
+	private void processAttribute() throws Exception {
+		final String key = scanName();
+		skipWhitespace();
+		if (readChar() != '=') {
+			throw error("Expected: `='");
+		}
+		skipWhitespace();
+		final String value = scanAttributeValue();
+		if (attributeCount == attributeNames.length) {
+			final String[] names = new String[attributeCount * 2];
+			final String[] values = new String[attributeCount * 2];
+			System.arraycopy(attributeNames, 0, names, 0, attributeCount);
+			System.arraycopy(attributeValues, 0, values, 0, attributeCount);
+			attributeNames = names;
+			attributeValues = values;
+		}
+		attributeNames[attributeCount] = key;
+		attributeValues[attributeCount] = value;
+		attributeCount++;
+	}
+
+	private String scanAttributeValue() throws IOException, XMLParseException {
+		final char delimiter = readChar();
+		if (delimiter != '\'' && delimiter != '"') {
+			throw error("Expected: delimited string");
+		}
+		int start = pos;
+		while (pos < limit) {
+			final char ch = buffer[pos];
+			if (ch == delimiter) {
+				pos++;
+				return new String(buffer, start, pos - 1 - start);
+			}
+			if (ch == '&' || ch == '\t' || ch == '\n') {
+				break;
+			}
+			pos++;
+		}
+		final StringBuilder value = text;
+		value.setLength(0);
+		for (;;) {
+			if (pos > start) {
+				value.append(buffer, start, pos - start);
+			}
+			if (pos >= limit) {
+				if (!fill()) {
+					throw error("Unexpected EOF");
+				}
+			}
+			else {
+				final char ch = buffer[pos++];
+				if (ch == delimiter) {
+					return value.toString();
+				}
+				if (ch == '&') {
+					appendReference(value);
+				}
+				else {
+					value.append(' ');
+				}
+			}
+			start = pos;
+			while (pos < limit) {
+				final char ch = buffer[pos];
+				if (ch == delimiter || ch == '&' || ch == '\t' || ch == '\n') {
+					break;
+				}
+				pos++;
+			}
+		}
+	}
+
+	private void processElementContent(final String defaultNamespace, final Map<String, String> namespaces)
+	        throws Exception {
+		if (skipNextElementContent) {
+			skipElementContent();
+			return;
+		}
+		for (;;) {
+			text.setLength(0);
+			char ch;
+			for (;;) {
+				ch = readChar();
+				if (ch == ' ' || ch == '\t') {
+					text.append(' ');
+				}
+				else if (ch == '\n') {
+					text.append('\n');
+				}
+				else {
+					break;
+				}
+			}
+			if (ch == '<') {
+				if (readChar() == '/') {
+					return;
+				}
+				pos--;
+				scanSomeTag(true, defaultNamespace, namespaces);
+			}
+			else {
+				// like nanoxml the line of the first character of the data is passed
+				final int lineNr = getLineNr();
+				pos--;
+				scanCharacterData(text);
+				textReader.setText(text);
+				builder.addPCData(textReader, SYSTEM_ID, lineNr);
+			}
+		}
+	}
+
+	private void scanCharacterData(final StringBuilder data) throws IOException, XMLParseException {
+		for (;;) {
+			final int start = pos;
+			while (pos < limit) {
+				final char ch = buffer[pos];
+				if (ch == '<' || ch == '&') {
+					break;
+				}
+				pos++;
+			}
+			if (pos > start) {
+				data.append(buffer, start, pos - start);
+			}
+			if (pos >= limit) {
+				if (!fill()) {
+					throw error("Unexpected EOF");
+				}
+			}
+			else if (buffer[pos] == '<') {
+				return;
+			}
+			else {
+				pos++;
+				appendReference(data);
+			}
+		}
+	}
+
+	/**
+	 * passes the content of the element up to its closing tag as text, like
+	 * {@link XMLParser} does
+	 */
+	private void skipElementContent() throws Exception {
+		final StringBuilder content = text;
+		content.setLength(0);
+		int level = 1;
+		for (;;) {
+			final int start = pos;
+			while (pos < limit && buffer[pos] != '<') {
+				pos++;
+			}
+			if (pos > start) {
+				content.append(buffer, start, pos - start);
+			}
+			if (pos >= limit) {
+				if (!fill()) {
+					throw error("Unexpected EOF");
+				}
+				continue;
+			}
+			pos++;
+			final char ch = readChar();
+			if (ch == '/') {
+				level--;
+				if (level == 0) {
+					break;
+				}
+				content.append("</");
+			}
+			else if (ch == '!') {
+				if (readChar() != '-' || readChar() != '-') {
+					throw error("Invalid input: <!");
+				}
+				content.append("<!--");
+				copyUntil(content, "-->");
+			}
+			else if (ch == '?') {
+				content.append("<?");
+				copyUntil(content, "?>");
+			}
+			else {
+				content.append('<').append(ch);
+				if (!copyTag(content)) {
+					level++;
+				}
+			}
+		}
+		((TreeXmlReader) builder).setElementContent(content.toString());
+	}
+
+	/**
+	 * copies the rest of a start tag, returns true if the element is empty
+	 */
+	private boolean copyTag(final StringBuilder content) throws IOException, XMLParseException {
+		char delimiter = 0;
+		char last = 0;
+		for (;;) {
+			final char ch = readChar();
+			content.append(ch);
+			if (delimiter != 0) {
+				if (ch == delimiter) {
+					delimiter = 0;
+				}
+			}
+			else if (ch == '"' || ch == '\'') {
+				delimiter = ch;
+			}
+			else if (ch == '>') {
+				return last == '/';
+			}
+			last = ch;
+		}
+	}
+
+	private void copyUntil(final StringBuilder content, final String end) throws IOException, XMLParseException {
+		final char endChar = end.charAt(end.length() - 1);
+		for (;;) {
+			final char ch = readChar();
+			content.append(ch);
+			if (ch == endChar && content.length() >= end.length()
+			        && content.indexOf(end, content.length() - end.length()) >= 0) {
+				return;
+			}
+		}
+	}
+
+	private void processCDATA() throws Exception {
+		for (int i = 0; i < 6; i++) {
+			if (readChar() != "CDATA[".charAt(i)) {
+				throw error("Expected: <![[CDATA[");
+			}
+		}
+		final int lineNr = getLineNr();
+		text.setLength(0);
+		copyUntil(text, "]]>");
+		text.setLength(text.length() - 3);
+		textReader.setText(text);
+		builder.addPCData(textReader, SYSTEM_ID, lineNr);
+	}
+
+	private void processPI() throws Exception {
+		skipWhitespace();
+		final String target = scanName();
+		skipWhitespace();
+		text.setLength(0);
+		copyUntil(text, "?>");
+		if (!target.equalsIgnoreCase("xml")) {
+			builder.newProcessingInstruction(target, new StringReader(text.substring(0, text.length() - 2)));
+		}
+	}
+
+	private void processDocType() throws Exception {
+		for (int i = 0; i < 6; i++) {
+			if (readChar() != "OCTYPE".charAt(i)) {
+				throw error("Expected: <!DOCTYPE");
+			}
+		}
+		char delimiter = 0;
+		int level = 0;
+		for (;;) {
+			final char ch = readChar();
+			if (delimiter != 0) {
+				if (ch == delimiter) {
+					delimiter = 0;
+				}
+			}
+			else if (ch == '"' || ch == '\'') {
+				delimiter = ch;
+			}
+			else if (ch == '[') {
+				level++;
+			}
+			else if (ch == ']') {
+				level--;
+			}
+			else if (ch == '>' && level == 0) {
+				return;
+			}
+		}
+	}
+
+	private void skipComment() throws IOException, XMLParseException {
+		if (readChar() != '-') {
+			throw error("Expected: <!--");
+		}
+		int dashes = 0;
+		for (;;) {
+			final char ch = readChar();
+			if (ch == '-') {
+				dashes++;
+			}
+			else if (ch == '>' && dashes >= 2) {
+				return;
+			}
+			else {
+				dashes = 0;
+			}
+		}
+	}
+
+	/**
+	 * resolves the reference after a '&amp;'
+	 */
+	private void appendReference(final StringBuilder data) throws IOException, XMLParseException {
+		final int start = pos;
+		while (pos < limit && buffer[pos] != ';') {
+			pos++;
+		}
+		String reference;
+		if (pos < limit) {
+			reference = new String(buffer, start, pos - start);
+			pos++;
+		}
+		else {
+			final StringBuilder referenceBuilder = new StringBuilder();
+			referenceBuilder.append(buffer, start, pos - start);
+			for (;;) {
+				final char ch = readChar();
+				if (ch == ';') {
+					break;
+				}
+				referenceBuilder.append(ch);
+			}
+			reference = referenceBuilder.toString();
+		}
+		appendReference(data, reference, 0);
+	}
+
+	private void appendReference(final StringBuilder data, final String reference, final int depth)
+	        throws XMLParseException {
+		if (reference.length() > 1 && reference.charAt(0) == '#') {
+			try {
+				if (reference.charAt(1) == 'x' || reference.charAt(1) == 'X') {
+					data.append((char) Integer.parseInt(reference.substring(2), 16));
+				}
+				else {
+					data.append((char) Integer.parseInt(reference.substring(1), 10));
+				}
+				return;
+			}
+			catch (final NumberFormatException e) {
+				throw error("Invalid entity: `&" + reference + ";'");
+			}
+		}
+		if (reference.equals("amp")) {
+			data.append('&');
+		}
+		else if (reference.equals("lt")) {
+			data.append('<');
+		}
+		else if (reference.equals("gt")) {
+			data.append('>');
+		}
+		else if (reference.equals("quot")) {
+			data.append('"');
+		}
+		else if (reference.equals("apos")) {
+			data.append('\'');
+		}
+		else {
+			appendEntity(data, reference, depth);
+		}
+	}
+
+	private void appendEntity(final StringBuilder data, final String name, final int depth) throws XMLParseException {
+		if (depth > 8 || resolver == null || resolver.isExternalEntity(name)) {
+			throw error("Invalid entity: `&" + name + ";'");
+		}
+		final String value;
+		try {
+			final Reader entityReader = resolver.getEntity(reader, name);
+			final StringBuilder valueBuilder = new StringBuilder();
+			final char[] chars = new char[256];
+			int count;
+			while ((count = entityReader.read(chars)) >= 0) {
+				valueBuilder.append(chars, 0, count);
+			}
+			value = valueBuilder.toString();
+		}
+		catch (final IOException e) {
+			throw error("Invalid entity: `&" + name + ";'");
+		}
+		int start = 0;
+		for (;;) {
+			final int referenceStart = value.indexOf('&', start);
+			final int referenceEnd = referenceStart < 0 ? -1 : value.indexOf(';', referenceStart);
+			if (referenceEnd < 0) {
+				data.append(value, start, value.length());
+				return;
+			}
+			data.append(value, start, referenceStart);
+			appendReference(data, value.substring(referenceStart + 1, referenceEnd), depth + 1);
+			start = referenceEnd + 1;
+		}
+	}
+
+	private String scanName() throws IOException {
+		final int start = pos;
+		while (pos < limit && isNameChar(buffer[pos])) {
+			pos++;
+		}
+		if (pos < limit) {
+			return names.get(buffer, start, pos - start);
+		}
+		final StringBuilder name = new StringBuilder();
+		name.append(buffer, start, pos - start);
+		for (;;) {
+			final int ch = read();
+			if (ch < 0) {
+				break;
+			}
+			if (!isNameChar((char) ch)) {
+				pos--;
+				break;
+			}
+			name.append((char) ch);
+		}
+		final char[] chars = new char[name.length()];
+		name.getChars(0, chars.length, chars, 0);
+		return names.get(chars, 0, chars.length);
+	}
+
+	private static boolean isNameChar(final char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_'
+		        || ch == ':' || ch == '-' || ch == '.' || ch > '~';
+	}
+
+	private void skipWhitespace() throws IOException {
+		for (;;) {
+			while (pos < limit) {
+				final char ch = buffer[pos];
+				if (ch != ' ' && ch != '\t' && ch != '\n') {
+					return;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				return;
+			}
+		}
+	}
+
+	private int peek() throws IOException {
+		if (pos >= limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos];
+	}
+
+	private int read() throws IOException {
+		if (pos >= limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos++];
+	}
+
+	private char readChar() throws IOException, XMLParseException {
+		if (pos >= limit && !fill()) {
+			throw error("Unexpected EOF");
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * reads the next characters into the buffer, the last character is kept
+	 * so that it can be read again
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		countLines(limit);
+		if (limit > 0) {
+			buffer[0] = buffer[limit - 1];
+			limit = 1;
+		}
+		pos = limit;
+		lineCountedUntil = limit;
+		for (;;) {
+			final int count = input.read(buffer, limit, buffer.length - limit);
+			if (count < 0) {
+				eof = true;
+				return false;
+			}
+			limit = normalizeLineEnds(limit, limit + count);
+			if (limit > pos) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * replaces "\r\n" and "\r" by "\n" like a line number reader
+	 */
+	private int normalizeLineEnds(final int start, final int end) {
+		int target = start;
+		for (int i = start; i < end; i++) {
+			final char ch = buffer[i];
+			if (ch == '\r') {
+				buffer[target++] = '\n';
+				afterCarriageReturn = true;
+				continue;
+			}
+			if (ch != '\n' || !afterCarriageReturn) {
+				buffer[target++] = ch;
+			}
+			afterCarriageReturn = false;
+		}
+		return target;
+	}
+
+	private void countLines(final int until) {
+		for (int i = lineCountedUntil; i < until; i++) {
+			if (buffer[i] == '\n') {
+				lineNr++;
+			}
+		}
+		if (until > lineCountedUntil) {
+			lineCountedUntil = until;
+		}
+	}
+
+	private int getLineNr() {
+		countLines(pos);
+		return lineNr;
+	}
+
+	private XMLParseException error(final String message) {
+		return new XMLParseException(SYSTEM_ID, buffer == null ? -1 : getLineNr(), message);
+	}
+
+	/**
+	 * the strings of the element and attribute names, so that a name is
+	 * created once and its hash code is computed once
+	 */
+	private static class NameCache {
+		private static final int SIZE = 512;
+		private final String[] names = new String[SIZE];
+
+		String get(final char[] chars, final int start, final int length) {
+			int hash = 0;
+			for (int i = start; i < start + length; i++) {
+				hash = 31 * hash + chars[i];
+			}
+			final int index = (hash ^ (hash >>> 16)) & (SIZE - 1);
+			final String name = names[index];
+			if (name != null && name.length() == length) {
+				int i = 0;
+				while (i < length && name.charAt(i) == chars[start + i]) {
+					i++;
+				}
+				if (i == length) {
+					return name;
+				}
+			}
+			final String newName = new String(chars, start, length);
+			names[index] = newName;
+			return newName;
+		}
+	}
+
+	/**
+	 * a reader of the character data which is passed to the builder
+	 */
+	private static class TextReader extends Reader {
+		private CharSequence text;
+		private int next;
+
+		void setText(final CharSequence text) {
+			this.text = text;
+			next = 0;
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+			final int count = Math.min(len, text.length() - next);
+			if (count <= 0) {
+				return -1;
+			}
+			for (int i = 0; i < count; i++) {
+				cbuf[off + i] = text.charAt(next++);
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+}
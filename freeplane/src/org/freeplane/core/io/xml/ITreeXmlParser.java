@@ -0,0 +1,14 @@
+package org.freeplane.core.io.xml;
+
+import org.freeplane.n3.nanoxml.IXMLParser;
+
+/**
+ * A parser used by {@link TreeXmlReader}.
+ */
+interface ITreeXmlParser extends IXMLParser {
+	/**
+	 * The content of the element whose attributes are processed is not parsed
+	 * but passed as text to {@link TreeXmlReader#setElementContent(String)}.
+	 */
+	void notParseNextElementContent();
+}
@@ -20,7 +20,9 @@
 package org.freeplane.core.io.xml;
 
 import java.awt.Point;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -33,6 +35,7 @@ import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IElementContentHandler;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ListHashTable;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.n3.nanoxml.IXMLBuilder;
@@ -41,8 +44,31 @@ import org.freeplane.n3.nanoxml.NonValidator;
 import org.freeplane.n3.nanoxml.StdXMLReader;
 import org.freeplane.n3.nanoxml.XMLElement;
 import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLWriter;
 
 public class TreeXmlReader implements IXMLBuilder {
+	/**
+	 * system property which selects the parser, "fast" or "nanoxml"
+	 */
+	public static final String PARSER_PROPERTY = "org.freeplane.core.io.xml.parser";
+	public static final String FAST_PARSER = "fast";
+	public static final String NANOXML_PARSER = "nanoxml";
+	private static volatile String parserType = System.getProperty(PARSER_PROPERTY, NANOXML_PARSER);
+
+	public static String getParserType() {
+		return parserType;
+	}
+
+	/**
+	 * selects the parser used by the readers created afterwards
+	 */
+	public static void setParserType(final String parserType) {
+		if (!FAST_PARSER.equals(parserType) && !NANOXML_PARSER.equals(parserType)) {
+			throw new IllegalArgumentException("unknown parser " + parserType);
+		}
+		TreeXmlReader.parserType = parserType;
+	}
+
 	public static boolean xmlToBoolean(final String string) {
 		if (string == null) {
 			return false;
@@ -84,12 +110,13 @@ public class TreeXmlReader implements IXMLBuilder {
 	private Hashtable<String, IAttributeHandler> attributeHandlersForTag;
 	private Object currentElement;
 	private String elementContentAsString;
+	private boolean keepsUnparsed;
 	final private LinkedList<Object> elementStack = new LinkedList<Object>();
 	private IElementHandler nodeCreator;
 	final private LinkedList<IElementHandler> nodeCreatorStack = new LinkedList<IElementHandler>();
 	private Object parentElement;
 	final private ReadManager parseManager;
-	private XMLParser parser;
+	private ITreeXmlParser parser;
 	private XMLElement saveAsXmlUntil;
 	private String tag;
 	private StdXMLBuilder xmlBuilder;
@@ -196,7 +223,12 @@ public class TreeXmlReader implements IXMLBuilder {
 		}
 		final Object element = currentElement;
 		currentElement = elementStack.removeLast();
-		if (nodeCreator instanceof IElementContentHandler) {
+		if (keepsUnparsed) {
+			keepsUnparsed = false;
+			((IUnparsedElementHandler) nodeCreator).unparsedElement(currentElement, name, toXml(lastBuiltElement,
+			    elementContentAsString));
+		}
+		else if (nodeCreator instanceof IElementContentHandler) {
 			((IElementContentHandler) nodeCreator).endElement(currentElement, name, element, lastBuiltElement,
 			    elementContentAsString);
 		}
@@ -212,6 +244,21 @@ public class TreeXmlReader implements IXMLBuilder {
 		elementContentAsString = null;
 	}
 
+	/**
+	 * rebuilds the xml of an element from its attributes and its unparsed content
+	 */
+	private static String toXml(final XMLElement element, final String content) throws IOException {
+		final StringWriter xml = new StringWriter();
+		new XMLWriter(xml).write(element, false, 0, true);
+		if (content == null) {
+			return xml.toString();
+		}
+		final StringBuffer buffer = xml.getBuffer();
+		// replace the end "/>" of the written empty element
+		buffer.setLength(buffer.length() - 2);
+		return buffer.append('>').append(content).append("</").append(element.getFullName()).append('>').toString();
+	}
+
 	private Hashtable<String, Hashtable<String, IAttributeHandler>> getAttributeLoaders() {
 		return parseManager.getAttributeHandlers();
 	}
@@ -233,9 +280,16 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * @see freeplane.persistence.Reader#load()
 	 */
 	public void load(final Reader reader) throws XMLException {
-		parser = new XMLParser();
-		final IXMLReader nanoxmlReader = new StdXMLReader(reader);
-		parser.setReader(nanoxmlReader);
+		if (FAST_PARSER.equals(parserType)) {
+			final FastXMLParser fastParser = new FastXMLParser();
+			fastParser.setInput(reader);
+			parser = fastParser;
+		}
+		else {
+			parser = new XMLParser();
+			final IXMLReader nanoxmlReader = new StdXMLReader(reader);
+			parser.setReader(nanoxmlReader);
+		}
 		parser.setBuilder(this);
 		parser.setValidator(new NonValidator());
 		parser.parse();
@@ -294,6 +348,13 @@ public class TreeXmlReader implements IXMLBuilder {
 		final List<IElementHandler> handlers = getElementHandlers().list(tag);
 		if (handlers != null && handlers.size() == 1) {
 			nodeCreator = handlers.get(0);
+			if (nodeCreator instanceof IUnparsedElementHandler
+			        && ((IUnparsedElementHandler) nodeCreator).keepsUnparsed(parentElement, tag)) {
+				keepsUnparsed = true;
+				attributeHandlersForTag = null;
+				parser.notParseNextElementContent();
+				return;
+			}
 			currentElement = nodeCreator.createElement(parentElement, tag, null);
 		}
 		if (currentElement != null) {
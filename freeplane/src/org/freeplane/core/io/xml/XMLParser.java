@@ -22,15 +22,14 @@ package org.freeplane.core.io.xml;
 import java.io.IOException;
 import java.util.Properties;
 
-import org.freeplane.n3.nanoxml.IXMLParser;
 import org.freeplane.n3.nanoxml.IXMLReader;
 import org.freeplane.n3.nanoxml.StdXMLParser;
 import org.freeplane.n3.nanoxml.XMLParseException;
 
-class XMLParser extends StdXMLParser implements IXMLParser {
+class XMLParser extends StdXMLParser implements ITreeXmlParser {
 	private boolean skipNextElementContent = false;
 
-	void notParseNextElementContent() {
+	public void notParseNextElementContent() {
 		skipNextElementContent = true;
 	}
 
@@ -0,0 +1,460 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.util;
+
+/**
+ * Converts html to plain text without regular expressions, producing the same result
+ * as the replacement chain in {@link HtmlUtils#htmlToPlain(String, boolean, boolean)}.
+ *
+ * The text is scanned once and split into text and tag tokens. The tag rules are then applied to the tokens
+ * in the same order as the patterns were applied to the text, the result is written out once
+ * and the entities are decoded in a final scan.
+ * Only texts where every '&lt;' is closed by a '&gt;' before the next '&lt;' can be converted,
+ * {@link #convert(String, boolean)} returns null for all other texts.
+ *
+ * Instances reuse their buffers and must not be shared between threads.
+ */
+class HtmlToPlainConverter {
+	private static final ThreadLocal<HtmlToPlainConverter> converters = new ThreadLocal<HtmlToPlainConverter>() {
+		@Override
+		protected HtmlToPlainConverter initialValue() {
+			return new HtmlToPlainConverter();
+		}
+	};
+
+	static HtmlToPlainConverter getConverter() {
+		return converters.get();
+	}
+
+	private static final int MAX_REUSED_CAPACITY = 1 << 16;
+
+	private static final int TEXT = 0;
+	private static final int BR = 3;
+	private static final int P = 4;
+	private static final int DIV = 5;
+	private static final int TR = 6;
+	private static final int DT = 7;
+	private static final int DD = 8;
+	private static final int TD = 9;
+	private static final int LIST = 10;
+	private static final int LI = 11;
+	private static final int CLOSING = 12;
+	private static final int OTHER = 13;
+
+	private static final String[] NAMED_ENTITIES = { "&lt;", "&gt;", "&quot;", "&nbsp;", "&amp;" };
+	private static final char[] NAMED_ENTITY_CHARS = { '<', '>', '"', ' ', '&' };
+
+	/** tag texts which do not depend on the context. */
+	private static String replacement(final int type) {
+		switch (type) {
+			case BR:
+			case P:
+			case DIV:
+			case TR:
+			case DT:
+			case LIST:
+				return "\n";
+			case DD:
+				return "\n   ";
+			case TD:
+				return " ";
+			case LI:
+				return "\n   * ";
+			default:
+				return "";
+		}
+	}
+
+	private final StringBuilder tokenText = new StringBuilder();
+	private final StringBuilder plainText = new StringBuilder();
+	private final StringBuilder unescapedText = new StringBuilder();
+	private final StringBuilder result = new StringBuilder();
+	private int[] types = new int[64];
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	private boolean[] processed = new boolean[64];
+	private int tokenCount;
+
+	/** returns the converted text or null if the text contains unbalanced tag brackets. */
+	String convert(final String text, final boolean removeNewLines) {
+		if (!hasBalancedTags(text)) {
+			return null;
+		}
+		try {
+			tokenize(text, removeNewLines);
+			applyTagRules();
+			writeTokens();
+			unescapeNumericEntities();
+			unescapeNamedEntities();
+			return result.toString();
+		}
+		finally {
+			clear();
+		}
+	}
+
+	private boolean hasBalancedTags(final String text) {
+		boolean inTag = false;
+		final int length = text.length();
+		for (int i = 0; i < length; i++) {
+			final char c = text.charAt(i);
+			if (c == '<') {
+				if (inTag || i + 1 < length && text.charAt(i + 1) == '>') {
+					return false;
+				}
+				inTag = true;
+			}
+			else if (c == '>') {
+				inTag = false;
+			}
+		}
+		return !inTag;
+	}
+
+	private void tokenize(final String text, final boolean removeNewLines) {
+		final int length = text.length();
+		int i = 0;
+		while (i < length) {
+			final char c = text.charAt(i);
+			if (c == '<') {
+				final int tagEnd = text.indexOf('>', i + 1);
+				final int type = tagType(text, i + 1);
+				final int start = tokenText.length();
+				tokenText.append(replacement(type));
+				addToken(type, start, tokenText.length());
+				i = tagEnd + 1;
+				continue;
+			}
+			final int start = tokenText.length();
+			while (i < length) {
+				final char ch = text.charAt(i);
+				if (ch == '<') {
+					break;
+				}
+				if (ch == '\n' || ch == '\t' || ch == ' ') {
+					final boolean afterBracket = i > 0 && text.charAt(i - 1) == '>';
+					int runEnd = i;
+					if (afterBracket) {
+						while (runEnd < length && (text.charAt(runEnd) == '\n' || text.charAt(runEnd) == '\t')) {
+							runEnd++;
+						}
+						i = runEnd;
+					}
+					while (runEnd < length && isWhitespaceRunChar(text.charAt(runEnd))) {
+						runEnd++;
+					}
+					if (removeNewLines) {
+						if (runEnd > i) {
+							tokenText.append(' ');
+						}
+					}
+					else {
+						tokenText.append(text, i, runEnd);
+					}
+					i = runEnd;
+					continue;
+				}
+				tokenText.append(ch);
+				i++;
+			}
+			addToken(TEXT, start, tokenText.length());
+		}
+	}
+
+	private static boolean isWhitespaceRunChar(final char c) {
+		return c == '\n' || c == '\t' || c == ' ';
+	}
+
+	private static boolean isRegexWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static int tagType(final String text, final int nameStart) {
+		if (startsWithIgnoreCase(text, nameStart, "br")) {
+			return BR;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "p")) {
+			return P;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "div")) {
+			return DIV;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "tr")) {
+			return TR;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "dt")) {
+			return DT;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "dd")) {
+			return DD;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "td")) {
+			return TD;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "ul") || startsWithIgnoreCase(text, nameStart, "ol")) {
+			return LIST;
+		}
+		if (startsWithIgnoreCase(text, nameStart, "li")) {
+			return LI;
+		}
+		if (text.charAt(nameStart) == '/') {
+			return CLOSING;
+		}
+		return OTHER;
+	}
+
+	/** compares ignoring case of US-ASCII characters only like the (?i) flag of regular expressions does. */
+	private static boolean startsWithIgnoreCase(final CharSequence text, final int start, final String prefix) {
+		if (start + prefix.length() > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (toAsciiLowerCase(text.charAt(start + i)) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char toAsciiLowerCase(final char c) {
+		if (c >= 'A' && c <= 'Z') {
+			return (char) (c + ('a' - 'A'));
+		}
+		return c;
+	}
+
+	private void addToken(final int type, final int start, final int end) {
+		if (tokenCount == types.length) {
+			final int capacity = tokenCount * 2;
+			types = copyOf(types, capacity);
+			starts = copyOf(starts, capacity);
+			ends = copyOf(ends, capacity);
+			final boolean[] newProcessed = new boolean[capacity];
+			System.arraycopy(processed, 0, newProcessed, 0, tokenCount);
+			processed = newProcessed;
+		}
+		types[tokenCount] = type;
+		starts[tokenCount] = start;
+		ends[tokenCount] = end;
+		processed[tokenCount] = type == TEXT;
+		tokenCount++;
+	}
+
+	private static int[] copyOf(final int[] array, final int capacity) {
+		final int[] copy = new int[capacity];
+		System.arraycopy(array, 0, copy, 0, array.length);
+		return copy;
+	}
+
+	/**
+	 * Tags which are not processed yet stop whitespace consumption like the unreplaced tag text does
+	 * in the pattern chain.
+	 */
+	private void applyTagRules() {
+		replaceTags(BR, BR);
+		replaceTagsFollowedByWhitespace(P);
+		replaceTagsFollowedByWhitespace(DIV);
+		replaceTagsFollowedByWhitespace(TR);
+		replaceTags(DT, LI);
+		removeClosingTags();
+		removeOtherTags();
+	}
+
+	private void replaceTags(final int firstType, final int lastType) {
+		for (int i = 0; i < tokenCount; i++) {
+			if (types[i] >= firstType && types[i] <= lastType) {
+				processed[i] = true;
+			}
+		}
+	}
+
+	private void replaceTagsFollowedByWhitespace(final int type) {
+		for (int i = 0; i < tokenCount; i++) {
+			if (types[i] != type) {
+				continue;
+			}
+			if (consumeFollowingWhitespace(i)) {
+				processed[i] = true;
+			}
+			else {
+				types[i] = OTHER;
+				ends[i] = starts[i];
+			}
+		}
+	}
+
+	private boolean consumeFollowingWhitespace(final int tag) {
+		boolean consumed = false;
+		for (int i = tag + 1; i < tokenCount && processed[i]; i++) {
+			while (starts[i] < ends[i] && isRegexWhitespace(tokenText.charAt(starts[i]))) {
+				starts[i]++;
+				consumed = true;
+			}
+			if (starts[i] < ends[i]) {
+				break;
+			}
+		}
+		return consumed;
+	}
+
+	private void removeClosingTags() {
+		for (int i = 0; i < tokenCount; i++) {
+			if (types[i] != CLOSING) {
+				continue;
+			}
+			for (int j = i - 1; j >= 0 && processed[j]; j--) {
+				while (starts[j] < ends[j] && tokenText.charAt(ends[j] - 1) == ' ') {
+					ends[j]--;
+				}
+				if (starts[j] < ends[j]) {
+					break;
+				}
+			}
+			processed[i] = true;
+		}
+	}
+
+	private void removeOtherTags() {
+		for (int i = 0; i < tokenCount; i++) {
+			if (processed[i]) {
+				continue;
+			}
+			processed[i] = true;
+			for (int j = i + 1; j < tokenCount && processed[j]; j++) {
+				while (starts[j] < ends[j] && tokenText.charAt(starts[j]) == ' ') {
+					starts[j]++;
+				}
+				if (starts[j] < ends[j]) {
+					break;
+				}
+			}
+		}
+	}
+
+	private void writeTokens() {
+		for (int i = 0; i < tokenCount; i++) {
+			plainText.append(tokenText, starts[i], ends[i]);
+		}
+	}
+
+	/** same as {@link HtmlUtils#unescapeHTMLUnicodeEntity(String)} applied to the trimmed plain text. */
+	private void unescapeNumericEntities() {
+		int start = 0;
+		int end = plainText.length();
+		while (start < end && plainText.charAt(start) <= ' ') {
+			start++;
+		}
+		while (start < end && plainText.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		int i = start;
+		while (i < end) {
+			final char c = plainText.charAt(i);
+			if (c != '&') {
+				unescapedText.append(c);
+				i++;
+				continue;
+			}
+			int entityEnd = i + 1;
+			while (entityEnd < end && plainText.charAt(entityEnd) != ';') {
+				entityEnd++;
+			}
+			if (entityEnd == end) {
+				// an unterminated entity is kept, a single ampersand at the end is dropped
+				if (i + 1 < end) {
+					unescapedText.append(plainText, i, end);
+				}
+				break;
+			}
+			appendEntity(i + 1, entityEnd);
+			i = entityEnd + 1;
+		}
+	}
+
+	private void appendEntity(final int start, final int end) {
+		if (start < end && plainText.charAt(start) == '#') {
+			try {
+				final char c;
+				if (start + 1 < end && plainText.charAt(start + 1) == 'x') {
+					c = (char) Integer.parseInt(plainText.substring(start + 2, end), 16);
+				}
+				else {
+					c = (char) Integer.parseInt(plainText.substring(start + 1, end), 10);
+				}
+				if (c >= ' ' || c == '\t' || c == '\r' || c == '\n') {
+					unescapedText.append(c);
+				}
+				else {
+					unescapedText.append(' ');
+				}
+				return;
+			}
+			catch (final NumberFormatException e) {
+			}
+		}
+		unescapedText.append(plainText, start - 1, end + 1);
+	}
+
+	/** replaces named entities and no-break spaces and removes spaces and tabs before new lines. */
+	private void unescapeNamedEntities() {
+		final int length = unescapedText.length();
+		int protectedLength = 0;
+		int i = 0;
+		ENTITIES: while (i < length) {
+			final char c = unescapedText.charAt(i);
+			if (c == '&') {
+				for (int entity = 0; entity < NAMED_ENTITIES.length; entity++) {
+					if (startsWithIgnoreCase(unescapedText, i, NAMED_ENTITIES[entity])) {
+						result.append(NAMED_ENTITY_CHARS[entity]);
+						i += NAMED_ENTITIES[entity].length();
+						continue ENTITIES;
+					}
+				}
+			}
+			else if (c == '\n') {
+				int end = result.length();
+				while (end > protectedLength && (result.charAt(end - 1) == ' ' || result.charAt(end - 1) == '\t')) {
+					end--;
+				}
+				result.setLength(end);
+			}
+			else if (c == '\u00a0') {
+				result.append(' ');
+				protectedLength = result.length();
+				i++;
+				continue;
+			}
+			result.append(c);
+			i++;
+		}
+	}
+
+	private void clear() {
+		tokenCount = 0;
+		clear(tokenText);
+		clear(plainText);
+		clear(unescapedText);
+		clear(result);
+	}
+
+	private static void clear(final StringBuilder buffer) {
+		buffer.setLength(0);
+		if (buffer.capacity() > MAX_REUSED_CAPACITY) {
+			buffer.trimToSize();
+		}
+	}
+}
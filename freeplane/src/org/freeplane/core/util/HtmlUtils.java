@@ -82,7 +82,28 @@ public class HtmlUtils {
 
 	private static final Pattern FIND_TAGS_PATTERN = Pattern.compile("([^<]*)(<[^>]+>)");
 	private static final Pattern HTML_PATTERN = Pattern.compile("(?s)^\\s*<\\s*html[^>]*>.*", Pattern.CASE_INSENSITIVE);
-	private static Pattern[] PATTERNS;
+	// used by the worker threads of the filter, so it is not created lazily
+	private static final Pattern[] PATTERNS = new Pattern[] { 
+	        Pattern.compile("(?ims)>[\n\t]+"), 
+	        Pattern.compile("(?ims)[\n\t ]+"), 
+	        Pattern.compile("(?ims)<br[^>]*>"), 
+	        Pattern.compile("(?ims)<p[^>]*>\\s+"),
+	        Pattern.compile("(?ims)<div[^>]*>\\s+"), 
+	        Pattern.compile("(?ims)<tr[^>]*>\\s+"),
+	        Pattern.compile("(?ims)<dt[^>]*>"), 
+	        Pattern.compile("(?ims)<dd[^>]*>"),
+	        Pattern.compile("(?ims)<td[^>]*>"), 
+	        Pattern.compile("(?ims)<[uo]l[^>]*>"),
+	        Pattern.compile("(?ims)<li[^>]*>"), 
+	        Pattern.compile("(?ims) *</[^>]*>"),
+	        Pattern.compile("(?ims)<[^/][^>]*> *"), 
+	        Pattern.compile("^\n+"), 
+	        Pattern.compile("(?ims)&lt;"),
+	        Pattern.compile("(?ims)&gt;"), 
+	        Pattern.compile("(?ims)&quot;"), 
+	        Pattern.compile("(?ims)&nbsp;"),
+	        Pattern.compile("(?ims)&amp;"),
+	        Pattern.compile("(?ims)[ \t]+\n") };
 	private static HtmlUtils sInstance = new HtmlUtils();
 	private static final Pattern SLASHED_TAGS_PATTERN = Pattern.compile("<((" + "br|area|base|basefont|"
 	        + "bgsound|button|col|colgroup|embed|hr" + "|img|input|isindex|keygen|link|meta"
@@ -113,29 +134,16 @@ public class HtmlUtils {
 		if (strictHTMLOnly && !HtmlUtils.isHtmlNode(text)) {
 			return text;
 		}
-		if (PATTERNS == null) {
-			PATTERNS = new Pattern[] { 
-					Pattern.compile("(?ims)>[\n\t]+"), 
-					Pattern.compile("(?ims)[\n\t ]+"), 
-			        Pattern.compile("(?ims)<br[^>]*>"), 
-			        Pattern.compile("(?ims)<p[^>]*>\\s+"),
-			        Pattern.compile("(?ims)<div[^>]*>\\s+"), 
-			        Pattern.compile("(?ims)<tr[^>]*>\\s+"),
-			        Pattern.compile("(?ims)<dt[^>]*>"), 
-			        Pattern.compile("(?ims)<dd[^>]*>"),
-			        Pattern.compile("(?ims)<td[^>]*>"), 
-			        Pattern.compile("(?ims)<[uo]l[^>]*>"),
-			        Pattern.compile("(?ims)<li[^>]*>"), 
-			        Pattern.compile("(?ims) *</[^>]*>"),
-			        Pattern.compile("(?ims)<[^/][^>]*> *"), 
-			        Pattern.compile("^\n+"), 
-			        Pattern.compile("(?ims)&lt;"),
-			        Pattern.compile("(?ims)&gt;"), 
-			        Pattern.compile("(?ims)&quot;"), 
-			        Pattern.compile("(?ims)&nbsp;"),
-			        Pattern.compile("(?ims)&amp;"),
-			        Pattern.compile("(?ims)[ \t]+\n") };
+		final String plainText = HtmlToPlainConverter.getConverter().convert(text, removeNewLines);
+		if (plainText != null) {
+			return plainText;
 		}
+		return htmlToPlainUsingPatterns(text, removeNewLines);
+	}
+
+	/** slow path for texts with unbalanced tag brackets which {@link HtmlToPlainConverter} can not convert,
+	 * also the reference for the results of the converter. */
+	static String htmlToPlainUsingPatterns(final String text, final boolean removeNewLines) {
 		String intermediate = text;
 		int i = 0;
 		intermediate = PATTERNS[i++].matcher(intermediate).replaceAll(">");
@@ -19,17 +19,34 @@
  */
 package org.freeplane.features.filter;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ICondition;
+import org.freeplane.features.filter.condition.IIndexedCondition;
 import org.freeplane.features.map.IMapSelection;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.freeplane.features.text.TextController;
+import org.freeplane.features.text.TransformationException;
 
 /**
  * @author Dimitry Polivaev
@@ -39,9 +56,30 @@ public class Filter {
 		return new Filter(null, true, false, false);
 	}
 
+	public static final String FILTER_IN_PARALLEL = "filter_in_parallel";
+	private static final int MIN_NODES_PER_TASK = 256;
+	private static ExecutorService conditionCheckers;
+
+	private static synchronized ExecutorService getConditionCheckers() {
+		if (conditionCheckers == null) {
+			conditionCheckers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+			    new ThreadFactory() {
+				    public Thread newThread(final Runnable r) {
+					    final Thread thread = Executors.defaultThreadFactory().newThread(r);
+					    thread.setName("filter condition checker " + thread.getName());
+					    thread.setDaemon(true);
+					    return thread;
+				    }
+			    });
+		}
+		return conditionCheckers;
+	}
+
 	final private boolean appliesToVisibleNodesOnly;
 	final private ICondition condition;
 	final private int options;
+	private Set<NodeModel> candidates;
+	private Set<NodeModel> matchingNodes;
 
 	public Filter(final ICondition condition, final boolean areAncestorsShown,
 	              final boolean areDescendantsShown, final boolean applyToVisibleNodesOnly) {
@@ -96,6 +134,10 @@ public class Filter {
 			final Filter oldFilter = map.getFilter();
 			map.setFilter(this);
 			if (force || !isConditionStronger(oldFilter)) {
+				if (condition instanceof IIndexedCondition) {
+					candidates = ((IIndexedCondition) condition).getCandidates(map);
+				}
+				matchingNodes = checkNodesConcurrently(map);
 				final NodeModel root = map.getRootNode();
 				resetFilter(root);
 				if (filterChildren(root, checkNode(root), false)) {
@@ -110,6 +152,8 @@ public class Filter {
 			selectVisibleNode();
 		}
 		finally {
+			candidates = null;
+			matchingNodes = null;
 			Controller.getCurrentController().getViewController().setWaitingCursor(false);
 		}
 	}
@@ -163,9 +207,97 @@ public class Filter {
 		if (appliesToVisibleNodesOnly && !node.isVisible()) {
 			return false;
 		}
+		if (candidates != null && !candidates.contains(node)) {
+			return false;
+		}
+		if (matchingNodes != null) {
+			return matchingNodes.contains(node);
+		}
 		return condition.checkNode(node);
 	}
 
+	/**
+	 * checks a thread safe condition for all nodes using all available processors
+	 * and returns the matching nodes, or null if the condition must be checked while the filter is applied.
+	 * Node texts are transformed in advance in the calling thread
+	 * because the content transformers (formulas) must not be called concurrently.
+	 * Failed transformations are cached like successful ones, other errors make the filter check the nodes
+	 * while it is applied.
+	 * The calling thread, usually the event dispatch thread, waits for all checks under the waiting cursor
+	 * like it does for the sequential check, which would take longer.
+	 */
+	private Set<NodeModel> checkNodesConcurrently(final MapModel map) {
+		final int processorCount = Runtime.getRuntime().availableProcessors();
+		if (processorCount < 2 || !(condition instanceof ASelectableCondition)
+		        || !((ASelectableCondition) condition).isThreadSafe()
+		        || !ResourceController.getResourceController().getBooleanProperty(FILTER_IN_PARALLEL)) {
+			return null;
+		}
+		final List<NodeModel> nodes = new ArrayList<NodeModel>();
+		final ModeController modeController = Controller.getCurrentModeController();
+		if (!collectNodes(modeController, TextController.getController(modeController), map.getRootNode(), nodes)
+		        || nodes.size() < 2 * MIN_NODES_PER_TASK) {
+			return null;
+		}
+		final int nodesPerTask = Math.max(MIN_NODES_PER_TASK, nodes.size() / (4 * processorCount) + 1);
+		final List<Future<List<NodeModel>>> results = new ArrayList<Future<List<NodeModel>>>();
+		final ExecutorService executor = getConditionCheckers();
+		for (int start = 0; start < nodes.size(); start += nodesPerTask) {
+			final List<NodeModel> taskNodes = nodes.subList(start, Math.min(nodes.size(), start + nodesPerTask));
+			results.add(executor.submit(new Callable<List<NodeModel>>() {
+				public List<NodeModel> call() {
+					final List<NodeModel> matches = new ArrayList<NodeModel>();
+					for (final NodeModel node : taskNodes) {
+						if (condition.checkNode(node)) {
+							matches.add(node);
+						}
+					}
+					return matches;
+				}
+			}));
+		}
+		final Set<NodeModel> matchingNodes = new HashSet<NodeModel>();
+		try {
+			for (final Future<List<NodeModel>> result : results) {
+				matchingNodes.addAll(result.get());
+			}
+			return matchingNodes;
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final ExecutionException e) {
+			LogUtils.warn(e.getCause());
+		}
+		for (final Future<List<NodeModel>> result : results) {
+			result.cancel(true);
+		}
+		return null;
+	}
+
+	/** returns false if a transformation failed with an error which is not cached. */
+	private boolean collectNodes(final ModeController modeController, final TextController textController,
+	                             final NodeModel node, final List<NodeModel> nodes) {
+		try {
+			textController.getTransformedObject(node);
+		}
+		catch (final TransformationException e) {
+			// the failure is cached, the condition gets the error text
+		}
+		catch (final Throwable e) {
+			return false;
+		}
+		if (candidates == null || candidates.contains(node)) {
+			nodes.add(node);
+		}
+		for (final NodeModel child : modeController.getMapController().childrenUnfolded(node)) {
+			if (!collectNodes(modeController, textController, child, nodes)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private boolean filterChildren(final NodeModel node,
 	                               final boolean isAncestorSelected, final boolean isAncestorEclipsed) {
 		boolean isDescendantSelected = false;
@@ -58,6 +58,23 @@ public abstract class ASelectableCondition  implements ICondition{
         }
     }
 	protected abstract String createDescription();
+
+	/**
+	 * returns true if checkNode has no side effects and may be called for different nodes
+	 * from several threads at the same time.
+	 * Node text transformations are done in advance by the filter and read from the text cache.
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * returns true if the result of checkNode can change without a change of the checked node,
+	 * its ancestors or its children, so that it can not be cached for conditional styles.
+	 */
+	public boolean dependsOnOtherNodes() {
+		return false;
+	}
 	
 	final public JComponent getListCellRendererComponent() {
 		if (renderer == null) {
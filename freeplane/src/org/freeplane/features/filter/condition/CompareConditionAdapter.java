@@ -164,6 +164,10 @@ abstract public class CompareConditionAdapter extends ASelectableCondition {
 		}
     }
 
+	protected boolean isMatchCase() {
+		return matchCase;
+	}
+
 	protected int getComparisonResult() {
     	return comparisonResult;
     }
@@ -66,6 +66,16 @@ public class ConditionNotSatisfiedDecorator extends ASelectableCondition impleme
 		return !originalCondition.checkNode(node);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return originalCondition.isThreadSafe();
+	}
+
+	@Override
+	public boolean dependsOnOtherNodes() {
+		return originalCondition.dependsOnOtherNodes();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
@@ -21,19 +21,22 @@ package org.freeplane.features.filter.condition;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
 /**
  * @author Dimitry Polivaev
  */
-public class ConjunctConditions extends ASelectableCondition implements ICombinedCondition{
+public class ConjunctConditions extends ASelectableCondition implements ICombinedCondition, IIndexedCondition{
 	static final String NAME = "conjunct_condition";
 
 	static ASelectableCondition load(final ConditionFactory conditionFactory, final XMLElement element) {
@@ -73,6 +76,46 @@ public class ConjunctConditions extends ASelectableCondition implements ICombine
 		return true;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		for (final ASelectableCondition condition : conditions) {
+			if (!condition.isThreadSafe()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean dependsOnOtherNodes() {
+		for (final ASelectableCondition condition : conditions) {
+			if (condition.dependsOnOtherNodes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Set<NodeModel> getCandidates(final MapModel map) {
+		Set<NodeModel> candidates = null;
+		for (final ASelectableCondition condition : conditions) {
+			if (!(condition instanceof IIndexedCondition)) {
+				continue;
+			}
+			final Set<NodeModel> conditionCandidates = ((IIndexedCondition) condition).getCandidates(map);
+			if (conditionCandidates == null) {
+				continue;
+			}
+			if (candidates == null) {
+				candidates = new HashSet<NodeModel>(conditionCandidates);
+			}
+			else {
+				candidates.retainAll(conditionCandidates);
+			}
+		}
+		return candidates;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
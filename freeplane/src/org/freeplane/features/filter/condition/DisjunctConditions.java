@@ -21,19 +21,22 @@ package org.freeplane.features.filter.condition;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
 /**
  * @author Dimitry Polivaev
  */
-public class DisjunctConditions extends ASelectableCondition implements ICombinedCondition {
+public class DisjunctConditions extends ASelectableCondition implements ICombinedCondition, IIndexedCondition {
 	static final String NAME = "disjunct_condition";
 
 	static ASelectableCondition load(final ConditionFactory conditionFactory, final XMLElement element) {
@@ -73,6 +76,41 @@ public class DisjunctConditions extends ASelectableCondition implements ICombine
 		return false;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		for (final ASelectableCondition condition : conditions) {
+			if (!condition.isThreadSafe()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean dependsOnOtherNodes() {
+		for (final ASelectableCondition condition : conditions) {
+			if (condition.dependsOnOtherNodes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Set<NodeModel> getCandidates(final MapModel map) {
+		final Set<NodeModel> candidates = new HashSet<NodeModel>();
+		for (final ASelectableCondition condition : conditions) {
+			if (!(condition instanceof IIndexedCondition)) {
+				return null;
+			}
+			final Set<NodeModel> conditionCandidates = ((IIndexedCondition) condition).getCandidates(map);
+			if (conditionCandidates == null) {
+				return null;
+			}
+			candidates.addAll(conditionCandidates);
+		}
+		return candidates;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
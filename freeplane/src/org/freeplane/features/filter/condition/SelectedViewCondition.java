@@ -45,6 +45,11 @@ public class SelectedViewCondition extends ASelectableCondition {
 		return selection != null && selection.isSelected(node);
 	}
 
+	@Override
+	public boolean dependsOnOtherNodes() {
+		return true;
+	}
+
 	@Override
     protected String createDescription() {
 		if (SelectedViewCondition.description == null) {
@@ -15,6 +15,11 @@ public class LeafCondition extends ASelectableCondition {
 		return node.isLeaf();
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	public static ASelectableCondition load(XMLElement element) {
 	    return new LeafCondition();
     }
@@ -51,8 +51,11 @@ public class MapModel {
 	private Filter filter = null;
 	final private IconRegistry iconRegistry;
 	final private List<IMapChangeListener> listeners;
-	final private Map<String, NodeModel> nodes;
+	final private NodeIndex nodes;
+	// maps the ids of unloaded nodes to the nodes whose unloaded children contain them
+	final private NodeIndex unloadedNodes;
 	private boolean readOnly = false;
+	private boolean containsUnloadedNodes = false;
 	private NodeModel root;
 	private URL url;
 
@@ -60,7 +63,8 @@ public class MapModel {
 		extensionContainer = new ExtensionContainer(new HashMap<Class<? extends IExtension>, IExtension>());
 		this.root = null;
 		listeners = new LinkedList<IMapChangeListener>();
-		nodes = new HashMap<String, NodeModel>();
+		nodes = new NodeIndex();
+		unloadedNodes = new NodeIndex();
 		final FilterController filterController = FilterController.getCurrentFilterController();
 		if (filterController != null) {
 			filter = filterController.createTransparentFilter();
@@ -107,21 +111,27 @@ public class MapModel {
 	}
 
 	public String generateNodeID(final String proposedID) {
-		if (proposedID != null && !"".equals(proposedID) && getNodeForID(proposedID) == null) {
+		if (proposedID != null && !"".equals(proposedID) && nodes.get(proposedID) == null
+		        && !isUnloadedNodeID(proposedID)) {
 			return proposedID;
 		}
 		String returnValue;
 		do {
-			final String prefix = "ID_";
 			/*
 			 * The prefix is to enable the id to be an ID in the sense of
 			 * XML/DTD.
 			 */
-			returnValue = prefix + Integer.toString(ran.nextInt(UNDEFINED_NODE_ID));
-		} while (nodes.containsKey(returnValue));
+			returnValue = NodeIndex.toID(ran.nextInt(UNDEFINED_NODE_ID));
+		} while (nodes.containsKey(returnValue) || isUnloadedNodeID(returnValue));
 		return returnValue;
 	}
 
+	private boolean isUnloadedNodeID(final String id) {
+		final NodeModel parent = unloadedNodes.get(id);
+		// while the children are loaded their ids are registered like all others
+		return parent != null && !parent.areChildrenLoaded();
+	}
+
 	public <T extends IExtension> T getExtension(final Class<T> clazz) {
 		return extensionContainer.getExtension(clazz);
 	}
@@ -156,9 +166,48 @@ public class MapModel {
 	 */
 	public NodeModel getNodeForID(final String nodeID) {
 		final NodeModel node = nodes.get(nodeID);
+		if (node == null && containsUnloadedNodes) {
+			// the node may be one of the unloaded nodes
+			loadAllNodes();
+			return nodes.get(nodeID);
+		}
 		return node;
 	}
 
+	/**
+	 * Loads the children kept unloaded while the map was read. They are parsed
+	 * by the map reader of the mode, which is not thread safe, so a map used by
+	 * other threads has to be loaded on the model thread before.
+	 */
+	public void loadAllNodes() {
+		if (containsUnloadedNodes) {
+			// after loading all of them none is left
+			containsUnloadedNodes = false;
+			loadChildren(root);
+			containsUnloadedNodes = false;
+		}
+	}
+
+	private void loadChildren(final NodeModel node) {
+		for (final NodeModel child : node.getChildren()) {
+			loadChildren(child);
+		}
+	}
+
+	void setContainsUnloadedNodes() {
+		containsUnloadedNodes = true;
+	}
+
+	/**
+	 * Keeps the ids of the unloaded children of the parent from being
+	 * generated for other nodes.
+	 */
+	void registryUnloadedNodeIDs(final List<String> ids, final NodeModel parent) {
+		for (final String id : ids) {
+			unloadedNodes.put(id, parent);
+		}
+	}
+
 	public int getNumberOfChangesSinceLastSave() {
 		return changesPerformedSinceLastSave;
 	}
@@ -232,6 +281,9 @@ public class MapModel {
 		if (id != null) {
 			registryID(id, nodeModel);
 		}
+		if (!nodeModel.areChildrenLoaded()) {
+			return;
+		}
 		final Iterator<NodeModel> iterator = nodeModel.getChildren().iterator();
 		while (iterator.hasNext()) {
 			final NodeModel next = iterator.next();
@@ -290,9 +342,12 @@ public class MapModel {
 	}
 
 	public void unregistryNodes(final NodeModel node) {
-		final List<NodeModel> children = node.getChildren();
-		for (final NodeModel child : children) {
-			unregistryNodes(child);
+		// unloaded nodes have not been registered
+		if (node.areChildrenLoaded()) {
+			final List<NodeModel> children = node.getChildren();
+			for (final NodeModel child : children) {
+				unregistryNodes(child);
+			}
 		}
 		final String id = node.getID();
 		if (id != null) {
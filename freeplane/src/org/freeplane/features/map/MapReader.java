@@ -43,6 +43,9 @@ public class MapReader implements IElementDOMHandler {
 		private final Map<Object, Object> hints;
 		private NodeModel mapChild = null;
 		private final Map<String, String> newIds;
+		private int nodeLevel = 0;
+		private NodeModel unparsedChildrenParent = null;
+		private StringBuilder unparsedChildren = null;
 
 		public NodeTreeCreator() {
 			this(new HashMap<Object, Object>());
@@ -125,6 +128,40 @@ public class MapReader implements IElementDOMHandler {
 		public void substituteNodeID(final String value, final String realId) {
 			newIds.put(value, realId);
 		}
+
+		/**
+		 * the level of the node which is created next
+		 */
+		int getNodeLevel() {
+			return nodeLevel;
+		}
+
+		void setNodeLevel(final int nodeLevel) {
+			this.nodeLevel = nodeLevel;
+		}
+
+		void addUnparsedChild(final NodeModel parent, final String xml) {
+			if (unparsedChildrenParent != parent) {
+				unparsedChildrenParent = parent;
+				unparsedChildren = new StringBuilder();
+			}
+			// the line break is written after every child element
+			unparsedChildren.append(xml).append('\n');
+		}
+
+		/**
+		 * returns the xml of the unparsed children of the node which has been
+		 * read completely
+		 */
+		String removeUnparsedChildren(final NodeModel parent) {
+			if (unparsedChildrenParent != parent) {
+				return null;
+			}
+			final String xml = unparsedChildren.toString();
+			unparsedChildrenParent = null;
+			unparsedChildren = null;
+			return xml;
+		}
 	}
 
 	private final NodeBuilder nodeBuilder;
@@ -46,16 +46,14 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 	        + System.getProperty("line.separator");
 
 	public enum Hint {
-		MODE
+		MODE, SAVE_INVISIBLE
 	};
 
 	public enum Mode {
 		CLIPBOARD, FILE, EXPORT, STYLE
 	};
 
-	private NodeWriter currentNodeWriter;
 	final private MapController mapController;
-	private boolean saveInvisible;
 	final private WriteManager writeManager;
 
 	public MapWriter(final MapController mapController) {
@@ -63,12 +61,8 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 		writeManager = mapController.getWriteManager();
 	}
 
-	public boolean isSaveInvisible() {
-		return saveInvisible;
-	}
-
-	public void setSaveInvisible(final boolean saveInvisible) {
-		this.saveInvisible = saveInvisible;
+	protected boolean isSaveInvisible(final ITreeWriter writer) {
+		return Boolean.TRUE.equals(writer.getHint(Hint.SAVE_INVISIBLE));
 	}
 
 	public void writeAttributes(final ITreeWriter writer, final Object userObject, final String tag) {
@@ -82,18 +76,35 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 		final MapModel map = (MapModel) node;
 		writer.addExtensionNodes(map, Arrays.asList(map.getExtensions().values().toArray(new IExtension[] {})));
 		final NodeModel rootNode = map.getRootNode();
-		writeNode(writer, rootNode, saveInvisible, true);
+		writeNode(writer, rootNode, isSaveInvisible(writer), true);
 	}
 
-	public void writeMapAsXml(final MapModel map, final Writer fileout, final Mode mode, final boolean saveInvisible,
-	                          final boolean forceFormat) throws IOException {
-		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, fileout);
+	/**
+	 * Each writer gets its own copy of the write manager, because the node
+	 * writers are exchanged in it while the nodes are written. So several
+	 * maps can be written by different threads at the same time.
+	 */
+	private TreeXmlWriter createTreeXmlWriter(final Writer writer, final Mode mode, final boolean forceFormat) {
+		final WriteManager writeManager = new WriteManager(this.writeManager);
+		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, writer);
+		xmlWriter.setHint(WriteManager.class, writeManager);
 		xmlWriter.setHint(Hint.MODE, mode);
 		if (forceFormat) {
 			xmlWriter.setHint(WriterHint.FORCE_FORMATTING);
 		}
+		return xmlWriter;
+	}
+
+	private WriteManager getWriteManager(final ITreeWriter xmlWriter) {
+		final Object writeManager = xmlWriter.getHint(WriteManager.class);
+		return writeManager instanceof WriteManager ? (WriteManager) writeManager : this.writeManager;
+	}
+
+	public void writeMapAsXml(final MapModel map, final Writer fileout, final Mode mode, final boolean saveInvisible,
+	                          final boolean forceFormat) throws IOException {
+		final TreeXmlWriter xmlWriter = createTreeXmlWriter(fileout, mode, forceFormat);
+		xmlWriter.setHint(Hint.SAVE_INVISIBLE, Boolean.valueOf(saveInvisible));
 		final XMLElement xmlMap = new XMLElement("map");
-		setSaveInvisible(saveInvisible);
 		xmlWriter.addElement(map, xmlMap);
 		xmlWriter.flush();
 		fileout.close();
@@ -101,7 +112,9 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 
 	protected void writeNode(final ITreeWriter xmlWriter, final NodeModel node, final boolean writeInvisible,
 	                       final boolean writeChildren) throws IOException {
-		final NodeWriter oldNodeWriter = currentNodeWriter;
+		final WriteManager writeManager = getWriteManager(xmlWriter);
+		final Object currentWriter = xmlWriter.getHint(NodeWriter.class);
+		final NodeWriter oldNodeWriter = currentWriter instanceof NodeWriter ? (NodeWriter) currentWriter : null;
 		final Object mode = xmlWriter.getHint(Hint.MODE);
 		final String nodeTag;
 		if (Mode.STYLE.equals(mode)) {
@@ -114,7 +127,8 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 			writeManager.removeElementWriter(oldNodeWriter.getNodeTag(), oldNodeWriter);
 			writeManager.removeAttributeWriter(oldNodeWriter.getNodeTag(), oldNodeWriter);
 		}
-		currentNodeWriter = new NodeWriter(mapController, nodeTag, writeChildren, writeInvisible);
+		final NodeWriter currentNodeWriter = new NodeWriter(mapController, nodeTag, writeChildren, writeInvisible);
+		xmlWriter.setHint(NodeWriter.class, currentNodeWriter);
 		try {
 			writeManager.addElementWriter(nodeTag, currentNodeWriter);
 			writeManager.addAttributeWriter(nodeTag, currentNodeWriter);
@@ -127,17 +141,13 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 				writeManager.addElementWriter(oldNodeWriter.getNodeTag(), oldNodeWriter);
 				writeManager.addAttributeWriter(oldNodeWriter.getNodeTag(), oldNodeWriter);
 			}
-			currentNodeWriter = oldNodeWriter;
+			xmlWriter.setHint(NodeWriter.class, oldNodeWriter);
 		}
 	}
 
 	public void writeNodeAsXml(final Writer writer, final NodeModel node, final Mode mode,
 	                           final boolean writeInvisible, final boolean writeChildren, boolean forceFormat) throws IOException {
-		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, writer);
-		xmlWriter.setHint(Hint.MODE, mode);
-		if (forceFormat) {
-			xmlWriter.setHint(WriterHint.FORCE_FORMATTING);
-		}
+		final TreeXmlWriter xmlWriter = createTreeXmlWriter(writer, mode, forceFormat);
 		writeNode(xmlWriter, node, writeInvisible, writeChildren);
 		xmlWriter.flush();
 	}
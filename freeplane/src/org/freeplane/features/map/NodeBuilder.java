@@ -25,20 +25,24 @@ import java.util.Map;
 import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IReadCompletionListener;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.io.UnknownElements;
 import org.freeplane.core.io.xml.TreeXmlReader;
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.MapReader.NodeTreeCreator;
 import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.n3.nanoxml.XMLElement;
 
-public class NodeBuilder implements IElementDOMHandler {
+public class NodeBuilder implements IElementDOMHandler, IUnparsedElementHandler {
 	static class IconProperties {
 		String iconName;
 	}
 
 	public static final String FOLDING_LOADED = "folding_loaded";
+	public static final String RESOURCES_LAZY_LOADING = "lazy_loading";
+	public static final String RESOURCES_LAZY_LOADING_LEVEL = "lazy_loading_level";
 	public static final String RESOURCES_ALWAYS_FOLD_ALL_AFTER_LOAD = "always_fold_all_after_load";
 	public static final String RESOURCES_ALWAYS_SAVE_FOLDING = "always_save_folding";
 	public static final String RESOURCES_ALWAYS_UNFOLD_ALL_AFTER_LOAD = "always_unfold_all_after_load";
@@ -68,18 +72,66 @@ public class NodeBuilder implements IElementDOMHandler {
 		if (getMapChild() == null) {
 			setMapChild(userObject);
 		}
+		final NodeTreeCreator nodeTreeCreator = mapReader.getCurrentNodeTreeCreator();
+		nodeTreeCreator.setNodeLevel(nodeTreeCreator.getNodeLevel() + 1);
 		return userObject;
 	}
 
+	/**
+	 * The children of folded nodes from the configured level on are kept
+	 * unparsed while a map file is loaded.
+	 */
+	public boolean keepsUnparsed(final Object parent, final String tag) {
+		if (!XML_NODE.equals(tag) || !(parent instanceof NodeModel) || !((NodeModel) parent).isFolded()) {
+			return false;
+		}
+		final NodeTreeCreator nodeTreeCreator = mapReader.getCurrentNodeTreeCreator();
+		final int parentLevel = nodeTreeCreator.getNodeLevel() - 1;
+		return parentLevel >= getLazyLoadingLevel(nodeTreeCreator);
+	}
+
+	private int getLazyLoadingLevel(final NodeTreeCreator nodeTreeCreator) {
+		Integer level = (Integer) nodeTreeCreator.getHint(RESOURCES_LAZY_LOADING_LEVEL);
+		if (level == null) {
+			final ResourceController resourceController = ResourceController.getResourceController();
+			if (Mode.FILE.equals(nodeTreeCreator.getHint(Hint.MODE))
+			        && resourceController.getBooleanProperty(RESOURCES_LAZY_LOADING)) {
+				level = Math.max(1, resourceController.getIntProperty(RESOURCES_LAZY_LOADING_LEVEL, 2));
+			}
+			else {
+				level = Integer.MAX_VALUE;
+			}
+			nodeTreeCreator.setHint(RESOURCES_LAZY_LOADING_LEVEL, level);
+		}
+		return level;
+	}
+
+	public void unparsedElement(final Object parent, final String tag, final String xml) {
+		mapReader.getCurrentNodeTreeCreator().addUnparsedChild((NodeModel) parent, xml);
+	}
+
 	public NodeModel createNode() {
 		return new NodeModel(getMap());
 	}
 
 	public void endElement(final Object parentObject, final String tag, final Object userObject, final XMLElement dom) {
 		final NodeModel node = (NodeModel) userObject;
+		final NodeTreeCreator nodeTreeCreator = mapReader.getCurrentNodeTreeCreator();
+		nodeTreeCreator.setNodeLevel(nodeTreeCreator.getNodeLevel() - 1);
 		if (dom.getAttributeCount() != 0 || dom.hasChildren()) {
 			node.addExtension(new UnknownElements(dom));
 		}
+		final String unparsedChildren = nodeTreeCreator.removeUnparsedChildren(node);
+		if (unparsedChildren != null) {
+			final List<String> unloadedNodeIDs = UnloadedChildren.nodeIDs(unparsedChildren);
+			node.setUnloadedChildren(new UnloadedChildren(mapReader, unparsedChildren));
+			if (unloadedNodeIDs == null) {
+				node.getChildren();
+			}
+			else {
+				node.getMap().registryUnloadedNodeIDs(unloadedNodeIDs, node);
+			}
+		}
 		if (parentObject instanceof MapModel) {
 			setMapChild(node);
 			return;
@@ -0,0 +1,149 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps node ids to nodes. Ids like the generated ones, "ID_" followed by a
+ * number, are kept as numbers in an open addressing table, other ids in a
+ * hash map.
+ *
+ * Like a map the index keeps ids which have been put with a null node, so
+ * that they are not generated again.
+ */
+class NodeIndex {
+	static final String ID_PREFIX = "ID_";
+	static final int NO_NUMBER = -1;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int MAX_DIGIT_COUNT = 10;
+	private int[] numbers;
+	private NodeModel[] nodes;
+	private int numberCount;
+	private final Map<String, NodeModel> otherIDs = new HashMap<String, NodeModel>();
+
+	/**
+	 * Returns the number of the id or {@link #NO_NUMBER} if the id is not
+	 * written as {@link #toID(int)} would write it.
+	 */
+	static int toNumber(final String id) {
+		if (id == null || !id.startsWith(ID_PREFIX)) {
+			return NO_NUMBER;
+		}
+		final int start = ID_PREFIX.length();
+		final int length = id.length();
+		if (length == start || length > start + MAX_DIGIT_COUNT || id.charAt(start) == '0' && length > start + 1) {
+			return NO_NUMBER;
+		}
+		long number = 0;
+		for (int i = start; i < length; i++) {
+			final char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return NO_NUMBER;
+			}
+			number = number * 10 + c - '0';
+		}
+		return number > Integer.MAX_VALUE ? NO_NUMBER : (int) number;
+	}
+
+	static String toID(final int number) {
+		return ID_PREFIX + Integer.toString(number);
+	}
+
+	boolean containsKey(final String id) {
+		final int number = toNumber(id);
+		if (number == NO_NUMBER) {
+			return otherIDs.containsKey(id);
+		}
+		return numbers != null && numbers[find(number)] == number;
+	}
+
+	NodeModel get(final String id) {
+		final int number = toNumber(id);
+		if (number == NO_NUMBER) {
+			return otherIDs.get(id);
+		}
+		if (numbers == null) {
+			return null;
+		}
+		final int slot = find(number);
+		return numbers[slot] == number ? nodes[slot] : null;
+	}
+
+	/** returns the node previously registered for the id */
+	NodeModel put(final String id, final NodeModel node) {
+		final int number = toNumber(id);
+		if (number == NO_NUMBER) {
+			return otherIDs.put(id, node);
+		}
+		if (numbers == null) {
+			allocate(INITIAL_CAPACITY);
+		}
+		int slot = find(number);
+		if (numbers[slot] == number) {
+			final NodeModel oldNode = nodes[slot];
+			nodes[slot] = node;
+			return oldNode;
+		}
+		// the table is kept at most half full, so that probe sequences stay short
+		if (2 * (numberCount + 1) > numbers.length) {
+			rehash();
+			slot = find(number);
+		}
+		numbers[slot] = number;
+		nodes[slot] = node;
+		numberCount++;
+		return null;
+	}
+
+	private void allocate(final int capacity) {
+		numbers = new int[capacity];
+		Arrays.fill(numbers, NO_NUMBER);
+		nodes = new NodeModel[capacity];
+	}
+
+	private void rehash() {
+		final int[] oldNumbers = numbers;
+		final NodeModel[] oldNodes = nodes;
+		allocate(2 * oldNumbers.length);
+		for (int i = 0; i < oldNumbers.length; i++) {
+			final int number = oldNumbers[i];
+			if (number != NO_NUMBER) {
+				final int slot = find(number);
+				numbers[slot] = number;
+				nodes[slot] = oldNodes[i];
+			}
+		}
+	}
+
+	/** returns the slot containing the number or the empty slot where it belongs */
+	private int find(final int number) {
+		final int mask = numbers.length - 1;
+		int slot = hash(number) & mask;
+		while (numbers[slot] != number && numbers[slot] != NO_NUMBER) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(final int number) {
+		final int hash = number * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -41,6 +41,7 @@ import org.freeplane.features.filter.Filter;
 import org.freeplane.features.filter.FilterInfo;
 import org.freeplane.features.icon.MindIcon;
 import org.freeplane.features.ui.INodeViewVisitor;
+import org.freeplane.n3.nanoxml.XMLException;
 
 /**
  * This class represents a single Node of a Tree. It contains direct handles to
@@ -66,18 +67,25 @@ public class NodeModel implements MutableTreeNode {
 	public static final String NODE_ICON = "icon";
 	//DOCEAR - fixed: new property type for node link changes
 	static public final Object HYPERLINK_CHANGED = "hyperlink_changed";
-	private final List<NodeModel> children = new ArrayList<NodeModel>();
+	/** shared by all nodes without children, the list is allocated when the first child is added */
+	private static final List<NodeModel> NO_CHILDREN = Collections.emptyList();
+	private static final int INITIAL_CHILD_CAPACITY = 4;
+	private List<NodeModel> children = NO_CHILDREN;
 	private final ExtensionContainer extensionContainer;
-	final private FilterInfo filterInfo = new FilterInfo();
+	private FilterInfo filterInfo = null;
 	private boolean folded;
 	private HistoryInformationModel historyInformation = null;
-	final private NodeIconSetModel icons;
+	private NodeIconSetModel icons = null;
+	/** ids like the generated ones are kept as numbers, see {@link NodeIndex} */
+	private int idNumber = NodeIndex.NO_NUMBER;
+	/** for numeric ids built from the number when it is first asked for */
 	private String id;
 	private MapModel map = null;
 	private NodeModel parent;
 	private int position = NodeModel.UNKNOWN_POSITION;
 	private NodeModel preferredChild;
 	private Object userObject = null;
+	private UnloadedChildren unloadedChildren = null;
 
 	public Object getUserObject() {
 		return userObject;
@@ -94,7 +102,6 @@ public class NodeModel implements MutableTreeNode {
 		extensionContainer = new ExtensionContainer(new SmallExtensionMap());
 		init(userObject);
 		this.map = map;
-		icons = new NodeIconSetModel();
 	}
 
 	protected void init(final Object userObject) {
@@ -119,15 +126,22 @@ public class NodeModel implements MutableTreeNode {
 		return extensionContainer.putExtension(extension);
 	}
 
+	private NodeIconSetModel icons() {
+		if (icons == null) {
+			icons = new NodeIconSetModel();
+		}
+		return icons;
+	}
+
 	public void addIcon(final MindIcon icon) {
-		icons.addIcon(icon);
+		icons().addIcon(icon);
 		if (map != null) {
 			map.getIconRegistry().addIcon(icon);
 		}
 	}
 
 	public void addIcon(final MindIcon icon, final int position) {
-		icons.addIcon(icon, position);
+		icons().addIcon(icon, position);
 		getMap().getIconRegistry().addIcon(icon);
 	}
 
@@ -140,8 +154,55 @@ public class NodeModel implements MutableTreeNode {
 	}
 
 	protected List<NodeModel> getChildrenInternal() {
+		if (unloadedChildren != null) {
+			loadChildren();
+		}
 	    return children;
     }
+
+	/**
+	 * Returns the list of children for adding children, it is allocated for
+	 * the first child.
+	 */
+	protected List<NodeModel> getModifiableChildrenInternal() {
+		final List<NodeModel> children = getChildrenInternal();
+		if (children != NO_CHILDREN) {
+			return children;
+		}
+		this.children = new ArrayList<NodeModel>(INITIAL_CHILD_CAPACITY);
+		return this.children;
+	}
+
+	private void loadChildren() {
+		final UnloadedChildren unloadedChildren = this.unloadedChildren;
+		this.unloadedChildren = null;
+		try {
+			unloadedChildren.load(this);
+		}
+		catch (final XMLException e) {
+			// the children are kept unloaded, so they are written back as they have been read
+			this.unloadedChildren = unloadedChildren;
+			LogUtils.severe("can not load children of node " + getID(), e);
+		}
+	}
+
+	/**
+	 * Returns false if the children have been kept unparsed while the map was
+	 * loaded, they are loaded as soon as they are accessed on the model thread.
+	 * See {@link MapModel#loadAllNodes()} for maps used by other threads.
+	 */
+	public boolean areChildrenLoaded() {
+		return unloadedChildren == null;
+	}
+
+	UnloadedChildren getUnloadedChildren() {
+		return unloadedChildren;
+	}
+
+	void setUnloadedChildren(final UnloadedChildren unloadedChildren) {
+		this.unloadedChildren = unloadedChildren;
+		map.setContainsUnloadedNodes();
+	}
 	
 	public Enumeration<NodeModel> children() {
 		final Iterator<NodeModel> i = getChildrenInternal().iterator();
@@ -161,10 +222,15 @@ public class NodeModel implements MutableTreeNode {
 	}
 
 	public String createID() {
-		if (id == null) {
-			id = getMap().registryNode(this);
+		if (!hasID()) {
+			setIDInternal(getMap().registryNode(this));
 		}
-		return id;
+		return getID();
+	}
+
+	private void setIDInternal(final String value) {
+		idNumber = NodeIndex.toNumber(value);
+		id = idNumber == NodeIndex.NO_NUMBER ? value : null;
 	}
 
 	public void fireNodeChanged(final NodeChangeEvent nodeChangeEvent) {
@@ -248,6 +314,9 @@ public class NodeModel implements MutableTreeNode {
 	};
 
 	public FilterInfo getFilterInfo() {
+		if (filterInfo == null) {
+			filterInfo = new FilterInfo();
+		}
 		return filterInfo;
 	}
 
@@ -256,14 +325,20 @@ public class NodeModel implements MutableTreeNode {
 	}
 
 	public MindIcon getIcon(final int position) {
-		return icons.getIcon(position);
+		return getIcons().get(position);
 	}
 
 	public List<MindIcon> getIcons() {
+		if (icons == null) {
+			return Collections.emptyList();
+		}
 		return icons.getIcons();
 	}
 
 	public String getID() {
+		if (id == null && idNumber != NodeIndex.NO_NUMBER) {
+			id = NodeIndex.toID(idNumber);
+		}
 		return id;
 	}
 
@@ -325,11 +400,11 @@ public class NodeModel implements MutableTreeNode {
 	}
 
 	public boolean hasChildren() {
-		return getChildCount() != 0;
+		return unloadedChildren != null || getChildCount() != 0;
 	}
 
 	public boolean hasID() {
-		return id != null;
+		return idNumber != NodeIndex.NO_NUMBER || id != null;
 	}
 
 	public void insert(final MutableTreeNode child, int index) {
@@ -339,10 +414,10 @@ public class NodeModel implements MutableTreeNode {
 		final NodeModel childNode = (NodeModel) child;
 		if (index < 0) {
 			index = getChildCount();
-			getChildrenInternal().add(index, (NodeModel) child);
+			getModifiableChildrenInternal().add(index, (NodeModel) child);
 		}
 		else {
-			getChildrenInternal().add(index, (NodeModel) child);
+			getModifiableChildrenInternal().add(index, (NodeModel) child);
 			preferredChild = childNode;
 		}
 		child.setParent(this);
@@ -378,7 +453,7 @@ public class NodeModel implements MutableTreeNode {
 	 * Notes
 	 */
 	public boolean isLeaf() {
-		return getChildCount() == 0;
+		return !hasChildren();
 	}
 
 	public boolean isLeft() {
@@ -452,7 +527,7 @@ public class NodeModel implements MutableTreeNode {
 	 * @return the number of remaining icons.
 	 */
 	public int removeIcon() {
-		return icons.removeIcon();
+		return icons().removeIcon();
 	}
 
 	/**
@@ -461,7 +536,7 @@ public class NodeModel implements MutableTreeNode {
 	 * @return the number of remaining icons
 	 */
 	public int removeIcon(final int position) {
-		return icons.removeIcon(position);
+		return icons().removeIcon(position);
 	}
 
 	public void removeViewer(final INodeView viewer) {
@@ -492,7 +567,7 @@ public class NodeModel implements MutableTreeNode {
 	}
 
 	public void setID(final String value) {
-		id = value;
+		setIDInternal(value);
 		getMap().registryID(value, this);
 	}
 
@@ -512,7 +587,7 @@ public class NodeModel implements MutableTreeNode {
 	 */
 	public void setMap(final MapModel map) {
 		this.map = map;
-		for (final NodeModel child : getChildrenInternal()) {
+		for (final NodeModel child : children) {
 			child.setMap(map);
 		}
 	}
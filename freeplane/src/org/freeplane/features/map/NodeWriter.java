@@ -124,6 +124,11 @@ class NodeWriter implements IElementWriter, IAttributeWriter {
 		for (int i = 0; i < xmlNode.getChildrenCount(); i++) {
 			writer.addElement(null, xmlNode.getChildAtIndex(i));
 		}
+		if (mayWriteChildren && shouldWriteChildren && !node.areChildrenLoaded()
+		        && Mode.FILE.equals(writer.getHint(Hint.MODE))) {
+			writer.addElementContent(node.getUnloadedChildren().getXml());
+			return;
+		}
 		if (mayWriteChildren && shouldWriteChildren && mapController.childrenUnfolded(node).size()>0) {
 			saveChildren(writer, node);
 		}
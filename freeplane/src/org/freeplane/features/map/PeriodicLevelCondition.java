@@ -26,6 +26,11 @@ public class PeriodicLevelCondition extends ASelectableCondition {
 		return nodeLevel > 0 && nodeLevel % period == remainder;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	public static ASelectableCondition load(XMLElement element) {
 		int period = Integer.valueOf(element.getAttribute("PERIOD", null));
 		int remainder = Integer.valueOf(element.getAttribute("REMAINDER", null));
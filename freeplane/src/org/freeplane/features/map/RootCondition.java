@@ -15,6 +15,11 @@ public class RootCondition extends ASelectableCondition {
 		return node.isRoot();
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	public static ASelectableCondition load(XMLElement element) {
 	    return new RootCondition();
     }
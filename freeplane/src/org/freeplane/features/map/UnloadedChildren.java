@@ -0,0 +1,139 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.freeplane.features.map.MapReader.NodeTreeCreator;
+import org.freeplane.features.map.MapWriter.Hint;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * The children of a folded node kept as compressed xml while the map is
+ * loaded. They are parsed when they are accessed for the first time, and
+ * written back unchanged as long as they have not been loaded.
+ */
+class UnloadedChildren {
+	private static final String CHARSET = "UTF-8";
+	private static final Pattern NODE_START_TAG = Pattern.compile("<node(\\s[^>]*)?>");
+	private static final Pattern ID_ATTRIBUTE = Pattern.compile("\\sID=\"([^\"]*)\"");
+	private static final String ARROW_LINK_TAG = "<arrowlink";
+
+	/**
+	 * Returns the ids of all nodes of the xml, so that the map does not
+	 * generate them for other nodes, or null if the children can not stay
+	 * unloaded. Nodes without ids would get ids which are not saved as long as
+	 * they are not loaded, and connectors have to be known when the nodes they
+	 * connect are shown, so such children are loaded at once.
+	 */
+	static List<String> nodeIDs(final String xml) {
+		if (xml.contains(ARROW_LINK_TAG)) {
+			return null;
+		}
+		final List<String> nodeIDs = new ArrayList<String>();
+		final Matcher nodeStartTag = NODE_START_TAG.matcher(xml);
+		while (nodeStartTag.find()) {
+			final String attributes = nodeStartTag.group(1);
+			if (attributes == null) {
+				return null;
+			}
+			final Matcher id = ID_ATTRIBUTE.matcher(attributes);
+			if (!id.find()) {
+				return null;
+			}
+			nodeIDs.add(id.group(1));
+		}
+		return nodeIDs;
+	}
+
+	private final MapReader mapReader;
+	private final byte[] compressedXml;
+
+	UnloadedChildren(final MapReader mapReader, final String xml) {
+		this.mapReader = mapReader;
+		final ByteArrayOutputStream compressedXml = new ByteArrayOutputStream(xml.length() / 4);
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			final Writer writer = new OutputStreamWriter(new DeflaterOutputStream(compressedXml, deflater), CHARSET);
+			writer.write(xml);
+			writer.close();
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			deflater.end();
+		}
+		this.compressedXml = compressedXml.toByteArray();
+	}
+
+	String getXml() {
+		try {
+			final Reader reader = new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(
+			    compressedXml)), CHARSET);
+			try {
+				final StringBuilder xml = new StringBuilder(compressedXml.length * 4);
+				final char[] buffer = new char[4096];
+				int count;
+				while ((count = reader.read(buffer)) != -1) {
+					xml.append(buffer, 0, count);
+				}
+				return xml.toString();
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Parses the children and adds them to the parent without notifying its
+	 * views, for them the children have always been there.
+	 */
+	void load(final NodeModel parent) throws XMLException {
+		final NodeTreeCreator nodeTreeCreator = mapReader.nodeTreeCreator(parent.getMap());
+		nodeTreeCreator.setHint(Hint.MODE, Mode.FILE);
+		nodeTreeCreator.setHint(NodeBuilder.FOLDING_LOADED, Boolean.TRUE);
+		// the container element stands for the parent
+		nodeTreeCreator.setNodeLevel(parent.depth());
+		final NodeModel container = nodeTreeCreator.create(new StringReader("<node>" + getXml() + "</node>"));
+		final List<NodeModel> children = new ArrayList<NodeModel>(container.getChildrenInternal());
+		for (final NodeModel child : children) {
+			parent.getModifiableChildrenInternal().add(child);
+			child.setParent(parent);
+		}
+		nodeTreeCreator.finish(parent);
+	}
+}
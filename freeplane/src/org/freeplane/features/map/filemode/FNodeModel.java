@@ -55,7 +55,7 @@ class FNodeModel extends NodeModel {
 						final FNodeModel fileNodeModel = new FNodeModel(childFile, getMap());
 						NodeLinks.createLinkExtension(fileNodeModel).setHyperLink(childFile.toURI());
 						fileNodeModel.setLeft(isNewChildLeft());
-						getChildrenInternal().add(getChildCount(), fileNodeModel);
+						getModifiableChildrenInternal().add(getChildCount(), fileNodeModel);
 						fileNodeModel.setParent(this);
 					}
 				}
@@ -26,6 +26,7 @@ import java.awt.event.FocusListener;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -718,6 +719,32 @@ public class MMapController extends MapController {
 		}
     }
 
+	/**
+	 * opens a map read from the reader, the url only identifies the map and is not read.
+	 * @deprecated -- use MMapIO*/
+	@Deprecated
+	public MapModel newMap(final Reader reader, final URL url) throws IOException, XMLException {
+		final IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+		if (mapViewManager.tryToChangeToMapView(url))
+			return null;
+		Controller.getCurrentController().getViewController().setWaitingCursor(true);
+		try {
+			final MapModel newModel = new MMapModel();
+			newModel.setURL(url);
+			final MFileManager fileManager = MFileManager.getController(getMModeController());
+			fileManager.loadTree(newModel, reader);
+			if (newModel.getRootNode() == null)
+				newModel.createNewRoot();
+			newModel.setSaved(true);
+			fireMapCreated(newModel);
+			newMapView(newModel);
+			return newModel;
+		}
+		finally {
+			Controller.getCurrentController().getViewController().setWaitingCursor(false);
+		}
+	}
+
 	/**@throws XMLException 
 	 * @deprecated -- use MMapIO*/
 	@Deprecated
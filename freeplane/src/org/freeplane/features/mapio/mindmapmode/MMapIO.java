@@ -22,6 +22,7 @@ package org.freeplane.features.mapio.mindmapmode;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
 
@@ -110,7 +111,14 @@ public class MMapIO extends MapIO{
 	public boolean newMap(URL url) throws FileNotFoundException, IOException, URISyntaxException, XMLException {
 	    return mapController.newMap(url);
     }
-	public boolean newDocumentationMap(URL url) throws FileNotFoundException, IOException,
+	/**
+	 * opens a map read from the reader, the url only identifies the map and is not read.
+	 * @return the opened map or null if a map with the url is already opened
+	 */
+	public MapModel newMap(Reader reader, URL url) throws IOException, XMLException {
+	    return mapController.newMap(reader, url);
+    }
+		public boolean newDocumentationMap(URL url) throws FileNotFoundException, IOException,
             URISyntaxException, XMLException {
 	    return mapController.newDocumentationMap(url);
     }
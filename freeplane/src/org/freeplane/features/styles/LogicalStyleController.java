@@ -21,11 +21,13 @@ package org.freeplane.features.styles;
 
 import java.awt.Component;
 import java.awt.EventQueue;
-import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IAttributeWriter;
@@ -37,6 +39,7 @@ import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.undo.IActor;
 import org.freeplane.core.util.HtmlUtils;
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.filter.Filter;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.map.IMapChangeListener;
 import org.freeplane.features.map.INodeChangeListener;
@@ -61,8 +64,21 @@ public class LogicalStyleController implements IExtension {
 // 	final private ModeController modeController;
 	
 	private static final int STYLE_TOOLTIP = 0;
-	private WeakReference<NodeModel> cachedNode;
-	private Collection<IStyle>  cachedStyle;
+
+	/** resolved styles of the nodes of a map, maps can be read by several threads. */
+	private static class StyleCache implements IExtension {
+		final Map<NodeModel, Collection<IStyle>> styles = new ConcurrentHashMap<NodeModel, Collection<IStyle>>();
+		volatile int generation;
+	}
+
+	private volatile int cacheGeneration;
+	/** nesting of condition evaluations in the current thread, the threads reading different maps resolve styles in parallel. */
+	private final ThreadLocal<int[]> conditionEvaluationDepth = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
 	final private CombinedPropertyChain<Collection<IStyle>, NodeModel> styleHandlers;
 
 	public LogicalStyleController(ModeController modeController) {
@@ -85,7 +101,6 @@ public class LogicalStyleController implements IExtension {
 				}
 				final MapStyleModel styleModel = MapStyleModel.getExtension(node.getMap());
 				Collection<IStyle> condStyles = styleModel.getConditionalStyleModel().getStyles(node);
-				clearCache();
 				addAll(node, styleModel, currentValue, condStyles);
 				return currentValue;
 			}
@@ -100,7 +115,7 @@ public class LogicalStyleController implements IExtension {
 			public String getTooltip(ModeController modeController, NodeModel node, Component view) {
 				if(!ResourceController.getResourceController().getBooleanProperty("show_styles_in_tooltip"))
 					return null;
-				final Collection<IStyle> styles = getStyles(node);
+				final Collection<IStyle> styles = new ArrayList<IStyle>(getStyles(node));
 				if(styles.size() > 0)
 					styles.remove(styles.iterator().next());
 				final String label = TextUtils.getText("node_styles");
@@ -145,7 +160,6 @@ public class LogicalStyleController implements IExtension {
 			if(conditionalStyleModel == null)
 				return;
 			Collection<IStyle> styles = conditionalStyleModel.getStyles(node);
-			cachedNode = null;
 			addAll(node, styleModel, currentValue, styles);
     }
 
@@ -154,32 +168,35 @@ public class LogicalStyleController implements IExtension {
 		final MapController mapController = modeController.getMapController();
 		mapController.addMapChangeListener(new IMapChangeListener() {
 			public void onPreNodeMoved(NodeModel oldParent, int oldIndex, NodeModel newParent, NodeModel child, int newIndex) {
-				clearCache();
+				removeFromCache(child, oldParent);
 			}
 			
 			public void onPreNodeDelete(NodeModel oldParent, NodeModel selectedNode, int index) {
-				clearCache();
+				removeFromCache(selectedNode, oldParent);
 			}
 			
 			public void onNodeMoved(NodeModel oldParent, int oldIndex, NodeModel newParent, NodeModel child, int newIndex) {
-				clearCache();
+				removeFromCache(child, newParent);
 			}
 			
 			public void onNodeInserted(NodeModel parent, NodeModel child, int newIndex) {
-				clearCache();
+				removeFromCache(child, parent);
 			}
 			
 			public void onNodeDeleted(NodeModel parent, NodeModel child, int index) {
-				clearCache();
+				removeFromCache(child, parent);
 			}
 			
 			public void mapChanged(MapChangeEvent event) {
-				clearCache();
+				if(Filter.class.equals(event.getProperty()))
+					return;
+				clearCache(event.getMap());
 			}
 		});
 		mapController.addNodeChangeListener(new INodeChangeListener() {
 			public void nodeChanged(NodeChangeEvent event) {
-				clearCache();
+				final NodeModel node = event.getNode();
+				removeFromCache(node, node.getParentNode());
 			}
 		});
 	    
@@ -253,24 +270,29 @@ public class LogicalStyleController implements IExtension {
 		Controller.getCurrentModeController().execute(actor, map);
 	}
 
+	/** guarded by itself, maps can be changed outside of the event dispatch thread. */
 	private static Map<MapModel, Integer> mapsToRefresh = new HashMap<MapModel, Integer>();
 
 	private void refreshMapLater(final MapModel map) {
-		final Integer count = mapsToRefresh.get(map);
-		if (count == null) {
-			mapsToRefresh.put(map, 0);
-		}
-		else {
-			mapsToRefresh.put(map, count + 1);
+		synchronized (mapsToRefresh) {
+			final Integer count = mapsToRefresh.get(map);
+			if (count == null) {
+				mapsToRefresh.put(map, 0);
+			}
+			else {
+				mapsToRefresh.put(map, count + 1);
+			}
 		}
 		EventQueue.invokeLater(new Runnable() {
 			public void run() {
-				final Integer count = mapsToRefresh.get(map);
-				if (count > 0) {
-					mapsToRefresh.put(map, count - 1);
-					return;
+				synchronized (mapsToRefresh) {
+					final Integer count = mapsToRefresh.get(map);
+					if (count > 0) {
+						mapsToRefresh.put(map, count - 1);
+						return;
+					}
+					mapsToRefresh.remove(map);
 				}
-				mapsToRefresh.remove(map);
 			    final MapStyleModel extension = MapStyleModel.getExtension(map);
 			    extension.refreshStyles();
 				final MapController mapController = Controller.getCurrentModeController().getMapController();
@@ -294,40 +316,144 @@ public class LogicalStyleController implements IExtension {
 		return MapStyleModel.DEFAULT_STYLE;
 	}
 	public Collection<IStyle>  getStyles(final NodeModel node) {
-		if(cachedNode != null && node.equals(cachedNode.get())){
-			return cachedStyle;
+		final StyleCache cache = getCache(node.getMap());
+		if(cache != null){
+			final Collection<IStyle> cachedStyles = cache.styles.get(node);
+			if(cachedStyles != null)
+				return cachedStyles;
+		}
+		final Collection<IStyle> styles;
+		conditionEvaluationDepth.get()[0]++;
+		try{
+			styles = styleHandlers.getProperty(node, new LinkedHashSet<IStyle>());
 		}
-		cachedStyle = null;
-		cachedStyle = styleHandlers.getProperty(node, new LinkedHashSet<IStyle>());
-		cachedNode = new WeakReference<NodeModel>(node);
-		return cachedStyle;
+		finally{
+			conditionEvaluationDepth.get()[0]--;
+		}
+		// styles resolved while conditions of another node are checked miss the conditional styles
+		if(cache != null && conditionEvaluationDepth.get()[0] == 0)
+			cache.styles.put(node, styles);
+		return styles;
+	}
+
+	private StyleCache getCache(final MapModel map) {
+		if(map == null || map instanceof StyleMapModel)
+			return null;
+		StyleCache cache = (StyleCache) map.getExtension(StyleCache.class);
+		if(cache == null){
+			cache = new StyleCache();
+			cache.generation = cacheGeneration;
+			map.addExtension(cache);
+		}
+		else if(cache.generation != cacheGeneration){
+			cache.styles.clear();
+			cache.generation = cacheGeneration;
+		}
+		return cache;
+	}
+
+	private StyleCache getExistingCache(final MapModel map) {
+		if(map == null)
+			return null;
+		final StyleCache cache = (StyleCache) map.getExtension(StyleCache.class);
+		if(cache != null && cache.generation != cacheGeneration){
+			cache.styles.clear();
+			cache.generation = cacheGeneration;
+		}
+		return cache;
+	}
+
+	private void clearCache(final MapModel map) {
+		final StyleCache cache = getExistingCache(map);
+		if(cache != null)
+			cache.styles.clear();
+	}
+
+	private void removeBranchFromCache(final StyleCache cache, final NodeModel node) {
+		cache.styles.remove(node);
+		// children which have not been loaded have no cached styles
+		if(!node.areChildrenLoaded())
+			return;
+		for(NodeModel child : node.getChildren())
+			removeBranchFromCache(cache, child);
+	}
+
+	/** conditions on the node's branch and its children are rechecked, other conditions force a check of all nodes */
+	private void removeFromCache(final NodeModel node, final NodeModel parent) {
+		final MapModel map = node.getMap();
+		final StyleCache cache = getExistingCache(map);
+		if(cache == null){
+			if(map instanceof StyleMapModel)
+				clearCache();
+			return;
+		}
+		if(cache.styles.isEmpty())
+			return;
+		if(dependsOnOtherNodes(map)){
+			cache.styles.clear();
+			return;
+		}
+		removeBranchFromCache(cache, node);
+		if(parent != null)
+			cache.styles.remove(parent);
+	}
+
+	private boolean dependsOnOtherNodes(final MapModel map) {
+		final MapStyleModel styleModel = MapStyleModel.getExtension(map);
+		if(styleModel == null)
+			return false;
+		if(dependsOnOtherNodes(styleModel.getConditionalStyleModel()))
+			return true;
+		for(IStyle style : styleModel.getStyles()){
+			final NodeModel styleNode = styleModel.getStyleNode(style);
+			if(styleNode != null && dependsOnOtherNodes((ConditionalStyleModel) styleNode.getExtension(ConditionalStyleModel.class)))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean dependsOnOtherNodes(final ConditionalStyleModel conditionalStyleModel) {
+		if(conditionalStyleModel == null)
+			return false;
+		for(Item item : conditionalStyleModel){
+			final ASelectableCondition condition = item.getCondition();
+			if(item.isActive() && condition != null && condition.dependsOnOtherNodes())
+				return true;
+		}
+		return false;
 	}
 	
 	public void moveConditionalStyleDown(final ConditionalStyleModel conditionalStyleModel, int index) {
 	    conditionalStyleModel.moveDown(index);
+	    clearCache();
     }
 
 	public void moveConditionalStyleUp(final ConditionalStyleModel conditionalStyleModel, int index) {
 	    conditionalStyleModel.moveUp(index);
+	    clearCache();
     }
 
 	public void addConditionalStyle(final ConditionalStyleModel conditionalStyleModel, boolean isActive,
                                     ASelectableCondition condition, IStyle style, boolean isLast) {
 	    conditionalStyleModel.addCondition(isActive, condition, style, isLast);
+	    clearCache();
     }
 
 	public void insertConditionalStyle(final ConditionalStyleModel conditionalStyleModel, int index, boolean isActive,
                                        ASelectableCondition condition, IStyle style, boolean isLast) {
 	    conditionalStyleModel.insertCondition(index, isActive, condition, style, isLast);
+	    clearCache();
     }
 	
 	public Item removeConditionalStyle(final ConditionalStyleModel conditionalStyleModel, int index) {
-	    return conditionalStyleModel.removeCondition(index);
+	    final Item item = conditionalStyleModel.removeCondition(index);
+	    clearCache();
+	    return item;
     }
 
+	/** clears the cached styles of all maps */
 	private void clearCache() {
-	    cachedStyle = null;
-	    cachedNode = null;
+	    cacheGeneration++;
     }
 
 	public IPropertyHandler<Collection<IStyle>, NodeModel> addStyleGetter(
@@ -355,13 +481,28 @@ public class LogicalStyleController implements IExtension {
     }
 
 	public Collection<IStyle>  getConditionalMapStyles(final NodeModel node) {
-		final MapStyleModel styleModel = MapStyleModel.getExtension(node.getMap());
-		Collection<IStyle> condStyles = styleModel.getConditionalStyleModel().getStyles(node);
-		clearCache();
-		return getResursively(node, condStyles);
+		conditionEvaluationDepth.get()[0]++;
+		try{
+			final MapStyleModel styleModel = MapStyleModel.getExtension(node.getMap());
+			Collection<IStyle> condStyles = styleModel.getConditionalStyleModel().getStyles(node);
+			return getResursively(node, condStyles);
+		}
+		finally{
+			conditionEvaluationDepth.get()[0]--;
+		}
 	}
 
 	public Collection<IStyle>  getConditionalNodeStyles(final NodeModel node) {
+		conditionEvaluationDepth.get()[0]++;
+		try{
+			return getConditionalNodeStylesWithoutCaching(node);
+		}
+		finally{
+			conditionEvaluationDepth.get()[0]--;
+		}
+	}
+
+	private Collection<IStyle>  getConditionalNodeStylesWithoutCaching(final NodeModel node) {
 		final Collection<IStyle> condStyles = new LinkedHashSet<IStyle>();
 		IStyle style = LogicalStyleModel.getStyle(node);
 		if(style != null){
@@ -371,7 +512,6 @@ public class LogicalStyleController implements IExtension {
 		final ConditionalStyleModel conditionalStyleModel = (ConditionalStyleModel) node.getExtension(ConditionalStyleModel.class);
 		if(conditionalStyleModel != null) {
 			Collection<IStyle> styles = conditionalStyleModel.getStyles(node);
-			clearCache();
 			condStyles.addAll(styles);
 		}
 		final Collection<IStyle> all = getResursively(node, condStyles);
@@ -65,6 +65,11 @@ public class MatchCaseNoteContainsCondition extends ASelectableCondition {
 		return stringMatchingStrategy.matches(value, text, true, matchCase());
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return !matchApproximately;
+	}
+
 	@Override
 	protected String createDescription() {
 		return createDescription(true);
@@ -19,15 +19,19 @@
  */
 package org.freeplane.features.text;
 
+import java.util.Set;
+
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.filter.ExactStringMatchingStrategy;
 import org.freeplane.features.filter.StringMatchingStrategy;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ConditionFactory;
+import org.freeplane.features.filter.condition.IIndexedCondition;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
-public class NodeContainsCondition extends ASelectableCondition {
+public class NodeContainsCondition extends ASelectableCondition implements IIndexedCondition {
 	static final String NAME = "node_contains_condition";
 	static final String VALUE = "VALUE";
 	static final String MATCH_APPROXIMATELY = "MATCH_APPROXIMATELY";
@@ -60,6 +64,18 @@ public class NodeContainsCondition extends ASelectableCondition {
 		return checkText(content);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return !matchApproximately;
+	}
+
+	public Set<NodeModel> getCandidates(final MapModel map) {
+		if (matchApproximately) {
+			return null;
+		}
+		return NodeTextIndex.getCandidates(map, nodeItem, value, false);
+	}
+
 	private boolean checkText(Object content[]) {
 		for(Object o : content){
 			if(checkText(o))
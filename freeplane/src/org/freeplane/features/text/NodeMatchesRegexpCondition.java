@@ -62,6 +62,11 @@ public class NodeMatchesRegexpCondition extends ASelectableCondition {
 		return content != null && checkText(content);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	private boolean checkText(Object content[]) {
 		for(Object o : content){
 			if(o != null && checkText(o.toString()))
@@ -19,16 +19,20 @@
  */
 package org.freeplane.features.text;
 
+import java.util.Set;
+
 import org.freeplane.core.io.xml.TreeXmlReader;
 import org.freeplane.core.io.xml.TreeXmlWriter;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.core.util.TypeReference;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.CompareConditionAdapter;
+import org.freeplane.features.filter.condition.IIndexedCondition;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
-public class NodeTextCompareCondition extends CompareConditionAdapter {
+public class NodeTextCompareCondition extends CompareConditionAdapter implements IIndexedCondition {
 	static final String COMPARATION_RESULT = "COMPARATION_RESULT";
 	static final String NAME = "node_compare_condition";
 	static final String SUCCEED = "SUCCEED";
@@ -81,6 +85,16 @@ public class NodeTextCompareCondition extends CompareConditionAdapter {
 		return content != null && checkText(content);
 	}
 
+	public Set<NodeModel> getCandidates(final MapModel map) {
+		// case insensitive equality is checked char by char and can not be looked up in the lower case index
+		final Comparable<?> conditionValue = getConditionValue();
+		if (!isEqualityCondition() || !succeed || matchApproximately || !isMatchCase()
+		        || !(conditionValue instanceof String)) {
+			return null;
+		}
+		return NodeTextIndex.getCandidates(map, nodeItem, (String) conditionValue, true);
+	}
+
 	private boolean checkText(Object content[]) {
 		for(Object o : content){
 			if(o != null && checkText(o.toString()))
@@ -0,0 +1,388 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.SwingUtilities;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.features.filter.Filter;
+import org.freeplane.features.map.IMapChangeListener;
+import org.freeplane.features.map.INodeChangeListener;
+import org.freeplane.features.map.MapChangeEvent;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeModel;
+
+/**
+ * Trigram index over the lower case plain text, details and note of all nodes of a map.
+ *
+ * The index is built in steps of {@link #INDEXED_NODES_PER_STEP} nodes starting with the first query,
+ * further steps are made on the event dispatch thread later. Nodes not indexed yet are always candidates.
+ * The index is kept up to date by node and map change events.
+ * Changed nodes are only marked as dirty and indexed again on the next query.
+ * Nodes whose text is changed by content transformers (formulas, formats) are always returned as candidates
+ * because their displayed text can change without a change event.
+ */
+class NodeTextIndex implements IExtension {
+	static final int GRAM_LENGTH = 3;
+	static final int INDEXED_NODES_PER_STEP = 5000;
+
+	static class Updater implements INodeChangeListener, IMapChangeListener {
+		public void nodeChanged(final NodeChangeEvent event) {
+			final NodeTextIndex index = getExistingIndex(event.getNode().getMap());
+			if (index != null) {
+				index.invalidate(event.getNode());
+			}
+		}
+
+		public void mapChanged(final MapChangeEvent event) {
+			if (Filter.class.equals(event.getProperty())) {
+				return;
+			}
+			final NodeTextIndex index = getExistingIndex(event.getMap());
+			if (index != null) {
+				index.clear();
+			}
+		}
+
+		public void onNodeDeleted(final NodeModel parent, final NodeModel child, final int index) {
+			final NodeTextIndex textIndex = getExistingIndex(child.getMap());
+			if (textIndex != null) {
+				textIndex.removeBranch(child);
+			}
+		}
+
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final NodeTextIndex index = getExistingIndex(child.getMap());
+			if (index != null) {
+				index.invalidateBranch(child);
+			}
+		}
+
+		public void onNodeMoved(final NodeModel oldParent, final int oldIndex, final NodeModel newParent,
+		                        final NodeModel child, final int newIndex) {
+			final NodeTextIndex index = getExistingIndex(child.getMap());
+			if (index != null) {
+				index.onBranchMoved(child);
+			}
+		}
+
+		public void onPreNodeMoved(final NodeModel oldParent, final int oldIndex, final NodeModel newParent,
+		                           final NodeModel child, final int newIndex) {
+		}
+
+		public void onPreNodeDelete(final NodeModel oldParent, final NodeModel selectedNode, final int index) {
+		}
+	}
+
+	static NodeTextIndex getIndex(final MapModel map) {
+		NodeTextIndex index = getExistingIndex(map);
+		if (index == null) {
+			index = new NodeTextIndex(map);
+			map.addExtension(index);
+		}
+		return index;
+	}
+
+	private static NodeTextIndex getExistingIndex(final MapModel map) {
+		if (map == null) {
+			return null;
+		}
+		return (NodeTextIndex) map.getExtension(NodeTextIndex.class);
+	}
+
+	/**
+	 * returns nodes whose given item may contain the search term
+	 * or null if the candidates can not be determined by the index.
+	 */
+	static Set<NodeModel> getCandidates(final MapModel map, final Object nodeItem, final String searchTerm,
+	                                    final boolean matchCase) {
+		if (map == null || TextController.FILTER_PARENT.equals(nodeItem) || !supportsSearchTerm(searchTerm, matchCase)) {
+			return null;
+		}
+		return getIndex(map).getCandidates(searchTerm);
+	}
+
+	/** returns true if the nodes containing the search term can be found by a lower case lookup. */
+	private static boolean supportsSearchTerm(final String searchTerm, final boolean matchCase) {
+		if (searchTerm == null || searchTerm.length() < GRAM_LENGTH) {
+			return false;
+		}
+		if (!matchCase) {
+			return true;
+		}
+		// lower case conversion of sigma depends on the context, therefore lower case substrings do not always match.
+		for (int i = 0; i < searchTerm.length(); i++) {
+			final char c = searchTerm.charAt(i);
+			if (c == '\u03a3' || c == '\u03c3' || c == '\u03c2') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final MapModel map;
+	private final Map<NodeModel, String[]> indexedTexts;
+	private final Map<Long, Set<NodeModel>> postings;
+	private final Set<NodeModel> transformedNodes;
+	private final Set<NodeModel> dirtyNodes;
+	/** roots of the branches not indexed yet */
+	private final LinkedList<NodeModel> unindexedBranches;
+	private boolean built;
+	private boolean indexingScheduled;
+
+	private NodeTextIndex(final MapModel map) {
+		this.map = map;
+		indexedTexts = new HashMap<NodeModel, String[]>();
+		postings = new HashMap<Long, Set<NodeModel>>();
+		transformedNodes = new HashSet<NodeModel>();
+		dirtyNodes = new LinkedHashSet<NodeModel>();
+		unindexedBranches = new LinkedList<NodeModel>();
+		built = false;
+		indexingScheduled = false;
+	}
+
+	/**
+	 * returns all nodes whose text, details or note may contain the search term ignoring case,
+	 * or null if the search term is too short to be looked up.
+	 */
+	Set<NodeModel> getCandidates(final String searchTerm) {
+		if (searchTerm == null || searchTerm.length() < GRAM_LENGTH) {
+			return null;
+		}
+		update();
+		final String term = searchTerm.toLowerCase();
+		Set<NodeModel> smallest = null;
+		final Set<Set<NodeModel>> termPostings = new HashSet<Set<NodeModel>>();
+		for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+			final Set<NodeModel> nodes = postings.get(gram(term, i));
+			if (nodes == null) {
+				smallest = null;
+				termPostings.clear();
+				break;
+			}
+			termPostings.add(nodes);
+			if (smallest == null || nodes.size() < smallest.size()) {
+				smallest = nodes;
+			}
+		}
+		final Set<NodeModel> candidates = new HashSet<NodeModel>(transformedNodes);
+		for (final NodeModel branch : unindexedBranches) {
+			if (isInMap(branch)) {
+				addBranchTo(candidates, branch);
+			}
+		}
+		if (smallest == null) {
+			return candidates;
+		}
+		CANDIDATES: for (final NodeModel node : smallest) {
+			for (final Set<NodeModel> nodes : termPostings) {
+				if (nodes != smallest && !nodes.contains(node)) {
+					continue CANDIDATES;
+				}
+			}
+			candidates.add(node);
+		}
+		return candidates;
+	}
+
+	void clear() {
+		built = false;
+		indexedTexts.clear();
+		postings.clear();
+		transformedNodes.clear();
+		dirtyNodes.clear();
+		unindexedBranches.clear();
+	}
+
+	/** returns true if all nodes of the map are indexed */
+	boolean isComplete() {
+		return built && unindexedBranches.isEmpty();
+	}
+
+	void invalidate(final NodeModel node) {
+		if (built) {
+			dirtyNodes.add(node);
+		}
+	}
+
+	void invalidateBranch(final NodeModel node) {
+		if (!built) {
+			return;
+		}
+		dirtyNodes.add(node);
+		for (final NodeModel child : node.getChildren()) {
+			invalidateBranch(child);
+		}
+	}
+
+	void removeBranch(final NodeModel node) {
+		if (!built) {
+			return;
+		}
+		dirtyNodes.remove(node);
+		remove(node);
+		// children which have not been loaded have not been indexed
+		if (!node.areChildrenLoaded()) {
+			return;
+		}
+		for (final NodeModel child : node.getChildren()) {
+			removeBranch(child);
+		}
+	}
+
+	/**
+	 * a branch moved out of a branch which is not indexed yet would never be indexed,
+	 * so it is indexed again as a whole.
+	 */
+	private void onBranchMoved(final NodeModel node) {
+		if (built && !unindexedBranches.isEmpty()) {
+			invalidateBranch(node);
+		}
+	}
+
+	private void update() {
+		if (!built) {
+			unindexedBranches.add(map.getRootNode());
+			built = true;
+		}
+		for (final NodeModel node : dirtyNodes) {
+			remove(node);
+			add(node);
+		}
+		dirtyNodes.clear();
+		indexStep();
+	}
+
+	private void indexStep() {
+		for (int count = 0; count < INDEXED_NODES_PER_STEP && !unindexedBranches.isEmpty(); count++) {
+			final NodeModel node = unindexedBranches.removeFirst();
+			if (!isInMap(node)) {
+				continue;
+			}
+			remove(node);
+			add(node);
+			for (final NodeModel child : node.getChildren()) {
+				unindexedBranches.addFirst(child);
+			}
+		}
+		scheduleIndexStep();
+	}
+
+	/** the index is only accessed by the event dispatch thread, other threads finish indexing on their next query */
+	private void scheduleIndexStep() {
+		if (indexingScheduled || unindexedBranches.isEmpty() || !SwingUtilities.isEventDispatchThread()) {
+			return;
+		}
+		indexingScheduled = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				indexingScheduled = false;
+				if (built && getExistingIndex(map) == NodeTextIndex.this) {
+					indexStep();
+				}
+			}
+		});
+	}
+
+	private boolean isInMap(final NodeModel node) {
+		return node == map.getRootNode() || node.isDescendantOf(map.getRootNode());
+	}
+
+	private static void addBranchTo(final Set<NodeModel> nodes, final NodeModel node) {
+		nodes.add(node);
+		for (final NodeModel child : node.getChildren()) {
+			addBranchTo(nodes, child);
+		}
+	}
+
+	private void add(final NodeModel node) {
+		final Object[] items = NodeTextConditionController.getItemsForComparison(TextController.FILTER_ANYTEXT, node);
+		final String[] texts = new String[items.length];
+		for (int i = 0; i < items.length; i++) {
+			if (items[i] == null) {
+				continue;
+			}
+			final String text = items[i].toString().toLowerCase();
+			texts[i] = text;
+			for (int j = 0; j + GRAM_LENGTH <= text.length(); j++) {
+				final Long gram = gram(text, j);
+				Set<NodeModel> nodes = postings.get(gram);
+				if (nodes == null) {
+					nodes = new HashSet<NodeModel>();
+					postings.put(gram, nodes);
+				}
+				nodes.add(node);
+			}
+		}
+		indexedTexts.put(node, texts);
+		if (isTransformed(node, items[0])) {
+			transformedNodes.add(node);
+		}
+	}
+
+	private boolean isTransformed(final NodeModel node, final Object transformedText) {
+		final Object userObject = node.getUserObject();
+		if (userObject == null || transformedText == null) {
+			return userObject != transformedText;
+		}
+		final String text;
+		if (userObject instanceof String) {
+			text = HtmlUtils.htmlToPlain((String) userObject);
+		}
+		else {
+			text = userObject.toString();
+		}
+		return !text.equals(transformedText.toString());
+	}
+
+	private void remove(final NodeModel node) {
+		transformedNodes.remove(node);
+		final String[] texts = indexedTexts.remove(node);
+		if (texts == null) {
+			return;
+		}
+		for (final String text : texts) {
+			if (text == null) {
+				continue;
+			}
+			for (int j = 0; j + GRAM_LENGTH <= text.length(); j++) {
+				final Long gram = gram(text, j);
+				final Set<NodeModel> nodes = postings.get(gram);
+				if (nodes != null) {
+					nodes.remove(node);
+					if (nodes.isEmpty()) {
+						postings.remove(gram);
+					}
+				}
+			}
+		}
+	}
+
+	private static Long gram(final String text, final int start) {
+		return Long.valueOf(((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16)
+		        | text.charAt(start + 2));
+	}
+}
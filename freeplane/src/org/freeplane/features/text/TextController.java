@@ -41,6 +41,7 @@ import org.freeplane.features.filter.FilterController;
 import org.freeplane.features.format.PatternFormat;
 import org.freeplane.features.map.ITooltipProvider;
 import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
@@ -99,6 +100,13 @@ public class TextController implements IExtension {
 		final WriteManager writeManager = mapController.getWriteManager();
 		final NodeTextBuilder textBuilder = new NodeTextBuilder();
 		textBuilder.registerBy(readManager, writeManager);
+		final NodeTextIndex.Updater textIndexUpdater = new NodeTextIndex.Updater();
+		mapController.addNodeChangeListener(textIndexUpdater);
+		mapController.addMapChangeListener(textIndexUpdater);
+		final TransformedTextCache.Updater textCacheUpdater = new TransformedTextCache.Updater();
+		mapController.addNodeChangeListener(textCacheUpdater);
+		mapController.addMapChangeListener(textCacheUpdater);
+		ResourceController.getResourceController().addPropertyChangeListener(textCacheUpdater);
 		writeManager.addExtensionElementWriter(DetailTextModel.class, textBuilder);
 		writeManager.addExtensionAttributeWriter(ShortenedTextModel.class, textBuilder);
 
@@ -113,6 +121,7 @@ public class TextController implements IExtension {
 	public void addTextTransformer(IContentTransformer textTransformer) {
 	    textTransformers.add(textTransformer);
 	    Collections.sort(textTransformers);
+	    TransformedTextCache.invalidateAll();
     }
 
 	public List<IContentTransformer> getTextTransformers() {
@@ -120,6 +129,7 @@ public class TextController implements IExtension {
 	}
 	public void removeTextTransformer(IContentTransformer textTransformer) {
 	    textTransformers.remove(textTransformer);
+	    TransformedTextCache.invalidateAll();
     }
 
 	public String getText(NodeModel nodeModel) {
@@ -176,18 +186,44 @@ public class TextController implements IExtension {
 		}
 		catch (Throwable e) {
 			LogUtils.warn(e.getMessage(), e);
-			return TextUtils.format("MainView.errorUpdateText", data, e.getLocalizedMessage());
+			return transformationErrorText(data, e);
 		}
 	}
+
+	private String transformationErrorText(Object data, Throwable e) {
+		return TextUtils.format("MainView.errorUpdateText", data, e.getLocalizedMessage());
+	}
+
+	private String cachedTransformationErrorText(Object data, Throwable e) {
+		// cached failures have been logged when the transformation failed
+		if(! (e instanceof TransformationException))
+			LogUtils.warn(e.getMessage(), e);
+		return transformationErrorText(data, e);
+	}
 	
 	public Object getTransformedObject(NodeModel node)  throws TransformationException{
-		final Object userObject = node.getUserObject();
-		return getTransformedObject(userObject, node, userObject);
+		final MapModel map = node.getMap();
+		if(map == null)
+			return transformObject(node);
+		return TransformedTextCache.getCache(map).getTransformedObject(this, node);
 	}
 	
 	public Object getTransformedObjectNoThrow(NodeModel node) {
 		final Object userObject = node.getUserObject();
-		return getTransformedObjectNoThrow(userObject, node, userObject);
+		final MapModel map = node.getMap();
+		if(map == null)
+			return getTransformedObjectNoThrow(userObject, node, userObject);
+		try {
+			return TransformedTextCache.getCache(map).getTransformedObject(this, node);
+		}
+		catch (Throwable e) {
+			return cachedTransformationErrorText(userObject, e);
+		}
+	}
+
+	Object transformObject(NodeModel node) throws TransformationException{
+		final Object userObject = node.getUserObject();
+		return getTransformedObject(userObject, node, userObject);
 	}
 
 	/** convenience method for getTransformedText().toString. */
@@ -209,19 +245,43 @@ public class TextController implements IExtension {
 	// FIXME: This should be getPlainTransformedText() since getText() does not transform too
 	/** returns transformed text converted to plain text. */
 	public String getPlainTextContent(NodeModel nodeModel) {
-		final String text = getTransformedTextNoThrow(nodeModel);
-		return HtmlUtils.htmlToPlain(text);    
+		final MapModel map = nodeModel.getMap();
+		if(map == null)
+			return toPlainText(getTransformedTextNoThrow(getTextTransformationInput(nodeModel), nodeModel, nodeModel.getUserObject()));
+		try {
+			return TransformedTextCache.getCache(map).getPlainText(this, nodeModel);
+		}
+		catch (Throwable e) {
+			return toPlainText(cachedTransformationErrorText(getTextTransformationInput(nodeModel), e));
+		}
 	}
 
 	public String getTransformedTextNoThrow(NodeModel nodeModel) {
+		final MapModel map = nodeModel.getMap();
+		if(map == null)
+			return getTransformedTextNoThrow(getTextTransformationInput(nodeModel), nodeModel, nodeModel.getUserObject());
+		try {
+			return TransformedTextCache.getCache(map).getTransformedText(this, nodeModel);
+		}
+		catch (Throwable e) {
+			return cachedTransformationErrorText(getTextTransformationInput(nodeModel), e);
+		}
+    }
+
+	String transformText(NodeModel nodeModel) throws TransformationException{
+		return getTransformedText(getTextTransformationInput(nodeModel), nodeModel, nodeModel.getUserObject());
+	}
+
+	String toPlainText(String transformedText) {
+		return HtmlUtils.htmlToPlain(transformedText);
+	}
+
+	private Object getTextTransformationInput(NodeModel nodeModel) {
 	    final Object userObject = nodeModel.getUserObject();
-		final Object input;
 		if(userObject instanceof String &&  HtmlUtils.isHtmlNode((String) userObject))
-			input = HtmlUtils.htmlToPlain((String) userObject);
+			return HtmlUtils.htmlToPlain((String) userObject);
 		else
-			input = userObject;
-		final String text = getTransformedTextNoThrow(input, nodeModel, userObject);
-	    return text;
+			return userObject;
     }
 
 	public String getShortText(NodeModel nodeModel) {
@@ -0,0 +1,289 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.resources.IFreeplanePropertyListener;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.filter.Filter;
+import org.freeplane.features.map.IMapChangeListener;
+import org.freeplane.features.map.INodeChangeListener;
+import org.freeplane.features.map.MapChangeEvent;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.styles.ConditionalStyleModel;
+import org.freeplane.features.styles.IStyle;
+import org.freeplane.features.styles.MapStyleModel;
+
+/**
+ * Caches the transformed object, the transformed text and the plain text of the nodes of a map.
+ *
+ * Entries are removed by node change events, including the refresh events sent to formula dependencies,
+ * and the whole cache is dropped on map changes.
+ * Changes of preferences, of the content transformers and of nodes outside of cached maps (e.g. style nodes)
+ * make all existing entries of all maps stale.
+ * Failed transformations are cached like successful ones, they are logged once when they fail.
+ */
+public class TransformedTextCache implements IExtension {
+	static class Updater implements INodeChangeListener, IMapChangeListener, IFreeplanePropertyListener {
+		public void nodeChanged(final NodeChangeEvent event) {
+			final NodeModel node = event.getNode();
+			final MapModel map = node.getMap();
+			final TransformedTextCache cache = getExistingCache(map);
+			if (cache == null) {
+				invalidateAll();
+			}
+			else if (usesConditionalStyles(map)) {
+				cache.clear();
+			}
+			else {
+				cache.remove(node);
+			}
+		}
+
+		public void mapChanged(final MapChangeEvent event) {
+			if (Filter.class.equals(event.getProperty())) {
+				return;
+			}
+			final TransformedTextCache cache = getExistingCache(event.getMap());
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+
+		public void propertyChanged(final String propertyName, final String newValue, final String oldValue) {
+			invalidateAll();
+		}
+
+		public void onNodeDeleted(final NodeModel parent, final NodeModel child, final int index) {
+			final TransformedTextCache cache = getExistingCache(child.getMap());
+			if (cache != null) {
+				cache.removeBranch(child);
+			}
+		}
+
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final TransformedTextCache cache = getExistingCache(child.getMap());
+			if (cache != null) {
+				cache.removeBranch(child);
+			}
+		}
+
+		public void onNodeMoved(final NodeModel oldParent, final int oldIndex, final NodeModel newParent,
+		                        final NodeModel child, final int newIndex) {
+			final TransformedTextCache cache = getExistingCache(child.getMap());
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+
+		public void onPreNodeMoved(final NodeModel oldParent, final int oldIndex, final NodeModel newParent,
+		                           final NodeModel child, final int newIndex) {
+		}
+
+		public void onPreNodeDelete(final NodeModel oldParent, final NodeModel selectedNode, final int index) {
+		}
+	}
+
+	private static class Entry {
+		final Object userObject;
+		final int generation;
+		volatile Object transformedObject;
+		volatile String transformedText;
+		volatile String plainText;
+		volatile TransformationException objectFailure;
+		volatile TransformationException textFailure;
+
+		Entry(final Object userObject, final int generation) {
+			this.userObject = userObject;
+			this.generation = generation;
+		}
+	}
+
+	private static final AtomicInteger generation = new AtomicInteger();
+
+	/** makes all entries of all maps stale. */
+	static void invalidateAll() {
+		generation.incrementAndGet();
+	}
+
+	public static TransformedTextCache getCache(final MapModel map) {
+		TransformedTextCache cache = getExistingCache(map);
+		if (cache == null) {
+			synchronized (map) {
+				cache = getExistingCache(map);
+				if (cache == null) {
+					cache = new TransformedTextCache();
+					map.addExtension(cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	private static TransformedTextCache getExistingCache(final MapModel map) {
+		if (map == null) {
+			return null;
+		}
+		return (TransformedTextCache) map.getExtension(TransformedTextCache.class);
+	}
+
+	/** conditional styles can change the format of a node when any other node changes. */
+	private static boolean usesConditionalStyles(final MapModel map) {
+		final MapStyleModel styleModel = MapStyleModel.getExtension(map);
+		if (styleModel == null) {
+			return false;
+		}
+		if (styleModel.getConditionalStyleModel().getStyleCount() > 0) {
+			return true;
+		}
+		for (final IStyle style : styleModel.getStyles()) {
+			final NodeModel styleNode = styleModel.getStyleNode(style);
+			if (styleNode == null) {
+				continue;
+			}
+			final ConditionalStyleModel conditionalStyleModel = (ConditionalStyleModel) styleNode
+			    .getExtension(ConditionalStyleModel.class);
+			if (conditionalStyleModel != null && conditionalStyleModel.getStyleCount() > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final ConcurrentHashMap<NodeModel, Entry> entries;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+
+	private TransformedTextCache() {
+		entries = new ConcurrentHashMap<NodeModel, Entry>();
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	void remove(final NodeModel node) {
+		entries.remove(node);
+	}
+
+	void removeBranch(final NodeModel node) {
+		entries.remove(node);
+		// children which have not been loaded have not been cached
+		if (!node.areChildrenLoaded()) {
+			return;
+		}
+		for (final NodeModel child : node.getChildren()) {
+			removeBranch(child);
+		}
+	}
+
+	Object getTransformedObject(final TextController textController, final NodeModel node)
+	        throws TransformationException {
+		final Entry entry = getEntry(node);
+		Object transformedObject = entry.transformedObject;
+		if (transformedObject != null) {
+			hitCount.incrementAndGet();
+			return transformedObject;
+		}
+		final TransformationException failure = entry.objectFailure;
+		if (failure != null) {
+			hitCount.incrementAndGet();
+			throw failure;
+		}
+		missCount.incrementAndGet();
+		try {
+			transformedObject = textController.transformObject(node);
+		}
+		catch (final TransformationException e) {
+			entry.objectFailure = e;
+			LogUtils.warn(e.getMessage(), e);
+			throw e;
+		}
+		entry.transformedObject = transformedObject;
+		return transformedObject;
+	}
+
+	String getTransformedText(final TextController textController, final NodeModel node)
+	        throws TransformationException {
+		final Entry entry = getEntry(node);
+		String transformedText = entry.transformedText;
+		if (transformedText != null) {
+			hitCount.incrementAndGet();
+			return transformedText;
+		}
+		final TransformationException failure = entry.textFailure;
+		if (failure != null) {
+			hitCount.incrementAndGet();
+			throw failure;
+		}
+		missCount.incrementAndGet();
+		try {
+			transformedText = textController.transformText(node);
+		}
+		catch (final TransformationException e) {
+			entry.textFailure = e;
+			LogUtils.warn(e.getMessage(), e);
+			throw e;
+		}
+		entry.transformedText = transformedText;
+		return transformedText;
+	}
+
+	String getPlainText(final TextController textController, final NodeModel node) throws TransformationException {
+		final Entry entry = getEntry(node);
+		String plainText = entry.plainText;
+		if (plainText != null) {
+			hitCount.incrementAndGet();
+			return plainText;
+		}
+		plainText = textController.toPlainText(getTransformedText(textController, node));
+		entry.plainText = plainText;
+		return plainText;
+	}
+
+	private Entry getEntry(final NodeModel node) {
+		final Object userObject = node.getUserObject();
+		final int currentGeneration = generation.get();
+		final Entry entry = entries.get(node);
+		if (entry != null && entry.userObject == userObject && entry.generation == currentGeneration) {
+			return entry;
+		}
+		final Entry newEntry = new Entry(userObject, currentGeneration);
+		entries.put(node, newEntry);
+		return newEntry;
+	}
+}
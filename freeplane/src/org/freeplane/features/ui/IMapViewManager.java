@@ -77,6 +77,14 @@ public interface IMapViewManager {
 	 */
 	public boolean close(final boolean withoutSave);
 
+	/**
+	 * Close the given map, return false if it is not opened or closing canceled.
+	 *
+	 * @param withoutSave
+	 *            forces the closing without any save actions.
+	 */
+	public boolean close(final MapModel map, final boolean withoutSave);
+
 	public String createHtmlMap();
 
 	public RenderedImage createImage();
@@ -19,9 +19,8 @@
  */
 package org.freeplane.features.url.mindmapmode;
 
-import java.awt.EventQueue;
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.TimerTask;
 
@@ -29,10 +28,11 @@ import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.map.MapModel;
-import org.freeplane.features.map.mindmapmode.MMapModel;
+import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
+import org.freeplane.features.ui.ViewController;
 import org.freeplane.features.url.UrlManager;
 
 public class DoAutomaticSave extends TimerTask {
@@ -47,6 +47,8 @@ public class DoAutomaticSave extends TimerTask {
 	final private MapModel model;
 	final private int numberOfFiles;
 	private final File singleBackupDirectory;
+	/** the last saved map is written in the background */
+	private volatile boolean isSaving = false;
 	static final String BACKUP_DIR = ".backup";
 
 	public DoAutomaticSave(final MapModel model, final int numberOfTempFiles,
@@ -61,6 +63,10 @@ public class DoAutomaticSave extends TimerTask {
 
 	@Override
 	public void run() {
+		/* The last saved map is still written. */
+		if (isSaving) {
+			return;
+		}
 		/* Map is dirty enough? */
 		if (model.getNumberOfChangesSinceLastSave() == changeState) {
 			return;
@@ -71,7 +77,6 @@ public class DoAutomaticSave extends TimerTask {
 			return;
 		}
 		try {
-			cancel();
 			Controller.getCurrentController().getViewController().invokeAndWait(new Runnable() {
 
 				public void run() {
@@ -80,7 +85,7 @@ public class DoAutomaticSave extends TimerTask {
 						final ModeController currentModeController = Controller.getCurrentModeController();
 						if(!(currentModeController instanceof MModeController))
 							return;
-						MModeController modeController = ((MModeController) currentModeController);
+						final MModeController modeController = ((MModeController) currentModeController);
 						final File pathToStore;
 						final URL url = model.getURL();
 						final File file = new File(url != null ? url.getFile() //
@@ -95,19 +100,37 @@ public class DoAutomaticSave extends TimerTask {
 						else {
 							pathToStore = new File(file.getParent(), BACKUP_DIR);
 						}
-						pathToStore.mkdirs();
-						final File tempFile = MFileManager.renameBackupFiles(pathToStore, file, numberOfFiles,
-						    AUTOSAVE_EXTENSION);
-						if (tempFile == null) {
-							return;
-						}
-						if (filesShouldBeDeletedAfterShutdown) {
-							tempFile.deleteOnExit();
-						}
-						((MFileManager) UrlManager.getController())
-						    .saveInternal((MMapModel) model, tempFile, true /*=internal call*/);
-						modeController.getController().getViewController()
-						    .out(TextUtils.format("automatically_save_message", tempFile));
+						final MFileManager fileManager = (MFileManager) UrlManager.getController();
+						// the map is changed on this thread, only the file is written in the background
+						final StringWriter xml = new StringWriter();
+						modeController.getMapController().getMapWriter()
+						    .writeMapAsXml(model, xml, Mode.FILE, true, false);
+						isSaving = true;
+						fileManager.saveInBackground(model, new Runnable() {
+							public void run() {
+								try {
+									final File tempFile = createBackupFile(pathToStore, file);
+									if (tempFile == null) {
+										return;
+									}
+									MFileManager.writeToFile(xml.toString(), tempFile);
+									final ViewController viewController = modeController.getController()
+									    .getViewController();
+									viewController.invokeLater(new Runnable() {
+										public void run() {
+											viewController.out(TextUtils.format("automatically_save_message",
+											    tempFile));
+										}
+									});
+								}
+								catch (final Exception e) {
+									LogUtils.severe("Error in automatic MapModel.save(): ", e);
+								}
+								finally {
+									isSaving = false;
+								}
+							}
+						});
 					}
 					catch (final Exception e) {
 						LogUtils.severe("Error in automatic MapModel.save(): ", e);
@@ -119,4 +142,13 @@ public class DoAutomaticSave extends TimerTask {
 			LogUtils.severe(e);
 		}
 	}
+
+	private File createBackupFile(final File pathToStore, final File file) {
+		pathToStore.mkdirs();
+		final File tempFile = MFileManager.renameBackupFiles(pathToStore, file, numberOfFiles, AUTOSAVE_EXTENSION);
+		if (tempFile != null && filesShouldBeDeletedAfterShutdown) {
+			tempFile.deleteOnExit();
+		}
+		return tempFile;
+	}
 }
@@ -24,6 +24,7 @@ import java.awt.dnd.DropTarget;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -44,6 +45,10 @@ import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 
 import javax.swing.JComboBox;
@@ -66,11 +71,15 @@ import org.freeplane.core.util.Compat;
 import org.freeplane.core.util.FileUtils;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.filter.Filter;
 import org.freeplane.features.link.LinkController;
+import org.freeplane.features.map.AMapChangeListenerAdapter;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapController;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter;
 import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.mindmapmode.MMapController;
 import org.freeplane.features.map.mindmapmode.MMapModel;
@@ -79,6 +88,7 @@ import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
 import org.freeplane.features.text.TextController;
 import org.freeplane.features.ui.IMapViewChangeListener;
+import org.freeplane.features.ui.ViewController;
 import org.freeplane.features.url.IMapInputStreamConverter;
 import org.freeplane.features.url.MapConversionException;
 import org.freeplane.features.url.MapVersionInterpreter;
@@ -92,10 +102,87 @@ import org.freeplane.n3.nanoxml.XMLParseException;
 public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	private static final String BACKUP_EXTENSION = "bak";
 	private static final int DEBUG_OFFSET = 0;
+	private static final String SAVE_STATUS = "save_in_progress";
 
 	static private class BackupFlag implements IExtension {
 	}
 
+	/**
+	 * Records the changes of the maps which have a {@link MapJournal} and
+	 * merges the journal into the map file when the map is closed.
+	 */
+	private class JournalUpdater extends AMapChangeListenerAdapter {
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			final NodeModel node = event.getNode();
+			final MapJournal journal = node.getMap().getExtension(MapJournal.class);
+			if (journal != null) {
+				journal.nodeChanged(node);
+			}
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final MapJournal journal = parent.getMap().getExtension(MapJournal.class);
+			if (journal != null) {
+				journal.nodeInserted(child);
+			}
+		}
+
+		@Override
+		public void onNodeMoved(final NodeModel oldParent, final int oldIndex, final NodeModel newParent,
+		                        final NodeModel child, final int newIndex) {
+			final MapJournal journal = newParent.getMap().getExtension(MapJournal.class);
+			if (journal != null) {
+				journal.nodeMoved(oldParent, child);
+			}
+		}
+
+		@Override
+		public void onNodeDeleted(final NodeModel parent, final NodeModel child, final int index) {
+			final MapJournal journal = parent.getMap().getExtension(MapJournal.class);
+			if (journal != null) {
+				journal.nodeDeleted(parent, child);
+			}
+		}
+
+		@Override
+		public void mapChanged(final MapChangeEvent event) {
+			final MapModel map = event.getMap();
+			final Object property = event.getProperty();
+			if (map == null || UrlManager.MAP_URL.equals(property) || Filter.class.equals(property)) {
+				return;
+			}
+			final MapJournal journal = map.getExtension(MapJournal.class);
+			if (journal != null) {
+				journal.mapChanged();
+			}
+		}
+
+		@Override
+		public void onRemove(final MapModel map) {
+			final MapJournal journal = map.getExtension(MapJournal.class);
+			// unsaved changes must not get into the map file, the journal is kept then
+			if (journal == null || !journal.hasEntries() || !map.isSaved() || map.isReadOnly()
+			        || !journal.getFile().equals(map.getFile())) {
+				return;
+			}
+			try {
+				writeMap(Controller.getCurrentModeController().getMapController().getMapWriter(), map,
+				    journal.getFile());
+			}
+			catch (final IOException e) {
+				LogUtils.warn("journal of " + journal.getFile() + " could not be merged", e);
+			}
+		}
+
+		public void onSaved(final MapModel map) {
+		}
+
+		public void onSavedAs(final MapModel map) {
+		}
+	}
+
 	private class MindMapFilter extends FileFilter {
 		@Override
 		public boolean accept(final File f) {
@@ -123,6 +210,9 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	private static final String BACKUP_FILE_NUMBER = "backup_file_number";
 	private static final String FREEPLANE_VERSION_UPDATER_XSLT = "/xslt/freeplane_version_updater.xslt";
 	private static File singleBackupDirectory;
+	private ExecutorService saveExecutor;
+	// the number of unfinished background saves, it is only used on the event dispatch thread
+	private int backgroundSaveCount = 0;
 
 	private File[] findFileRevisions(final File file, final File backupDir, final AlternativeFileMode mode) {
 		final String fileExtensionPattern;
@@ -196,6 +286,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 				break;
 			}
 			newFile.delete();
+			MapJournal.journalFile(newFile).delete();
 		}
 		int i = backupFileNumber;
 		for (;;) {
@@ -215,9 +306,12 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			final File newFile = MFileManager.createBackupFile(backupDir, file, i, extension);
 			final File oldFile = MFileManager.createBackupFile(backupDir, file, i + 1, extension);
 			newFile.delete();
+			MapJournal.journalFile(newFile).delete();
 			if (!oldFile.renameTo(newFile)) {
 				return null;
 			}
+			// backups of journaled maps keep the journal of the backup file next to it
+			MapJournal.journalFile(oldFile).renameTo(MapJournal.journalFile(newFile));
 		}
 		return MFileManager.createBackupFile(backupDir, file, backupFileNumber, extension);
 	}
@@ -242,6 +336,11 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			}
 			singleBackupDirectory = new File(value);
 		}
+		final JournalUpdater journalUpdater = new JournalUpdater();
+		final MapController mapController = Controller.getCurrentModeController().getMapController();
+		mapController.addNodeChangeListener(journalUpdater);
+		mapController.addMapChangeListener(journalUpdater);
+		mapController.addMapLifeCycleListener(journalUpdater);
 	}
 
 	private void createPreferences() {
@@ -409,7 +508,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			setFile(map, file);
         	NodeModel root = loadTree(map, file);
         	assert(map.getRootNode() == root);
-        	
+        	loadJournal(map, file);
         }
 		if(map.getRootNode() == null)
 			map.createNewRoot();
@@ -467,7 +566,41 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		}
 	}
 
-	
+	/**
+	 * loads the map from a reader instead of a file, e.g. from content received over the network.
+	 * Maps needing a stream conversion are read without it, the converters work on files only.
+	 * @deprecated -- use MMapIO*/
+	@Deprecated
+	public NodeModel loadTree(final MapModel map, final Reader reader) throws IOException, XMLException {
+		final BufferedReader bufferedReader = new BufferedReader(reader);
+		final int versionInfoLength = 1000;
+		bufferedReader.mark(versionInfoLength);
+		final char[] buffer = new char[versionInfoLength];
+		int readCount = 0;
+		int count;
+		while (readCount < versionInfoLength
+		        && (count = bufferedReader.read(buffer, readCount, versionInfoLength - readCount)) != -1) {
+			readCount += count;
+		}
+		bufferedReader.reset();
+		final MapVersionInterpreter versionInterpreter = MapVersionInterpreter.getVersionInterpreter(new String(buffer, 0, readCount));
+		map.addExtension(versionInterpreter);
+		if (versionInterpreter.needsConversion) {
+			LogUtils.warn("map of version " + versionInterpreter.name + " is loaded without conversion");
+		}
+		final NodeModel root = Controller.getCurrentModeController().getMapController().getMapReader()
+		    .createNodeTreeFromXml(map, bufferedReader, Mode.FILE);
+		if (versionInterpreter.getMapConverter() != null) {
+			try {
+				versionInterpreter.getMapConverter().convert(root);
+			}
+			catch (final MapConversionException e) {
+				throw new XMLException(e);
+			}
+		}
+		return root;
+	}
+
 	//DOCEAR
 	private NodeModel loadTreeImpl(final MapModel map, final File f) throws FileNotFoundException, IOException,
 	        XMLException, MapConversionException {
@@ -686,7 +819,8 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			return saveAs(map);
 		}
 		try {
-			if (null == map.getExtension(BackupFlag.class)) {
+			// journaled maps are backed up when the map file is written
+			if (null == map.getExtension(BackupFlag.class) && !MapJournal.isEnabled()) {
 				map.addExtension(new BackupFlag());
 				backup(file);
 			}
@@ -789,7 +923,12 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 				map.setURL(Compat.fileToUrl(file));
 				map.setSaved(true);
 			}
-			writeToFile(map, file);
+			if (isInternal) {
+				writeToFile(map, file);
+			}
+			else {
+				saveMap(map, file);
+			}
 			map.scheduleTimerForAutomaticSaving();
 			return true;
 		}
@@ -809,9 +948,82 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		return false;
 	}
 
+	/**
+	 * Runs the task on the thread which saves maps in the background, the
+	 * tasks are run one after the other. The status bar shows the map until
+	 * its task is done. It has to be called on the event dispatch thread.
+	 */
+	Future<?> saveInBackground(final MapModel map, final Runnable task) {
+		if (saveExecutor == null) {
+			saveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(final Runnable r) {
+					final Thread thread = Executors.defaultThreadFactory().newThread(r);
+					thread.setName("map saver");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		backgroundSaveCount++;
+		viewController.addStatusInfo(SAVE_STATUS, TextUtils.format("saving_map", map.getTitle()));
+		return saveExecutor.submit(new Runnable() {
+			public void run() {
+				try {
+					task.run();
+				}
+				finally {
+					viewController.invokeLater(new Runnable() {
+						public void run() {
+							backgroundSaveCount--;
+							if (backgroundSaveCount == 0) {
+								viewController.addStatusInfo(SAVE_STATUS, null, null);
+							}
+						}
+					});
+				}
+			}
+		});
+	}
+
 	/**@deprecated -- use MMapIO*/
 	@Deprecated
 	public void writeToFile(final MapModel map, final File file) throws FileNotFoundException, IOException {
+		writeToFile(Controller.getCurrentModeController().getMapController().getMapWriter(), map, file, null);
+	}
+
+	/**
+	 * Writes the xml of a map, which has been generated on the event dispatch
+	 * thread, into a temporary file which replaces the file if it is complete.
+	 * It can be called by any thread.
+	 */
+	static void writeToFile(final String xml, final File file) throws FileNotFoundException, IOException {
+		final File tmpFile = new File(file.getParentFile(), "~"+file.getName());
+		final FileOutputStream out = new FileOutputStream(tmpFile);
+		final FileLock lock = out.getChannel().tryLock();
+		if (lock == null) {
+			throw new IOException("can not obtain file lock for " + file);
+		}
+		try {
+			final BufferedWriter fileout = new BufferedWriter(new OutputStreamWriter(out));
+			fileout.write(xml);
+			fileout.close();
+		}
+		finally {
+			if (lock.isValid()) {
+				lock.release();
+			}
+		}
+		replaceFile(file, tmpFile, null);
+	}
+
+	/**
+	 * Writes the map into a temporary file which replaces the file if it is
+	 * complete, the replaced file is renamed to backupFile if it is not null.
+	 * Returns false if the file has not been replaced.
+	 */
+	private static boolean writeToFile(final MapWriter mapWriter, final MapModel map, final File file,
+	                                   final File backupFile) throws FileNotFoundException, IOException {
 		final File tmpFile = new File(file.getParentFile(), "~"+file.getName());
 		final FileOutputStream out = new FileOutputStream(tmpFile);
 		final FileLock lock = out.getChannel().tryLock();
@@ -820,23 +1032,110 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		}
 		try {
 			final BufferedWriter fileout = new BufferedWriter(new OutputStreamWriter(out));
-			Controller.getCurrentModeController().getMapController().getMapWriter()
-			    .writeMapAsXml(map, fileout, Mode.FILE, true, false);
+			mapWriter.writeMapAsXml(map, fileout, Mode.FILE, true, false);
 		}
 		finally {
 			if (lock.isValid()) {
 				lock.release();
 			}
-			if(isValidMapFile(tmpFile)) {
-				if(file.exists()) {
-					file.delete();
+		}
+		return replaceFile(file, tmpFile, backupFile);
+	}
+
+	private static boolean replaceFile(final File file, final File tmpFile, final File backupFile) {
+		if (!isValidMapFile(tmpFile)) {
+			return false;
+		}
+		if (backupFile != null) {
+			backupFile.delete();
+			file.renameTo(backupFile);
+		}
+		// the file is replaced at once where the file system allows it
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			tmpFile.renameTo(file);
+		}
+		return !tmpFile.exists();
+	}
+
+	/**
+	 * Appends the changes of the map to its journal if it has one and they
+	 * can be journaled, otherwise writes the complete map.
+	 */
+	private void saveMap(final MapModel map, final File file) throws IOException {
+		final MapWriter mapWriter = Controller.getCurrentModeController().getMapController().getMapWriter();
+		final MapJournal journal = map.getExtension(MapJournal.class);
+		if (journal != null && journal.append(mapWriter, map, file)) {
+			return;
+		}
+		writeMap(mapWriter, map, file);
+	}
+
+	/**
+	 * Writes the complete map and removes its journal. A journal is started
+	 * for the written file if journaled saving is enabled, the replaced file
+	 * and its journal are moved to the backups then instead of copying the
+	 * file before it is saved for the first time.
+	 */
+	private void writeMap(final MapWriter mapWriter, final MapModel map, final File file) throws IOException {
+		final File journalFile = MapJournal.journalFile(file);
+		final boolean journaled = MapJournal.isEnabled();
+		File backupFile = null;
+		if (journaled && file.exists()) {
+			final int backupFileNumber = ResourceController.getResourceController().getIntProperty(BACKUP_FILE_NUMBER, 0);
+			final File backupDir = MFileManager.backupDir(file);
+			backupDir.mkdir();
+			if (backupDir.exists()) {
+				backupFile = MFileManager.renameBackupFiles(backupDir, file, backupFileNumber, BACKUP_EXTENSION);
+			}
+		}
+		if (!writeToFile(mapWriter, map, file, backupFile)) {
+			throw new IOException("can not replace " + file);
+		}
+		if (backupFile == null || !journalFile.renameTo(MapJournal.journalFile(backupFile))) {
+			journalFile.delete();
+		}
+		if (journaled) {
+			map.putExtension(new MapJournal(file, 0));
+		}
+		else {
+			map.removeExtension(MapJournal.class);
+		}
+	}
+
+	/**
+	 * Replays the journal of the file loaded into the map. A journal which does
+	 * not belong to the file or can not be replayed is renamed, so that it is
+	 * neither replayed nor overwritten again.
+	 */
+	private void loadJournal(final MapModel map, final File file) throws IOException {
+		final File journalFile = MapJournal.journalFile(file);
+		if (journalFile.exists()) {
+			final File invalidJournalFile = new File(journalFile.getPath() + ".invalid");
+			try {
+				final MapJournal journal = MapJournal.replay(map, file);
+				if (journal != null) {
+					map.addExtension(journal);
+					return;
 				}
-				tmpFile.renameTo(file);
+				LogUtils.warn("journal " + journalFile + " does not belong to the map file, it is renamed");
+				invalidJournalFile.delete();
+				journalFile.renameTo(invalidJournalFile);
+			}
+			catch (final Exception e) {
+				invalidJournalFile.delete();
+				journalFile.renameTo(invalidJournalFile);
+				final IOException exception = new IOException("journal " + journalFile + " can not be replayed");
+				exception.initCause(e);
+				throw exception;
 			}
 		}
+		if (MapJournal.isEnabled() && MapJournal.hasNodeIDs(map.getRootNode())) {
+			map.addExtension(new MapJournal(file, 0));
+		}
 	}
 	
-	private boolean isValidMapFile(File file) {
+	private static boolean isValidMapFile(File file) {
 		try {
 			RandomAccessFile raf = new RandomAccessFile(file, "r");
 			try {
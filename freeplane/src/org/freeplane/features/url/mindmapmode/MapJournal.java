@@ -0,0 +1,441 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.EncryptionModel;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapReader;
+import org.freeplane.features.map.MapWriter;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * Saves the changes of a map into an append-only journal next to the map file
+ * instead of writing the complete map.
+ *
+ * Each save appends a block containing the ids of the deleted nodes and the
+ * xml of the inserted, moved and changed nodes without their children. The
+ * journal belongs to the version of the map file it has been started for, it
+ * is replayed when the map is loaded and it is merged into the map file when
+ * it becomes large or when the map is closed.
+ *
+ * The nodes are recorded for every node change event, so a block may contain
+ * nodes which have only been refreshed. Changes of encrypted nodes and of the
+ * map itself can not be journaled, the complete map is written then.
+ */
+class MapJournal implements IExtension {
+	static final String JOURNALED_SAVE_PROPERTY = "journaled_save";
+	static final String JOURNAL_EXTENSION = "journal";
+	private static final int JOURNAL_MARK = 0x46504a31;
+	private static final int BLOCK_MARK = 0x424c4b31;
+	private static final int HEADER_LENGTH = 4 + 8 + 8;
+	private static final int BLOCK_OVERHEAD = 4 + 4 + 8;
+	// the journal is merged into the map file when it becomes larger than this part of the map file
+	private static final int MAX_JOURNAL_PART = 4;
+
+	private static class NodePosition implements Comparable<NodePosition> {
+		final NodeModel node;
+		final int[] path;
+
+		NodePosition(final NodeModel node, final int[] path) {
+			this.node = node;
+			this.path = path;
+		}
+
+		public int compareTo(final NodePosition other) {
+			final int length = Math.min(path.length, other.path.length);
+			for (int i = 0; i < length; i++) {
+				if (path[i] != other.path[i]) {
+					return path[i] < other.path[i] ? -1 : 1;
+				}
+			}
+			return path.length - other.path.length;
+		}
+	}
+
+	static boolean isEnabled() {
+		return ResourceController.getResourceController().getBooleanProperty(JOURNALED_SAVE_PROPERTY);
+	}
+
+	static File journalFile(final File file) {
+		return new File(file.getPath() + '.' + JOURNAL_EXTENSION);
+	}
+
+	/**
+	 * Only maps all nodes of which have ids can be journaled, the nodes are
+	 * found by their ids when the journal is replayed.
+	 */
+	static boolean hasNodeIDs(final NodeModel node) {
+		if (node.getID() == null) {
+			return false;
+		}
+		// nodes kept unloaded are only kept if all of them have ids
+		if (!node.areChildrenLoaded()) {
+			return true;
+		}
+		for (final NodeModel child : node.getChildren()) {
+			if (!hasNodeIDs(child)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the journal of the file to the map which has just been loaded
+	 * from the file. Returns null if the journal has been started for another
+	 * version of the file. An incomplete last block, which is left if saving
+	 * has been interrupted, is ignored and cut off.
+	 */
+	static MapJournal replay(final MapModel map, final File file) throws IOException, XMLException {
+		final File journalFile = journalFile(file);
+		final long maxLength = journalFile.length();
+		long validLength = HEADER_LENGTH;
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+		try {
+			try {
+				if (in.readInt() != JOURNAL_MARK || in.readLong() != file.length()
+				        || in.readLong() != file.lastModified()) {
+					return null;
+				}
+			}
+			catch (final EOFException e) {
+				return null;
+			}
+			for (;;) {
+				final byte[] block = readBlock(in, maxLength);
+				if (block == null) {
+					break;
+				}
+				replayBlock(map, block);
+				validLength += BLOCK_OVERHEAD + block.length;
+			}
+		}
+		finally {
+			in.close();
+		}
+		if (validLength < maxLength) {
+			final RandomAccessFile journal = new RandomAccessFile(journalFile, "rw");
+			try {
+				journal.setLength(validLength);
+			}
+			finally {
+				journal.close();
+			}
+		}
+		return new MapJournal(file, validLength);
+	}
+
+	private static byte[] readBlock(final DataInputStream in, final long maxLength) throws IOException {
+		try {
+			if (in.readInt() != BLOCK_MARK) {
+				return null;
+			}
+			final int length = in.readInt();
+			if (length < 0 || length > maxLength) {
+				return null;
+			}
+			final byte[] block = new byte[length];
+			in.readFully(block);
+			final CRC32 crc = new CRC32();
+			crc.update(block);
+			if (in.readLong() != crc.getValue()) {
+				return null;
+			}
+			return block;
+		}
+		catch (final EOFException e) {
+			return null;
+		}
+	}
+
+	private static void replayBlock(final MapModel map, final byte[] block) throws IOException, XMLException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+		final String[] deletedIDs = new String[in.readInt()];
+		for (int i = 0; i < deletedIDs.length; i++) {
+			deletedIDs[i] = readString(in);
+		}
+		final int nodeCount = in.readInt();
+		final String[] ids = new String[nodeCount];
+		final String[] parentIDs = new String[nodeCount];
+		final int[] indices = new int[nodeCount];
+		final String[] xmls = new String[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			ids[i] = readString(in);
+			parentIDs[i] = readString(in);
+			indices[i] = in.readInt();
+			xmls[i] = readString(in);
+		}
+		// saved nodes may have been moved out of deleted nodes, so they are detached first
+		for (final String id : ids) {
+			final NodeModel node = map.getNodeForID(id);
+			if (node != null && node.getParentNode() != null) {
+				node.removeFromParent();
+			}
+		}
+		for (final String id : deletedIDs) {
+			final NodeModel node = map.getNodeForID(id);
+			if (node != null) {
+				if (node.getParentNode() != null) {
+					node.removeFromParent();
+				}
+				map.unregistryNodes(node);
+			}
+		}
+		final MapReader mapReader = Controller.getCurrentModeController().getMapController().getMapReader();
+		for (int i = 0; i < nodeCount; i++) {
+			final boolean isRoot = parentIDs[i].length() == 0;
+			final NodeModel parent = isRoot ? null : map.getNodeForID(parentIDs[i]);
+			if (!isRoot && (parent == null || indices[i] > parent.getChildCount())) {
+				throw new IOException("journal does not match the map at node " + ids[i]);
+			}
+			final NodeModel oldNode = isRoot ? map.getRootNode() : map.getNodeForID(ids[i]);
+			final List<NodeModel> children;
+			if (oldNode != null) {
+				children = new ArrayList<NodeModel>(oldNode.getChildren());
+				for (final NodeModel child : children) {
+					oldNode.remove(child);
+				}
+				map.unregistryNodes(oldNode);
+			}
+			else {
+				children = Collections.emptyList();
+			}
+			// hooks existing once for a map are only read for a node directly in the map element
+			final String xml = isRoot ? "<map>" + xmls[i] + "</map>" : xmls[i];
+			final NodeModel node = mapReader.createNodeTreeFromXml(map, new StringReader(xml), Mode.FILE);
+			for (final NodeModel child : children) {
+				node.insert(child, -1);
+			}
+			if (isRoot) {
+				map.setRoot(node);
+			}
+			else {
+				parent.insert(node, indices[i]);
+			}
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeString(final DataOutputStream out, final String string) throws IOException {
+		final byte[] bytes = string.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static boolean isEncrypted(final NodeModel node) {
+		for (NodeModel ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+			if (EncryptionModel.getModel(ancestor) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	final private File file;
+	final private long fileLength;
+	final private long fileLastModified;
+	private long journalLength;
+	final private Set<NodeModel> changedNodes = new LinkedHashSet<NodeModel>();
+	final private Set<String> deletedNodeIDs = new LinkedHashSet<String>();
+	private boolean mapWriteRequired = false;
+
+	/**
+	 * Starts a journal for the file as it is now, journalLength is the length
+	 * of its journal file or 0 if it has none.
+	 */
+	MapJournal(final File file, final long journalLength) {
+		this.file = file;
+		this.fileLength = file.length();
+		this.fileLastModified = file.lastModified();
+		this.journalLength = journalLength;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	boolean hasEntries() {
+		return journalLength > 0;
+	}
+
+	void nodeChanged(final NodeModel node) {
+		changedNodes.add(node);
+	}
+
+	void nodeInserted(final NodeModel node) {
+		changedNodes.add(node);
+		for (final NodeModel child : node.getChildren()) {
+			nodeInserted(child);
+		}
+	}
+
+	void nodeMoved(final NodeModel oldParent, final NodeModel node) {
+		if (isEncrypted(oldParent)) {
+			mapWriteRequired = true;
+		}
+		changedNodes.add(node);
+	}
+
+	void nodeDeleted(final NodeModel parent, final NodeModel node) {
+		if (isEncrypted(parent)) {
+			mapWriteRequired = true;
+		}
+		final String id = node.getID();
+		if (id != null) {
+			deletedNodeIDs.add(id);
+		}
+	}
+
+	void mapChanged() {
+		mapWriteRequired = true;
+	}
+
+	/**
+	 * Appends the changes recorded since the last save to the journal. Returns
+	 * false if they can not be journaled or if the journal should be merged
+	 * into the map, the complete map has to be written then.
+	 */
+	boolean append(final MapWriter mapWriter, final MapModel map, final File file) throws IOException {
+		if (!isEnabled() || mapWriteRequired || !this.file.equals(file) || file.length() != fileLength
+		        || file.lastModified() != fileLastModified) {
+			return false;
+		}
+		final File journalFile = journalFile(file);
+		if (journalFile.length() != journalLength) {
+			return false;
+		}
+		final List<NodePosition> positions = changedNodesInTreeOrder(map.getRootNode());
+		if (positions == null || positions.isEmpty() && deletedNodeIDs.isEmpty()) {
+			return false;
+		}
+		final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+		final DataOutputStream block = new DataOutputStream(blockBytes);
+		block.writeInt(deletedNodeIDs.size());
+		for (final String id : deletedNodeIDs) {
+			writeString(block, id);
+		}
+		block.writeInt(positions.size());
+		for (final NodePosition position : positions) {
+			final NodeModel node = position.node;
+			final NodeModel parent = node.getParentNode();
+			writeString(block, node.createID());
+			writeString(block, parent == null ? "" : parent.createID());
+			block.writeInt(parent == null ? 0 : position.path[position.path.length - 1]);
+			final StringWriter xml = new StringWriter();
+			mapWriter.writeNodeAsXml(xml, node, Mode.FILE, true, false, false);
+			writeString(block, xml.toString());
+		}
+		block.flush();
+		final byte[] bytes = blockBytes.toByteArray();
+		final long newJournalLength = Math.max(journalLength, HEADER_LENGTH) + BLOCK_OVERHEAD + bytes.length;
+		if (newJournalLength > fileLength / MAX_JOURNAL_PART) {
+			return false;
+		}
+		final boolean startsJournal = journalLength == 0;
+		final FileOutputStream out = new FileOutputStream(journalFile, !startsJournal);
+		try {
+			final DataOutputStream journal = new DataOutputStream(new BufferedOutputStream(out));
+			if (startsJournal) {
+				journal.writeInt(JOURNAL_MARK);
+				journal.writeLong(fileLength);
+				journal.writeLong(fileLastModified);
+			}
+			final CRC32 crc = new CRC32();
+			crc.update(bytes);
+			journal.writeInt(BLOCK_MARK);
+			journal.writeInt(bytes.length);
+			journal.write(bytes);
+			journal.writeLong(crc.getValue());
+			journal.flush();
+			out.getFD().sync();
+		}
+		catch (final IOException e) {
+			// the journal may end with a partially written block now
+			mapWriteRequired = true;
+			throw e;
+		}
+		finally {
+			out.close();
+		}
+		journalLength = newJournalLength;
+		changedNodes.clear();
+		deletedNodeIDs.clear();
+		return true;
+	}
+
+	/**
+	 * Returns the changed nodes which are still in the map sorted so that
+	 * parents come before their children and siblings are ordered by their
+	 * index, or null if an encrypted node has been changed.
+	 */
+	private List<NodePosition> changedNodesInTreeOrder(final NodeModel root) {
+		final List<NodePosition> positions = new ArrayList<NodePosition>(changedNodes.size());
+		final List<Integer> path = new ArrayList<Integer>();
+		for (final NodeModel node : changedNodes) {
+			if (isEncrypted(node)) {
+				return null;
+			}
+			path.clear();
+			NodeModel ancestor = node;
+			for (NodeModel parent = node.getParentNode(); parent != null; parent = ancestor.getParentNode()) {
+				path.add(parent.getChildPosition(ancestor));
+				ancestor = parent;
+			}
+			if (ancestor != root) {
+				continue;
+			}
+			final int[] pathFromRoot = new int[path.size()];
+			for (int i = 0; i < pathFromRoot.length; i++) {
+				pathFromRoot[i] = path.get(pathFromRoot.length - 1 - i);
+			}
+			positions.add(new NodePosition(node, pathFromRoot));
+		}
+		Collections.sort(positions);
+		return positions;
+	}
+}
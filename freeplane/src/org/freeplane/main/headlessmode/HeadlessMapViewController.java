@@ -108,6 +108,16 @@ public class HeadlessMapViewController implements IMapViewManager {
 		return true;
 	}
 
+	public boolean close(MapModel map, boolean withoutSave) {
+		for(Map.Entry<String, MapModel> entry : maps.entrySet()) {
+			if(entry.getValue() == map) {
+				changeToMapView(entry.getKey());
+				return close(withoutSave);
+			}
+		}
+		return false;
+	}
+
 	public String createHtmlMap() {
 		return "";
 	}
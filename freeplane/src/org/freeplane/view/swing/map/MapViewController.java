@@ -274,6 +274,16 @@ public class MapViewController implements IMapViewManager , IMapViewChangeListen
 		return true;
 	}
 
+	public boolean close(final MapModel map, final boolean force) {
+		for (final MapView mapView : mapViewVector) {
+			if (mapView.getModel() == map) {
+				changeToMapView(mapView);
+				return close(force);
+			}
+		}
+		return false;
+	}
+
 	public String createHtmlMap() {
 		final MapModel model = getModel();
 		final ClickableImageCreator creator = new ClickableImageCreator(model.getRootNode(), getMapView()
@@ -1,5 +1,6 @@
 package org.freeplane.plugin.formula;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import org.freeplane.features.attribute.NodeAttributeTableModel;
@@ -17,6 +18,9 @@ import org.freeplane.plugin.script.FormulaUtils;
 
 /** cares for updating formula nodes on change of other nodes. */
 public class FormulaUpdateChangeListener implements INodeChangeListener, IMapChangeListener{
+	/** filled by the threads changing the maps, swapped in the thread of the view controller, guarded by this. */
+	private LinkedHashSet<NodeModel> nodesToRefresh = new LinkedHashSet<NodeModel>();
+
 	public void nodeChanged(NodeChangeEvent event) {
 		Object property = event.getProperty();
 		// Note: this doesn't mean that other properties are not interesting here (e.g. links, edges, ...)
@@ -64,9 +68,37 @@ public class FormulaUpdateChangeListener implements INodeChangeListener, IMapCha
 		//			return;
 		//		}
 		final List<NodeModel> dependencies = FormulaUtils.manageChangeAndReturnDependencies(includeChanged, nodes);
-		for (NodeModel dependentNode : dependencies) {
-			modeController.getMapController().delayedNodeRefresh(dependentNode, IContentTransformer.class,
-			    null, null);
+		if (dependencies.isEmpty())
+			return;
+		final boolean startRefresh;
+		synchronized (this) {
+			startRefresh = nodesToRefresh.isEmpty();
+			nodesToRefresh.addAll(dependencies);
+		}
+		if (startRefresh) {
+			Controller.getCurrentController().getViewController().invokeLater(new Runnable() {
+				public void run() {
+					refreshDependencies(modeController);
+				}
+			});
+		}
+	}
+
+	/** refreshes all formula nodes collected since the last refresh in one batch.
+	 * Each node is refreshed after the nodes it depends on, so evaluation of the refreshed formulas
+	 * finds their arguments already evaluated in the formula cache instead of evaluating them recursively.
+	 * Formulas are evaluated in the thread of the view controller because scripts access the map without synchronization,
+	 * it is the event dispatch thread or the model thread of the headless mode which also changes the maps of the remote server. */
+	private void refreshDependencies(final ModeController modeController) {
+		final LinkedHashSet<NodeModel> changedNodes;
+		synchronized (this) {
+			changedNodes = nodesToRefresh;
+			nodesToRefresh = new LinkedHashSet<NodeModel>();
+		}
+		if (Controller.getCurrentModeController() != modeController)
+			return;
+		for (NodeModel node : FormulaUtils.sortTopologically(changedNodes)) {
+			modeController.getMapController().nodeRefresh(node, IContentTransformer.class, null, null);
 		}
 	}
 }
@@ -4,7 +4,9 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.INodeSelectionListener;
@@ -16,11 +18,14 @@ import org.freeplane.features.mode.mindmapmode.MModeController;
 import org.freeplane.plugin.remote.client.actors.ApplyChangesActor;
 import org.freeplane.plugin.remote.client.actors.InitCollaborationActor;
 import org.freeplane.plugin.remote.client.actors.ListenForUpdatesActor;
+import org.freeplane.plugin.remote.client.actors.SendOperationsActor;
 import org.freeplane.plugin.remote.client.listeners.MapChangeListener;
 import org.freeplane.plugin.remote.client.listeners.NodeChangeListener;
 import org.freeplane.plugin.remote.client.listeners.NodeViewListener;
 import org.freeplane.plugin.remote.client.services.DocearOnlineWs;
 import org.freeplane.plugin.remote.client.services.WS;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.MapUpdate;
 
 import scala.concurrent.duration.Duration;
 import akka.actor.Actor;
@@ -47,6 +52,7 @@ public class ClientController {
 	private final ActorRef listenForUpdatesActor;
 	private final ActorRef applyChangeActor;
 	private final ActorRef initCollaborationactor;
+	private final ActorRef sendOperationsActor;
 
 	private final WS webservice;
 	private User user = null;
@@ -54,6 +60,10 @@ public class ClientController {
 	private final String sourceString;
 	private boolean isUpdating = false;
 
+	// ids of nodes created here must not collide with ids created by other clients
+	private final String nodeIdPrefix = "ID_" + UUID.randomUUID().toString().replace("-", "") + "_";
+	private final AtomicLong nodeIdCounter = new AtomicLong();
+
 	private final Map<NodeModel, NodeViewListener> selectedNodesMap = new HashMap<NodeModel, NodeViewListener>();
 
 	@SuppressWarnings("serial")
@@ -96,6 +106,12 @@ public class ClientController {
 				return new InitCollaborationActor(ClientController.this);
 			}
 		}), "initCollaboration");
+		sendOperationsActor = system.actorOf(new Props(new UntypedActorFactory() {
+			@Override
+			public Actor create() throws Exception {
+				return new SendOperationsActor(ClientController.this);
+			}
+		}), "operationSender");
 
 		webservice = TypedActor.get(system).typedActorOf(new TypedProps<DocearOnlineWs>(WS.class, new Creator<DocearOnlineWs>() {
 
@@ -126,10 +142,10 @@ public class ClientController {
 			final Map<NodeModel, NodeViewListener> selectedNodesMap = clientController.selectedNodesMap();
 			for (Map.Entry<NodeModel, NodeViewListener> nodePair : selectedNodesMap.entrySet()) {
 				final Map<String, Object> attributeValueMap = nodePair.getValue().getChangedAttributes();
-				final User user = clientController.getUser();
 
 				for (Map.Entry<String, Object> entry : attributeValueMap.entrySet()) {
-					clientController.webservice().changeNode(user.getUsername(), user.getAccessToken(), "5", nodePair.getKey().getID(), entry.getKey(), entry.getValue());
+					clientController.sendOperation(new ChangeNodeAttributeUpdate(clientController.source(), ClientController.loggedInUserName(), nodePair.getKey().getID(), entry.getKey(), entry
+							.getValue()));
 				}
 
 				nodePair.getValue().updateCurrentState();
@@ -162,8 +178,7 @@ public class ClientController {
 					final Map<String, Object> attributeValueMap = listener.getChangedAttributes();
 
 					for (Map.Entry<String, Object> entry : attributeValueMap.entrySet()) {
-						webservice().changeNode(user.getUsername(), user.getAccessToken(), "5", node.getID(), entry.getKey(), entry.getValue());
-
+						sendOperation(new ChangeNodeAttributeUpdate(source(), loggedInUserName(), node.getID(), entry.getKey(), entry.getValue()));
 					}
 
 					node.removeViewer(listener);
@@ -178,6 +193,7 @@ public class ClientController {
 		Patterns.gracefulStop(applyChangeActor, Duration.create(5, TimeUnit.SECONDS), system());
 		Patterns.gracefulStop(listenForUpdatesActor, Duration.create(5, TimeUnit.SECONDS), system());
 		Patterns.gracefulStop(initCollaborationactor, Duration.create(5, TimeUnit.SECONDS), system());
+		Patterns.gracefulStop(sendOperationsActor, Duration.create(5, TimeUnit.SECONDS), system());
 		system.shutdown();
 	}
 
@@ -197,6 +213,20 @@ public class ClientController {
 		return webservice;
 	}
 
+	/**
+	 * queues the operation, it is sent to the webservice asynchronously
+	 */
+	public void sendOperation(MapUpdate operation) {
+		sendOperationsActor.tell(operation, null);
+	}
+
+	/**
+	 * returns a new node id which is unique across all clients
+	 */
+	public String createNodeId() {
+		return nodeIdPrefix + nodeIdCounter.incrementAndGet();
+	}
+
 	public String source() {
 		return sourceString;
 	}
@@ -229,6 +259,10 @@ public class ClientController {
 		return listenForUpdatesActor;
 	}
 
+	public ActorRef sendOperationsActor() {
+		return sendOperationsActor;
+	}
+
 	public Map<NodeModel, NodeViewListener> selectedNodesMap() {
 		return selectedNodesMap;
 	}
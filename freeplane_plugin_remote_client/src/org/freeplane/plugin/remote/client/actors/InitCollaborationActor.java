@@ -82,6 +82,7 @@ public class InitCollaborationActor extends FreeplaneClientActor {
 			final ActorRef listenForUpdatesActor = getClientController().listenForUpdatesActor();
 			listenForUpdatesActor.tell(new SetMapAndRevision(mapId, currentRevision), getSelf());
 			listenForUpdatesActor.tell("listen", getSelf());
+			getClientController().sendOperationsActor().tell(new SendOperationsActor.Messages.SetMap(mapId), getSelf());
 
 			final ActorSystem system = getContext().system();
 			system.scheduler().schedule(Duration.Zero(), Duration.create(1, TimeUnit.SECONDS), new CheckForChangesRunnable(getClientController()), system.dispatcher());
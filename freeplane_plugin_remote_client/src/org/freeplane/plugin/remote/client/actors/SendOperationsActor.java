@@ -0,0 +1,172 @@
+package org.freeplane.plugin.remote.client.actors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.plugin.remote.client.ClientController;
+import org.freeplane.plugin.remote.client.User;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.MapUpdate;
+
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import akka.actor.ActorSystem;
+import akka.actor.Status;
+import akka.pattern.Patterns;
+
+/**
+ * Queues the local changes of the map and sends them to the webservice in
+ * batches, so editing never waits for the server.
+ *
+ * Changes arriving within a short delay are sent together. Changes of the same
+ * attribute of a node that are still queued are merged into one. Only one
+ * batch is on its way at a time, so the server applies the operations in the
+ * order they were made. A batch that could not be delivered is sent again with
+ * the same batch id, the server does not apply a batch twice.
+ */
+public class SendOperationsActor extends FreeplaneClientActor {
+	private static final int MAX_BATCH_SIZE = 500;
+	private static final long FLUSH_DELAY_MS = 100;
+	private static final long MAX_RETRY_DELAY_MS = 30000;
+
+	private final List<MapUpdate> pendingOperations = new ArrayList<MapUpdate>();
+	// position of the queued change of a node attribute in pendingOperations
+	private final Map<List<String>, Integer> pendingChangeIndexes = new HashMap<List<String>, Integer>();
+
+	private String mapId;
+	private List<MapUpdate> sentOperations;
+	private long sentBatchId = 0;
+	private boolean flushScheduled = false;
+	private long retryDelay = FLUSH_DELAY_MS;
+
+	public SendOperationsActor(ClientController clientController) {
+		super(clientController);
+	}
+
+	@Override
+	public void onReceive(Object message) throws Exception {
+		if (message instanceof Messages.SetMap) {
+			mapId = ((Messages.SetMap) message).getMapId();
+			scheduleFlush();
+		} else if (message instanceof MapUpdate) {
+			enqueue((MapUpdate) message);
+			scheduleFlush();
+		} else if (message instanceof Messages.Flush) {
+			flushScheduled = false;
+			sendNextBatch();
+		} else if (message instanceof Messages.Retry) {
+			sendBatch();
+		} else if (message instanceof ApplyOperationsResponse) {
+			onResponse((ApplyOperationsResponse) message);
+		} else if (message instanceof Status.Failure) {
+			final Throwable cause = ((Status.Failure) message).cause();
+			LogUtils.warn("sending batch " + sentBatchId + " failed, retrying in " + retryDelay + " ms: " + cause.getMessage());
+			final ActorSystem system = getContext().system();
+			system.scheduler().scheduleOnce(Duration.create(retryDelay, TimeUnit.MILLISECONDS), getSelf(), new Messages.Retry(), system.dispatcher());
+			retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+		}
+	}
+
+	private void enqueue(MapUpdate operation) {
+		if (operation instanceof ChangeNodeAttributeUpdate) {
+			final List<String> key = changeKey((ChangeNodeAttributeUpdate) operation);
+			final Integer index = pendingChangeIndexes.get(key);
+			if (index != null) {
+				pendingOperations.set(index, operation);
+				return;
+			}
+			pendingChangeIndexes.put(key, pendingOperations.size());
+		}
+		pendingOperations.add(operation);
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled || pendingOperations.isEmpty()) {
+			return;
+		}
+		flushScheduled = true;
+		final ActorSystem system = getContext().system();
+		system.scheduler().scheduleOnce(Duration.create(FLUSH_DELAY_MS, TimeUnit.MILLISECONDS), getSelf(), new Messages.Flush(), system.dispatcher());
+	}
+
+	private void sendNextBatch() {
+		if (sentOperations != null || pendingOperations.isEmpty() || mapId == null || getClientController().getUser() == null) {
+			return;
+		}
+		final int batchSize = Math.min(MAX_BATCH_SIZE, pendingOperations.size());
+		final List<MapUpdate> remainingOperations = new ArrayList<MapUpdate>(pendingOperations.subList(batchSize, pendingOperations.size()));
+		sentOperations = new ArrayList<MapUpdate>(pendingOperations.subList(0, batchSize));
+		sentBatchId++;
+		setPendingOperations(remainingOperations);
+		sendBatch();
+	}
+
+	private void sendBatch() {
+		final List<String> operations = new ArrayList<String>(sentOperations.size());
+		for (MapUpdate operation : sentOperations) {
+			operations.add(operation.toJson());
+		}
+		final User user = getClientController().getUser();
+		final Future<ApplyOperationsResponse> future = getClientController().webservice().applyOperations(user.getUsername(), user.getAccessToken(), mapId, sentBatchId, operations);
+		Patterns.pipe(future, getContext().system().dispatcher()).to(getSelf());
+	}
+
+	private void onResponse(ApplyOperationsResponse response) {
+		if (sentOperations == null || response.getBatchId() != sentBatchId) {
+			return;
+		}
+		retryDelay = FLUSH_DELAY_MS;
+		final int appliedCount = response.getAppliedOperationCount();
+		if (appliedCount < sentOperations.size()) {
+			// drop the rejected operation, the ones behind it are sent again
+			LogUtils.warn("operation rejected by server: " + response.getError());
+			final List<MapUpdate> operations = new ArrayList<MapUpdate>(sentOperations.subList(appliedCount + 1, sentOperations.size()));
+			operations.addAll(pendingOperations);
+			setPendingOperations(operations);
+		}
+		sentOperations = null;
+		sendNextBatch();
+	}
+
+	private void setPendingOperations(List<MapUpdate> operations) {
+		pendingOperations.clear();
+		pendingChangeIndexes.clear();
+		for (MapUpdate operation : operations) {
+			enqueue(operation);
+		}
+	}
+
+	private static List<String> changeKey(ChangeNodeAttributeUpdate update) {
+		return Arrays.asList(update.getNodeId(), update.getAttribute());
+	}
+
+	public final static class Messages {
+		private Messages() {
+		}
+
+		public static class SetMap {
+			private final String mapId;
+
+			public SetMap(String mapId) {
+				super();
+				this.mapId = mapId;
+			}
+
+			public String getMapId() {
+				return mapId;
+			}
+		}
+
+		public static class Flush {
+		}
+
+		public static class Retry {
+		}
+	}
+}
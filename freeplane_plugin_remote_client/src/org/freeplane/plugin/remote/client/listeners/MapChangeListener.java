@@ -5,11 +5,10 @@ import org.freeplane.features.map.IMapChangeListener;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.plugin.remote.client.ClientController;
-import org.freeplane.plugin.remote.client.User;
-import org.freeplane.plugin.remote.client.services.WS;
-
-import scala.concurrent.Await;
-import scala.concurrent.duration.Duration;
+import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.MoveNodeUpdate;
 
 public class MapChangeListener implements IMapChangeListener {
 	private final ClientController clientController;
@@ -35,7 +34,7 @@ public class MapChangeListener implements IMapChangeListener {
 	public void onNodeMoved(NodeModel oldParent, int oldIndex, NodeModel newParent, NodeModel child, int newIndex) {
 		if (!isUpdating()) {
 			LogUtils.info("Node Moved. Sending to Webservice");
-			webservice().moveNodeTo(user().getUsername(), user().getAccessToken(), "5", newParent.getID(), child.getID(), newIndex);
+			clientController.sendOperation(new MoveNodeUpdate(source(), username(), newParent.getID(), child.getID(), newIndex));
 		}
 	}
 
@@ -43,13 +42,25 @@ public class MapChangeListener implements IMapChangeListener {
 	public void onNodeInserted(NodeModel parent, NodeModel child, int newIndex) {
 		if (!isUpdating()) {
 			LogUtils.info("Node Added. Sending to Webservice");
-			try {
-				final String newNodeId = Await.result(webservice().createNode(user().getUsername(), user().getAccessToken(), "5", parent.getID()), Duration.create("10 seconds"));
-				child.setID(newNodeId);
-			} catch (Exception e) {
-				e.printStackTrace();
-				throw new RuntimeException(e);
-			}
+			sendAddedNode(parent, child);
+		}
+	}
+
+	/**
+	 * gives the node and its children ids unique across all clients and
+	 * queues their creation, so the server uses the same ids without a
+	 * roundtrip
+	 */
+	private void sendAddedNode(NodeModel parent, NodeModel node) {
+		node.setID(clientController.createNodeId());
+		final AddNodeUpdate.Side side = parent.isRoot() ? (node.isLeft() ? AddNodeUpdate.Side.Left : AddNodeUpdate.Side.Right) : null;
+		clientController.sendOperation(new AddNodeUpdate(source(), username(), parent.getID(), node.getID(), null, side));
+		final String text = node.getText();
+		if (text != null && text.length() > 0) {
+			clientController.sendOperation(new ChangeNodeAttributeUpdate(source(), username(), node.getID(), "nodeText", text));
+		}
+		for (NodeModel child : node.getChildren()) {
+			sendAddedNode(node, child);
 		}
 	}
 
@@ -57,7 +68,7 @@ public class MapChangeListener implements IMapChangeListener {
 	public void onNodeDeleted(NodeModel parent, NodeModel child, int index) {
 		if (!isUpdating()) {
 			LogUtils.info("Node Deleted. Sending to Webservice");
-			webservice().removeNode(user().getUsername(), user().getAccessToken(), "5", child.getID());
+			clientController.sendOperation(new DeleteNodeUpdate(source(), username(), child.getID()));
 		}
 
 	}
@@ -67,15 +78,15 @@ public class MapChangeListener implements IMapChangeListener {
 
 	}
 
-	private WS webservice() {
-		return clientController.webservice();
+	private String source() {
+		return clientController.source();
 	}
 
-	private boolean isUpdating() {
-		return clientController.isUpdating();
+	private String username() {
+		return ClientController.loggedInUserName();
 	}
 
-	private User user() {
-		return clientController.getUser();
+	private boolean isUpdating() {
+		return clientController.isUpdating();
 	}
 }
@@ -4,8 +4,7 @@ import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.INodeChangeListener;
 import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.plugin.remote.client.ClientController;
-import org.freeplane.plugin.remote.client.User;
-import org.freeplane.plugin.remote.client.services.WS;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
 
 public class NodeChangeListener implements INodeChangeListener {
 	private final ClientController clientController;
@@ -25,7 +24,8 @@ public class NodeChangeListener implements INodeChangeListener {
 
 			if (event.getProperty() != null && event.getProperty().equals("node_text")) {
 				LogUtils.info("node_text");
-				webservice().changeNode(user().getUsername(), user().getAccessToken(), "5", event.getNode().getID(), "nodeText", event.getNewValue());
+				clientController.sendOperation(new ChangeNodeAttributeUpdate(clientController.source(), ClientController.loggedInUserName(), event.getNode().getID(), "nodeText",
+						event.getNewValue()));
 				// final ListenableFuture<Boolean> future =
 				// webservice().changeNode("5", event.getNode().getID(),
 				// "nodeText", event.getNewValue());
@@ -50,10 +50,6 @@ public class NodeChangeListener implements INodeChangeListener {
 		}
 	}
 
-	public WS webservice() {
-		return clientController.webservice();
-	}
-
 	public boolean isUpdating() {
 		return clientController.isUpdating();
 	}
@@ -61,8 +57,4 @@ public class NodeChangeListener implements INodeChangeListener {
 	public void isUpdating(boolean value) {
 		clientController.isUpdating(value);
 	}
-	
-	private User user() {
-		return clientController.getUser();
-	}
 }
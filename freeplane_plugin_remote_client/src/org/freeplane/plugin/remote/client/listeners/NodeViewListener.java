@@ -12,9 +12,8 @@ import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.plugin.remote.client.ClientController;
-import org.freeplane.plugin.remote.client.User;
-import org.freeplane.plugin.remote.client.services.WS;
 import org.freeplane.plugin.remote.v10.model.NodeModelDefault;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
 import org.freeplane.view.swing.features.filepreview.ExternalResource;
 import org.freeplane.view.swing.map.MapView;
 import org.freeplane.view.swing.map.NodeView;
@@ -81,7 +80,7 @@ public class NodeViewListener extends NodeView implements INodeView {
 				final Object property = event.getProperty();
 				if (property.toString().contains("FOLDING")) {
 					LogUtils.info("folding");
-					webservice().changeNode(user().getUsername(), user().getAccessToken(), "5", event.getNode().getID(), "folded", event.getNewValue());
+					sendChange(event.getNode().getID(), "folded", event.getNewValue());
 //					final ListenableFuture<Boolean> future = webservice().changeNode("5", event.getNode().getID(), "folded", event.getNewValue());
 //					Futures.addCallback(future, new FutureCallback<Boolean>() {
 //
@@ -103,7 +102,7 @@ public class NodeViewListener extends NodeView implements INodeView {
 				// note
 				else if(property.equals("note_text")) {
 					LogUtils.info("note_text");
-					webservice().changeNode(user().getUsername(), user().getAccessToken(), "5", event.getNode().getID(), "note", event.getNewValue());
+					sendChange(event.getNode().getID(), "note", event.getNewValue());
 				}
 				// images
 				else if (property.equals(ExternalResource.class)) {
@@ -174,15 +173,11 @@ public class NodeViewListener extends NodeView implements INodeView {
 		return attributes;
 	}
 
-	private WS webservice() {
-		return clientController.webservice();
+	private void sendChange(String nodeId, String attribute, Object value) {
+		clientController.sendOperation(new ChangeNodeAttributeUpdate(clientController.source(), ClientController.loggedInUserName(), nodeId, attribute, value));
 	}
 
 	private boolean isUpdating() {
 		return clientController.isUpdating();
 	}
-	
-	private User user() {
-		return clientController.getUser();
-	}
 }
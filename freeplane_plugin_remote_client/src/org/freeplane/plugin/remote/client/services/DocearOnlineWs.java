@@ -16,6 +16,7 @@ import org.apache.commons.io.output.NullOutputStream;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.plugin.remote.client.ClientController;
 import org.freeplane.plugin.remote.client.User;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
 import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
 import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
 import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
@@ -230,6 +231,27 @@ public class DocearOnlineWs implements WS {
 		}
 	}
 
+	@Override
+	public Future<ApplyOperationsResponse> applyOperations(String username, String accessToken, final String mapId, final long batchId, final List<String> operations) {
+		try {
+			final WebResource resource = preparedResource(username, accessToken).path("map/" + mapId + "/applyOperations");
+			final MultivaluedMap<String, String> formData = new MultivaluedMapImpl();
+			formData.add("batchId", batchId + "");
+			formData.add("operationsJson", new ObjectMapper().writeValueAsString(operations));
+
+			final ClientResponse response = resource.post(ClientResponse.class, formData);
+			if (response.getStatus() != 200) {
+				return Futures.failed(new Exception("applyOperations failed with status " + response.getStatus()));
+			}
+			final JsonNode json = new ObjectMapper().readTree(response.getEntity(String.class));
+			final JsonNode error = json.get("error");
+			return Futures.successful(new ApplyOperationsResponse(json.get("batchId").asLong(), json.get("appliedOperationCount").asInt(), json.get("currentRevision").asInt(),
+					error == null || error.isNull() ? null : error.asText()));
+		} catch (Exception e) {
+			return Futures.failed(e);
+		}
+	}
+
 	private Future<Boolean> lockNode(String username, String accessToken, final String mapId, final String nodeId) {
 		final WebResource resource = preparedResource(username, accessToken).path("map/" + mapId + "/node/requestLock");
 		final MultivaluedMap<String, String> formData = new MultivaluedMapImpl();
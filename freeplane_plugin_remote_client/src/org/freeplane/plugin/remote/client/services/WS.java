@@ -1,6 +1,9 @@
 package org.freeplane.plugin.remote.client.services;
 
+import java.util.List;
+
 import org.freeplane.plugin.remote.client.User;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
 
 import scala.concurrent.Future;
 
@@ -27,5 +30,10 @@ public interface WS {
 	Future<Boolean> removeNode(String username, String accessToken, String mapId, String nodeId);
 	Future<Boolean> changeNode(String username, String accessToken, String mapId, String nodeId, String attribute, Object value);
 	
+	/**
+	 * applies the operations (map updates as json) in their order
+	 */
+	Future<ApplyOperationsResponse> applyOperations(String username, String accessToken, String mapId, long batchId, List<String> operations);
+	
 	
 }
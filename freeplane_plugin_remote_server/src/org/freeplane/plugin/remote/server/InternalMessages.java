@@ -4,18 +4,17 @@ import java.io.Serializable;
 
 public class InternalMessages {
 
+	/**
+	 * sent to a map actor when the next lock of its map expires
+	 */
 	@SuppressWarnings("serial")
 	public static class ReleaseTimedOutLocks implements Serializable {
-		private final Long millisecondsSinceRequest;
-
-		public ReleaseTimedOutLocks(Long millisecondsSinceRequest) {
-			super();
-			this.millisecondsSinceRequest = millisecondsSinceRequest;
-		}
-
-		public Long getMillisecondsSinceRequest() {
-			return millisecondsSinceRequest;
-		}
+	}
 
+	/**
+	 * sent to a map actor to push the collected updates to its subscribers
+	 */
+	@SuppressWarnings("serial")
+	public static class FlushUpdates implements Serializable {
 	}
-}
+}
\ No newline at end of file
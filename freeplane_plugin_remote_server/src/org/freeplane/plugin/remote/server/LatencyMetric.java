@@ -0,0 +1,56 @@
+package org.freeplane.plugin.remote.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the calls of an operation and sums up their durations. Can be
+ * recorded and read from any thread.
+ */
+public class LatencyMetric {
+	private final String name;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public LatencyMetric(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * records a call which started at the given {@link System#nanoTime()}
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public void record(long nanos) {
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMeanMicros() {
+		final long calls = count.get();
+		return calls == 0 ? 0 : totalNanos.get() / calls / 1000;
+	}
+
+	public long getMaxMicros() {
+		return maxNanos.get() / 1000;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + getCount() + " calls, mean " + getMeanMicros() + " us, max " + getMaxMicros() + " us";
+	}
+}
@@ -0,0 +1,154 @@
+package org.freeplane.plugin.remote.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.remote.v10.model.LockModel;
+
+/**
+ * Locks on the nodes of one open map. The lock of a node is kept as
+ * {@link LockModel} extension of the node and in the lock table of the map.
+ *
+ * A lock expires when it has not been refreshed within the timeout. Every lock
+ * has exactly one entry in a delay queue. Refreshing a lock does not touch the
+ * queue, instead an entry which is due for a refreshed lock is queued again
+ * with the new expiry time. Finding the expired locks therefore only visits
+ * the due entries instead of all locks of the map.
+ *
+ * Locks are changed by the actor of the map only, the lock table can be read
+ * from any thread.
+ */
+public class MapLockManager {
+	public static final long DEFAULT_TIMEOUT_MS = 15000;
+
+	private static final LatencyMetric requestLatency = new LatencyMetric("lock request");
+	private static final LatencyMetric releaseLatency = new LatencyMetric("lock release");
+
+	private static class Expiry implements Delayed {
+		final NodeModel node;
+		final LockModel lock;
+		final long expiryTime;
+
+		Expiry(NodeModel node, LockModel lock, long expiryTime) {
+			this.node = node;
+			this.lock = lock;
+			this.expiryTime = expiryTime;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(expiryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			final long otherExpiryTime = ((Expiry) other).expiryTime;
+			return expiryTime < otherExpiryTime ? -1 : (expiryTime == otherExpiryTime ? 0 : 1);
+		}
+	}
+
+	private final long timeoutMs;
+	private final ConcurrentMap<NodeModel, LockModel> locks;
+	private final DelayQueue<Expiry> expiries;
+
+	public MapLockManager() {
+		this(DEFAULT_TIMEOUT_MS);
+	}
+
+	public MapLockManager(long timeoutMs) {
+		this.timeoutMs = timeoutMs;
+		this.locks = new ConcurrentHashMap<NodeModel, LockModel>();
+		this.expiries = new DelayQueue<Expiry>();
+	}
+
+	/**
+	 * the lock of the node, or null
+	 */
+	public LockModel getLock(NodeModel node) {
+		return locks.get(node);
+	}
+
+	public int getLockCount() {
+		return locks.size();
+	}
+
+	/**
+	 * locks the node for the user, the node must not be locked
+	 */
+	public void lock(NodeModel node, String username) {
+		final LockModel lock = new LockModel(username, System.currentTimeMillis());
+		if (locks.putIfAbsent(node, lock) != null) {
+			throw new AssertionError("Tried to add Lock to a Node with a Lock present");
+		}
+		node.addExtension(lock);
+		expiries.add(new Expiry(node, lock, lock.getLastAccess() + timeoutMs));
+	}
+
+	/**
+	 * postpones the expiry of the lock of the node, if there is one
+	 */
+	public void refresh(NodeModel node) {
+		final LockModel lock = locks.get(node);
+		if (lock != null) {
+			lock.setLastAccess(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * removes the lock of the node, its queue entry is dropped when it is due
+	 */
+	public void unlock(NodeModel node) {
+		if (locks.remove(node) == null) {
+			throw new AssertionError("Tried to remove Lock from a Node without a Lock");
+		}
+		node.removeExtension(LockModel.class);
+	}
+
+	/**
+	 * returns the nodes whose locks have expired, the locks are not removed
+	 */
+	public List<NodeModel> getExpiredLocks() {
+		final List<NodeModel> expiredNodes = new ArrayList<NodeModel>();
+		Expiry expiry;
+		while ((expiry = expiries.poll()) != null) {
+			if (locks.get(expiry.node) != expiry.lock) {
+				// released or locked again in the meantime
+				continue;
+			}
+			final long expiryTime = expiry.lock.getLastAccess() + timeoutMs;
+			if (expiryTime > expiry.expiryTime) {
+				// refreshed since the entry was queued
+				expiries.add(new Expiry(expiry.node, expiry.lock, expiryTime));
+			} else {
+				expiredNodes.add(expiry.node);
+			}
+		}
+		return expiredNodes;
+	}
+
+	/**
+	 * milliseconds until the next queued lock expiry is due, or -1 if no lock
+	 * is queued
+	 */
+	public long getDelayUntilNextExpiry() {
+		final Expiry next = expiries.peek();
+		if (next == null) {
+			return -1;
+		}
+		return Math.max(0, next.getDelay(TimeUnit.MILLISECONDS));
+	}
+
+	public static LatencyMetric getRequestLatency() {
+		return requestLatency;
+	}
+
+	public static LatencyMetric getReleaseLatency() {
+		return releaseLatency;
+	}
+}
@@ -0,0 +1,181 @@
+package org.freeplane.plugin.remote.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.MapUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.MoveNodeUpdate;
+
+/**
+ * Append only list of the updates of a map. Every added update or batch of
+ * updates increases the revision by one.
+ *
+ * An update is superseded if a later update deletes its node, or if it is an
+ * attribute change and the same attribute of the node is changed later.
+ * Superseded updates are never sent to clients. Therefore the sequence numbers
+ * of the last delete of each node and of the last change of each attribute
+ * are indexed, so that the superseded updates are found in constant time.
+ *
+ * Because the superseding update is always newer than the superseded one,
+ * every fetch containing the superseded update contains the superseding
+ * update too. Superseded updates are therefore removed from the log when it
+ * has doubled its size since the last compaction.
+ */
+public class MapUpdateLog implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_COMPACTION_SIZE = 1000;
+
+	private static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final int revision;
+		// position in the list of all updates ever added
+		final int sequence;
+		final MapUpdate update;
+		final String json;
+
+		Entry(int revision, int sequence, MapUpdate update) {
+			this.revision = revision;
+			this.sequence = sequence;
+			this.update = update;
+			this.json = update.toJson();
+		}
+	}
+
+	private final List<Entry> entries;
+	private final Map<String, Integer> lastDeleteSequences;
+	private final Map<List<String>, Integer> lastAttributeChangeSequences;
+	private int currentRevision;
+	private int nextSequence;
+	private int sizeAfterCompaction;
+
+	public MapUpdateLog() {
+		entries = new ArrayList<Entry>();
+		lastDeleteSequences = new HashMap<String, Integer>();
+		lastAttributeChangeSequences = new HashMap<List<String>, Integer>();
+		currentRevision = 0;
+		nextSequence = 0;
+		sizeAfterCompaction = 0;
+	}
+
+	/**
+	 * number of updates and batches of updates added so far
+	 */
+	public int getCurrentRevision() {
+		return currentRevision;
+	}
+
+	/**
+	 * adds the update and returns its json representation
+	 */
+	public String add(MapUpdate update) {
+		return addAll(Collections.singletonList(update)).get(0);
+	}
+
+	/**
+	 * adds the updates with one common revision and returns their json
+	 * representations
+	 */
+	public List<String> addAll(List<? extends MapUpdate> updates) {
+		final List<String> jsons = new ArrayList<String>(updates.size());
+		if (updates.isEmpty()) {
+			return jsons;
+		}
+		for (MapUpdate update : updates) {
+			final Entry entry = new Entry(currentRevision, nextSequence++, update);
+			if (update instanceof DeleteNodeUpdate) {
+				lastDeleteSequences.put(((DeleteNodeUpdate) update).getNodeId(), entry.sequence);
+			} else if (update instanceof ChangeNodeAttributeUpdate) {
+				lastAttributeChangeSequences.put(attributeKey((ChangeNodeAttributeUpdate) update), entry.sequence);
+			}
+			entries.add(entry);
+			jsons.add(entry.json);
+		}
+		currentRevision++;
+
+		if (entries.size() >= MIN_COMPACTION_SIZE && entries.size() >= 2 * sizeAfterCompaction) {
+			compact();
+		}
+		return jsons;
+	}
+
+	/**
+	 * returns the json of all updates since the given revision which are
+	 * not superseded by later updates
+	 */
+	public List<String> getUpdatesAsJson(int sinceRevision) {
+		final List<String> updates = new ArrayList<String>();
+		for (int i = findFirstEntry(sinceRevision); i < entries.size(); i++) {
+			final Entry entry = entries.get(i);
+			if (!isSuperseded(entry)) {
+				updates.add(entry.json);
+			}
+		}
+		return updates;
+	}
+
+	private void compact() {
+		final List<Entry> remainingEntries = new ArrayList<Entry>(entries.size());
+		for (Entry entry : entries) {
+			if (!isSuperseded(entry)) {
+				remainingEntries.add(entry);
+			}
+		}
+		RemoteController.getLogger().debug("MapUpdateLog.compact => {} of {} updates remain", remainingEntries.size(), entries.size());
+		entries.clear();
+		entries.addAll(remainingEntries);
+		sizeAfterCompaction = entries.size();
+	}
+
+	private boolean isSuperseded(Entry entry) {
+		final MapUpdate update = entry.update;
+		if (update instanceof AddNodeUpdate) {
+			return isDeletedAfter(((AddNodeUpdate) update).getNewNodeId(), entry.sequence);
+		} else if (update instanceof ChangeNodeAttributeUpdate) {
+			final ChangeNodeAttributeUpdate changeUpdate = (ChangeNodeAttributeUpdate) update;
+			return isDeletedAfter(changeUpdate.getNodeId(), entry.sequence)
+					|| isAfter(lastAttributeChangeSequences.get(attributeKey(changeUpdate)), entry.sequence);
+		} else if (update instanceof MoveNodeUpdate) {
+			return isDeletedAfter(((MoveNodeUpdate) update).getNodetoMoveId(), entry.sequence);
+		}
+		return false;
+	}
+
+	private boolean isDeletedAfter(String nodeId, int sequence) {
+		return isAfter(lastDeleteSequences.get(nodeId), sequence);
+	}
+
+	private static boolean isAfter(Integer laterSequence, int sequence) {
+		return laterSequence != null && laterSequence > sequence;
+	}
+
+	private static List<String> attributeKey(ChangeNodeAttributeUpdate update) {
+		return Arrays.asList(update.getNodeId(), update.getAttribute());
+	}
+
+	/**
+	 * binary search for the position of the first entry with a revision not
+	 * smaller than the given one, entries are sorted by revision
+	 */
+	private int findFirstEntry(int revision) {
+		int low = 0;
+		int high = entries.size();
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (entries.get(middle).revision < revision) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,95 @@
+package org.freeplane.plugin.remote.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UpdateBatch;
+
+import akka.actor.ActorRef;
+
+/**
+ * Actors subscribed to the updates of a map. Each subscriber receives all
+ * updates since its last batch in one {@link UpdateBatch}, as long as it has
+ * not more unacknowledged batches than it allowed.
+ *
+ * Only used by the actor of the map.
+ */
+public class MapUpdateSubscribers {
+
+	private static class Subscription {
+		final String mapId;
+		final int maxUnacknowledgedBatches;
+		int sentRevision;
+		int unacknowledgedBatches;
+
+		Subscription(String mapId, int sinceRevision, int maxUnacknowledgedBatches) {
+			this.mapId = mapId;
+			this.sentRevision = sinceRevision;
+			this.maxUnacknowledgedBatches = Math.max(1, maxUnacknowledgedBatches);
+			this.unacknowledgedBatches = 0;
+		}
+	}
+
+	private final MapUpdateLog updateLog;
+	private final Map<ActorRef, Subscription> subscriptions;
+
+	public MapUpdateSubscribers(MapUpdateLog updateLog) {
+		this.updateLog = updateLog;
+		this.subscriptions = new LinkedHashMap<ActorRef, Subscription>();
+	}
+
+	public boolean isEmpty() {
+		return subscriptions.isEmpty();
+	}
+
+	/**
+	 * registers the subscriber and sends the updates it has missed since the
+	 * given revision
+	 */
+	public void subscribe(String mapId, ActorRef subscriber, int sinceRevision, int maxUnacknowledgedBatches, ActorRef mapActor) {
+		final Subscription subscription = new Subscription(mapId, sinceRevision, maxUnacknowledgedBatches);
+		subscriptions.put(subscriber, subscription);
+		send(subscriber, subscription, mapActor);
+	}
+
+	public void unsubscribe(ActorRef subscriber) {
+		subscriptions.remove(subscriber);
+	}
+
+	/**
+	 * frees one batch of the subscriber and sends the updates collected in the
+	 * meantime
+	 */
+	public void acknowledge(ActorRef subscriber, ActorRef mapActor) {
+		final Subscription subscription = subscriptions.get(subscriber);
+		if (subscription == null) {
+			return;
+		}
+		if (subscription.unacknowledgedBatches > 0) {
+			subscription.unacknowledgedBatches--;
+		}
+		send(subscriber, subscription, mapActor);
+	}
+
+	/**
+	 * sends the new updates to all subscribers which accept another batch
+	 */
+	public void flush(ActorRef mapActor) {
+		for (Map.Entry<ActorRef, Subscription> entry : subscriptions.entrySet()) {
+			send(entry.getKey(), entry.getValue(), mapActor);
+		}
+	}
+
+	private void send(ActorRef subscriber, Subscription subscription, ActorRef mapActor) {
+		final int currentRevision = updateLog.getCurrentRevision();
+		if (subscription.sentRevision >= currentRevision
+				|| subscription.unacknowledgedBatches >= subscription.maxUnacknowledgedBatches) {
+			return;
+		}
+		final UpdateBatch batch = new UpdateBatch(subscription.mapId, subscription.sentRevision, currentRevision,
+				updateLog.getUpdatesAsJson(subscription.sentRevision));
+		subscriber.tell(batch, mapActor);
+		subscription.sentRevision = currentRevision;
+		subscription.unacknowledgedBatches++;
+	}
+}
@@ -3,37 +3,54 @@ package org.freeplane.plugin.remote.server;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.docear.messages.Messages.ListenToUpdateOccurrenceRespone;
-import org.freeplane.features.map.NodeModel;
-import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
-import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
-import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.plugin.remote.server.InternalMessages.FlushUpdates;
+import org.freeplane.plugin.remote.server.InternalMessages.ReleaseTimedOutLocks;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
 import org.freeplane.plugin.remote.v10.model.updates.MapUpdate;
-import org.freeplane.plugin.remote.v10.model.updates.MoveNodeUpdate;
 
+import scala.concurrent.duration.Duration;
 import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
 
 public class OpenMindmapInfo implements Serializable {
 	private static final long serialVersionUID = 1L;
+	// updates added within this time are pushed to subscribers in one batch
+	private static final long UPDATE_COALESCING_DELAY_MS = 20;
 
 	private final URL mapUrl;
-	private final Set<NodeModel> lockedNodes;
-	private long lastAccessTime;
+	private final MapModel map;
+	private final ActorRef mapActor;
+	private final MapLockManager lockManager;
+	private boolean lockExpiryScheduled;
+	// read by the main actor to find unused maps
+	private volatile long lastAccessTime;
 	private long lastUpdateTime;
 	private final String name;
-	private final List<MapUpdate> updateList;
+	private final MapUpdateLog updateLog;
 	private final List<ActorRef> listeningActors;
+	private final MapUpdateSubscribers updateSubscribers;
+	private boolean flushScheduled;
+	private final Map<String, ApplyOperationsResponse> lastOperationBatchResponses;
 
-	public OpenMindmapInfo(URL mapUrl, String name) {
+	public OpenMindmapInfo(URL mapUrl, String name, MapModel map, ActorRef mapActor) {
 		this.mapUrl = mapUrl;
 		this.name = name;
-		this.lockedNodes = new HashSet<NodeModel>();
-		this.updateList = new ArrayList<MapUpdate>();
+		this.map = map;
+		this.mapActor = mapActor;
+		this.lockManager = new MapLockManager();
+		this.lockExpiryScheduled = false;
+		this.updateLog = new MapUpdateLog();
 		this.listeningActors = new ArrayList<ActorRef>();
+		this.updateSubscribers = new MapUpdateSubscribers(updateLog);
+		this.flushScheduled = false;
+		this.lastOperationBatchResponses = new HashMap<String, ApplyOperationsResponse>();
 		updateAccessTime();
 	}
 
@@ -42,21 +59,46 @@ public class OpenMindmapInfo implements Serializable {
 		return mapUrl;
 	}
 
-	public Set<NodeModel> getLockedNodes() {
-		updateUpdateTime();
-		return lockedNodes;
+	/**
+	 * the freeplane map, requests use it directly instead of selecting it in the controller.
+	 */
+	public MapModel getMap() {
+		updateAccessTime();
+		return map;
 	}
-	
-	public void addLockedNode(NodeModel freeplaneNode) {
+
+	/**
+	 * the actor processing all requests for this map.
+	 */
+	public ActorRef getMapActor() {
+		return mapActor;
+	}
+
+	public MapLockManager getLockManager() {
 		updateAccessTime();
-		updateUpdateTime();
-		lockedNodes.add(freeplaneNode);
+		return lockManager;
 	}
 	
-	public void removeLockedNode(NodeModel freeplaneNode) {
-		updateAccessTime();
-		updateUpdateTime();
-		lockedNodes.remove(freeplaneNode);
+	/**
+	 * lets the map actor release the locks when the next one expires, call
+	 * after adding a lock and after releasing the expired ones
+	 */
+	public void scheduleLockExpiry() {
+		final long delay = lockManager.getDelayUntilNextExpiry();
+		// later locks never expire before the scheduled one
+		if (lockExpiryScheduled || delay < 0) {
+			return;
+		}
+		lockExpiryScheduled = true;
+		final ActorSystem system = RemoteController.getActorSystem();
+		system.scheduler().scheduleOnce(Duration.create(delay, TimeUnit.MILLISECONDS), mapActor, new ReleaseTimedOutLocks(), system.dispatcher());
+	}
+	
+	/**
+	 * called by the map actor when the scheduled lock expiry is due
+	 */
+	public void lockExpiryDue() {
+		lockExpiryScheduled = false;
 	}
 
 	public long getLastAccessTime() {
@@ -81,12 +123,32 @@ public class OpenMindmapInfo implements Serializable {
 	}
 	
 	public int getCurrentRevision() {
-		return updateList.size();
+		return updateLog.getCurrentRevision();
 	}
 	
-	public void addUpdate(MapUpdate updateStatement) {
+	/**
+	 * adds the update to the revision history and returns its json representation
+	 */
+	public String addUpdate(MapUpdate updateStatement) {
 		RemoteController.getLogger().debug("OpenMindmapInfo.addUpdate => update added: "+updateStatement.getClass().getSimpleName());
-		updateList.add(updateStatement);
+		final String updateJson = updateLog.add(updateStatement);
+		updatesAdded();
+		return updateJson;
+	}
+	
+	/**
+	 * adds the updates with one common revision and returns their json representations
+	 */
+	public List<String> addUpdates(List<? extends MapUpdate> updateStatements) {
+		RemoteController.getLogger().debug("OpenMindmapInfo.addUpdates => {} updates added", updateStatements.size());
+		final List<String> updateJsons = updateLog.addAll(updateStatements);
+		if (!updateStatements.isEmpty()) {
+			updatesAdded();
+		}
+		return updateJsons;
+	}
+	
+	private void updatesAdded() {
 		updateUpdateTime();
 		//tell listeners that change has happened
 		for(ActorRef ref : listeningActors) {
@@ -94,6 +156,39 @@ public class OpenMindmapInfo implements Serializable {
 		}
 		//empty list, because they have to register again
 		listeningActors.clear();
+		scheduleFlush();
+	}
+	
+	/**
+	 * response of the last operation batch applied for the source, or null
+	 */
+	public ApplyOperationsResponse getLastOperationBatchResponse(String source) {
+		return lastOperationBatchResponses.get(source);
+	}
+	
+	public void setLastOperationBatchResponse(String source, ApplyOperationsResponse response) {
+		lastOperationBatchResponses.put(source, response);
+	}
+	
+	public MapUpdateSubscribers getUpdateSubscribers() {
+		return updateSubscribers;
+	}
+	
+	/**
+	 * pushes the updates collected since the last flush to the subscribers
+	 */
+	public void flushUpdates() {
+		flushScheduled = false;
+		updateSubscribers.flush(mapActor);
+	}
+	
+	private void scheduleFlush() {
+		if (flushScheduled || updateSubscribers.isEmpty()) {
+			return;
+		}
+		flushScheduled = true;
+		final ActorSystem system = RemoteController.getActorSystem();
+		system.scheduler().scheduleOnce(Duration.create(UPDATE_COALESCING_DELAY_MS, TimeUnit.MILLISECONDS), mapActor, new FlushUpdates(), system.dispatcher());
 	}
 	
 	public void registerUpdateListener(ActorRef actor) {
@@ -105,73 +200,6 @@ public class OpenMindmapInfo implements Serializable {
 	}
 	
 	public List<String> getShortUpdateListAsJson(int sinceRevision) {
-		final List<String> shortList = new ArrayList<String>();
-		for(int i = sinceRevision; i < updateList.size(); i++) {
-			final MapUpdate update = updateList.get(i);
-			boolean hasMatch = false;
-			if(update instanceof AddNodeUpdate) {
-				hasMatch = hasMatch((AddNodeUpdate)update, i+1);
-			} else if(update instanceof ChangeNodeAttributeUpdate) {
-				hasMatch = hasMatch((ChangeNodeAttributeUpdate) update, i+1);
-			} else if(update instanceof MoveNodeUpdate) {
-				hasMatch = hasMatch((MoveNodeUpdate)update, i+1);
-			}
-
-			if(!hasMatch)
-				shortList.add(update.toJson());
-		}
-		return shortList;
-	}
-	
-	private boolean hasMatch(AddNodeUpdate update, int sinceRevision) {
-		//has to check, if node has been deleted in future
-		
-		for(int j = sinceRevision; j < updateList.size(); j++) { //check against all coming events
-			final MapUpdate curUpdate = updateList.get(j);
-			if(curUpdate instanceof DeleteNodeUpdate) {
-				final DeleteNodeUpdate delUpdate = (DeleteNodeUpdate)curUpdate;
-				if (delUpdate.getNodeId().equals(update.getNewNodeId())) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
-	private boolean hasMatch(ChangeNodeAttributeUpdate update, int sinceRevision) {
-		//has to check, if node has been deleted in future
-		//has to check, if attribute has been changed in future
-		
-		for(int j = sinceRevision; j < updateList.size(); j++) { //check against all coming events
-			final MapUpdate curUpdate = updateList.get(j);
-			if(curUpdate instanceof DeleteNodeUpdate) {
-				final DeleteNodeUpdate delUpdate = (DeleteNodeUpdate)curUpdate;
-				if (delUpdate.getNodeId().equals(update.getNodeId())) {
-					return true;
-				}
-			} else if(curUpdate instanceof ChangeNodeAttributeUpdate) {
-				final ChangeNodeAttributeUpdate changeUpdate =(ChangeNodeAttributeUpdate) curUpdate; 
-				if(changeUpdate.getNodeId().equals(update.getNodeId())
-						&& changeUpdate.getAttribute().equals(update.getAttribute())) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
-	private boolean hasMatch(MoveNodeUpdate update, int sinceRevision) {
-		//has to check, if node has been deleted in future
-		
-		for(int j = sinceRevision; j < updateList.size(); j++) { //check against all coming events
-			final MapUpdate curUpdate = updateList.get(j);
-			if(curUpdate instanceof DeleteNodeUpdate) {
-				final DeleteNodeUpdate delUpdate = (DeleteNodeUpdate)curUpdate;
-				if (delUpdate.getNodeId().equals(update.getNodetoMoveId())) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return updateLog.getUpdatesAsJson(sinceRevision);
 	}
 }
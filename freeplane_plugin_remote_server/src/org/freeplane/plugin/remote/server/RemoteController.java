@@ -1,15 +1,18 @@
 package org.freeplane.plugin.remote.server;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.docear.messages.Messages.CloseAllOpenMapsRequest;
 import org.docear.messages.Messages.CloseUnusedMaps;
 import org.freeplane.features.mapio.MapIO;
+import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
-import org.freeplane.plugin.remote.server.InternalMessages.ReleaseTimedOutLocks;
+import org.freeplane.features.ui.ViewController;
 import org.freeplane.plugin.remote.server.actors.MainActor;
 import org.freeplane.plugin.remote.server.v10.Actions;
 import org.jboss.netty.channel.ChannelException;
@@ -29,8 +32,8 @@ public class RemoteController {
 	private final ActorSystem system;
 	private final ActorRef mainActor;
 	private final Cancellable closeUnusedMapsJob;
-	private final Cancellable releaseExpiredLocksJob;
-	private final Map<String, OpenMindmapInfo> mapIdInfoMap = new HashMap<String, OpenMindmapInfo>();
+	// read by the map actors, changed by the main actor
+	private final Map<String, OpenMindmapInfo> mapIdInfoMap = new ConcurrentHashMap<String, OpenMindmapInfo>();
 	
 	private static RemoteController instance;
 	public static RemoteController getInstance() throws ChannelException{
@@ -64,18 +67,6 @@ public class RemoteController {
 							}
 						}, system.dispatcher());
 		
-		releaseExpiredLocksJob = 
-				system.scheduler().schedule(
-						Duration.Zero(), 
-						Duration.apply(5, TimeUnit.SECONDS), 
-						new Runnable() {
-							@Override
-							public void run() {
-								logger.trace("Scheduling release of locks that timed out.");
-								mainActor.tell(new ReleaseTimedOutLocks(15000L), null); // 15 seconds
-							}
-						}, system.dispatcher());
-		
 		//set back to original class loader
 		Thread.currentThread().setContextClassLoader(contextClassLoader);
 	}
@@ -88,10 +79,10 @@ public class RemoteController {
 		getLogger().info("Shutting down remote plugin...");
 		RemoteController controller = getInstance();
 		controller.closeUnusedMapsJob.cancel();
-		controller.releaseExpiredLocksJob.cancel();
 		controller.mainActor.tell(PoisonPill.getInstance(), null);
-		controller.system.shutdown();
+		// before the shutdown, so that the map actors still get their poison pills
 		controller.closeMaps();
+		controller.system.shutdown();
 		instance = null;
 	}
 	
@@ -99,6 +90,39 @@ public class RemoteController {
 		Actions.closeAllOpenMaps(new CloseAllOpenMapsRequest("self", ""));
 	}
 
+	/**
+	 * runs an action changing the freeplane model on the thread of the view
+	 * controller and waits for its result. The map actors process requests of
+	 * different maps in parallel, but the model listeners (formulas, styles,
+	 * caches) are shared by all maps and must not be called concurrently.
+	 */
+	public static <T> T callOnModelThread(final Callable<T> action) throws Exception {
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		if (viewController.isDispatchThread()) {
+			return action.call();
+		}
+		final AtomicReference<T> result = new AtomicReference<T>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		viewController.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(action.call());
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		});
+		final Throwable e = failure.get();
+		if (e instanceof Exception) {
+			throw (Exception) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return result.get();
+	}
+
 	public static ModeController getModeController() {
 		return MModeController.getMModeController();
 	}
@@ -0,0 +1,188 @@
+package org.freeplane.plugin.remote.server.actors;
+
+import java.util.concurrent.Callable;
+
+import org.docear.messages.Messages.AddNodeRequest;
+import org.docear.messages.Messages.ChangeNodeRequest;
+import org.docear.messages.Messages.FetchMindmapUpdatesRequest;
+import org.docear.messages.Messages.GetNodeRequest;
+import org.docear.messages.Messages.ListenToUpdateOccurrenceRequest;
+import org.docear.messages.Messages.MindmapAsJsonRequest;
+import org.docear.messages.Messages.MindmapAsXmlRequest;
+import org.docear.messages.Messages.MoveNodeToRequest;
+import org.docear.messages.Messages.ReleaseLockRequest;
+import org.docear.messages.Messages.RemoveNodeRequest;
+import org.docear.messages.Messages.RequestLockRequest;
+import org.docear.messages.exceptions.LockNotFoundException;
+import org.docear.messages.exceptions.MapNotFoundException;
+import org.docear.messages.exceptions.NodeAlreadyLockedException;
+import org.docear.messages.exceptions.NodeNotFoundException;
+import org.freeplane.plugin.remote.server.InternalMessages.FlushUpdates;
+import org.freeplane.plugin.remote.server.InternalMessages.ReleaseTimedOutLocks;
+import org.freeplane.plugin.remote.server.RemoteController;
+import org.freeplane.plugin.remote.server.v10.Actions;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsRequest;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.SubscribeToUpdatesRequest;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UnsubscribeFromUpdatesRequest;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UpdateBatchAcknowledgement;
+import org.slf4j.Logger;
+
+import akka.actor.ActorRef;
+import akka.actor.Status;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+
+/**
+ * Processes all requests for one open map. The MainActor forwards the
+ * requests, so the response goes directly to the original sender.
+ *
+ * Requests for the same map are processed one after another, requests for
+ * different maps run in parallel. Changes of the map itself are run on the
+ * model thread, see {@link RemoteController#callOnModelThread(Callable)}.
+ */
+public class MapActor extends UntypedActor {
+
+	private final String mapId;
+
+	public MapActor(String mapId) {
+		this.mapId = mapId;
+	}
+
+	@Override
+	public void onReceive(final Object message) throws Exception {
+		final Logger logger = RemoteController.getLogger();
+		final ActorRef sender = getSender();
+
+		if (!(message instanceof ReleaseTimedOutLocks || message instanceof FlushUpdates || message instanceof UpdateBatchAcknowledgement)) {
+			logger.info("MapActor.onReceive => '{}' received for map '{}'.", message.getClass().getName(), mapId);
+		}
+
+		Object response = null;
+		try {
+			// get map as json
+			if (message instanceof MindmapAsJsonRequest) {
+				response = Actions.getMapModelJson((MindmapAsJsonRequest) message);
+			}
+
+			// get map as xml
+			else if (message instanceof MindmapAsXmlRequest) {
+				response = Actions.getMapModelXml((MindmapAsXmlRequest) message);
+			}
+
+			// add, change, move or remove nodes, apply batch of client operations
+			else if (isModelChange(message)) {
+				response = RemoteController.callOnModelThread(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return changeModel(message);
+					}
+				});
+			}
+
+			// get node from map
+			else if (message instanceof GetNodeRequest) {
+				response = Actions.getNode((GetNodeRequest) message);
+			}
+
+			// release lock
+			else if (message instanceof ReleaseLockRequest) {
+				response = Actions.releaseLock((ReleaseLockRequest) message);
+			}
+
+			// request lock
+			else if (message instanceof RequestLockRequest) {
+				response = Actions.requestLock((RequestLockRequest) message);
+			}
+
+			// get updates since specific revision
+			else if (message instanceof FetchMindmapUpdatesRequest) {
+				response = Actions.fetchUpdatesSinceRevision((FetchMindmapUpdatesRequest) message);
+			}
+
+			// listen if update occurs
+			else if (message instanceof ListenToUpdateOccurrenceRequest) {
+				Actions.listenIfUpdateOccurs((ListenToUpdateOccurrenceRequest) message, sender);
+			}
+
+			// push updates to subscriber
+			else if (message instanceof SubscribeToUpdatesRequest) {
+				getContext().watch(sender);
+				Actions.subscribeToUpdates((SubscribeToUpdatesRequest) message, sender);
+			}
+
+			// subscriber accepts the next batch
+			else if (message instanceof UpdateBatchAcknowledgement) {
+				Actions.acknowledgeUpdates((UpdateBatchAcknowledgement) message, sender);
+			}
+
+			// stop pushing updates to subscriber
+			else if (message instanceof UnsubscribeFromUpdatesRequest) {
+				getContext().unwatch(sender);
+				Actions.unsubscribeFromUpdates((UnsubscribeFromUpdatesRequest) message, sender);
+			}
+
+			// push collected updates
+			else if (message instanceof FlushUpdates) {
+				Actions.flushUpdates(mapId);
+			}
+
+			// subscriber is gone
+			else if (message instanceof Terminated) {
+				Actions.removeUpdateSubscriber(mapId, ((Terminated) message).getActor());
+			}
+
+			// release timed out Locks of this map
+			else if (message instanceof ReleaseTimedOutLocks) {
+				Actions.releaseTimedOutLocks(mapId);
+			}
+		} catch (MapNotFoundException e) {
+			logger.warn("MapActor.onReceive => Map not found exception catched. ", e);
+			response = new Status.Failure(e);
+		} catch (NodeNotFoundException e) {
+			logger.warn("MapActor.onReceive => Node not found exception catched. ", e);
+			response = new Status.Failure(e);
+		} catch (NodeAlreadyLockedException e) {
+			logger.warn("MapActor.onReceive => Node already locked exception catched. ", e);
+			response = new Status.Failure(e);
+		} catch (LockNotFoundException e) {
+			logger.warn("MapActor.onReceive => Lock not found exception catched. ", e);
+			response = new Status.Failure(e);
+		} catch (Exception e) {
+			logger.error("MapActor.onReceive => Unrecognized Exception! ", e);
+			response = new Status.Failure(e);
+		} catch (AssertionError e) {
+			logger.error("MapActor.onReceive => Something really bad happened! ", e);
+			response = new Status.Failure(e);
+		}
+
+		if (response != null) {
+			logger.debug("MapActor.onReceive => sending '{}' as response.", response.getClass().getName());
+			sender.tell(response, getSelf());
+		} else {
+			logger.trace("MapActor.onReceive => No response available");
+		}
+	}
+
+	private static boolean isModelChange(Object message) {
+		return message instanceof AddNodeRequest || message instanceof ChangeNodeRequest || message instanceof MoveNodeToRequest
+				|| message instanceof RemoveNodeRequest || message instanceof ApplyOperationsRequest;
+	}
+
+	/**
+	 * changes the map on the model thread. The actor waits for the change,
+	 * so the requests of one map are still processed in their order.
+	 */
+	private static Object changeModel(Object message) throws Exception {
+		if (message instanceof AddNodeRequest) {
+			return Actions.addNode((AddNodeRequest) message);
+		} else if (message instanceof ChangeNodeRequest) {
+			return Actions.changeNode((ChangeNodeRequest) message);
+		} else if (message instanceof MoveNodeToRequest) {
+			return Actions.moveNodeTo((MoveNodeToRequest) message);
+		} else if (message instanceof RemoveNodeRequest) {
+			return Actions.removeNode((RemoveNodeRequest) message);
+		} else {
+			return Actions.applyOperations((ApplyOperationsRequest) message);
+		}
+	}
+}
@@ -4,18 +4,16 @@ import static org.freeplane.plugin.remote.RemoteUtils.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.io.FileUtils;
 import org.docear.messages.Messages.AddNodeRequest;
 import org.docear.messages.Messages.AddNodeResponse;
 import org.docear.messages.Messages.ChangeNodeRequest;
@@ -43,25 +41,30 @@ import org.docear.messages.Messages.RemoveNodeRequest;
 import org.docear.messages.Messages.RemoveNodeResponse;
 import org.docear.messages.Messages.RequestLockRequest;
 import org.docear.messages.Messages.RequestLockResponse;
+import org.docear.messages.exceptions.ActionInConflictWithLockException;
 import org.docear.messages.exceptions.LockNotFoundException;
 import org.docear.messages.exceptions.MapNotFoundException;
 import org.docear.messages.exceptions.NodeAlreadyLockedException;
 import org.docear.messages.exceptions.NodeNotFoundException;
 import org.docear.messages.exceptions.NodeNotLockedByUserException;
-import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.MapWriter;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.mindmapmode.MMapController;
-import org.freeplane.features.mapio.MapIO;
 import org.freeplane.features.mapio.mindmapmode.MMapIO;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.n3.nanoxml.XMLException;
 import org.freeplane.plugin.remote.RemoteUtils;
-import org.freeplane.plugin.remote.server.InternalMessages.ReleaseTimedOutLocks;
+import org.freeplane.plugin.remote.server.MapLockManager;
 import org.freeplane.plugin.remote.server.OpenMindmapInfo;
 import org.freeplane.plugin.remote.server.RemoteController;
+import org.freeplane.plugin.remote.server.actors.MapActor;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsRequest;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.SubscribeToUpdatesRequest;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UnsubscribeFromUpdatesRequest;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UpdateBatchAcknowledgement;
+import org.freeplane.plugin.remote.v10.model.JsonMapWriter;
 import org.freeplane.plugin.remote.v10.model.LockModel;
-import org.freeplane.plugin.remote.v10.model.MapModel;
 import org.freeplane.plugin.remote.v10.model.NodeModelDefault;
 import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
 import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
@@ -71,15 +74,16 @@ import org.freeplane.plugin.remote.v10.model.updates.MoveNodeUpdate;
 import org.slf4j.Logger;
 
 import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class Actions {
 
-	private static final ObjectMapper objectMapper = new ObjectMapper();
-	private static String currentSelectedMapId = null;
 
 	/**
 	 * returns a map as a JSON-Object
@@ -91,7 +95,7 @@ public class Actions {
 	 *            the outstanding child nodes of the current node.
 	 * @return a map model
 	 */
-	public static MindmapAsJsonReponse getMapModelJson(MindmapAsJsonRequest request) throws MapNotFoundException {
+	public static MindmapAsJsonReponse getMapModelJson(MindmapAsJsonRequest request) throws MapNotFoundException, IOException {
 
 		final int nodeCount = request.getNodeCount();
 		final String mapId = request.getMapId();
@@ -99,31 +103,16 @@ public class Actions {
 		final boolean loadAllNodes = nodeCount == -1;
 
 		logger().debug("Actions.getMapModelJson => mapId:'{}'; nodeCount:{}; loadAllNodes:{}", mapId, nodeCount, loadAllNodes);
-		final ModeController modeController = modeController();
-
-		logger().debug("Actions.getMapModelJson => selecting map");
-		selectMap(mapId);
 
 		logger().debug("Actions.getMapModelJson => retrieving freeplane map");
-		org.freeplane.features.map.MapModel freeplaneMap = modeController.getController().getMap();
-		if (freeplaneMap == null) { // when not mapMode
-			logger().error("Actions.getMapModelJson => Current mode not MapMode!");
-			throw new AssertionError("Current mode not MapMode");
-		}
+		final org.freeplane.features.map.MapModel freeplaneMap = getOpenMap(mapId);
 
-		// create the MapModel for JSON
-		logger().debug("Actions.getMapModelJson => creating mapmodel for JSON-convertion");
 		final OpenMindmapInfo info = RemoteController.getMapIdInfoMap().get(mapId);
 		final String mapName = info.getName();
 		final int revision = info.getCurrentRevision();
-		MapModel mm = new MapModel(freeplaneMap, mapName, revision, loadAllNodes);
-
-		if (!loadAllNodes) {
-			RemoteUtils.loadNodesIntoModel(mm.root, nodeCount);
-		}
 
 		logger().debug("Actions.getMapModelJson => creating JSON string");
-		String result = mm.toJsonString();
+		final String result = JsonMapWriter.mapToJson(freeplaneMap, mapName, revision, nodeCount);
 
 		logger().debug("Actions.getMapModelJson => returning JSON string");
 		return new MindmapAsJsonReponse(result);
@@ -145,15 +134,10 @@ public class Actions {
 		final String mapId = request.getMapId();
 		logger().debug("Actions.getMapModelXml => mapId:'{}'", mapId);
 
-		logger().debug("Actions.getMapModelXml => selecting map");
-		selectMap(mapId);
+		logger().debug("Actions.getMapModelXml => retrieving freeplane map");
+		final org.freeplane.features.map.MapModel freeplaneMap = getOpenMap(mapId);
 
 		final ModeController modeController = modeController();
-		final org.freeplane.features.map.MapModel freeplaneMap = modeController.getController().getMap();
-		if (freeplaneMap == null) { // when not mapMode
-			logger().error("Actions.getMapModelXml => current mode not MapMode!");
-			throw new AssertionError("Current mode not MapMode");
-		}
 
 		logger().debug("Actions.getMapModelXml => serialising map to XML");
 		final StringWriter writer = new StringWriter();
@@ -174,16 +158,28 @@ public class Actions {
 		final String mapId = request.getMapId();
 		logger().debug("Actions.closeMap => mapId:'{}'", request.getMapId());
 
-		// select map
-		logger().debug("Actions.closeMap => selecting map");
-		selectMap(mapId);
+		logger().debug("Actions.closeMap => removing map info from MapIdInfoMap");
+		final OpenMindmapInfo info = openMindmapInfoMap().remove(mapId);
+		if (info == null) {
+			logger().error("Actions.closeMap => map not found");
+			throw new MapNotFoundException("Map with id " + mapId + " is not present.", mapId);
+		}
+
+		// requests already sent to the map actor are processed before it stops
+		logger().debug("Actions.closeMap => stopping map actor");
+		info.getMapActor().tell(PoisonPill.getInstance(), null);
 
-		// close and remove map
 		logger().debug("Actions.closeMap => closing map");
-		modeController().getController().close(true);
-
-		logger().debug("Actions.closeMap => removing map info from MapIdInfoMap");
-		openMindmapInfoMap().remove(mapId);
+		try {
+			RemoteController.callOnModelThread(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return modeController().getController().getMapViewManager().close(info.getMap(), true);
+				}
+			});
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
 	}
 
 	public static OpenMindMapResponse openMindmap(final OpenMindMapRequest request) {
@@ -192,37 +188,40 @@ public class Actions {
 		final String mapName = request.getMindmapFileName();
 		logger().debug("Actions.openMindmap => mapId: {}; mapName: {}; content:'{}...'", mapId, mapName, mapContent.substring(0, Math.min(mapContent.length(), 20)));
 
-		// create file
-		final Random ran = new Random();
-		final String filename = "" + System.currentTimeMillis() + ran.nextInt(100);
-		final String tempDirPath = System.getProperty("java.io.tmpdir");
-		final File file = new File(tempDirPath + "/docear/" + filename + ".mm");
-		logger().debug("Actions.openMindmap => temporary file '{}' was created", file.getAbsolutePath());
+		if (isMapPresent(mapId)) {
+			logger().debug("Actions.openMindmap => closing previously opened map with same id");
+			closeMap(new CloseMapRequest(request.getSource(), request.getUsername(), mapId));
+		}
 
 		try {
-			logger().debug("Actions.openMindmap => writing mindmap content to file");
-			FileUtils.writeStringToFile(file, mapContent);
-
-			// put map in openMap Collection
-			final URL pathURL = file.toURI().toURL();
-			final OpenMindmapInfo info = new OpenMindmapInfo(pathURL, mapName);
-			openMindmapInfoMap().put(mapId, info);
-			logger().debug("Actions.openMindmap => mindmap was put into openMindmapInfoMap ({} => {})", mapId, info.getMapUrl());
+			// the url only identifies the map, nothing is written to it
+			final URL pathURL = new File(System.getProperty("java.io.tmpdir"), "docear/" + mapId + ".mm").toURI().toURL();
 
 			// open map
 			logger().debug("Actions.openMindmap => opening mindmap...");
 			final MMapIO mio = (MMapIO) RemoteController.getMapIO();
-			mio.newMap(pathURL);
+			final org.freeplane.features.map.MapModel freeplaneMap = RemoteController.callOnModelThread(new Callable<org.freeplane.features.map.MapModel>() {
+				@Override
+				public org.freeplane.features.map.MapModel call() throws IOException, XMLException {
+					final org.freeplane.features.map.MapModel map = mio.newMap(new StringReader(mapContent), pathURL);
+					// the map actor reads and writes the nodes on its own thread
+					if (map != null) {
+						map.loadAllNodes();
+					}
+					return map;
+				}
+			});
+			if (freeplaneMap == null) {
+				throw new AssertionError("Map with url " + pathURL + " is already opened.");
+			}
 			logger().debug("Actions.openMindmap => map successfully loaded and opened!");
-		} catch (IOException e) {
-			throw new AssertionError(e);
-		} catch (URISyntaxException e) {
-			throw new AssertionError(e);
-		} catch (XMLException e) {
+
+			// put map in openMap Collection, from now on its requests are processed by its own actor
+			final OpenMindmapInfo info = new OpenMindmapInfo(pathURL, mapName, freeplaneMap, createMapActor(mapId));
+			openMindmapInfoMap().put(mapId, info);
+			logger().debug("Actions.openMindmap => mindmap was put into openMindmapInfoMap ({} => {})", mapId, info.getMapUrl());
+		} catch (Exception e) {
 			throw new AssertionError(e);
-		} finally {
-			logger().debug("Actions.closeMap => removing temporary file from file system");
-			file.delete();
 		}
 
 		return new OpenMindMapResponse(true);
@@ -251,6 +250,46 @@ public class Actions {
 		info.registerUpdateListener(sender);
 	}
 
+	/**
+	 * subscribes the sender to the updates of the map, the updates since the
+	 * requested revision are sent immediately
+	 */
+	public static void subscribeToUpdates(SubscribeToUpdatesRequest request, ActorRef sender) throws MapNotFoundException {
+		final String mapId = request.getMapId();
+		logger().debug("Actions.subscribeToUpdates => mapId: {}; sinceRevision: {}", mapId, request.getSinceRevision());
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		if (info == null)
+			throw new MapNotFoundException("Map with id " + mapId + " was not present", mapId);
+
+		info.getUpdateSubscribers().subscribe(mapId, sender, request.getSinceRevision(), request.getMaxUnacknowledgedBatches(), info.getMapActor());
+	}
+
+	public static void unsubscribeFromUpdates(UnsubscribeFromUpdatesRequest request, ActorRef sender) {
+		removeUpdateSubscriber(request.getMapId(), sender);
+	}
+
+	public static void removeUpdateSubscriber(String mapId, ActorRef subscriber) {
+		logger().debug("Actions.removeUpdateSubscriber => mapId: {}; subscriber: {}", mapId, subscriber.path());
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		if (info != null) {
+			info.getUpdateSubscribers().unsubscribe(subscriber);
+		}
+	}
+
+	public static void acknowledgeUpdates(UpdateBatchAcknowledgement request, ActorRef sender) {
+		final OpenMindmapInfo info = getOpenMindMapInfo(request.getMapId());
+		if (info != null) {
+			info.getUpdateSubscribers().acknowledge(sender, info.getMapActor());
+		}
+	}
+
+	public static void flushUpdates(String mapId) {
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		if (info != null) {
+			info.flushUpdates();
+		}
+	}
+
 	public static void closeServer(CloseServerRequest request) {
 		logger().debug("Actions.closeServer => no parameters");
 
@@ -299,20 +338,11 @@ public class Actions {
 
 		logger().debug("Actions.getNode => mapId:'{}'; nodeId:'{}'; nodeCount:{}; loadAllNodes:{}", mapId, nodeId, nodeCount, loadAllNodes);
 
-		logger().debug("Actions.getNode => selecting map");
-		selectMap(mapId);
-
 		logger().debug("Actions.getNode => retrieving freeplane node");
-		final NodeModel freeplaneNode = getNodeFromOpenMapById(mmapController(), nodeId);
-
-		logger().debug("Actions.getNode => loading into model to convert to JSON");
-		final NodeModelDefault node = new NodeModelDefault(freeplaneNode, loadAllNodes);
-		if (!loadAllNodes) {
-			RemoteUtils.loadNodesIntoModel(node, request.getNodeCount());
-		}
+		final NodeModel freeplaneNode = getNodeFromOpenMapById(getOpenMap(mapId), nodeId);
 
 		logger().debug("Actions.getNode => returning node as JSON");
-		return new GetNodeResponse(buildJSON(node));
+		return new GetNodeResponse(JsonMapWriter.nodeToJson(freeplaneNode, nodeCount));
 	}
 
 	public static AddNodeResponse addNode(AddNodeRequest request) throws MapNotFoundException, NodeNotFoundException, JsonGenerationException, JsonMappingException, IOException {
@@ -322,12 +352,9 @@ public class Actions {
 		final String parentNodeId = request.getParentNodeId();
 		logger().debug("Actions.addNode => mapId:'{}'; parentNodeId:'{}'", mapId, parentNodeId);
 
-		logger().debug("Actions.addNode => selecting map");
-		selectMap(mapId);
-
 		// get parent Node
 		logger().debug("Actions.addNode => retrieving freeplane parent node");
-		final NodeModel parentNode = getNodeFromOpenMapById(mmapController(), parentNodeId);
+		final NodeModel parentNode = getNodeFromOpenMapById(getOpenMap(mapId), parentNodeId);
 
 		// create new node
 		final NodeModel node = RemoteUtils.addNodeToOpenMap(mmapController(), parentNode);
@@ -335,8 +362,8 @@ public class Actions {
 		logger().debug("Actions.addNode => returning response with new node as json");
 		final String nodeJson = new NodeModelDefault(node, false).toJsonString();
 		final AddNodeUpdate update = new AddNodeUpdate(source, username, parentNodeId, node.getID(), nodeJson);
-		getOpenMindMapInfo(mapId).addUpdate(update);
-		return new AddNodeResponse(update.toJson());
+		final String updateJson = getOpenMindMapInfo(mapId).addUpdate(update);
+		return new AddNodeResponse(updateJson);
 	}
 
 	public static ChangeNodeResponse changeNode(final ChangeNodeRequest request) throws MapNotFoundException, NodeNotFoundException, NodeNotLockedByUserException {
@@ -347,12 +374,9 @@ public class Actions {
 		final String nodeId = request.getNodeId();
 		logger().debug("Actions.changeNode => mapId:'{}'; nodeId:'{}'; username: '{}'; attributes: '{}'", mapId, nodeId, username, attributeMap.toString());
 
-		logger().debug("Actions.changeNode => selecting map");
-		selectMap(mapId);
-
 		// get node
 		logger().debug("Actions.changeNode => retrieving node");
-		final NodeModel freeplaneNode = getNodeFromOpenMapById(mmapController(), nodeId);
+		final NodeModel freeplaneNode = getNodeFromOpenMapById(getOpenMap(mapId), nodeId);
 		// check if user has lock
 		if (!hasUserLockOnNode(mapId, freeplaneNode, username)) {
 			throw new NodeNotLockedByUserException("User has no lock on node");
@@ -371,21 +395,19 @@ public class Actions {
 			changeNodeAttribute(freeplaneNode, attribute, valueObj);
 		}
 
-		logger().debug("Actions.changeNode => refreshing lock access time");
-		refreshLockAccessTime(freeplaneNode);
-
 		// submit changes and create list for response
 		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		logger().debug("Actions.changeNode => refreshing lock access time");
+		refreshLockAccessTime(info, freeplaneNode);
 		final List<String> updateJsons = new ArrayList<String>();
 		for (MapUpdate update : updates) {
-			info.addUpdate(update);
-			updateJsons.add(update.toJson());
+			updateJsons.add(info.addUpdate(update));
 		}
 
 		return new ChangeNodeResponse(updateJsons);
 	}
 
-	public static MoveNodeToResponse moveNodeTo(MoveNodeToRequest request) throws NodeNotFoundException {
+	public static MoveNodeToResponse moveNodeTo(MoveNodeToRequest request) throws MapNotFoundException, NodeNotFoundException {
 		final String source = request.getSource();
 		final String username = request.getUsername();
 		final String mapId = request.getMapId();
@@ -393,8 +415,7 @@ public class Actions {
 		final String nodeId = request.getNodeToMoveId();
 		final Integer index = request.getNewIndex();
 
-		selectMap(mapId);
-		RemoteUtils.moveNodeTo(mmapController(), newParentNodeId, nodeId, index);
+		RemoteUtils.moveNodeTo(mmapController(), getOpenMap(mapId), newParentNodeId, nodeId, index);
 		addUpdateForMap(mapId, new MoveNodeUpdate(source, username, newParentNodeId, nodeId, index));
 
 		return new MoveNodeToResponse(true);
@@ -407,12 +428,9 @@ public class Actions {
 		final String nodeId = request.getNodeId();
 		logger().debug("Actions.removeNode => mapId:'{}'; nodeId:'{}'; username:'{}'", mapId, nodeId, username);
 
-		logger().debug("Actions.removeNode => selecting map");
-		selectMap(request.getMapId());
-
 		logger().debug("Actions.removeNode => retrieving node");
-		final MMapController mapController = (MMapController) modeController().getMapController();
-		final NodeModel node = getNodeFromOpenMapById(mmapController(), nodeId);
+		final MMapController mapController = mmapController();
+		final NodeModel node = getNodeFromOpenMapById(getOpenMap(mapId), nodeId);
 
 		// check if any node below has a lock
 		if (hasAnyChildALock(node)) {
@@ -428,6 +446,94 @@ public class Actions {
 		return new RemoveNodeResponse(true);
 	}
 
+	/**
+	 * applies the operations of a client batch in their order. Stops at the
+	 * first operation which cannot be applied, the applied operations are
+	 * added to the update history with one common revision.
+	 * 
+	 * A batch which was already applied is answered with the stored response
+	 * instead of applying it again.
+	 */
+	public static ApplyOperationsResponse applyOperations(ApplyOperationsRequest request) throws MapNotFoundException {
+		final String source = request.getSource();
+		final String username = request.getUsername();
+		final String mapId = request.getMapId();
+		final long batchId = request.getBatchId();
+		final List<String> operations = request.getOperations();
+		logger().debug("Actions.applyOperations => mapId:'{}'; batchId:{}; operations:{}", mapId, batchId, operations.size());
+
+		final org.freeplane.features.map.MapModel map = getOpenMap(mapId);
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		final ApplyOperationsResponse lastResponse = info.getLastOperationBatchResponse(source);
+		if (lastResponse != null && lastResponse.getBatchId() >= batchId) {
+			logger().debug("Actions.applyOperations => batch {} already applied", batchId);
+			return lastResponse;
+		}
+
+		final List<MapUpdate> appliedUpdates = new ArrayList<MapUpdate>(operations.size());
+		String error = null;
+		for (String operation : operations) {
+			try {
+				appliedUpdates.add(applyOperation(source, username, info, map, MapUpdate.fromJson(operation)));
+			} catch (Exception e) {
+				logger().warn("Actions.applyOperations => operation rejected: {}", e.getMessage());
+				error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+				break;
+			}
+		}
+		info.addUpdates(appliedUpdates);
+
+		final ApplyOperationsResponse response = new ApplyOperationsResponse(batchId, appliedUpdates.size(), info.getCurrentRevision(), error);
+		info.setLastOperationBatchResponse(source, response);
+		return response;
+	}
+
+	/**
+	 * applies one operation of a batch and returns the update to add to the
+	 * history
+	 */
+	private static MapUpdate applyOperation(String source, String username, OpenMindmapInfo info, org.freeplane.features.map.MapModel map, MapUpdate operation) throws NodeNotFoundException, ActionInConflictWithLockException {
+		final MMapController mapController = mmapController();
+		if (operation instanceof AddNodeUpdate) {
+			final AddNodeUpdate addUpdate = (AddNodeUpdate) operation;
+			final String newNodeId = addUpdate.getNewNodeId();
+			final NodeModel parentNode = getNodeFromOpenMapById(map, addUpdate.getParentNodeId());
+			if (newNodeId == null || map.getNodeForID(newNodeId) != null) {
+				throw new IllegalArgumentException("Node id '" + newNodeId + "' is already used.");
+			}
+			final NodeModel node = mapController.newNode("", map);
+			node.setID(newNodeId);
+			if (addUpdate.getSide() != null) {
+				node.setLeft(addUpdate.getSide() == AddNodeUpdate.Side.Left);
+			}
+			mapController.insertNode(node, parentNode);
+			final String nodeJson = new NodeModelDefault(node, false).toJsonString();
+			return new AddNodeUpdate(source, username, addUpdate.getParentNodeId(), newNodeId, nodeJson, addUpdate.getSide());
+		} else if (operation instanceof ChangeNodeAttributeUpdate) {
+			final ChangeNodeAttributeUpdate changeUpdate = (ChangeNodeAttributeUpdate) operation;
+			final NodeModel node = getNodeFromOpenMapById(map, changeUpdate.getNodeId());
+			if (isLockedByOtherUser(node, username)) {
+				throw new ActionInConflictWithLockException("Node with id '" + node.getID() + "' is locked by another user.");
+			}
+			changeNodeAttribute(node, changeUpdate.getAttribute(), changeUpdate.getValue());
+			refreshLockAccessTime(info, node);
+			return new ChangeNodeAttributeUpdate(source, username, changeUpdate.getNodeId(), changeUpdate.getAttribute(), changeUpdate.getValue());
+		} else if (operation instanceof MoveNodeUpdate) {
+			final MoveNodeUpdate moveUpdate = (MoveNodeUpdate) operation;
+			RemoteUtils.moveNodeTo(mapController, map, moveUpdate.getNewParentNodeId(), moveUpdate.getNodetoMoveId(), moveUpdate.getNewIndex());
+			return new MoveNodeUpdate(source, username, moveUpdate.getNewParentNodeId(), moveUpdate.getNodetoMoveId(), moveUpdate.getNewIndex());
+		} else if (operation instanceof DeleteNodeUpdate) {
+			final DeleteNodeUpdate deleteUpdate = (DeleteNodeUpdate) operation;
+			final NodeModel node = getNodeFromOpenMapById(map, deleteUpdate.getNodeId());
+			if (hasAnyChildALock(node)) {
+				throw new ActionInConflictWithLockException("Node with id '" + node.getID() + "' or one of its children is locked.");
+			}
+			mapController.deleteNode(node);
+			return new DeleteNodeUpdate(source, username, deleteUpdate.getNodeId());
+		}
+		throw new IllegalArgumentException("Unsupported operation " + operation.getType());
+	}
+
 	private static boolean hasAnyChildALock(NodeModel freeplaneNode) {
 		boolean hasLock = freeplaneNode.containsExtension(LockModel.class);
 		// check if node itself has a lock
@@ -445,86 +551,89 @@ public class Actions {
 	}
 
 	public static RequestLockResponse requestLock(RequestLockRequest request) throws MapNotFoundException, NodeAlreadyLockedException, NodeNotFoundException {
+		final long startNanos = System.nanoTime();
 		final String mapId = request.getMapId();
 		final String nodeId = request.getNodeId();
 		final String username = request.getUsername();
 		final String source = request.getSource();
 		logger().debug("Actions.requestLock => mapId:'{}'; nodeId:'{}'; username:'{}'", mapId, nodeId, username);
 
-		logger().debug("Actions.requestLock => selecting map");
-		selectMap(mapId);
-
 		logger().debug("Actions.requestLock => retrieving freeplane node");
-		final NodeModel node = getNodeFromOpenMapById(mmapController(), nodeId);
+		final NodeModel node = getNodeFromOpenMapById(getOpenMap(mapId), nodeId);
 
 		logger().debug("Actions.requestLock => retrieving lock model");
-		final LockModel lockModel = node.getExtension(LockModel.class);
-
-		if (lockModel == null) { // no lock present
-			logger().debug("Actions.requestLock => no lock on node, creating lock...");
-			final String mapUpdateJson = addLockToNode(source, username, mapId, node);
-			return new RequestLockResponse(true, mapUpdateJson);
-		} else if (username.equals(lockModel.getUsername())) { // refresh from
-			// locking user
-			refreshLockAccessTime(node);
-			return new RequestLockResponse(true, null);
-		} else { // already locked by someone else
-			return new RequestLockResponse(false, null);
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		final LockModel lockModel = info.getLockManager().getLock(node);
+
+		try {
+			if (lockModel == null) { // no lock present
+				logger().debug("Actions.requestLock => no lock on node, creating lock...");
+				final String mapUpdateJson = addLockToNode(source, username, mapId, node);
+				return new RequestLockResponse(true, mapUpdateJson);
+			} else if (username.equals(lockModel.getUsername())) { // refresh from
+				// locking user
+				refreshLockAccessTime(info, node);
+				return new RequestLockResponse(true, null);
+			} else { // already locked by someone else
+				return new RequestLockResponse(false, null);
+			}
+		} finally {
+			MapLockManager.getRequestLatency().recordSince(startNanos);
 		}
 	}
 
 	public static ReleaseLockResponse releaseLock(ReleaseLockRequest request) throws MapNotFoundException, LockNotFoundException, NodeNotFoundException {
+		final long startNanos = System.nanoTime();
 		final String mapId = request.getMapId();
 		final String nodeId = request.getNodeId();
 		final String username = request.getUsername();
 		final String source = request.getSource();
 		logger().debug("Actions.releaseLock => mapId:'{}'; nodeId:'{}'; username: {}", mapId, nodeId, username);
 
-		logger().debug("Actions.releaseLock => selecting map");
-		selectMap(mapId);
-
 		logger().debug("Actions.releaseLock => retrieving node");
-		final NodeModel node = getNodeFromOpenMapById(mmapController(), nodeId);
+		final NodeModel node = getNodeFromOpenMapById(getOpenMap(mapId), nodeId);
 
 		logger().debug("Actions.releaseLock => retrieving lock");
-		final LockModel lm = node.getExtension(LockModel.class);
-		if (lm == null) {
-			// No lock available, nothing to release... just quit
-			logger().warn("Actions.releaseLock => no lock present");
-			// throw new LockNotFoundException("Lock for nodeId " +
-			// request.getNodeId() + " not found.");
-			return new ReleaseLockResponse(true, null);
-		}
+		final LockModel lm = getOpenMindMapInfo(mapId).getLockManager().getLock(node);
+		try {
+			if (lm == null) {
+				// No lock available, nothing to release... just quit
+				logger().warn("Actions.releaseLock => no lock present");
+				// throw new LockNotFoundException("Lock for nodeId " +
+				// request.getNodeId() + " not found.");
+				return new ReleaseLockResponse(true, null);
+			}
 
-		// check if correct user
-		if (username.equals(lm.getUsername())) {
-			// release lock
-			logger().debug("Actions.releaseLock => releasing lock");
-			final String updateJson = releaseLockFromNode(source, username, mapId, node);
+			// check if correct user
+			if (username.equals(lm.getUsername())) {
+				// release lock
+				logger().debug("Actions.releaseLock => releasing lock");
+				final String updateJson = releaseLockFromNode(source, username, mapId, node);
 
-			return new ReleaseLockResponse(true, updateJson);
-		} else {
-			return new ReleaseLockResponse(false, null);
+				return new ReleaseLockResponse(true, updateJson);
+			} else {
+				return new ReleaseLockResponse(false, null);
+			}
+		} finally {
+			MapLockManager.getReleaseLatency().recordSince(startNanos);
 		}
 	}
 
-	public static void releaseTimedOutLocks(ReleaseTimedOutLocks request) throws MapNotFoundException, JsonGenerationException, JsonMappingException, IOException {
-		final Long millisSinceRequest = request.getMillisecondsSinceRequest();
-
-		for (Entry<String, OpenMindmapInfo> entry : openMindmapInfoMap().entrySet()) {
-			final String mapId = entry.getKey();
-			final OpenMindmapInfo info = entry.getValue();
-			final Set<NodeModel> lockedNodes = new HashSet<NodeModel>(info.getLockedNodes());
-
-			for (NodeModel lockedNode : lockedNodes) {
-				LockModel lock = lockedNode.getExtension(LockModel.class);
-				long timeDiff = System.currentTimeMillis() - lock.getLastAccess();
-				if (timeDiff > millisSinceRequest) {
-					releaseLockFromNode("server", "server", mapId, lockedNode);
-				}
-			}
-
+	/**
+	 * releases the expired locks of one map, called by the actor of the map
+	 * when the next lock expiry is due
+	 */
+	public static void releaseTimedOutLocks(String mapId) {
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		if (info == null) {
+			// map has been closed in the meantime
+			return;
 		}
+		info.lockExpiryDue();
+		for (NodeModel lockedNode : info.getLockManager().getExpiredLocks()) {
+			releaseLockFromNode("server", "server", mapId, lockedNode);
+		}
+		info.scheduleLockExpiry();
 	}
 
 	public static void closeAllOpenMaps(CloseAllOpenMapsRequest request) {
@@ -545,6 +654,7 @@ public class Actions {
 		final String source = request.getSource();
 		final String username = request.getUsername();
 		logger().debug("Actions.closeUnusedMaps => max ms since last access:'{}'", allowedMsSinceLastAccess);
+		logger().info("Actions.closeUnusedMaps => {}; {}", MapLockManager.getRequestLatency(), MapLockManager.getReleaseLatency());
 
 		final long now = System.currentTimeMillis();
 		for (final String mapId : new HashSet<String>(openMindmapInfoMap().keySet())) {
@@ -579,88 +689,66 @@ public class Actions {
 	// }
 
 	/**
-	 * Select Map so getMapController() has right map.
+	 * returns the freeplane map of an open map without selecting it in the
+	 * controller, so requests for different maps do not interfere.
 	 * 
 	 * @param mapId
 	 *            Id of Map
 	 * @throws MapNotFoundException
 	 */
-	private static void selectMap(String mapId) throws MapNotFoundException {
-		logger().debug("Actions.selectMap => mapId:'{}'", mapId);
-
-		// check if map is already selected
-		if (currentSelectedMapId == mapId) {
-			return;
-		}
-
-		if (!isMapPresent(mapId)) {
-			logger().error("Actions.selectMap => map not found");
+	private static org.freeplane.features.map.MapModel getOpenMap(String mapId) throws MapNotFoundException {
+		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
+		if (info == null) {
+			logger().error("Actions.getOpenMap => map not found");
 			throw new MapNotFoundException("Map with id " + mapId + " is not present.", mapId);
 		}
+		return info.getMap();
+	}
 
-		logger().debug("Actions.selectMap => Changing map to '{}'", mapId);
-		final URL pathURL = getOpenMindMapInfo(mapId).getMapUrl();
+	private static ActorRef createMapActor(final String mapId) {
+		return RemoteController.getActorSystem().actorOf(new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
 
-		try {
-			final MapIO mio = RemoteController.getMapIO();
-			mio.newMap(pathURL);
-			logger().debug("Actions.selectMap => Map succesfully selected");
-		} catch (Exception e) {
-			logger().error("Actions.selectMap => Error while selecting map with id '{}'", mapId);
-			throw new MapNotFoundException("Could not open Map with id " + mapId, e, mapId);
-		}
+			@Override
+			public UntypedActor create() {
+				return new MapActor(mapId);
+			}
+		}));
 	}
 
 	/**
 	 * refresh lastAccesTime of node lock
 	 * 
+	 * @param info
+	 *            map of the node
 	 * @param node
 	 *            Node with lock
 	 */
-	private static void refreshLockAccessTime(NodeModel node) {
-		LockModel lm = node.getExtension(LockModel.class);
-		if (lm != null) {
-			lm.setLastAccess(System.currentTimeMillis());
-		}
+	private static void refreshLockAccessTime(OpenMindmapInfo info, NodeModel node) {
+		info.getLockManager().refresh(node);
 	}
 
 	private static String addLockToNode(String source, String username, String mapId, NodeModel freeplaneNode) {
 		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
-		if (freeplaneNode.getExtension(LockModel.class) == null) {
-			final LockModel lockModel = new LockModel(username, System.currentTimeMillis());
-
-			// add node to locked list
-			logger().debug("Actions.addLockToNode => adding node to locked node list");
-			info.addLockedNode(freeplaneNode);
-			// add lock
-			freeplaneNode.addExtension(lockModel);
-
-			final ChangeNodeAttributeUpdate update = new ChangeNodeAttributeUpdate(source, username, freeplaneNode.getID(), "locked", username);
-			// add change to revision list
-			info.addUpdate(update);
-			return update.toJson();
-		} else {
-			throw new AssertionError("Tried to add Lock to a Node with a Lock present");
-		}
+		// add lock
+		logger().debug("Actions.addLockToNode => adding lock to node");
+		info.getLockManager().lock(freeplaneNode, username);
+		info.scheduleLockExpiry();
+
+		final ChangeNodeAttributeUpdate update = new ChangeNodeAttributeUpdate(source, username, freeplaneNode.getID(), "locked", username);
+		// add change to revision list
+		return info.addUpdate(update);
 	}
 
 	private static String releaseLockFromNode(String source, String username, String mapId, NodeModel freeplaneNode) {
 		final OpenMindmapInfo info = getOpenMindMapInfo(mapId);
-		if (freeplaneNode.getExtension(LockModel.class) != null) {
-
-			// remove node from locked list
-			logger().debug("Actions.releaseLockFromNode => remove node from locked list");
-			info.removeLockedNode(freeplaneNode);
-			// remove lock
-			freeplaneNode.removeExtension(LockModel.class);
-
-			final ChangeNodeAttributeUpdate update = new ChangeNodeAttributeUpdate(source, username, freeplaneNode.getID(), "locked", null);
-			// add change to revision list
-			info.addUpdate(update);
-			return update.toJson();
-		} else {
-			throw new AssertionError("Tried to remove Lock from a Node without a Lock");
-		}
+		// remove lock
+		logger().debug("Actions.releaseLockFromNode => removing lock from node");
+		info.getLockManager().unlock(freeplaneNode);
+
+		final ChangeNodeAttributeUpdate update = new ChangeNodeAttributeUpdate(source, username, freeplaneNode.getID(), "locked", null);
+		// add change to revision list
+		return info.addUpdate(update);
 	}
 
 	private static boolean hasUserLockOnNode(String mapId, NodeModel node, String userName) {
@@ -674,12 +762,13 @@ public class Actions {
 		}
 	}
 
+	private static boolean isLockedByOtherUser(NodeModel node, String userName) {
+		final LockModel lm = node.getExtension(LockModel.class);
+		return lm != null && !userName.equals(lm.getUsername());
+	}
+
 	private static OpenMindmapInfo getOpenMindMapInfo(String mapId) {
-		final Map<String, OpenMindmapInfo> map = openMindmapInfoMap();
-		if (!map.containsKey(mapId)) {
-			return null;
-		}
-		return map.get(mapId);
+		return openMindmapInfoMap().get(mapId);
 	}
 
 	private static boolean isMapPresent(String mapId) {
@@ -693,19 +782,6 @@ public class Actions {
 		info.addUpdate(update);
 	}
 
-	private static String buildJSON(Object object) {
-		String result = null;
-
-		try {
-			result = objectMapper.writeValueAsString(object);
-		} catch (Exception e) {
-			LogUtils.severe("Error while parsing object to JSON-String!", e);
-			throw new AssertionError(e);
-		}
-
-		return result;
-	}
-
 	private static Map<String, OpenMindmapInfo> openMindmapInfoMap() {
 		return RemoteController.getMapIdInfoMap();
 	}
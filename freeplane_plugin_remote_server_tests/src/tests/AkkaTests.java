@@ -44,9 +44,12 @@ import org.docear.messages.Messages.RequestLockResponse;
 import org.docear.messages.exceptions.MapNotFoundException;
 import org.docear.messages.exceptions.NodeNotFoundException;
 import org.fest.assertions.Fail;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsRequest;
+import org.freeplane.plugin.remote.v10.OperationBatchMessages.ApplyOperationsResponse;
 import org.freeplane.plugin.remote.v10.model.NodeModelDefault;
 import org.freeplane.plugin.remote.v10.model.updates.AddNodeUpdate;
 import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
 import org.freeplane.plugin.remote.v10.model.updates.MapUpdate;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -714,6 +717,99 @@ public class AkkaTests {
 		};
 	}
 
+	/**
+	 * testFetchUpdatesSkipsSupersededChanges Change the same attribute twice
+	 * and remove a new node. Only the last change and the removal are
+	 * fetched.
+	 */
+	@Test
+	public void testFetchUpdatesSkipsSupersededChanges() {
+		new JavaTestKit(system) {
+			{
+				localActor.tell(getRef(), getRef());
+				new Within(duration("5 seconds")) {
+					protected void run() {
+						sendMindMapToServer(5);
+						requestLock("5", "ID_1", USERNAME1);
+						final Map<String, Object> firstChange = new HashMap<String, Object>();
+						firstChange.put("nodeText", "first text");
+						remoteActor.tell(new ChangeNodeRequest(SOURCE, USERNAME1, "5", "ID_1", firstChange), localActor);
+						expectMsgClass(ChangeNodeResponse.class);
+						final Map<String, Object> secondChange = new HashMap<String, Object>();
+						secondChange.put("nodeText", "second text");
+						remoteActor.tell(new ChangeNodeRequest(SOURCE, USERNAME1, "5", "ID_1", secondChange), localActor);
+						expectMsgClass(ChangeNodeResponse.class);
+						releaseLock("5", "ID_1", USERNAME1);
+
+						remoteActor.tell(new AddNodeRequest(SOURCE, USERNAME1, "5", "ID_0"), localActor);
+						final AddNodeResponse addResponse = expectMsgClass(AddNodeResponse.class);
+						final String newNodeId;
+						try {
+							newNodeId = objectMapper.readValue(addResponse.getMapUpdate(), AddNodeUpdate.class).getNewNodeId();
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+						remoteActor.tell(new RemoveNodeRequest(SOURCE, USERNAME1, "5", newNodeId), localActor);
+						expectMsgClass(RemoveNodeResponse.class);
+
+						remoteActor.tell(new FetchMindmapUpdatesRequest(SOURCE, USERNAME1, "5", 0), localActor);
+						final FetchMindmapUpdatesResponse response = expectMsgClass(FetchMindmapUpdatesResponse.class);
+						final List<String> updates = response.getOrderedUpdates();
+
+						// lock, first change, second change, release, add, remove
+						assertThat(response.getCurrentRevision().intValue()).isEqualTo(6);
+						// only the second change, the release and the remove remain
+						assertThat(updates).hasSize(3);
+						assertThat(updates.get(0)).contains("second text");
+						assertThat(updates.get(2)).contains("DeleteNode");
+
+						closeMindMapOnServer(5);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * testApplyOperationsBatch Apply a batch with a node id chosen by the
+	 * client. The batch stops at the operation on a missing node and is not
+	 * applied again when it is sent twice.
+	 */
+	@Test
+	public void testApplyOperationsBatch() {
+		new JavaTestKit(system) {
+			{
+				localActor.tell(getRef(), getRef());
+				new Within(duration("5 seconds")) {
+					protected void run() {
+						sendMindMapToServer(5);
+						final List<String> operations = new ArrayList<String>();
+						operations.add(new AddNodeUpdate(SOURCE, USERNAME1, "ID_0", "ID_CLIENT_1", null).toJson());
+						operations.add(new ChangeNodeAttributeUpdate(SOURCE, USERNAME1, "ID_CLIENT_1", "nodeText", "client text").toJson());
+						operations.add(new DeleteNodeUpdate(SOURCE, USERNAME1, "ID_MISSING").toJson());
+						operations.add(new ChangeNodeAttributeUpdate(SOURCE, USERNAME1, "ID_CLIENT_1", "nodeText", "never applied").toJson());
+
+						remoteActor.tell(new ApplyOperationsRequest(SOURCE, USERNAME1, "5", 1, operations), localActor);
+						final ApplyOperationsResponse response = expectMsgClass(ApplyOperationsResponse.class);
+						assertThat(response.getAppliedOperationCount()).isEqualTo(2);
+						assertThat(response.getCurrentRevision()).isEqualTo(1);
+						assertThat(response.getError()).isNotNull();
+
+						remoteActor.tell(new ApplyOperationsRequest(SOURCE, USERNAME1, "5", 1, operations), localActor);
+						final ApplyOperationsResponse repeatedResponse = expectMsgClass(ApplyOperationsResponse.class);
+						assertThat(repeatedResponse.getCurrentRevision()).isEqualTo(1);
+
+						remoteActor.tell(new GetNodeRequest(SOURCE, USERNAME1, "5", "ID_CLIENT_1", 1), localActor);
+						final GetNodeResponse nodeResponse = expectMsgClass(GetNodeResponse.class);
+						assertThat(nodeResponse.getNode()).contains("client text");
+
+						closeMindMapOnServer(5);
+					}
+				};
+			}
+		};
+	}
+
 	/**
 	 * simulateMultipleUserAkka four user opening 4 different maps, each in one
 	 * thread
@@ -739,29 +835,23 @@ public class AkkaTests {
 						remoteActor.tell(new MindmapAsJsonRequest(SOURCE, USERNAME1, "5", 5), localActor);
 						remoteActor.tell(new MindmapAsJsonRequest(SOURCE, USERNAME1, "1", 5), localActor);
 
-						MindmapAsJsonReponse response = null;
-						String mapAsJson = null;
-						// map 3
-						response = expectMsgClass(MindmapAsJsonReponse.class);
-						mapAsJson = response.getJsonString();
-						assertThat(mapAsJson).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"Welcome\",\"isHtml\":false,\"folded\":false");
-
-						// map 2
-						response = expectMsgClass(MindmapAsJsonReponse.class);
-						mapAsJson = response.getJsonString();
-						assertThat(mapAsJson)
+						// the maps are processed by their own actors, so the responses can come in any order
+						final Map<String, String> mapsAsJson = new HashMap<String, String>();
+						try {
+							for (int i = 0; i < 4; i++) {
+								final String mapAsJson = expectMsgClass(MindmapAsJsonReponse.class).getJsonString();
+								mapsAsJson.put(objectMapper.readTree(mapAsJson).get("id").asText(), mapAsJson);
+							}
+						} catch (IOException e) {
+							Fail.fail("json IOException error", e);
+						}
+
+						assertThat(mapsAsJson.get("3.mm")).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"Welcome\",\"isHtml\":false,\"folded\":false");
+						assertThat(mapsAsJson.get("2.mm"))
 								.contains(
 										"\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"New Mindmap\",\"isHtml\":false,\"folded\":false,\"icons\":[],\"leftChildren\":[{\"id\":\"ID_270895934\",\"nodeText\":\"\",\"isHtml\":false,\"folded\":false");
-
-						// map 5
-						response = expectMsgClass(MindmapAsJsonReponse.class);
-						mapAsJson = response.getJsonString();
-						assertThat(mapAsJson).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"test_5 = MapID ; 5.mm = Title\"");
-
-						// map 1
-						response = expectMsgClass(MindmapAsJsonReponse.class);
-						mapAsJson = response.getJsonString();
-						assertThat(mapAsJson).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"foo2\",\"isHtml\":false,\"folded\":false");
+						assertThat(mapsAsJson.get("5.mm")).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"test_5 = MapID ; 5.mm = Title\"");
+						assertThat(mapsAsJson.get("1.mm")).contains("\"isReadonly\":false,\"root\":{\"id\":\"ID_0\",\"nodeText\":\"foo2\",\"isHtml\":false,\"folded\":false");
 
 					}
 				};
@@ -770,6 +860,86 @@ public class AkkaTests {
 
 	}
 
+	/**
+	 * testConcurrentChangesOfDifferentMaps Add nodes to the root nodes of four
+	 * maps and change their texts with interleaved requests, without waiting
+	 * for the responses in between. Every map must contain exactly its own
+	 * changes and count its own revisions.
+	 */
+	@Test
+	public void testConcurrentChangesOfDifferentMaps() throws Exception {
+		final String[] mapIds = new String[] { "1", "2", "3", "5" };
+		final int addsPerMap = 50;
+
+		final Map<String, Integer> startRevisions = new HashMap<String, Integer>();
+		final Map<String, List<Future<Object>>> futures = new HashMap<String, List<Future<Object>>>();
+		for (String mapId : mapIds) {
+			sendMindMapToServer(Integer.parseInt(mapId));
+			requestLock(mapId, "ID_0", USERNAME1);
+			startRevisions.put(mapId, fetchCurrentRevision(mapId));
+			futures.put(mapId, new ArrayList<Future<Object>>());
+		}
+
+		final long startTime = System.currentTimeMillis();
+		for (int i = 0; i < addsPerMap; i++) {
+			for (String mapId : mapIds) {
+				futures.get(mapId).add(Patterns.ask(remoteActor, new AddNodeRequest(SOURCE, USERNAME1, mapId, "ID_0"), 60000));
+				if (i == addsPerMap / 2) {
+					final Map<String, Object> attributeMap = new HashMap<String, Object>();
+					attributeMap.put("nodeText", "root of map " + mapId);
+					futures.get(mapId).add(Patterns.ask(remoteActor, new ChangeNodeRequest(SOURCE, USERNAME1, mapId, "ID_0", attributeMap), 60000));
+				}
+			}
+		}
+
+		final Map<String, Set<String>> newNodeIds = new HashMap<String, Set<String>>();
+		for (String mapId : mapIds) {
+			final Set<String> mapNodeIds = new HashSet<String>();
+			for (Future<Object> future : futures.get(mapId)) {
+				final Object response = Await.result(future, Duration.create("60 seconds"));
+				if (response instanceof AddNodeResponse) {
+					mapNodeIds.add(objectMapper.readValue(((AddNodeResponse) response).getMapUpdate(), AddNodeUpdate.class).getNewNodeId());
+				} else {
+					assertThat(response).isInstanceOf(ChangeNodeResponse.class);
+				}
+			}
+			newNodeIds.put(mapId, mapNodeIds);
+		}
+		System.out.println("changes of " + mapIds.length + " maps: " + (System.currentTimeMillis() - startTime) + " ms");
+
+		for (String mapId : mapIds) {
+			assertThat(newNodeIds.get(mapId)).hasSize(addsPerMap);
+			assertThat(fetchCurrentRevision(mapId)).isEqualTo(startRevisions.get(mapId) + addsPerMap + 1);
+
+			final String mapJson = requestMapAsJson(mapId, -1);
+			assertThat(mapJson).contains("\"root of map " + mapId + "\"");
+			for (String nodeId : newNodeIds.get(mapId)) {
+				assertThat(mapJson).contains("\"" + nodeId + "\"");
+			}
+			for (String otherMapId : mapIds) {
+				if (!otherMapId.equals(mapId)) {
+					for (String nodeId : newNodeIds.get(otherMapId)) {
+						assertThat(mapJson).doesNotContain("\"" + nodeId + "\"");
+					}
+				}
+			}
+		}
+
+		for (String mapId : mapIds) {
+			closeMindMapOnServer(Integer.parseInt(mapId));
+		}
+	}
+
+	private String requestMapAsJson(String mapId, int nodeCount) throws Exception {
+		final Object response = Await.result(Patterns.ask(remoteActor, new MindmapAsJsonRequest(SOURCE, USERNAME1, mapId, nodeCount), 60000), Duration.create("60 seconds"));
+		return ((MindmapAsJsonReponse) response).getJsonString();
+	}
+
+	private int fetchCurrentRevision(String mapId) throws Exception {
+		final Object response = Await.result(Patterns.ask(remoteActor, new FetchMindmapUpdatesRequest(SOURCE, USERNAME1, mapId, 0), 60000), Duration.create("60 seconds"));
+		return ((FetchMindmapUpdatesResponse) response).getCurrentRevision();
+	}
+
 	public void sendMindMapToServer(final int id) {
 		final URL pathURL = AkkaTests.class.getResource("/files/mindmaps/" + id + ".mm");
 
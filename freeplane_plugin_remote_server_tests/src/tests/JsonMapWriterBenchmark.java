@@ -0,0 +1,98 @@
+package tests;
+
+import java.io.File;
+import java.net.MalformedURLException;
+
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.freeplane.plugin.remote.RemoteUtils;
+import org.freeplane.plugin.remote.v10.model.JsonMapWriter;
+
+/**
+ * Compares the time needed to write a large map as json by
+ * {@link JsonMapWriter} and by the {@link org.freeplane.plugin.remote.v10.model.MapModel}
+ * tree, completely and with a node count limit. The map has 50 branches with
+ * 999 leaves each like the maps sent by the web client.
+ *
+ * Usage: java -Xmx1g tests.JsonMapWriterBenchmark [iterations [limited node count]]
+ *
+ * Both ways are run a few times to warm up the virtual machine before the
+ * measured iterations. The default node count limit is 100.
+ */
+public class JsonMapWriterBenchmark {
+	private static final int BRANCH_COUNT = 50;
+	private static final int LEAF_COUNT = 999;
+	private static final int WARM_UP_ITERATIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int limitedNodeCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		MapModel map = createMap();
+		int nodeCount = 1 + BRANCH_COUNT * (LEAF_COUNT + 1);
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			writeWithModel(map, -1);
+			writeWithWriter(map, -1);
+		}
+		for (int limit : new int[] { -1, limitedNodeCount }) {
+			long modelTime = 0;
+			long writerTime = 0;
+			int modelLength = 0;
+			int writerLength = 0;
+			for (int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				modelLength = writeWithModel(map, limit).length();
+				modelTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				writerLength = writeWithWriter(map, limit).length();
+				writerTime += System.nanoTime() - start;
+			}
+			System.out.println(nodeCount + " nodes, limit " + limit + ": model " + modelTime / iterations / 1000000
+			        + " ms, " + modelLength + " chars, writer " + writerTime / iterations / 1000000 + " ms, "
+			        + writerLength + " chars");
+		}
+		System.exit(0);
+	}
+
+	private static String writeWithModel(MapModel map, int nodeCount) {
+		org.freeplane.plugin.remote.v10.model.MapModel mapModel = new org.freeplane.plugin.remote.v10.model.MapModel(
+		    map, "benchmark", 1, nodeCount == -1);
+		if (nodeCount != -1) {
+			RemoteUtils.loadNodesIntoModel(mapModel.root, nodeCount);
+		}
+		return mapModel.toJsonString();
+	}
+
+	private static String writeWithWriter(MapModel map, int nodeCount) throws Exception {
+		return JsonMapWriter.mapToJson(map, "benchmark", 1, nodeCount);
+	}
+
+	private static MapModel createMap() throws MalformedURLException {
+		MMapController mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		MapModel map = mapController.newModel();
+		map.setURL(Compat.fileToUrl(new File("json_benchmark.mm")));
+		NodeModel root = map.getRootNode();
+		root.setText("root");
+		for (int i = 0; i < BRANCH_COUNT; i++) {
+			NodeModel branch = createNode(map, "branch " + i);
+			branch.setLeft(i % 2 == 1);
+			root.insert(branch, i);
+			for (int j = 0; j < LEAF_COUNT; j++) {
+				branch.insert(createNode(map, "leaf " + j), j);
+			}
+		}
+		return map;
+	}
+
+	private static NodeModel createNode(MapModel map, String text) {
+		NodeModel node = new NodeModel(text, map);
+		node.createID();
+		return node;
+	}
+}
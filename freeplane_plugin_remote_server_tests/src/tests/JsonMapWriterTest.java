@@ -0,0 +1,138 @@
+package tests;
+
+import java.awt.Color;
+import java.io.File;
+import java.net.URI;
+
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.attribute.Attribute;
+import org.freeplane.features.attribute.AttributeController;
+import org.freeplane.features.attribute.mindmapmode.MAttributeController;
+import org.freeplane.features.edge.EdgeModel;
+import org.freeplane.features.edge.EdgeStyle;
+import org.freeplane.features.icon.factory.MindIconFactory;
+import org.freeplane.features.link.NodeLinks;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.nodelocation.LocationModel;
+import org.freeplane.features.note.mindmapmode.MNoteController;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.freeplane.plugin.remote.RemoteUtils;
+import org.freeplane.plugin.remote.v10.model.JsonMapWriter;
+import org.freeplane.plugin.remote.v10.model.LockModel;
+import org.freeplane.plugin.remote.v10.model.NodeModelDefault;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link JsonMapWriter} has to write the same json as the
+ * {@link org.freeplane.plugin.remote.v10.model.MapModel} and
+ * {@link NodeModelDefault} trees it replaces. Runs on a headless freeplane
+ * without the remote server.
+ */
+public class JsonMapWriterTest {
+	private static final String USERNAME1 = "Jonas";
+
+	private static MMapController mapController;
+	private static MapModel map;
+	private static NodeModel branch;
+
+	@BeforeClass
+	public static void createMap() throws Exception {
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		map = mapController.newModel();
+		map.setURL(Compat.fileToUrl(new File("json_writer_test.mm")));
+		mapController.newMapView(map);
+
+		final NodeModel root = map.getRootNode();
+		root.setText("root");
+		branch = mapController.addNewNode(root, 0, false);
+		branch.setText("<html><body><p>html branch</p></body></html>");
+		branch.addIcon(MindIconFactory.create("idea"));
+		branch.addIcon(MindIconFactory.create("help"));
+		NodeLinks.createLinkExtension(branch).setHyperLink(new URI("http://www.docear.org"));
+		((MNoteController) MNoteController.getController()).setNoteText(branch, "<html><body><p>note</p></body></html>");
+		final MAttributeController attributeController = (MAttributeController) AttributeController.getController();
+		attributeController.addAttribute(branch, new Attribute("key", "value"));
+		attributeController.addAttribute(branch, new Attribute("empty", ""));
+		final LocationModel location = LocationModel.createLocationModel(branch);
+		location.setHGap(40);
+		location.setShiftY(-12);
+		final EdgeModel edge = EdgeModel.createEdgeModel(branch);
+		edge.setColor(Color.RED);
+		edge.setWidth(3);
+		edge.setStyle(EdgeStyle.EDGESTYLE_BEZIER);
+		branch.addExtension(new LockModel(USERNAME1, System.currentTimeMillis()));
+
+		for (int i = 0; i < 4; i++) {
+			final NodeModel child = mapController.addNewNode(branch, i, false);
+			child.setText("child " + i);
+			for (int j = 0; j < 3; j++) {
+				mapController.addNewNode(child, j, false).setText("leaf " + i + " " + j);
+			}
+		}
+		branch.setFolded(true);
+
+		final NodeModel leftBranch = mapController.addNewNode(root, 1, true);
+		leftBranch.setText("left branch");
+		mapController.addNewNode(leftBranch, 0, true).setText("left child");
+		mapController.addNewNode(root, 2, false).setText("empty branch");
+	}
+
+	@Test
+	public void completeMapEqualsModelOutput() throws Exception {
+		assertSameMapJson(-1);
+	}
+
+	@Test
+	public void limitedMapEqualsModelOutput() throws Exception {
+		assertSameMapJson(1);
+		assertSameMapJson(5);
+		assertSameMapJson(12);
+	}
+
+	@Test
+	public void completeNodeEqualsModelOutput() throws Exception {
+		assertSameNodeJson(branch, -1);
+		assertSameNodeJson(map.getRootNode(), -1);
+	}
+
+	@Test
+	public void limitedNodeEqualsModelOutput() throws Exception {
+		assertSameNodeJson(branch, 2);
+		assertSameNodeJson(branch, 6);
+		assertSameNodeJson(map.getRootNode(), 3);
+	}
+
+	private void assertSameMapJson(int nodeCount) throws Exception {
+		final org.freeplane.plugin.remote.v10.model.MapModel mapModel = new org.freeplane.plugin.remote.v10.model.MapModel(map, "test", 7, nodeCount == -1);
+		if (nodeCount != -1) {
+			RemoteUtils.loadNodesIntoModel(mapModel.root, nodeCount);
+		}
+		assertSameJson(mapModel.toJsonString(), JsonMapWriter.mapToJson(map, "test", 7, nodeCount));
+	}
+
+	private void assertSameNodeJson(NodeModel node, int nodeCount) throws Exception {
+		final NodeModelDefault nodeModel = new NodeModelDefault(node, nodeCount == -1);
+		if (nodeCount != -1) {
+			RemoteUtils.loadNodesIntoModel(nodeModel, nodeCount);
+		}
+		assertSameJson(nodeModel.toJsonString(), JsonMapWriter.nodeToJson(node, nodeCount));
+	}
+
+	private void assertSameJson(String expected, String actual) throws Exception {
+		final ObjectMapper objectMapper = RemoteUtils.getObjectMapper();
+		final JsonNode expectedTree = objectMapper.readTree(expected);
+		final JsonNode actualTree = objectMapper.readTree(actual);
+		Assert.assertEquals(actual, expectedTree, actualTree);
+	}
+}
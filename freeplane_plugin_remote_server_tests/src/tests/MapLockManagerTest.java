@@ -0,0 +1,84 @@
+package tests;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.remote.server.MapLockManager;
+import org.freeplane.plugin.remote.v10.model.LockModel;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Expires locks without a running freeplane or actor system.
+ */
+public class MapLockManagerTest {
+
+	private final static String USERNAME1 = "USER1";
+	private final static String USERNAME2 = "USER2";
+	private final static long TIMEOUT_MS = 100;
+
+	private MapLockManager lockManager;
+	private NodeModel node1;
+	private NodeModel node2;
+
+	@Before
+	public void setUp() throws Exception {
+		lockManager = new MapLockManager(TIMEOUT_MS);
+		node1 = new NodeModel(null);
+		node2 = new NodeModel(null);
+	}
+
+	/**
+	 * testLockAddsExtension The lock is visible on the node until it is
+	 * released.
+	 */
+	@Test
+	public void testLockAddsExtension() {
+		lockManager.lock(node1, USERNAME1);
+		assertThat(node1.getExtension(LockModel.class).getUsername()).isEqualTo(USERNAME1);
+		assertThat(lockManager.getLock(node1)).isSameAs(node1.getExtension(LockModel.class));
+
+		lockManager.unlock(node1);
+		assertThat(node1.getExtension(LockModel.class)).isNull();
+		assertThat(lockManager.getLock(node1)).isNull();
+		assertThat(lockManager.getLockCount()).isEqualTo(0);
+	}
+
+	/**
+	 * testRefreshedLockDoesNotExpire Only locks which have not been refreshed
+	 * within the timeout expire.
+	 */
+	@Test
+	public void testRefreshedLockDoesNotExpire() throws InterruptedException {
+		lockManager.lock(node1, USERNAME1);
+		lockManager.lock(node2, USERNAME2);
+		assertThat(lockManager.getExpiredLocks()).isEmpty();
+
+		Thread.sleep(TIMEOUT_MS / 2);
+		lockManager.refresh(node2);
+		Thread.sleep(TIMEOUT_MS / 2 + 20);
+
+		assertThat(lockManager.getExpiredLocks()).containsOnly(node1);
+		lockManager.unlock(node1);
+		assertThat(lockManager.getDelayUntilNextExpiry()).isGreaterThan(0);
+
+		Thread.sleep(TIMEOUT_MS);
+		assertThat(lockManager.getExpiredLocks()).containsOnly(node2);
+	}
+
+	/**
+	 * testReleasedLockDoesNotExpire A lock released before its expiry is not
+	 * reported, even if the node is locked again.
+	 */
+	@Test
+	public void testReleasedLockDoesNotExpire() throws InterruptedException {
+		lockManager.lock(node1, USERNAME1);
+		lockManager.unlock(node1);
+		Thread.sleep(TIMEOUT_MS / 2);
+		lockManager.lock(node1, USERNAME2);
+		Thread.sleep(TIMEOUT_MS / 2 + 20);
+
+		assertThat(lockManager.getExpiredLocks()).isEmpty();
+		assertThat(lockManager.getLock(node1).getUsername()).isEqualTo(USERNAME2);
+	}
+}
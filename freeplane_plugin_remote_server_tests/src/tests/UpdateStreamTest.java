@@ -0,0 +1,131 @@
+package tests;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.freeplane.plugin.remote.server.MapUpdateLog;
+import org.freeplane.plugin.remote.server.MapUpdateSubscribers;
+import org.freeplane.plugin.remote.v10.UpdateStreamMessages.UpdateBatch;
+import org.freeplane.plugin.remote.v10.model.updates.ChangeNodeAttributeUpdate;
+import org.freeplane.plugin.remote.v10.model.updates.DeleteNodeUpdate;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+
+/**
+ * Pushes updates to subscribers inside of a local actor system, no running
+ * freeplane is needed.
+ */
+public class UpdateStreamTest {
+
+	private final static String SOURCE = "testing";
+	private final static String USERNAME1 = "USER1";
+	private final static String MAP_ID = "5";
+
+	private static ActorSystem system;
+
+	private MapUpdateLog updateLog;
+	private MapUpdateSubscribers subscribers;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		system = ActorSystem.create("updateStreamTest");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		system.shutdown();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		updateLog = new MapUpdateLog();
+		subscribers = new MapUpdateSubscribers(updateLog);
+	}
+
+	/**
+	 * testSubscribeSendsMissedUpdates A new subscriber receives the updates
+	 * since its revision immediately.
+	 */
+	@Test
+	public void testSubscribeSendsMissedUpdates() {
+		new JavaTestKit(system) {
+			{
+				final JavaTestKit mapActor = new JavaTestKit(system);
+				updateLog.add(changeText("ID_1", "first"));
+				updateLog.add(changeText("ID_2", "second"));
+
+				subscribers.subscribe(MAP_ID, getRef(), 1, 1, mapActor.getRef());
+
+				final UpdateBatch batch = expectMsgClass(UpdateBatch.class);
+				assertThat(batch.getMapId()).isEqualTo(MAP_ID);
+				assertThat(batch.getSinceRevision()).isEqualTo(1);
+				assertThat(batch.getCurrentRevision()).isEqualTo(2);
+				assertThat(batch.getOrderedUpdates()).hasSize(1);
+				assertThat(batch.getOrderedUpdates().get(0)).contains("second");
+				assertThat(getLastSender()).isEqualTo(mapActor.getRef());
+			}
+		};
+	}
+
+	/**
+	 * testUnacknowledgedBatchesAreLimited Updates added while the subscriber
+	 * has not acknowledged the last batch are sent as one batch after the
+	 * acknowledgement. Superseded updates are left out.
+	 */
+	@Test
+	public void testUnacknowledgedBatchesAreLimited() {
+		new JavaTestKit(system) {
+			{
+				final JavaTestKit mapActor = new JavaTestKit(system);
+				subscribers.subscribe(MAP_ID, getRef(), 0, 1, mapActor.getRef());
+				expectNoMsg(duration("100 milliseconds"));
+
+				updateLog.add(changeText("ID_1", "first"));
+				subscribers.flush(mapActor.getRef());
+				final UpdateBatch firstBatch = expectMsgClass(UpdateBatch.class);
+				assertThat(firstBatch.getCurrentRevision()).isEqualTo(1);
+
+				updateLog.add(changeText("ID_1", "second"));
+				subscribers.flush(mapActor.getRef());
+				updateLog.add(changeText("ID_1", "third"));
+				updateLog.add(new DeleteNodeUpdate(SOURCE, USERNAME1, "ID_2"));
+				subscribers.flush(mapActor.getRef());
+				expectNoMsg(duration("100 milliseconds"));
+
+				subscribers.acknowledge(getRef(), mapActor.getRef());
+				final UpdateBatch secondBatch = expectMsgClass(UpdateBatch.class);
+				assertThat(secondBatch.getSinceRevision()).isEqualTo(1);
+				assertThat(secondBatch.getCurrentRevision()).isEqualTo(4);
+				assertThat(secondBatch.getOrderedUpdates()).hasSize(2);
+				assertThat(secondBatch.getOrderedUpdates().get(0)).contains("third");
+			}
+		};
+	}
+
+	/**
+	 * testUnsubscribeStopsUpdates No batches are sent after unsubscribing.
+	 */
+	@Test
+	public void testUnsubscribeStopsUpdates() {
+		new JavaTestKit(system) {
+			{
+				final JavaTestKit mapActor = new JavaTestKit(system);
+				subscribers.subscribe(MAP_ID, getRef(), 0, 2, mapActor.getRef());
+				subscribers.unsubscribe(getRef());
+
+				updateLog.add(changeText("ID_1", "first"));
+				subscribers.flush(mapActor.getRef());
+				expectNoMsg(duration("100 milliseconds"));
+				assertThat(subscribers.isEmpty()).isTrue();
+			}
+		};
+	}
+
+	private static ChangeNodeAttributeUpdate changeText(String nodeId, String text) {
+		return new ChangeNodeAttributeUpdate(SOURCE, USERNAME1, nodeId, "nodeText", text);
+	}
+}
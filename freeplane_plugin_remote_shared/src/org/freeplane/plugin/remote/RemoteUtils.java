@@ -9,6 +9,7 @@ import org.docear.messages.exceptions.NodeNotFoundException;
 import org.freeplane.features.attribute.NodeAttributeTableModel;
 import org.freeplane.features.attribute.mindmapmode.MAttributeController;
 import org.freeplane.features.link.NodeLinks;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.mindmapmode.MMapController;
@@ -16,7 +17,15 @@ import org.freeplane.features.nodelocation.LocationModel;
 import org.freeplane.features.note.mindmapmode.MNoteController;
 import org.freeplane.plugin.remote.v10.model.NodeModelBase;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 public final class RemoteUtils {
+	// thread safe once configured, creating a mapper is expensive
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	public static ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
 
 	public static void loadNodesIntoModel(NodeModelBase node, int nodeCount) {
 		LinkedList<NodeModelBase> nodeQueue = new LinkedList<NodeModelBase>();
@@ -56,6 +65,19 @@ public final class RemoteUtils {
 		return freeplaneNode;
 	}
 	
+	/**
+	 * finds the node in the given map, independent of the map currently selected in the controller.
+	 */
+	public static NodeModel getNodeFromOpenMapById(MapModel map, final String nodeId) throws NodeNotFoundException {
+		final NodeModel freeplaneNode = map.getNodeForID(nodeId);
+
+		if (freeplaneNode == null) {
+			throw new NodeNotFoundException("Node with id '" + nodeId + "' not found.");
+		}
+
+		return freeplaneNode;
+	}
+	
 	public static void changeNodeAttribute(NodeModel freeplaneNode, String attribute, Object valueObj) {
 		System.out.println("attribute: "+attribute);
 		if (attribute.equals("folded")) {
@@ -139,6 +161,14 @@ public final class RemoteUtils {
 		nodeToMove.setLeft(parentNode.isLeft());
 	}
 	
+	public static void moveNodeTo(MMapController mapController, MapModel map, String parentNodeId, String nodeToMoveId, int newIndex) throws NodeNotFoundException {
+		final NodeModel parentNode = getNodeFromOpenMapById(map, parentNodeId);
+		final NodeModel nodeToMove = getNodeFromOpenMapById(map, nodeToMoveId);
+
+		mapController.moveNode(nodeToMove, parentNode, newIndex);
+		nodeToMove.setLeft(parentNode.isLeft());
+	}
+	
 	private static void updateLocationModel(NodeModel freeplaneNode, Integer hGap, Integer Shifty) {
 		System.out.println("changing location");
 		int oldhGap = 0;
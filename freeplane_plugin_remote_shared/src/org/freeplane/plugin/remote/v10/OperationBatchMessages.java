@@ -0,0 +1,79 @@
+package org.freeplane.plugin.remote.v10;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.docear.messages.Messages.MindMapRequest;
+
+/**
+ * Messages to apply several operations on a map with one request.
+ *
+ * The operations are map updates as json. Added nodes get the id chosen by
+ * the client. The operations are applied in their order until one fails, all
+ * applied operations get the same revision.
+ *
+ * The batch id increases with every batch of a source. A batch which has
+ * already been applied is not applied again, so a batch can be sent again
+ * when its response got lost.
+ */
+public final class OperationBatchMessages {
+	private OperationBatchMessages() {
+	}
+
+	@SuppressWarnings("serial")
+	public static class ApplyOperationsRequest extends MindMapRequest {
+		private final long batchId;
+		private final List<String> operations;
+
+		public ApplyOperationsRequest(String source, String username, String mapId, long batchId, List<String> operations) {
+			super(source, username, mapId);
+			this.batchId = batchId;
+			this.operations = operations;
+		}
+
+		public long getBatchId() {
+			return batchId;
+		}
+
+		public List<String> getOperations() {
+			return operations;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class ApplyOperationsResponse implements Serializable {
+		private final long batchId;
+		private final int appliedOperationCount;
+		private final int currentRevision;
+		private final String error;
+
+		public ApplyOperationsResponse(long batchId, int appliedOperationCount, int currentRevision, String error) {
+			this.batchId = batchId;
+			this.appliedOperationCount = appliedOperationCount;
+			this.currentRevision = currentRevision;
+			this.error = error;
+		}
+
+		public long getBatchId() {
+			return batchId;
+		}
+
+		/**
+		 * number of operations applied from the start of the batch
+		 */
+		public int getAppliedOperationCount() {
+			return appliedOperationCount;
+		}
+
+		public int getCurrentRevision() {
+			return currentRevision;
+		}
+
+		/**
+		 * reason why the operation after the applied ones failed, or null
+		 */
+		public String getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.freeplane.plugin.remote.v10;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.docear.messages.Messages.MindMapRequest;
+
+/**
+ * Messages to receive the updates of a map as they happen instead of
+ * listening for update occurrences and fetching them afterwards.
+ *
+ * A subscriber receives {@link UpdateBatch} messages from the actor of the
+ * map and acknowledges each of them by replying an
+ * {@link UpdateBatchAcknowledgement} to the sender of the batch. At most
+ * maxUnacknowledgedBatches batches are sent without acknowledgement, later
+ * updates are collected and sent as one batch.
+ * FetchMindmapUpdatesRequest stays available to resync.
+ */
+public final class UpdateStreamMessages {
+	private UpdateStreamMessages() {
+	}
+
+	@SuppressWarnings("serial")
+	public static class SubscribeToUpdatesRequest extends MindMapRequest {
+		private final int sinceRevision;
+		private final int maxUnacknowledgedBatches;
+
+		public SubscribeToUpdatesRequest(String source, String username, String mapId, int sinceRevision, int maxUnacknowledgedBatches) {
+			super(source, username, mapId);
+			this.sinceRevision = sinceRevision;
+			this.maxUnacknowledgedBatches = maxUnacknowledgedBatches;
+		}
+
+		public int getSinceRevision() {
+			return sinceRevision;
+		}
+
+		public int getMaxUnacknowledgedBatches() {
+			return maxUnacknowledgedBatches;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class UnsubscribeFromUpdatesRequest extends MindMapRequest {
+		public UnsubscribeFromUpdatesRequest(String source, String username, String mapId) {
+			super(source, username, mapId);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class UpdateBatchAcknowledgement extends MindMapRequest {
+		private final int revision;
+
+		public UpdateBatchAcknowledgement(String source, String username, String mapId, int revision) {
+			super(source, username, mapId);
+			this.revision = revision;
+		}
+
+		/**
+		 * current revision of the acknowledged batch
+		 */
+		public int getRevision() {
+			return revision;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class UpdateBatch implements Serializable {
+		private final String mapId;
+		private final int sinceRevision;
+		private final int currentRevision;
+		private final List<String> orderedUpdates;
+
+		public UpdateBatch(String mapId, int sinceRevision, int currentRevision, List<String> orderedUpdates) {
+			this.mapId = mapId;
+			this.sinceRevision = sinceRevision;
+			this.currentRevision = currentRevision;
+			this.orderedUpdates = orderedUpdates;
+		}
+
+		public String getMapId() {
+			return mapId;
+		}
+
+		public int getSinceRevision() {
+			return sinceRevision;
+		}
+
+		public int getCurrentRevision() {
+			return currentRevision;
+		}
+
+		/**
+		 * updates as json, like in FetchMindmapUpdatesResponse
+		 */
+		public List<String> getOrderedUpdates() {
+			return orderedUpdates;
+		}
+	}
+}
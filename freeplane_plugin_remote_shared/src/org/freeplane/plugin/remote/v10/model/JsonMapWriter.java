@@ -0,0 +1,220 @@
+package org.freeplane.plugin.remote.v10.model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.nodelocation.LocationModel;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes maps and nodes as json directly from the freeplane nodes, without
+ * building a tree of {@link NodeModelDefault}s first. The output is the same
+ * as the one of {@link MapModel#toJsonString()} and
+ * {@link NodeModelBase#toJsonString()} after
+ * {@link org.freeplane.plugin.remote.RemoteUtils#loadNodesIntoModel(NodeModelBase, int)}.
+ *
+ * A node count of -1 writes all nodes. Otherwise the children of the nodes are
+ * written breadth first until the soft limit is reached, the remaining nodes
+ * only list the ids of their children.
+ */
+public final class JsonMapWriter {
+	// thread safe, shared by all requests
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private JsonMapWriter() {
+	}
+
+	public static String mapToJson(org.freeplane.features.map.MapModel freeplaneMap, String name, int revision, int nodeCount) throws IOException {
+		final StringWriter writer = new StringWriter();
+		writeMap(writer, freeplaneMap, name, revision, nodeCount);
+		return writer.toString();
+	}
+
+	public static String nodeToJson(NodeModel freeplaneNode, int nodeCount) throws IOException {
+		final StringWriter writer = new StringWriter();
+		writeNode(writer, freeplaneNode, nodeCount);
+		return writer.toString();
+	}
+
+	public static void writeMap(Writer writer, org.freeplane.features.map.MapModel freeplaneMap, String name, int revision, int nodeCount) throws IOException {
+		final NodeModel rootNode = freeplaneMap.getRootNode();
+		final JsonGenerator generator = jsonFactory.createGenerator(writer);
+		generator.writeStartObject();
+		writeStringField(generator, "id", freeplaneMap.getTitle());
+		generator.writeBooleanField("isReadonly", freeplaneMap.isReadOnly());
+		generator.writeFieldName("root");
+		new NodeWriter(generator, expandedNodes(rootNode, true, nodeCount)).writeRoot(rootNode);
+		writeStringField(generator, "name", name);
+		generator.writeNumberField("revision", revision);
+		generator.writeEndObject();
+		generator.flush();
+	}
+
+	/**
+	 * writes the node like a {@link NodeModelDefault}, even if it is the root
+	 */
+	public static void writeNode(Writer writer, NodeModel freeplaneNode, int nodeCount) throws IOException {
+		final JsonGenerator generator = jsonFactory.createGenerator(writer);
+		new NodeWriter(generator, expandedNodes(freeplaneNode, false, nodeCount)).writeNode(freeplaneNode);
+		generator.flush();
+	}
+
+	/**
+	 * the nodes whose children are written, in the order of
+	 * {@link org.freeplane.plugin.remote.RemoteUtils#loadNodesIntoModel(NodeModelBase, int)},
+	 * or null if all are written. Like {@link NodeModelRoot} a root written
+	 * with the map queues its left children before the right ones.
+	 */
+	private static Set<NodeModel> expandedNodes(NodeModel startNode, boolean isMapRoot, int nodeCount) {
+		if (nodeCount == -1) {
+			return null;
+		}
+		final Set<NodeModel> expandedNodes = Collections.newSetFromMap(new IdentityHashMap<NodeModel, Boolean>());
+		final LinkedList<NodeModel> nodeQueue = new LinkedList<NodeModel>();
+		nodeQueue.add(startNode);
+		while (nodeCount > 0 && !nodeQueue.isEmpty()) {
+			final NodeModel node = nodeQueue.pop();
+			expandedNodes.add(node);
+			final List<NodeModel> children = node.getChildren();
+			nodeCount -= children.size();
+			if (isMapRoot && node == startNode) {
+				for (NodeModel child : children) {
+					if (child.isLeft()) {
+						nodeQueue.add(child);
+					}
+				}
+				for (NodeModel child : children) {
+					if (!child.isLeft()) {
+						nodeQueue.add(child);
+					}
+				}
+			} else {
+				nodeQueue.addAll(children);
+			}
+		}
+		return expandedNodes;
+	}
+
+	private static void writeStringField(JsonGenerator generator, String fieldName, String value) throws IOException {
+		if (value != null) {
+			generator.writeStringField(fieldName, value);
+		}
+	}
+
+	private static class NodeWriter {
+		private final JsonGenerator generator;
+		private final Set<NodeModel> expandedNodes;
+
+		NodeWriter(JsonGenerator generator, Set<NodeModel> expandedNodes) {
+			this.generator = generator;
+			this.expandedNodes = expandedNodes;
+		}
+
+		private boolean isExpanded(NodeModel node) {
+			return expandedNodes == null || expandedNodes.contains(node);
+		}
+
+		void writeRoot(NodeModel node) throws IOException {
+			generator.writeStartObject();
+			writeBaseFields(node);
+			if (isExpanded(node)) {
+				generator.writeArrayFieldStart("leftChildren");
+				for (NodeModel child : node.getChildren()) {
+					if (child.isLeft()) {
+						writeNode(child);
+					}
+				}
+				generator.writeEndArray();
+				generator.writeArrayFieldStart("rightChildren");
+				for (NodeModel child : node.getChildren()) {
+					if (!child.isLeft()) {
+						writeNode(child);
+					}
+				}
+				generator.writeEndArray();
+			} else {
+				writeChildrenIds(node);
+			}
+			generator.writeEndObject();
+		}
+
+		void writeNode(NodeModel node) throws IOException {
+			generator.writeStartObject();
+			writeBaseFields(node);
+			if (isExpanded(node)) {
+				generator.writeArrayFieldStart("children");
+				for (NodeModel child : node.getChildren()) {
+					writeNode(child);
+				}
+				generator.writeEndArray();
+			} else {
+				writeChildrenIds(node);
+			}
+
+			final EdgeModel edgeModel = new EdgeModel(node);
+			if (!edgeModel.areAllValuesNull()) {
+				generator.writeObjectFieldStart("edgeStyle");
+				if (edgeModel.width != null) {
+					generator.writeNumberField("width", edgeModel.width);
+				}
+				if (edgeModel.color != null) {
+					generator.writeNumberField("color", edgeModel.color);
+				}
+				if (edgeModel.style != null) {
+					generator.writeStringField("style", edgeModel.style.name());
+				}
+				generator.writeEndObject();
+			}
+
+			final LocationModel location = node.getExtension(LocationModel.class);
+			generator.writeNumberField("hGap", location != null ? location.getHGap() : 0);
+			generator.writeNumberField("shiftY", location != null ? location.getShiftY() : 0);
+
+			final List<String> attributes = NodeModelDefault.getAttributes(node);
+			if (attributes != null) {
+				writeStringArray("attributes", attributes.toArray(new String[attributes.size()]));
+			}
+			generator.writeEndObject();
+		}
+
+		private void writeBaseFields(NodeModel node) throws IOException {
+			writeStringField(generator, "id", node.getID());
+			writeStringField(generator, "nodeText", node.getText());
+			generator.writeBooleanField("isHtml", node.getXmlText() != null);
+			generator.writeBooleanField("folded", node.isFolded());
+			writeStringArray("icons", NodeModelBase.getIconArray(node));
+			writeStringField(generator, "link", NodeModelBase.getLink(node));
+			writeStringField(generator, "locked", NodeModelBase.getLockingUsername(node));
+			writeStringField(generator, "note", NodeModelBase.getNote(node));
+		}
+
+		private void writeChildrenIds(NodeModel node) throws IOException {
+			generator.writeArrayFieldStart("childrenIds");
+			for (NodeModel child : node.getChildren()) {
+				if (child.getID() != null) {
+					generator.writeString(child.getID());
+				} else {
+					generator.writeNull();
+				}
+			}
+			generator.writeEndArray();
+		}
+
+		private void writeStringArray(String fieldName, String[] values) throws IOException {
+			generator.writeArrayFieldStart(fieldName);
+			for (String value : values) {
+				generator.writeString(value);
+			}
+			generator.writeEndArray();
+		}
+	}
+}
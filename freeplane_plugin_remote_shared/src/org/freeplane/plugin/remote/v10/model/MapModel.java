@@ -3,10 +3,10 @@ package org.freeplane.plugin.remote.v10.model;
 import java.io.Serializable;
 
 import org.freeplane.features.map.NodeModel;
+import org.freeplane.plugin.remote.RemoteUtils;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @JsonInclude(Include.NON_NULL)
 public class MapModel implements Serializable {
@@ -33,8 +33,7 @@ public class MapModel implements Serializable {
 	
 	public String toJsonString() {
 		try {
-		final ObjectMapper mapper = new ObjectMapper();
-		return mapper.writeValueAsString(this);
+		return RemoteUtils.getObjectMapper().writeValueAsString(this);
 		} catch (Exception e) {
 			return "";
 		}
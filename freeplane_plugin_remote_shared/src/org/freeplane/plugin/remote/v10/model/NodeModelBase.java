@@ -10,11 +10,11 @@ import org.freeplane.features.link.NodeLinks;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.note.NoteController;
 import org.freeplane.features.note.mindmapmode.MNoteController;
+import org.freeplane.plugin.remote.RemoteUtils;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @JsonInclude(Include.NON_NULL)
 abstract public class NodeModelBase implements Serializable {
@@ -65,12 +65,8 @@ abstract public class NodeModelBase implements Serializable {
 		this.icons = getIconArray(freeplaneNode);
 		this.image = getImage(freeplaneNode);
 		this.note = getNote(freeplaneNode);
-
-		URI uri = NodeLinks.getValidLink(freeplaneNode);
-		this.link = uri != null ? uri.toString() : null;
-
-		LockModel lm = freeplaneNode.getExtension(LockModel.class);
-		this.locked = lm != null ? lm.getUsername() : null;
+		this.link = getLink(freeplaneNode);
+		this.locked = getLockingUsername(freeplaneNode);
 
 		saveChildrenIds(freeplaneNode);
 
@@ -79,14 +75,24 @@ abstract public class NodeModelBase implements Serializable {
 		}
 	}
 	
-	private String getNote(org.freeplane.features.map.NodeModel freeplaneNode) {
+	static String getLink(NodeModel freeplaneNode) {
+		URI uri = NodeLinks.getValidLink(freeplaneNode);
+		return uri != null ? uri.toString() : null;
+	}
+
+	static String getLockingUsername(NodeModel freeplaneNode) {
+		LockModel lm = freeplaneNode.getExtension(LockModel.class);
+		return lm != null ? lm.getUsername() : null;
+	}
+
+	static String getNote(org.freeplane.features.map.NodeModel freeplaneNode) {
 		NoteController noteController = MNoteController.getController();
 		final String noteText = noteController.getNoteText(freeplaneNode);
 		//if no note, 'noteText' is null
 		return noteText;
 	}
 
-	private String[] getIconArray(org.freeplane.features.map.NodeModel freeplaneNode) {
+	static String[] getIconArray(org.freeplane.features.map.NodeModel freeplaneNode) {
 		String[] iconNames = new String[freeplaneNode.getIcons().size()];
 		int count = 0;
 		for(MindIcon mi : freeplaneNode.getIcons()) {
@@ -124,8 +130,7 @@ abstract public class NodeModelBase implements Serializable {
 	
 	public String toJsonString() {
 		try {
-		final ObjectMapper mapper = new ObjectMapper();
-		return mapper.writeValueAsString(this);
+		return RemoteUtils.getObjectMapper().writeValueAsString(this);
 		} catch (Exception e) {
 			return "";
 		}
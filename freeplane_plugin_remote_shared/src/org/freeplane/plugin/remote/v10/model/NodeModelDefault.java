@@ -59,14 +59,22 @@ public class NodeModelDefault extends NodeModelBase implements Serializable{
 	}
 	
 	private void loadAttributes(org.freeplane.features.map.NodeModel freeplaneNode){
+		attributes = getAttributes(freeplaneNode);
+	}
+	
+	/**
+	 * attributes as "name%:%value", or null if the node has no attribute table
+	 */
+	static List<String> getAttributes(org.freeplane.features.map.NodeModel freeplaneNode){
 		NodeAttributeTableModel attributeModel = freeplaneNode.getExtension(NodeAttributeTableModel.class);
 		if(attributeModel != null) {
-			this.attributes = new ArrayList<String>();
+			final List<String> attributes = new ArrayList<String>();
 			for (Attribute attribute : attributeModel.getAttributes()){
-				this.attributes.add(attribute.getName()+"%:%"+String.valueOf(attribute.getValue()));
+				attributes.add(attribute.getName()+"%:%"+String.valueOf(attribute.getValue()));
 			}
+			return attributes;
 		} else {
-			attributes = null;
+			return null;
 		}
 	}
 
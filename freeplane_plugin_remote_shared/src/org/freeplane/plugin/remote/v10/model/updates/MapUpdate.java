@@ -1,5 +1,8 @@
 package org.freeplane.plugin.remote.v10.model.updates;
 
+import org.freeplane.plugin.remote.RemoteUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public abstract class MapUpdate {
@@ -29,10 +32,34 @@ public abstract class MapUpdate {
 		return source;
 	}
 
+	/**
+	 * creates the update of the right type from its json representation
+	 */
+	public static MapUpdate fromJson(String json) {
+		try {
+			final ObjectMapper mapper = RemoteUtils.getObjectMapper();
+			final JsonNode mapUpdateJson = mapper.readTree(json);
+			final Type type = Type.valueOf(mapUpdateJson.get("type").asText());
+			switch (type) {
+			case AddNode:
+				return mapper.treeToValue(mapUpdateJson, AddNodeUpdate.class);
+			case ChangeNodeAttribute:
+				return mapper.treeToValue(mapUpdateJson, ChangeNodeAttributeUpdate.class);
+			case DeleteNode:
+				return mapper.treeToValue(mapUpdateJson, DeleteNodeUpdate.class);
+			case MoveNode:
+				return mapper.treeToValue(mapUpdateJson, MoveNodeUpdate.class);
+			default:
+				throw new AssertionError("Unknown MapUpdate type " + type);
+			}
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Could not deserialize MapUpdate: " + json, e);
+		}
+	}
+
 	public String toJson() {
 		try {
-			final ObjectMapper mapper = new ObjectMapper();
-			return mapper.writeValueAsString(this);
+			return RemoteUtils.getObjectMapper().writeValueAsString(this);
 		} catch (Exception e) {
 			throw new AssertionError("Could not serialize MapUpdate from type " + this.getClass().getSimpleName());
 		}
@@ -0,0 +1,71 @@
+package org.freeplane.plugin.script;
+
+import groovy.lang.Script;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** least recently used script classes by script text or file.
+ * Only the classes are shared, each execution creates its own script instance and binding. */
+class CompiledScriptCache {
+	private final int capacity;
+	private final LinkedHashMap<Object, Class<? extends Script>> scriptClasses;
+	private long compileCount;
+	private long hitCount;
+
+	CompiledScriptCache(final int capacity) {
+		this.capacity = capacity;
+		scriptClasses = new LinkedHashMap<Object, Class<? extends Script>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Class<? extends Script>> eldest) {
+				return size() > CompiledScriptCache.this.capacity;
+			}
+		};
+	}
+
+	synchronized Class<? extends Script> get(final Object script) {
+		final Class<? extends Script> scriptClass = scriptClasses.get(createKey(script));
+		if (scriptClass != null)
+			hitCount++;
+		return scriptClass;
+	}
+
+	synchronized void put(final Object script, final Class<? extends Script> scriptClass) {
+		compileCount++;
+		scriptClasses.put(createKey(script), scriptClass);
+	}
+
+	/** removes all classes and starts counting compilations and hits again. */
+	synchronized void clear() {
+		scriptClasses.clear();
+		compileCount = 0;
+		hitCount = 0;
+	}
+
+	synchronized long getCompileCount() {
+		return compileCount;
+	}
+
+	synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/** the ratio of scripts found in the cache to all requested scripts. */
+	synchronized double getHitRate() {
+		final long requests = hitCount + compileCount;
+		return requests == 0 ? 0 : (double) hitCount / requests;
+	}
+
+	private Object createKey(final Object script) {
+		if (script instanceof File) {
+			// an edited file must be compiled again
+			final File file = (File) script;
+			return Arrays.asList(file.getAbsolutePath(), file.lastModified(), file.length());
+		}
+		return script;
+	}
+}
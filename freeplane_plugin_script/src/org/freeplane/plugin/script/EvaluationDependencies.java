@@ -1,7 +1,12 @@
 package org.freeplane.plugin.script;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -18,25 +23,87 @@ public class EvaluationDependencies implements IExtension{
 	private HashMap<NodeModel, HashSet<NodeModel>> onBranchDependencies = new HashMap<NodeModel, HashSet<NodeModel>>();
 	private HashSet<NodeModel> onAnyNodeDependencies = new HashSet<NodeModel>();
 
+	/** adds all formula nodes which directly or indirectly depend on node to result. */
 	public Set<NodeModel> getDependencies(Set<NodeModel> result, final NodeModel node) {
-		final HashSet<NodeModel> onNode = onNodeDependencies.get(node);
-		if (onNode != null)
-			addRecursively(result, onNode);
-		for (Entry<NodeModel, HashSet<NodeModel>> entry : onBranchDependencies.entrySet()) {
-			if (node.isDescendantOf(entry.getKey()))
-				addRecursively(result, entry.getValue());
+		final LinkedList<NodeModel> queue = new LinkedList<NodeModel>();
+		queue.add(node);
+		while (!queue.isEmpty()) {
+			final NodeModel changedNode = queue.removeFirst();
+			for (NodeModel dependentNode : getDirectDependencies(changedNode)) {
+				// avoid loops
+				if (result.add(dependentNode))
+					queue.add(dependentNode);
+			}
 		}
-		addRecursively(result, onAnyNodeDependencies);
 //		System.out.println("dependencies on(" + node + "): " + result);
 		return result;
 	}
 
-	private void addRecursively(Set<NodeModel> dependentNodes, final HashSet<NodeModel> nodesToAdd) {
-		for (NodeModel node : nodesToAdd) {
-			// avoid loops
-			if (dependentNodes.add(node))
-				dependentNodes.addAll(getDependencies(dependentNodes, node));
+	/** returns the formula nodes which accessed node, one of its ancestors' branches or all nodes. */
+	private Set<NodeModel> getDirectDependencies(final NodeModel node) {
+		final Set<NodeModel> dependencies = new LinkedHashSet<NodeModel>();
+		final HashSet<NodeModel> onNode = onNodeDependencies.get(node);
+		if (onNode != null)
+			dependencies.addAll(onNode);
+		if (!onBranchDependencies.isEmpty()) {
+			for (NodeModel ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+				final HashSet<NodeModel> onBranch = onBranchDependencies.get(ancestor);
+				if (onBranch != null)
+					dependencies.addAll(onBranch);
+			}
+		}
+		dependencies.addAll(onAnyNodeDependencies);
+		dependencies.remove(node);
+		return dependencies;
+	}
+
+	/**
+	 * sorts nodes so that each formula node follows all nodes of the collection it depends on.
+	 * Nodes on dependency cycles or depending on them can not be ordered and are appended at the end,
+	 * real circular references are reported when they are evaluated.
+	 * Note that all formulas accessing all nodes depend on each other.
+	 */
+	public List<NodeModel> sortTopologically(final Collection<NodeModel> nodes) {
+		final Set<NodeModel> nodeSet = new LinkedHashSet<NodeModel>(nodes);
+		final HashMap<NodeModel, List<NodeModel>> dependentNodes = new HashMap<NodeModel, List<NodeModel>>();
+		final HashMap<NodeModel, Integer> unsortedDependencyCounts = new HashMap<NodeModel, Integer>();
+		for (NodeModel node : nodeSet) {
+			final List<NodeModel> dependencies = new ArrayList<NodeModel>();
+			for (NodeModel dependentNode : getDirectDependencies(node)) {
+				if (nodeSet.contains(dependentNode)) {
+					dependencies.add(dependentNode);
+					final Integer count = unsortedDependencyCounts.get(dependentNode);
+					unsortedDependencyCounts.put(dependentNode, count == null ? 1 : count + 1);
+				}
+			}
+			dependentNodes.put(node, dependencies);
+		}
+		final List<NodeModel> sortedNodes = new ArrayList<NodeModel>(nodeSet.size());
+		final LinkedList<NodeModel> readyNodes = new LinkedList<NodeModel>();
+		for (NodeModel node : nodeSet) {
+			if (!unsortedDependencyCounts.containsKey(node))
+				readyNodes.add(node);
+		}
+		while (!readyNodes.isEmpty()) {
+			final NodeModel node = readyNodes.removeFirst();
+			sortedNodes.add(node);
+			for (NodeModel dependentNode : dependentNodes.get(node)) {
+				final int count = unsortedDependencyCounts.get(dependentNode) - 1;
+				if (count == 0) {
+					unsortedDependencyCounts.remove(dependentNode);
+					readyNodes.add(dependentNode);
+				}
+				else
+					unsortedDependencyCounts.put(dependentNode, count);
+			}
+		}
+		if (sortedNodes.size() < nodeSet.size()) {
+			for (NodeModel node : nodeSet) {
+				if (unsortedDependencyCounts.containsKey(node))
+					sortedNodes.add(node);
+			}
 		}
+		return sortedNodes;
 	}
 
 	/** accessedNode was accessed when formulaNode was evaluated. */
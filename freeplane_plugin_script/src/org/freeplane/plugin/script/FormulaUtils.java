@@ -1,8 +1,11 @@
 package org.freeplane.plugin.script;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,6 +14,7 @@ import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.TransformedTextCache;
 import org.freeplane.plugin.script.proxy.FormulaCache;
 
 public class FormulaUtils {
@@ -95,16 +99,16 @@ public class FormulaUtils {
 		}
 	}
 
+	/** marks all formulas depending on the changed nodes as dirty.
+	 * @return the dependent nodes in evaluation order, that is each formula node follows the nodes it depends on. */
 	public static List<NodeModel> manageChangeAndReturnDependencies(boolean includeChanged, final NodeModel... nodes) {
-		final ArrayList<NodeModel> dependencies = new ArrayList<NodeModel>();
+		final LinkedHashSet<NodeModel> dependencySet = new LinkedHashSet<NodeModel>();
 		for (int i = 0; i < nodes.length; i++) {
-			final LinkedHashSet<NodeModel> nodeDependencies = new LinkedHashSet<NodeModel>(0);
-			getEvaluationDependencies(nodes[i].getMap()).getDependencies(nodeDependencies, nodes[i]);
-			if (nodeDependencies != null)
-				dependencies.addAll(nodeDependencies);
 			if (includeChanged)
-				dependencies.add(nodes[i]);
+				dependencySet.add(nodes[i]);
+			getEvaluationDependencies(nodes[i].getMap()).getDependencies(dependencySet, nodes[i]);
 		}
+		final List<NodeModel> dependencies = sortTopologically(dependencySet);
 		if (ENABLE_CACHING) {
 			for (NodeModel nodeModel : dependencies) {
 				getFormulaCache(nodeModel.getMap()).markAsDirtyIfFormulaNode(nodeModel);
@@ -113,6 +117,25 @@ public class FormulaUtils {
 		return dependencies;
 	}
 
+	/** sorts nodes so that each formula node follows all nodes of the collection it depends on.
+	 * Nodes of different maps are sorted by the dependencies of their own map, map by map. */
+	public static List<NodeModel> sortTopologically(final Collection<NodeModel> nodes) {
+		final LinkedHashMap<MapModel, List<NodeModel>> nodesByMap = new LinkedHashMap<MapModel, List<NodeModel>>();
+		for (NodeModel node : nodes) {
+			List<NodeModel> mapNodes = nodesByMap.get(node.getMap());
+			if (mapNodes == null) {
+				mapNodes = new ArrayList<NodeModel>();
+				nodesByMap.put(node.getMap(), mapNodes);
+			}
+			mapNodes.add(node);
+		}
+		final List<NodeModel> sortedNodes = new ArrayList<NodeModel>(nodes.size());
+		for (Map.Entry<MapModel, List<NodeModel>> mapNodes : nodesByMap.entrySet()) {
+			sortedNodes.addAll(getEvaluationDependencies(mapNodes.getKey()).sortTopologically(mapNodes.getValue()));
+		}
+		return sortedNodes;
+	}
+
 	private static FormulaCache getFormulaCache(MapModel map) {
 		FormulaCache formulaCache = (FormulaCache) map.getExtension(FormulaCache.class);
 		if (formulaCache == null) {
@@ -136,7 +159,7 @@ public class FormulaUtils {
 	}
 
 	public static void accessBranch(NodeModel accessingNode, NodeModel accessedNode) {
-		getEvaluationDependencies(accessingNode.getMap()).accessBranch(accessingNode, accessingNode);
+		getEvaluationDependencies(accessingNode.getMap()).accessBranch(accessingNode, accessedNode);
 	}
 
 	public static void accessAll(NodeModel accessingNode) {
@@ -148,6 +171,7 @@ public class FormulaUtils {
             System.out.println("clearing formula cache for " + map.getTitle());
 		map.removeExtension(FormulaCache.class);
 		map.removeExtension(EvaluationDependencies.class);
+		map.removeExtension(TransformedTextCache.class);
 	}
 
 }
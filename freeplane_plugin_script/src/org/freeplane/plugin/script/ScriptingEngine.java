@@ -63,6 +63,8 @@ public class ScriptingEngine {
 	public static final String SCRIPT_PREFIX = "script";
 	private static final HashMap<String, Object> sScriptCookies = new HashMap<String, Object>();
 	private static List<String> classpath;
+	private static final int COMPILED_SCRIPT_CACHE_SIZE = 500;
+	private static final CompiledScriptCache compiledScriptCache = new CompiledScriptCache(COMPILED_SCRIPT_CACHE_SIZE);
 	public static final IErrorHandler IGNORING_SCRIPT_ERROR_HANDLER = new IErrorHandler() {
     	public void gotoLine(final int pLineNumber) {
     	}
@@ -187,6 +189,9 @@ public class ScriptingEngine {
 		binding.setVariable("c", null);
 		binding.setVariable("node", null);
 		binding.setVariable("cookies", ScriptingEngine.sScriptCookies);
+		final Class<? extends Script> scriptClass = compiledScriptCache.get(script);
+		if(scriptClass != null)
+			return InvokerHelper.createScript(scriptClass, binding);
 		final ClassLoader classLoader = ScriptingEngine.class.getClassLoader();
 		final GroovyShell shell = new GroovyShell(classLoader, binding, createCompilerConfiguration()); 
 		final Script compiledScript;
@@ -195,8 +200,19 @@ public class ScriptingEngine {
 		else if(script instanceof File)
 			compiledScript = shell.parse((File)script);
 		else throw new IllegalArgumentException();
+		compiledScriptCache.put(script, compiledScript.getClass());
 		return compiledScript;
     }
+
+	/** number of scripts compiled since start or since the last change of the classpath. */
+	public static long getCompiledScriptCount() {
+		return compiledScriptCache.getCompileCount();
+	}
+
+	/** the ratio of compilations saved by reusing compiled script classes since start or since the last change of the classpath. */
+	public static double getCompiledScriptCacheHitRate() {
+		return compiledScriptCache.getHitRate();
+	}
 	
 	public static Script compileScriptCheckExceptions(Object script,  final IErrorHandler pErrorHandler, final PrintStream pOutStream, ScriptingPermissions permissions){
 		try{
@@ -320,6 +336,8 @@ public class ScriptingEngine {
 		if (ScriptingEngine.classpath != null)
 			throw new SecurityException("reset of script classpath is forbidden.");
 		ScriptingEngine.classpath = Collections.unmodifiableList(classpath);
+		// scripts compiled before may resolve classes differently
+		compiledScriptCache.clear();
 		if (!classpath.isEmpty())
 			LogUtils.info("extending script's classpath by " + classpath);
     }
@@ -78,6 +78,12 @@ public class ScriptCondition extends ASelectableCondition {
         return false;
 	}
 
+	@Override
+	public boolean dependsOnOtherNodes() {
+		// scripts can read any node of any map
+		return true;
+	}
+
 	private void setErrorStatus(final String info) {
 		if(! errorReported){
 			errorReported = true;
@@ -4,7 +4,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ ConvertibleTest.class, ScriptingConfigurationTest.class })
+@Suite.SuiteClasses({ ConvertibleTest.class, ScriptingConfigurationTest.class, CompiledScriptCacheTest.class })
 public class AllFreeplanePluginScriptUnitTests {
 	//nothing
 }
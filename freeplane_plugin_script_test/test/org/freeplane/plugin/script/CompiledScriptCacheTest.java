@@ -0,0 +1,100 @@
+package org.freeplane.plugin.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import groovy.lang.Script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class CompiledScriptCacheTest {
+	public static class FirstScript extends Script {
+		@Override
+		public Object run() {
+			return 1;
+		}
+	}
+
+	public static class SecondScript extends Script {
+		@Override
+		public Object run() {
+			return 2;
+		}
+	}
+
+	private static final PrintStream NO_OUTPUT = new PrintStream(new ByteArrayOutputStream());
+
+	@Test
+	public void cachedClassesAreFoundByScriptText() {
+		final CompiledScriptCache cache = new CompiledScriptCache(10);
+		assertNull(cache.get("1"));
+		cache.put("1", FirstScript.class);
+		assertSame(FirstScript.class, cache.get("1"));
+		assertSame(FirstScript.class, cache.get("1"));
+		assertEquals(1, cache.getCompileCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void leastRecentlyUsedClassIsRemoved() {
+		final CompiledScriptCache cache = new CompiledScriptCache(2);
+		cache.put("1", FirstScript.class);
+		cache.put("2", SecondScript.class);
+		cache.get("1");
+		cache.put("3", SecondScript.class);
+		assertSame(FirstScript.class, cache.get("1"));
+		assertNull(cache.get("2"));
+	}
+
+	@Test
+	public void changedScriptFileIsNotFound() throws Exception {
+		final File file = File.createTempFile("script", ".groovy");
+		try {
+			final CompiledScriptCache cache = new CompiledScriptCache(10);
+			cache.put(file, FirstScript.class);
+			assertSame(FirstScript.class, cache.get(file));
+			final FileWriter writer = new FileWriter(file);
+			writer.write("2");
+			writer.close();
+			assertNull(cache.get(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void clearRemovesClassesAndResetsCounters() {
+		final CompiledScriptCache cache = new CompiledScriptCache(10);
+		cache.put("1", FirstScript.class);
+		cache.get("1");
+		cache.clear();
+		assertEquals(0, cache.getCompileCount());
+		assertEquals(0, cache.getHitCount());
+		assertNull(cache.get("1"));
+	}
+
+	@Test
+	public void scriptsAreCompiledAgainAfterClasspathChange() {
+		final String script = "1 + 1";
+		final long compileCount = ScriptingEngine.getCompiledScriptCount();
+		final Script first = ScriptingEngine.compileScriptCheckExceptions(script, null, NO_OUTPUT, null);
+		final Script second = ScriptingEngine.compileScriptCheckExceptions(script, null, NO_OUTPUT, null);
+		assertNotSame(first, second);
+		assertSame(first.getClass(), second.getClass());
+		assertEquals(compileCount + 1, ScriptingEngine.getCompiledScriptCount());
+		ScriptingEngine.setClasspath(Collections.<String> emptyList());
+		assertEquals(0, ScriptingEngine.getCompiledScriptCount());
+		final Script third = ScriptingEngine.compileScriptCheckExceptions(script, null, NO_OUTPUT, null);
+		assertNotSame(first.getClass(), third.getClass());
+		assertEquals(1, ScriptingEngine.getCompiledScriptCount());
+	}
+}
@@ -28,6 +28,7 @@ import org.freeplane.plugin.workspace.features.ModeControlAlreadyRegisteredExcep
 import org.freeplane.plugin.workspace.features.WorkspaceMapModelExtension;
 import org.freeplane.plugin.workspace.features.WorkspaceModelExtensionWriterReader;
 import org.freeplane.plugin.workspace.io.FileSystemManager;
+import org.freeplane.plugin.workspace.io.FolderWatcher;
 import org.freeplane.plugin.workspace.mindmapmode.MModeWorkspaceController;
 import org.freeplane.plugin.workspace.model.AWorkspaceTreeNode;
 import org.freeplane.plugin.workspace.model.WorkspaceModel;
@@ -44,6 +45,7 @@ public final class WorkspaceController implements IExtension {
 	public static final String WORKSPACE_VERSION = "1.0";
 	
 	private static WorkspaceController self;
+	private static FolderWatcher folderWatcher;
 	private static Map<Class<? extends ModeController>, Class<? extends AWorkspaceModeExtension>> modeWorkspaceCtrlMap = new HashMap<Class<? extends ModeController>, Class<? extends AWorkspaceModeExtension>>();
 	
 	private WorkspaceController(Controller controller) {
@@ -227,7 +229,12 @@ public final class WorkspaceController implements IExtension {
 			}
 			modeExt.shutdown();
 		}
-		
+		synchronized (WorkspaceController.class) {
+			if(folderWatcher != null) {
+				folderWatcher.stop();
+				folderWatcher = null;
+			}
+		}
 	}
 	
 	public static WorkspaceModel getCurrentModel() {
@@ -249,6 +256,16 @@ public final class WorkspaceController implements IExtension {
 		return new FileSystemManager(getCurrentModeExtension().getFileTypeManager());
 	}
 
+	/**
+	 * the watcher for the folders of all workspace projects
+	 */
+	public static synchronized FolderWatcher getFolderWatcher() {
+		if(folderWatcher == null) {
+			folderWatcher = new FolderWatcher();
+		}
+		return folderWatcher;
+	}
+
 	public static void loadProject(AWorkspaceProject project) throws IOException {
 		getCurrentModeExtension().getProjectLoader().loadProject(project);
 		indexProject(project);
@@ -482,7 +482,16 @@ public class FileSystemManager {
 		return files;
 	}
 
-	private AWorkspaceTreeNode createFileNode(final AWorkspaceTreeNode parent, final File file) {
+	/**
+	 * adds a node for the file or directory to the parent, the content of a
+	 * directory is not read
+	 * 
+	 * @return the new node, or the parent if no node was created
+	 */
+	public AWorkspaceTreeNode createFileNode(final AWorkspaceTreeNode parent, final File file) {
+		if (file.isDirectory()) {
+			return createFileNode(parent, FileReadManager.DIRECTORY_HANDLE, file);
+		}
 		String fileExtension = FileReadManager.DEFAULT_HANDLE;
 		int dot = file.getPath().lastIndexOf('.');
 		if (-1 != dot) {
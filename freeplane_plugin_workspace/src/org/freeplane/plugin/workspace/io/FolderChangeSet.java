@@ -0,0 +1,91 @@
+package org.freeplane.plugin.workspace.io;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The files and directories below a watched folder which have been added,
+ * removed or modified since the last change set was delivered.
+ *
+ * Events for the same file are coalesced: a file which is added and removed
+ * again does not show up at all, a file which is added and modified is only
+ * added and a file which is removed and added again is modified.
+ */
+public class FolderChangeSet {
+	private final File folder;
+	private final Set<File> added = new LinkedHashSet<File>();
+	private final Set<File> removed = new LinkedHashSet<File>();
+	private final Set<File> modified = new LinkedHashSet<File>();
+
+	public FolderChangeSet(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * the watched folder
+	 */
+	public File getFolder() {
+		return folder;
+	}
+
+	public void fileCreated(File file) {
+		if (removed.remove(file)) {
+			modified.add(file);
+		}
+		else {
+			added.add(file);
+		}
+	}
+
+	public void fileChanged(File file) {
+		if (!added.contains(file)) {
+			modified.add(file);
+		}
+	}
+
+	public void fileDeleted(File file) {
+		if (!added.remove(file)) {
+			modified.remove(file);
+			removed.add(file);
+		}
+	}
+
+	/**
+	 * adds the changes of the other change set, which happened after the
+	 * changes of this one
+	 */
+	public void addAll(FolderChangeSet changes) {
+		for (File file : changes.getRemoved()) {
+			fileDeleted(file);
+		}
+		for (File file : changes.getAdded()) {
+			fileCreated(file);
+		}
+		for (File file : changes.getModified()) {
+			fileChanged(file);
+		}
+	}
+
+	public Set<File> getAdded() {
+		return Collections.unmodifiableSet(added);
+	}
+
+	public Set<File> getRemoved() {
+		return Collections.unmodifiableSet(removed);
+	}
+
+	public Set<File> getModified() {
+		return Collections.unmodifiableSet(modified);
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+	}
+
+	public String toString() {
+		return this.getClass().getSimpleName() + "[folder=" + folder + ";added=" + added.size() + ";removed=" + removed.size() + ";modified="
+				+ modified.size() + "]";
+	}
+}
@@ -0,0 +1,420 @@
+package org.freeplane.plugin.workspace.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import name.pachler.nio.file.ClosedWatchServiceException;
+import name.pachler.nio.file.FileSystems;
+import name.pachler.nio.file.Path;
+import name.pachler.nio.file.Paths;
+import name.pachler.nio.file.StandardWatchEventKind;
+import name.pachler.nio.file.WatchEvent;
+import name.pachler.nio.file.WatchKey;
+import name.pachler.nio.file.WatchService;
+
+import org.freeplane.core.util.LogUtils;
+
+/**
+ * Watches folders and their sub folders for added, removed and modified files.
+ *
+ * The folders are registered with the native file change notification of the
+ * system through jpathwatch, one background thread waits for the events of
+ * all folders. The changes of a folder are collected until no further change
+ * happened for the interval, or for at most {@link #MAX_PENDING_CHECKS}
+ * intervals, and are then delivered as one {@link FolderChangeSet} to the
+ * listeners of the folder on the event dispatch thread. Files and folders
+ * whose names start with a dot are ignored, like in {@link FileSystemManager}.
+ */
+public class FolderWatcher {
+	public static final long DEFAULT_INTERVAL = 2000;
+	public static final int MAX_PENDING_CHECKS = 10;
+
+	private static final WatchEvent.Kind<?>[] EVENT_KINDS = new WatchEvent.Kind<?>[] { StandardWatchEventKind.ENTRY_CREATE,
+			StandardWatchEventKind.ENTRY_DELETE, StandardWatchEventKind.ENTRY_MODIFY };
+
+	private final long interval;
+	private final Map<File, WatchedFolder> watchedFolders = new HashMap<File, WatchedFolder>();
+	// every directory below the watched folders is registered once, even if the folders are nested
+	private final Map<File, WatchKey> directoryKeys = new HashMap<File, WatchKey>();
+	private final Map<WatchKey, File> keyDirectories = new HashMap<WatchKey, File>();
+	private WatchService watchService;
+	private Thread thread;
+
+	public FolderWatcher() {
+		this(DEFAULT_INTERVAL);
+	}
+
+	public FolderWatcher(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * starts watching the folder for the listener, a folder which is watched
+	 * already is not scanned again
+	 */
+	public synchronized void addFolderChangeListener(File folder, IFolderChangeListener listener) {
+		if (folder == null || listener == null) {
+			return;
+		}
+		File key = folder.getAbsoluteFile();
+		WatchedFolder watchedFolder = watchedFolders.get(key);
+		if (watchedFolder == null) {
+			if (!key.isDirectory() || !start()) {
+				LogUtils.warn("could not watch folder " + key);
+				return;
+			}
+			watchedFolder = new WatchedFolder(key);
+			register(key, watchedFolder.files);
+			watchedFolders.put(key, watchedFolder);
+		}
+		if (!watchedFolder.listeners.contains(listener)) {
+			watchedFolder.listeners.add(listener);
+		}
+	}
+
+	/**
+	 * stops watching the folder for the listener, the folder is not watched
+	 * anymore when it has no more listeners
+	 */
+	public synchronized void removeFolderChangeListener(File folder, IFolderChangeListener listener) {
+		if (folder == null || listener == null) {
+			return;
+		}
+		File key = folder.getAbsoluteFile();
+		WatchedFolder watchedFolder = watchedFolders.get(key);
+		if (watchedFolder == null) {
+			return;
+		}
+		watchedFolder.listeners.remove(listener);
+		if (watchedFolder.listeners.isEmpty()) {
+			watchedFolders.remove(key);
+			unregister(key, false);
+		}
+	}
+
+	public synchronized boolean isWatched(File folder) {
+		return folder != null && watchedFolders.containsKey(folder.getAbsoluteFile());
+	}
+
+	/**
+	 * stops the background thread, pending changes are dropped
+	 */
+	public synchronized void stop() {
+		if (watchService == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		}
+		catch (IOException e) {
+			LogUtils.warn(e);
+		}
+		thread.interrupt();
+		watchService = null;
+		thread = null;
+		directoryKeys.clear();
+		keyDirectories.clear();
+	}
+
+	private boolean start() {
+		if (watchService != null) {
+			return true;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		}
+		catch (Throwable e) {
+			// the native library is not available for every system
+			LogUtils.warn("could not start folder watcher", e);
+			return false;
+		}
+		final WatchService service = watchService;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch(service);
+			}
+		}, "workspace folder watcher");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * registers the directory and its visible sub directories and adds their
+	 * visible files to the given files
+	 */
+	private void register(File directory, Map<File, Long> files) {
+		if (!directoryKeys.containsKey(directory)) {
+			try {
+				WatchKey key = Paths.get(directory.getPath()).register(watchService, EVENT_KINDS);
+				directoryKeys.put(directory, key);
+				keyDirectories.put(key, directory);
+			}
+			catch (IOException e) {
+				LogUtils.warn("could not watch folder " + directory, e);
+			}
+		}
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (isHidden(child)) {
+				continue;
+			}
+			files.put(child, child.isDirectory() ? 0 : child.lastModified());
+			if (child.isDirectory()) {
+				register(child, files);
+			}
+		}
+	}
+
+	/**
+	 * cancels the registrations of the directory and its sub directories which
+	 * have been removed or are not below another watched folder
+	 */
+	private void unregister(File directory, boolean removed) {
+		Iterator<Map.Entry<File, WatchKey>> directories = directoryKeys.entrySet().iterator();
+		while (directories.hasNext()) {
+			Map.Entry<File, WatchKey> registeredDirectory = directories.next();
+			if (isBelow(registeredDirectory.getKey(), directory)
+					&& (removed || getWatchedFolders(registeredDirectory.getKey()).isEmpty())) {
+				WatchKey key = registeredDirectory.getValue();
+				// jpathwatch fails to cancel keys it has invalidated itself
+				if (key.isValid()) {
+					key.cancel();
+				}
+				keyDirectories.remove(key);
+				directories.remove();
+			}
+		}
+	}
+
+	private void watch(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = hasPendingChanges() ? service.poll(interval, TimeUnit.MILLISECONDS) : service.take();
+				if (key != null) {
+					processEvents(key);
+				}
+				deliverSettledChanges();
+			}
+		}
+		catch (InterruptedException e) {
+		}
+		catch (ClosedWatchServiceException e) {
+		}
+	}
+
+	private synchronized void processEvents(WatchKey key) {
+		File directory = keyDirectories.get(key);
+		List<WatchEvent<?>> events = key.pollEvents();
+		if (directory == null) {
+			return;
+		}
+		for (WatchEvent<?> event : events) {
+			if (event.kind() == StandardWatchEventKind.OVERFLOW) {
+				for (WatchedFolder watchedFolder : getWatchedFolders(directory)) {
+					watchedFolder.rescan();
+				}
+				continue;
+			}
+			File file = new File(directory, ((Path) event.context()).toString());
+			if (isHidden(file)) {
+				continue;
+			}
+			if (event.kind() == StandardWatchEventKind.ENTRY_DELETE) {
+				// a directory moved away would still be reported with its old path
+				unregister(file, true);
+			}
+			for (WatchedFolder watchedFolder : getWatchedFolders(directory)) {
+				if (event.kind() == StandardWatchEventKind.ENTRY_CREATE) {
+					watchedFolder.fileCreated(file);
+				}
+				else if (event.kind() == StandardWatchEventKind.ENTRY_DELETE) {
+					watchedFolder.fileDeleted(file);
+				}
+				else {
+					watchedFolder.fileChanged(file);
+				}
+			}
+		}
+		if (!key.reset()) {
+			// the directory has been removed
+			keyDirectories.remove(key);
+			directoryKeys.remove(directory);
+		}
+	}
+
+	private synchronized boolean hasPendingChanges() {
+		for (WatchedFolder watchedFolder : watchedFolders.values()) {
+			if (watchedFolder.pendingChanges != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void deliverSettledChanges() {
+		long now = System.currentTimeMillis();
+		for (WatchedFolder watchedFolder : watchedFolders.values()) {
+			// wait until the folder has settled, e.g. a file is not copied anymore
+			if (watchedFolder.pendingChanges != null
+					&& (now - watchedFolder.lastChange >= interval || now - watchedFolder.firstChange >= interval * MAX_PENDING_CHECKS)) {
+				watchedFolder.deliverChanges();
+			}
+		}
+	}
+
+	private List<WatchedFolder> getWatchedFolders(File directory) {
+		List<WatchedFolder> folders = new ArrayList<WatchedFolder>(1);
+		for (WatchedFolder watchedFolder : watchedFolders.values()) {
+			if (isBelow(directory, watchedFolder.folder)) {
+				folders.add(watchedFolder);
+			}
+		}
+		return folders;
+	}
+
+	private static boolean isBelow(File file, File folder) {
+		String path = file.getPath();
+		String folderPath = folder.getPath();
+		return path.startsWith(folderPath)
+				&& (path.length() == folderPath.length() || path.charAt(folderPath.length()) == File.separatorChar || folderPath
+						.endsWith(File.separator));
+	}
+
+	private static boolean isHidden(File file) {
+		return file.getName().startsWith(".");
+	}
+
+	/***********************************************************************************
+	 * INTERNAL CLASS DEFINITIONS
+	 **********************************************************************************/
+
+	private class WatchedFolder {
+		private final File folder;
+		private final List<IFolderChangeListener> listeners = new CopyOnWriteArrayList<IFolderChangeListener>();
+		// the visible files and directories below the folder with their modification times, 0 for directories
+		private final Map<File, Long> files = new HashMap<File, Long>();
+		private FolderChangeSet pendingChanges;
+		private long firstChange;
+		private long lastChange;
+
+		public WatchedFolder(File folder) {
+			this.folder = folder;
+		}
+
+		private FolderChangeSet getPendingChanges() {
+			lastChange = System.currentTimeMillis();
+			if (pendingChanges == null) {
+				pendingChanges = new FolderChangeSet(folder);
+				firstChange = lastChange;
+			}
+			return pendingChanges;
+		}
+
+		/**
+		 * a directory may have been moved here with all its files, they are
+		 * registered and added as well
+		 */
+		public void fileCreated(File file) {
+			if (files.containsKey(file) || !file.exists()) {
+				return;
+			}
+			files.put(file, file.isDirectory() ? 0 : file.lastModified());
+			getPendingChanges().fileCreated(file);
+			if (file.isDirectory()) {
+				Map<File, Long> newFiles = new HashMap<File, Long>();
+				register(file, newFiles);
+				for (File newFile : newFiles.keySet()) {
+					if (!files.containsKey(newFile)) {
+						files.put(newFile, newFiles.get(newFile));
+						getPendingChanges().fileCreated(newFile);
+					}
+				}
+			}
+		}
+
+		public void fileChanged(File file) {
+			Long lastModified = files.get(file);
+			// changes of directories are changes of their files
+			if (lastModified == null || lastModified == 0 || !file.isFile()) {
+				return;
+			}
+			files.put(file, file.lastModified());
+			getPendingChanges().fileChanged(file);
+		}
+
+		/**
+		 * the files of a removed directory are removed as well, even if they
+		 * have not been reported
+		 */
+		public void fileDeleted(File file) {
+			if (files.remove(file) == null) {
+				return;
+			}
+			Iterator<File> iterator = files.keySet().iterator();
+			while (iterator.hasNext()) {
+				File child = iterator.next();
+				if (isBelow(child, file)) {
+					iterator.remove();
+					getPendingChanges().fileDeleted(child);
+				}
+			}
+			getPendingChanges().fileDeleted(file);
+		}
+
+		/**
+		 * events have been lost, the changes are found by comparing the folder
+		 * with the files known before
+		 */
+		public void rescan() {
+			Map<File, Long> currentFiles = new HashMap<File, Long>();
+			register(folder, currentFiles);
+			for (File file : new ArrayList<File>(files.keySet())) {
+				if (!currentFiles.containsKey(file)) {
+					fileDeleted(file);
+				}
+			}
+			for (Map.Entry<File, Long> file : currentFiles.entrySet()) {
+				Long lastModified = files.put(file.getKey(), file.getValue());
+				if (lastModified == null) {
+					getPendingChanges().fileCreated(file.getKey());
+				}
+				else if (!lastModified.equals(file.getValue())) {
+					getPendingChanges().fileChanged(file.getKey());
+				}
+			}
+		}
+
+		public void deliverChanges() {
+			final FolderChangeSet changes = pendingChanges;
+			pendingChanges = null;
+			if (changes.isEmpty()) {
+				return;
+			}
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					for (IFolderChangeListener listener : listeners) {
+						try {
+							listener.folderChanged(changes);
+						}
+						catch (Exception e) {
+							LogUtils.warn(e);
+						}
+					}
+				}
+			});
+		}
+	}
+}
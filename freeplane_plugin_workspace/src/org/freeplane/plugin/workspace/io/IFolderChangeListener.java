@@ -0,0 +1,8 @@
+package org.freeplane.plugin.workspace.io;
+
+public interface IFolderChangeListener {
+	/**
+	 * called on the event dispatch thread, the change set must not be modified
+	 */
+	public void folderChanged(FolderChangeSet changes);
+}
@@ -23,7 +23,10 @@ import org.freeplane.plugin.workspace.dnd.IWorkspaceTransferableCreator;
 import org.freeplane.plugin.workspace.dnd.WorkspaceTransferable;
 import org.freeplane.plugin.workspace.event.IWorkspaceNodeActionListener;
 import org.freeplane.plugin.workspace.event.WorkspaceActionEvent;
+import org.freeplane.plugin.workspace.io.FileSystemManager;
+import org.freeplane.plugin.workspace.io.FolderChangeSet;
 import org.freeplane.plugin.workspace.io.IFileSystemRepresentation;
+import org.freeplane.plugin.workspace.io.IFolderChangeListener;
 import org.freeplane.plugin.workspace.io.annotation.ExportAsAttribute;
 import org.freeplane.plugin.workspace.model.AWorkspaceTreeNode;
 import org.freeplane.plugin.workspace.model.IMutableLinkNode;
@@ -32,7 +35,8 @@ public class FolderLinkNode extends AFolderNode implements IWorkspaceNodeActionL
 																, IWorkspaceTransferableCreator
 																, IFileSystemRepresentation
 																, IMutableLinkNode
-																, TreeExpansionListener {
+																, TreeExpansionListener
+																, IFolderChangeListener {
 	
 	private static final long serialVersionUID = 1L;
 	private static Icon FOLDER_OPEN_ICON = new ImageIcon(FolderLinkNode.class.getResource("/images/16x16/folder-orange_open.png"));
@@ -114,6 +118,12 @@ public class FolderLinkNode extends AFolderNode implements IWorkspaceNodeActionL
 		else {
 			if(enable != this.doMonitoring) {
 				this.doMonitoring = enable;
+				if(enable) {
+					WorkspaceController.getFolderWatcher().addFolderChangeListener(getFile(), this);
+				}
+				else {
+					WorkspaceController.getFolderWatcher().removeFolderChangeListener(getFile(), this);
+				}
 			}
 		}
 	}
@@ -170,6 +180,66 @@ public class FolderLinkNode extends AFolderNode implements IWorkspaceNodeActionL
 		}
 	}
 	
+	/**
+	 * applies the changes of the monitored folder to the nodes which have
+	 * been loaded, folders which have not been expanded yet are read when
+	 * they are expanded
+	 */
+	public void folderChanged(FolderChangeSet changes) {
+		if(getModel() == null || inRefresh) {
+			return;
+		}
+		for (File file : changes.getRemoved()) {
+			AWorkspaceTreeNode node = findFileNode(file);
+			if(node != null && node != this) {
+				getModel().removeNodeFromParent(node);
+			}
+		}
+		FileSystemManager fileSystemMgr = null;
+		for (File file : changes.getAdded()) {
+			if(findFileNode(file) != null) {
+				continue;
+			}
+			AWorkspaceTreeNode parent = findFileNode(file.getParentFile());
+			if(parent != null && parent.getChildCount() > 0) {
+				if(fileSystemMgr == null) {
+					fileSystemMgr = WorkspaceController.getFileSystemMgr();
+				}
+				fileSystemMgr.createFileNode(parent, file);
+			}
+		}
+		for (File file : changes.getModified()) {
+			AWorkspaceTreeNode node = findFileNode(file);
+			if(node != null) {
+				getModel().nodeChanged(node, file, file);
+			}
+		}
+	}
+	
+	/**
+	 * the loaded node which represents the file, or null
+	 */
+	private AWorkspaceTreeNode findFileNode(File file) {
+		File folder = getFile();
+		if(file == null || folder == null) {
+			return null;
+		}
+		if(file.equals(folder)) {
+			return this;
+		}
+		AWorkspaceTreeNode parent = findFileNode(file.getParentFile());
+		if(parent == null) {
+			return null;
+		}
+		for (int i = 0; i < parent.getChildCount(); i++) {
+			AWorkspaceTreeNode child = parent.getChildAt(i);
+			if(child instanceof IFileSystemRepresentation && file.equals(((IFileSystemRepresentation) child).getFile())) {
+				return child;
+			}
+		}
+		return null;
+	}
+	
 	private void loadDirectoryFiles(File folder) {
 		if (folder != null && folder.isDirectory()) {
 			WorkspaceController.getFileSystemMgr().scanFileSystem(this, folder, false);
@@ -265,6 +335,13 @@ public class FolderLinkNode extends AFolderNode implements IWorkspaceNodeActionL
 		return false;
 	}
 	
+	public void disassociateReferences() {
+		if(isMonitoring() && getPath() != null) {
+			WorkspaceController.getFolderWatcher().removeFolderChangeListener(getFile(), this);
+		}
+		super.disassociateReferences();
+	}
+	
 	public void treeExpanded(TreeExpansionEvent event) {
 		if(!inRefresh && getChildCount() <= 0) {
 			loadDirectoryFiles(getFile());
@@ -0,0 +1,180 @@
+package org.freeplane.core.io.xml;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.NonValidator;
+import org.freeplane.n3.nanoxml.StdXMLReader;
+import org.freeplane.n3.nanoxml.XMLParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The builder has to be called the same way by {@link FastXMLParser} and by
+ * {@link XMLParser}.
+ */
+public class FastXMLParserTest {
+	private static class RecordingBuilder extends TreeXmlReader {
+		final StringBuilder calls = new StringBuilder();
+		private ITreeXmlParser parser;
+
+		RecordingBuilder() {
+			super(new ReadManager());
+		}
+
+		void setParser(ITreeXmlParser parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public void startBuilding(String systemID, int lineNr) {
+			calls.append("startBuilding ").append(systemID).append(' ').append(lineNr).append('\n');
+		}
+
+		@Override
+		public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr) {
+			calls.append("startElement ").append(name).append(' ').append(nsPrefix).append(' ').append(nsURI)
+			    .append(' ').append(lineNr).append('\n');
+		}
+
+		@Override
+		public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) {
+			calls.append("addAttribute ").append(key).append(' ').append(nsPrefix).append(' ').append(nsURI)
+			    .append(" [").append(value).append("] ").append(type).append('\n');
+		}
+
+		@Override
+		public void elementAttributesProcessed(String name, String nsPrefix, String nsURI) {
+			calls.append("elementAttributesProcessed ").append(name).append('\n');
+			if (name.equals("richcontent")) {
+				parser.notParseNextElementContent();
+			}
+		}
+
+		@Override
+		public void addPCData(Reader reader, String systemID, int lineNr) throws Exception {
+			calls.append("addPCData ").append(lineNr).append(" [");
+			int ch;
+			while ((ch = reader.read()) != -1) {
+				calls.append((char) ch);
+			}
+			calls.append("]\n");
+		}
+
+		@Override
+		public void setElementContent(String content) {
+			calls.append("setElementContent [").append(content).append("]\n");
+		}
+
+		@Override
+		public void endElement(String name, String nsPrefix, String nsURI) {
+			calls.append("endElement ").append(name).append('\n');
+		}
+
+		@Override
+		public void newProcessingInstruction(String target, Reader reader) {
+			calls.append("newProcessingInstruction ").append(target).append('\n');
+		}
+
+		@Override
+		public Object getResult() {
+			return null;
+		}
+	}
+
+	private static String parseWithNanoxml(String xml) throws Exception {
+		RecordingBuilder builder = new RecordingBuilder();
+		XMLParser parser = new XMLParser();
+		builder.setParser(parser);
+		parser.setReader(new StdXMLReader(new StringReader(xml)));
+		parser.setBuilder(builder);
+		parser.setValidator(new NonValidator());
+		parser.parse();
+		return builder.calls.toString();
+	}
+
+	private static String parseWithFastParser(String xml) throws Exception {
+		RecordingBuilder builder = new RecordingBuilder();
+		FastXMLParser parser = new FastXMLParser();
+		builder.setParser(parser);
+		parser.setInput(new StringReader(xml));
+		parser.setBuilder(builder);
+		parser.setValidator(new NonValidator());
+		parser.parse();
+		return builder.calls.toString();
+	}
+
+	private static void assertSameCalls(String xml) throws Exception {
+		Assert.assertEquals(parseWithNanoxml(xml), parseWithFastParser(xml));
+	}
+
+	@Test
+	public void elementsAndAttributes() throws Exception {
+		assertSameCalls("<map version=\"freeplane 1.2.0\">\n<node TEXT='root' ID=\"ID_1\">\n"
+		        + "<node TEXT=\"child\"/>\n<icon BUILTIN=\"full-1\" />\n</node>\n</map>\n");
+	}
+
+	@Test
+	public void lineEndsAndWhitespace() throws Exception {
+		assertSameCalls("<map>\r\n\t<node TEXT=\"a\tb\r\nc\rd\"\r\n\tID=\"ID_1\">\r\n</node>\r</map>\r\n");
+	}
+
+	@Test
+	public void carriageReturnLineEnds() throws Exception {
+		assertSameCalls("<map>\r<node>\r text\r\r more\r</node>\r<node>\r\n<![CDATA[a\rb]]>\r</node>\r"
+		        + "<node>\n\r text</node>\r\n\r<node>\r\r\n text\r\n</node><a>\r&amp; x\r</a><b>\r&#65;\ry</b><c>\r x<d/>\r y</c></map>\r");
+	}
+
+	@Test
+	public void references() throws Exception {
+		assertSameCalls("<map><node TEXT=\"&lt;&amp;&gt;&quot;&apos;&#xa;&#65;&#x42;\">"
+		        + "  text &amp; more &#xa; text</node></map>");
+	}
+
+	@Test
+	public void characterDataAndComments() throws Exception {
+		assertSameCalls("<?xml version=\"1.0\"?>\n<!-- comment -->\n<map>\n  <text>  some\n text </text>"
+		        + "<!-- comment --><text><![CDATA[<cdata>]]></text><?target data?></map>");
+	}
+
+	@Test
+	public void namespaces() throws Exception {
+		assertSameCalls("<map xmlns=\"urn:default\" xmlns:p=\"urn:p\"><p:node p:TEXT=\"a\" TEXT=\"b\"/>"
+		        + "<node xmlns=\"urn:other\"/></map>");
+	}
+
+	@Test
+	public void unparsedElementContent() throws Exception {
+		assertSameCalls("<map><node><richcontent TYPE=\"NODE\">\n<html>\n  <head>\n\n  </head>\n"
+		        + "  <body>\n    <p a=\"&gt;/\">\n      text &amp; <br/> more\n    </p>\n<!-- <p> -->\n  </body>\n</html>\n"
+		        + "</richcontent><richcontent/></node></map>");
+	}
+
+	@Test
+	public void documentType() throws Exception {
+		assertSameCalls("<!DOCTYPE map [ <!ELEMENT map ANY> ]>\n<map/>");
+	}
+
+	@Test
+	public void largeInput() throws Exception {
+		StringBuilder xml = new StringBuilder("<map>\n");
+		for (int i = 0; i < 10000; i++) {
+			xml.append("<node ID=\"ID_").append(i).append("\" TEXT=\"node &amp; ").append(i).append("\">\r\n");
+			xml.append("<richcontent TYPE=\"NOTE\"><html><body><p>note ").append(i).append("</p></body></html>");
+			xml.append("</richcontent>\n</node>\n");
+		}
+		xml.append("</map>\n");
+		assertSameCalls(xml.toString());
+	}
+
+	@Test(expected = XMLParseException.class)
+	public void unknownEntity() throws Exception {
+		parseWithFastParser("<map TEXT=\"&unknown;\"/>");
+	}
+
+	@Test(expected = XMLParseException.class)
+	public void wrongClosingTag() throws Exception {
+		parseWithFastParser("<map><node></map></node>");
+	}
+}
@@ -0,0 +1,135 @@
+package org.freeplane.core.io.xml;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.freeplane.core.io.ReadManager;
+
+/**
+ * Compares the time needed by the parsers of {@link TreeXmlReader} to read
+ * generated maps. The maps are built like the maps of
+ * freeplane_devresources/test/generateTestMap.pl.
+ *
+ * Usage: java -Xmx2g org.freeplane.core.io.xml.XmlParserBenchmark [iterations [node count ...]]
+ *
+ * Each map is read a few times with both parsers to warm up the virtual
+ * machine before the measured iterations. The default node counts are 10000,
+ * 100000 and 1000000.
+ */
+public class XmlParserBenchmark {
+	private static final int MAX_CHILD_COUNT = 7;
+	private static final int ICON_COUNT = 2;
+	private static final int WARM_UP_ITERATIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int[] nodeCounts;
+		if (args.length > 1) {
+			nodeCounts = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				nodeCounts[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		else {
+			nodeCounts = new int[] { 10000, 100000, 1000000 };
+		}
+		String parserType = TreeXmlReader.getParserType();
+		try {
+			for (int nodeCount : nodeCounts) {
+				File map = File.createTempFile("benchmark_" + nodeCount + "_", ".mm");
+				map.deleteOnExit();
+				generateMap(map, nodeCount);
+				for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+					read(map, TreeXmlReader.NANOXML_PARSER);
+					read(map, TreeXmlReader.FAST_PARSER);
+				}
+				long nanoxmlTime = 0;
+				long fastTime = 0;
+				for (int i = 0; i < iterations; i++) {
+					nanoxmlTime += read(map, TreeXmlReader.NANOXML_PARSER);
+					fastTime += read(map, TreeXmlReader.FAST_PARSER);
+				}
+				System.out.println(nodeCount + " nodes, " + map.length() / 1024 + " KB: nanoxml "
+				        + nanoxmlTime / iterations / 1000000 + " ms, fast " + fastTime / iterations / 1000000 + " ms");
+				map.delete();
+			}
+		}
+		finally {
+			TreeXmlReader.setParserType(parserType);
+		}
+	}
+
+	private static long read(File map, String parserType) throws Exception {
+		TreeXmlReader.setParserType(parserType);
+		Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(map), "UTF-8"));
+		try {
+			long start = System.nanoTime();
+			new TreeXmlReader(new ReadManager()).load(reader);
+			return System.nanoTime() - start;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static void generateMap(File file, int nodeCount) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.write("<map version=\"freeplane 1.2.0\">\n");
+			writer.write("<node TEXT=\"benchmark with " + nodeCount + " nodes&#xa;second line\" ID=\"ID_0\">\n");
+			int[] counter = new int[] { 1 };
+			int maxLevel = 1;
+			for (long levelNodes = MAX_CHILD_COUNT; levelNodes < nodeCount; levelNodes *= MAX_CHILD_COUNT) {
+				maxLevel++;
+			}
+			writeChildren(writer, 1, maxLevel, nodeCount, counter);
+			writer.write("</node>\n</map>\n");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static void writeChildren(Writer writer, int level, int maxLevel, int nodeCount, int[] counter)
+	        throws IOException {
+		for (int i = 1; i <= MAX_CHILD_COUNT && counter[0] < nodeCount; i++) {
+			int id = counter[0]++;
+			String indent = indent(level);
+			writer.write(indent + "<node TEXT=\"test node " + level + " " + i + " &amp; " + id + "\" ID=\"ID_" + id
+			        + "\" CREATED=\"1300000000000\" MODIFIED=\"1300000000000\"");
+			if (level < maxLevel) {
+				writer.write(" FOLDED=\"true\"");
+			}
+			writer.write(">\n");
+			for (int j = 0; j < ICON_COUNT; j++) {
+				writer.write(indent + "    <icon BUILTIN=\"full-" + ((j + level - 1) % 9 + 1) + "\"/>\n");
+			}
+			if (id % 10 == 0) {
+				writer.write(indent + "    <richcontent TYPE=\"NOTE\">\n" + indent + "<html>\n" + indent + "  <head>\n"
+				        + indent + "  </head>\n" + indent + "  <body>\n" + indent + "    <p>\n" + indent
+				        + "      note of node " + id + "\n" + indent + "    </p>\n" + indent + "  </body>\n" + indent
+				        + "</html>\n" + indent + "    </richcontent>\n");
+			}
+			if (level < maxLevel) {
+				writeChildren(writer, level + 1, maxLevel, nodeCount, counter);
+			}
+			writer.write(indent + "</node>\n");
+		}
+	}
+
+	private static String indent(int level) {
+		StringBuilder indent = new StringBuilder();
+		for (int i = 0; i < level; i++) {
+			indent.append("    ");
+		}
+		return indent.toString();
+	}
+}
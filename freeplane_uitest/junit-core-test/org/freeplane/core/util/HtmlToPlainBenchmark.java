@@ -0,0 +1,53 @@
+package org.freeplane.core.util;
+
+/**
+ * Compares the time needed to convert html texts to plain text by
+ * {@link HtmlUtils#htmlToPlain(String)} and by the former regular expression
+ * chain.
+ *
+ * Usage: java org.freeplane.core.util.HtmlToPlainBenchmark [iterations]
+ *
+ * Each text is converted a number of times by both ways to warm up the
+ * virtual machine before the measured iterations. The default number of
+ * iterations is 100000. Like the other benchmarks of this directory it is a
+ * plain main class because JMH is not part of the build.
+ */
+public class HtmlToPlainBenchmark {
+	private static final int WARM_UP_ITERATIONS = 20000;
+	private static final String SHORT_TEXT = "<html><body><b>bold</b> node</body></html>";
+	private static final String NOTE = "<html>\n  <head>\n    \n  </head>\n  <body>\n"
+	        + "    <p>\n      The first paragraph of a typical note with some <b>bold</b> and <i>italic</i> text.\n"
+	        + "    </p>\n    <ul>\n      <li>\n        first item &amp; more\n      </li>\n"
+	        + "      <li>\n        second item &lt;with brackets&gt;\n      </li>\n    </ul>\n"
+	        + "    <table>\n      <tr>\n        <td>\n          cell&nbsp;1\n        </td>\n"
+	        + "        <td>\n          cell 2 &#8364;\n        </td>\n      </tr>\n    </table>\n"
+	        + "    <p>\n      The last paragraph.\n    </p>\n  </body>\n</html>\n";
+
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		for (String text : new String[] { SHORT_TEXT, NOTE }) {
+			convert(text, WARM_UP_ITERATIONS);
+			convertUsingPatterns(text, WARM_UP_ITERATIONS);
+			long convertTime = convert(text, iterations);
+			long patternTime = convertUsingPatterns(text, iterations);
+			System.out.println(text.length() + " characters: converter " + convertTime / iterations + " ns, patterns "
+			        + patternTime / iterations + " ns");
+		}
+	}
+
+	private static long convert(String text, int iterations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			HtmlUtils.htmlToPlain(text);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long convertUsingPatterns(String text, int iterations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			HtmlUtils.htmlToPlainUsingPatterns(text, true);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,92 @@
+package org.freeplane.core.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the results of {@link HtmlToPlainConverter} with the results of
+ * the former regular expression chain for a corpus of typical and random
+ * html texts.
+ */
+public class HtmlToPlainConverterTest {
+	private static final String[] FRAGMENTS = { "<html>", "</html>", "<head>", "</head>", "<body>", "</body>",
+	        "<p>", "<p style=\"margin-top: 0\">", "</p>", "<br>", "<br/>", "<BR >", "<div>", "</div>", "<table>",
+	        "<tr>", "</tr>", "<td>", "</td>", "<dt>", "<dd>", "<ul>", "<ol type=\"1\">", "</ul>", "<li>", "</li>",
+	        "<b>", "</b>", "<a href=\"#ID_1\">", "</a>", "< >", "<>", "</>", "text", "Text", " ", "  ", "\n", "\t",
+	        "\n\t  ", "a b", "&lt;", "&gt;", "&quot;", "&nbsp;", "&amp;", "&AMP;", "&#65;", "&#x41;", "&#X263a;",
+	        "&#", "&", "&unknown;", "&amp;lt;", ";", "\u00a0", "\u00e4", "x &lt; y", "&lt;b&gt;" };
+	private static final String[] TEXTS = {
+	        "<html>\n  <head>\n    \n  </head>\n  <body>\n    <p>\n      first line\n    </p>\n"
+	                + "    <p>\n      second &amp; last line\n    </p>\n  </body>\n</html>\n",
+	        "<html><body><ul><li>one</li><li>two &lt;2&gt;</li></ul><ol><li>three</li></ol></body></html>",
+	        "<html><body><table><tr><td>a</td><td>b</td></tr><tr><td>c&nbsp;d</td></tr></table></body></html>",
+	        "<html><body><dl><dt>term</dt><dd>definition</dd></dl><br>after<br/>break</body></html>",
+	        "<html><body><div>\n\n  indented\n\t text</div>  <p style=\"text-align: center\">&#8364; 5</p></body></html>",
+	        "  <html>\n<body>\n<p>\n\n\n</p>\n</body>\n</html>", "<html></html>", "", "plain text" };
+	private static final int RANDOM_TEXT_COUNT = 100000;
+	private static final int MAX_FRAGMENT_COUNT = 20;
+
+	private static void assertSameResult(final String text) {
+		for (final boolean removeNewLines : new boolean[] { true, false }) {
+			final String expected;
+			try {
+				expected = HtmlUtils.htmlToPlainUsingPatterns(text, removeNewLines);
+			}
+			catch (final RuntimeException e) {
+				// the expression chain fails for some malformed entities
+				continue;
+			}
+			final String converted = HtmlToPlainConverter.getConverter().convert(text, removeNewLines);
+			if (converted != null) {
+				Assert.assertEquals("converting " + escape(text), expected, converted);
+			}
+			Assert.assertEquals("converting " + escape(text), expected, HtmlUtils.htmlToPlain(text, false,
+			    removeNewLines));
+		}
+	}
+
+	private static String escape(final String text) {
+		return "\"" + text.replace("\n", "\\n").replace("\t", "\\t") + "\"";
+	}
+
+	@Test
+	public void convertsTypicalTextsLikePatterns() {
+		for (final String text : TEXTS) {
+			assertSameResult(text);
+		}
+	}
+
+	@Test
+	public void convertsSingleFragmentsLikePatterns() {
+		for (final String fragment : FRAGMENTS) {
+			assertSameResult(fragment);
+			assertSameResult("<html>" + fragment + "</html>");
+		}
+	}
+
+	@Test
+	public void convertsRandomTextsLikePatterns() {
+		final Random random = new Random(1);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < RANDOM_TEXT_COUNT; i++) {
+			text.setLength(0);
+			final int fragmentCount = 1 + random.nextInt(MAX_FRAGMENT_COUNT);
+			for (int j = 0; j < fragmentCount; j++) {
+				text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			assertSameResult(text.toString());
+		}
+	}
+
+	@Test
+	public void keepsEmptyEntities() {
+		Assert.assertEquals("a &; b &#; c", HtmlUtils.htmlToPlain("<html><body>a &; b &#; c</body></html>"));
+	}
+
+	@Test
+	public void leavesUnbalancedBracketsToPatterns() {
+		Assert.assertNull(HtmlToPlainConverter.getConverter().convert("<html><b<i>x</i></html>", true));
+	}
+}
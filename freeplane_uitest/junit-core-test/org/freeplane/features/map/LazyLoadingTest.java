@@ -0,0 +1,166 @@
+package org.freeplane.features.map;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.link.LinkController;
+import org.freeplane.features.link.mindmapmode.MLinkController;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.map.mindmapmode.MMapModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.TextController;
+import org.freeplane.features.text.mindmapmode.MTextController;
+import org.freeplane.features.url.mindmapmode.MFileManager;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Children of folded nodes loaded on demand have to be the same as the
+ * children loaded at once.
+ */
+public class LazyLoadingTest {
+	private static MMapController mapController;
+	private static MTextController textController;
+	private static MFileManager fileManager;
+	private File file;
+	private MMapModel map;
+	private NodeModel folded;
+	private NodeModel child;
+
+	@BeforeClass
+	public static void createController() {
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		textController = (MTextController) TextController.getController();
+		fileManager = MFileManager.getController(Controller.getCurrentModeController());
+		final ResourceController resourceController = ResourceController.getResourceController();
+		resourceController.setProperty(NodeBuilder.RESOURCES_SAVE_FOLDING, NodeBuilder.RESOURCES_ALWAYS_SAVE_FOLDING);
+		resourceController.setProperty(NodeBuilder.RESOURCES_LAZY_LOADING_LEVEL, "1");
+	}
+
+	@Before
+	public void createMap() throws Exception {
+		file = File.createTempFile("lazy", ".mm");
+		map = (MMapModel) mapController.newModel();
+		map.setURL(Compat.fileToUrl(file));
+		mapController.newMapView(map);
+		final NodeModel root = map.getRootNode();
+		textController.setNodeText(root, "root");
+		folded = addNode(root, 0, "folded");
+		child = addNode(folded, 0, "child");
+		final NodeModel foldedChild = addNode(folded, 1, "folded child");
+		addNode(foldedChild, 0, "grandchild");
+		foldedChild.setFolded(true);
+		folded.setFolded(true);
+		addNode(root, 1, "unfolded");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		ResourceController.getResourceController().setProperty(NodeBuilder.RESOURCES_LAZY_LOADING, false);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final int index, final String text) {
+		final NodeModel node = mapController.addNewNode(parent, index, false);
+		textController.setNodeText(node, text);
+		return node;
+	}
+
+	private static String xml(final MapModel map) throws Exception {
+		final StringWriter writer = new StringWriter();
+		mapController.getMapWriter().writeMapAsXml(map, writer, Mode.FILE, true, false);
+		return writer.toString();
+	}
+
+	private MapModel load(final boolean lazyLoading) throws Exception {
+		mapController.getMapWriter().writeMapAsXml(map,
+		    new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), Mode.FILE, true, false);
+		ResourceController.getResourceController().setProperty(NodeBuilder.RESOURCES_LAZY_LOADING, lazyLoading);
+		final MMapModel loadedMap = new MMapModel();
+		fileManager.loadTree(loadedMap, file);
+		return loadedMap;
+	}
+
+	private static NodeModel firstChild(final MapModel map) {
+		return map.getRootNode().getChildren().get(0);
+	}
+
+	@Test
+	public void childrenOfFoldedNodesAreLoadedOnAccess() throws Exception {
+		final MapModel loadedMap = load(true);
+		final NodeModel loadedFolded = firstChild(loadedMap);
+		Assert.assertFalse(loadedFolded.areChildrenLoaded());
+		Assert.assertTrue(loadedFolded.hasChildren());
+		Assert.assertEquals(2, loadedFolded.getChildCount());
+		final NodeModel loadedFoldedChild = loadedFolded.getChildren().get(1);
+		Assert.assertFalse(loadedFoldedChild.areChildrenLoaded());
+		Assert.assertSame(loadedFolded, loadedFoldedChild.getParentNode());
+		Assert.assertEquals(xml(load(false)), xml(loadedMap));
+	}
+
+	@Test
+	public void unloadedChildrenAreWrittenUnchanged() throws Exception {
+		final MapModel loadedMap = load(true);
+		final String loadedXml = xml(loadedMap);
+		Assert.assertFalse(firstChild(loadedMap).areChildrenLoaded());
+		Assert.assertEquals(xml(map), loadedXml);
+	}
+
+	@Test
+	public void unloadedNodesAreFoundByID() throws Exception {
+		final String id = child.createID();
+		final MapModel loadedMap = load(true);
+		final NodeModel loadedChild = loadedMap.getNodeForID(id);
+		Assert.assertNotNull(loadedChild);
+		Assert.assertEquals("child", loadedChild.getText());
+		Assert.assertTrue(firstChild(loadedMap).areChildrenLoaded());
+	}
+
+	@Test
+	public void idsOfUnloadedNodesAreNotGenerated() throws Exception {
+		final String id = child.createID();
+		final MapModel loadedMap = load(true);
+		final NodeModel loadedFolded = firstChild(loadedMap);
+		Assert.assertFalse(id.equals(loadedMap.generateNodeID(id)));
+		Assert.assertFalse(loadedFolded.areChildrenLoaded());
+		final NodeModel loadedChild = loadedFolded.getChildren().get(0);
+		Assert.assertEquals(id, loadedChild.getID());
+		Assert.assertSame(loadedChild, loadedMap.getNodeForID(id));
+	}
+
+	@Test
+	public void allNodesAreLoadedAtOnce() throws Exception {
+		final MapModel loadedMap = load(true);
+		loadedMap.loadAllNodes();
+		final NodeModel loadedFolded = firstChild(loadedMap);
+		Assert.assertTrue(loadedFolded.areChildrenLoaded());
+		Assert.assertTrue(loadedFolded.getChildren().get(1).areChildrenLoaded());
+		Assert.assertEquals(xml(map), xml(loadedMap));
+	}
+
+	@Test
+	public void childrenWithConnectorsAreLoadedAtOnce() throws Exception {
+		((MLinkController) LinkController.getController()).addConnector(child, map.getRootNode());
+		final MapModel loadedMap = load(true);
+		Assert.assertTrue(firstChild(loadedMap).areChildrenLoaded());
+		Assert.assertEquals(xml(map), xml(loadedMap));
+	}
+
+	@Test
+	public void childrenAreLoadedWithoutLazyLoading() throws Exception {
+		final MapModel loadedMap = load(false);
+		Assert.assertTrue(firstChild(loadedMap).areChildrenLoaded());
+	}
+}
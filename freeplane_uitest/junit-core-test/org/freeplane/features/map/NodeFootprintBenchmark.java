@@ -0,0 +1,120 @@
+package org.freeplane.features.map;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.freeplane.features.map.mindmapmode.MMapModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.url.mindmapmode.MFileManager;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+
+/**
+ * Measures the heap used by loaded maps per node. Typical maps have nodes
+ * with text, two icons and a note on every tenth node like the maps of
+ * {@link org.freeplane.core.io.xml.XmlParserBenchmark}, attribute heavy maps
+ * additionally have five attributes per node.
+ *
+ * Usage: java -Xmx4g org.freeplane.features.map.NodeFootprintBenchmark [node count ...]
+ *
+ * The default node counts are 100000 and 1000000.
+ */
+public class NodeFootprintBenchmark {
+	private static final int MAX_CHILD_COUNT = 7;
+	private static final int ICON_COUNT = 2;
+	private static final int ATTRIBUTE_COUNT = 5;
+
+	public static void main(String[] args) throws Exception {
+		int[] nodeCounts;
+		if (args.length > 0) {
+			nodeCounts = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				nodeCounts[i] = Integer.parseInt(args[i]);
+			}
+		}
+		else {
+			nodeCounts = new int[] { 100000, 1000000 };
+		}
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		MFileManager fileManager = MFileManager.getController(Controller.getCurrentModeController());
+		for (int nodeCount : nodeCounts) {
+			for (int attributeCount : new int[] { 0, ATTRIBUTE_COUNT }) {
+				File file = File.createTempFile("footprint_" + nodeCount + "_", ".mm");
+				file.deleteOnExit();
+				generateMap(file, nodeCount, attributeCount);
+				long usedBefore = usedMemory();
+				MMapModel map = new MMapModel();
+				fileManager.loadTree(map, file);
+				long usedAfter = usedMemory();
+				System.out.println(nodeCount + " nodes, " + attributeCount + " attributes per node: "
+				        + (usedAfter - usedBefore) / nodeCount + " bytes per node");
+				// keeps the map reachable until the heap is measured
+				map.getRootNode().getChildCount();
+				file.delete();
+			}
+		}
+		System.exit(0);
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// repeats until a collection does not free memory anymore
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(100);
+			long lastUsed = used;
+			used = runtime.totalMemory() - runtime.freeMemory();
+			if (used >= lastUsed) {
+				break;
+			}
+		}
+		return used;
+	}
+
+	private static void generateMap(File file, int nodeCount, int attributeCount) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.write("<map version=\"freeplane 1.2.0\">\n");
+			writer.write("<node TEXT=\"footprint of " + nodeCount + " nodes\" ID=\"ID_0\">\n");
+			int[] counter = new int[] { 1 };
+			int maxLevel = 1;
+			for (long levelNodes = MAX_CHILD_COUNT; levelNodes < nodeCount; levelNodes *= MAX_CHILD_COUNT) {
+				maxLevel++;
+			}
+			writeChildren(writer, 1, maxLevel, nodeCount, attributeCount, counter);
+			writer.write("</node>\n</map>\n");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static void writeChildren(Writer writer, int level, int maxLevel, int nodeCount, int attributeCount,
+	                                  int[] counter) throws IOException {
+		for (int i = 1; i <= MAX_CHILD_COUNT && counter[0] < nodeCount; i++) {
+			int id = counter[0]++;
+			writer.write("<node TEXT=\"test node " + level + " " + i + " " + id + "\" ID=\"ID_" + id
+			        + "\" CREATED=\"1300000000000\" MODIFIED=\"1300000000000\">\n");
+			for (int j = 0; j < ICON_COUNT; j++) {
+				writer.write("<icon BUILTIN=\"full-" + ((j + level - 1) % 9 + 1) + "\"/>\n");
+			}
+			for (int j = 0; j < attributeCount; j++) {
+				writer.write("<attribute NAME=\"attribute " + j + "\" VALUE=\"value " + id % 100 + "\"/>\n");
+			}
+			if (id % 10 == 0) {
+				writer.write("<richcontent TYPE=\"NOTE\">\n<html>\n  <head>\n  </head>\n  <body>\n    <p>\n"
+				        + "      note of node " + id + "\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+			}
+			if (level < maxLevel) {
+				writeChildren(writer, level + 1, maxLevel, nodeCount, attributeCount, counter);
+			}
+			writer.write("</node>\n");
+		}
+	}
+}
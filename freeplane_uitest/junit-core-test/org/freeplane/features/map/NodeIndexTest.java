@@ -0,0 +1,73 @@
+package org.freeplane.features.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NodeIndexTest {
+	private final NodeIndex index = new NodeIndex();
+
+	private static NodeModel node() {
+		return new NodeModel(null) {
+			@Override
+			protected void init(final Object userObject) {
+			}
+		};
+	}
+
+	@Test
+	public void generatedIDsAreNumbers() {
+		assertEquals(0, NodeIndex.toNumber("ID_0"));
+		assertEquals(1234567890, NodeIndex.toNumber("ID_1234567890"));
+		assertEquals(Integer.MAX_VALUE, NodeIndex.toNumber("ID_" + Integer.MAX_VALUE));
+		assertEquals("ID_1234567890", NodeIndex.toID(1234567890));
+	}
+
+	@Test
+	public void otherIDsAreNoNumbers() {
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber(null));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("ID_"));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("ID_01"));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("ID_-1"));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("ID_12a"));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("ID_2147483648"));
+		assertEquals(NodeIndex.NO_NUMBER, NodeIndex.toNumber("Freemind_Link_1"));
+	}
+
+	@Test
+	public void findsPutNodes() {
+		final NodeModel[] nodes = new NodeModel[1000];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = node();
+			assertNull(index.put("ID_" + i * 7919, nodes[i]));
+			assertNull(index.put("id" + i, nodes[i]));
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			assertSame(nodes[i], index.get("ID_" + i * 7919));
+			assertSame(nodes[i], index.get("id" + i));
+		}
+		assertNull(index.get("ID_1"));
+		assertFalse(index.containsKey("ID_1"));
+	}
+
+	@Test
+	public void keepsIDsOfRemovedNodes() {
+		final NodeModel node = node();
+		index.put("ID_5", node);
+		assertSame(node, index.put("ID_5", null));
+		assertNull(index.get("ID_5"));
+		assertTrue(index.containsKey("ID_5"));
+	}
+
+	@Test
+	public void keepsOtherIDs() {
+		final NodeModel node = node();
+		index.put("ID_05", node);
+		assertSame(node, index.get("ID_05"));
+		assertNull(index.get("ID_5"));
+	}
+}
@@ -0,0 +1,145 @@
+package org.freeplane.features.text;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.filter.condition.ASelectableCondition;
+import org.freeplane.features.filter.condition.IIndexedCondition;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.note.NoteController;
+import org.freeplane.features.note.mindmapmode.MNoteController;
+import org.freeplane.features.text.mindmapmode.MTextController;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Filtering the candidates of the text index has to find the same nodes as
+ * checking every node.
+ */
+public class NodeTextIndexTest {
+	private static final String[] WORDS = { "alpha", "beta", "gamma", "Delta", "epsilon" };
+	private static final String[] SEARCH_TERMS = { "alp", "BETA", "mma 1", "delta", "node 12", "xyz", "silo" };
+	private static MMapController mapController;
+	private static MTextController textController;
+	private static MNoteController noteController;
+	private MapModel map;
+	private List<NodeModel> nodes;
+
+	@BeforeClass
+	public static void createController() {
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		textController = (MTextController) TextController.getController();
+		noteController = (MNoteController) NoteController.getController();
+	}
+
+	@Before
+	public void createMap() throws Exception {
+		map = mapController.newModel();
+		map.setURL(Compat.fileToUrl(new File("index_test.mm")));
+		mapController.newMapView(map);
+		nodes = new ArrayList<NodeModel>();
+		addNodes(map.getRootNode(), 30);
+	}
+
+	private void addNodes(final NodeModel parent, final int count) {
+		for (int i = 0; i < count; i++) {
+			final int number = nodes.size();
+			final NodeModel node = mapController.addNewNode(parent, parent.getChildCount(), false);
+			textController.setNodeText(node, text(number));
+			nodes.add(node);
+		}
+	}
+
+	private static String text(final int number) {
+		return "node " + number + " " + WORDS[number % WORDS.length];
+	}
+
+	private Set<NodeModel> allNodes() {
+		final Set<NodeModel> allNodes = new HashSet<NodeModel>();
+		addBranch(allNodes, map.getRootNode());
+		return allNodes;
+	}
+
+	private static void addBranch(final Set<NodeModel> allNodes, final NodeModel node) {
+		allNodes.add(node);
+		for (final NodeModel child : node.getChildren()) {
+			addBranch(allNodes, child);
+		}
+	}
+
+	private static Set<NodeModel> matches(final ASelectableCondition condition, final Set<NodeModel> nodes) {
+		final Set<NodeModel> matches = new HashSet<NodeModel>();
+		for (final NodeModel node : nodes) {
+			if (condition.checkNode(node)) {
+				matches.add(node);
+			}
+		}
+		return matches;
+	}
+
+	private void assertIndexFindsAllMatches() {
+		final Set<NodeModel> allNodes = allNodes();
+		for (final String searchTerm : SEARCH_TERMS) {
+			for (final ASelectableCondition condition : new ASelectableCondition[] {
+			        new NodeContainsCondition(TextController.FILTER_ANYTEXT, searchTerm, false),
+			        new MatchCaseNodeContainsCondition(TextController.FILTER_NODE, searchTerm, false) }) {
+				final Set<NodeModel> candidates = ((IIndexedCondition) condition).getCandidates(map);
+				Assert.assertNotNull(candidates);
+				Assert.assertEquals(searchTerm, matches(condition, allNodes), matches(condition, candidates));
+			}
+		}
+	}
+
+	@Test
+	public void findsMatchesOfPlainScan() {
+		assertIndexFindsAllMatches();
+	}
+
+	@Test
+	public void findsMatchesAfterTextChanges() {
+		assertIndexFindsAllMatches();
+		textController.setNodeText(nodes.get(3), "changed beta text");
+		textController.setNodeText(nodes.get(6), "node 12 again");
+		noteController.setNoteText(nodes.get(7), "<html><body>alpha note</body></html>");
+		assertIndexFindsAllMatches();
+	}
+
+	@Test
+	public void findsMatchesAfterStructureChanges() {
+		assertIndexFindsAllMatches();
+		addNodes(nodes.get(2), 5);
+		mapController.deleteNode(nodes.get(12));
+		mapController.moveNode(nodes.get(4), nodes.get(5), 0);
+		assertIndexFindsAllMatches();
+		Assert.assertFalse(NodeTextIndex.getIndex(map).getCandidates("node 12").contains(nodes.get(12)));
+	}
+
+	@Test
+	public void isBuiltInSteps() {
+		addNodes(nodes.get(0), NodeTextIndex.INDEXED_NODES_PER_STEP);
+		final NodeTextIndex index = NodeTextIndex.getIndex(map);
+		final ASelectableCondition condition = new NodeContainsCondition(TextController.FILTER_NODE, "gamma 1", false);
+		final Set<NodeModel> candidates = ((IIndexedCondition) condition).getCandidates(map);
+		Assert.assertFalse(index.isComplete());
+		Assert.assertEquals(matches(condition, allNodes()), matches(condition, candidates));
+		mapController.moveNode(nodes.get(nodes.size() - 1), map.getRootNode(), 0);
+		textController.setNodeText(nodes.get(nodes.size() - 2), "gamma 1");
+		for (int i = 0; i < 3; i++) {
+			assertIndexFindsAllMatches();
+		}
+		Assert.assertTrue(index.isComplete());
+	}
+}
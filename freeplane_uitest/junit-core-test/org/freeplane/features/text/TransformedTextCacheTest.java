@@ -0,0 +1,151 @@
+package org.freeplane.features.text;
+
+import java.io.File;
+
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.mindmapmode.MTextController;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The cached node texts have to change with the node texts, the formula
+ * refreshes and the transformers. Failed transformations are cached too.
+ */
+public class TransformedTextCacheTest {
+	/**
+	 * Replaces "=fail" by an exception and "=ref ID" by the text of the node
+	 * with the id like a formula referencing another node.
+	 */
+	private static class FormulaLikeTransformer extends AbstractContentTransformer {
+		private int callCount = 0;
+
+		FormulaLikeTransformer() {
+			super(1);
+		}
+
+		public Object transformContent(final TextController textController, final Object content,
+		                               final NodeModel node, final Object transformedExtension) {
+			final String text = content.toString();
+			if (!text.startsWith("=")) {
+				return content;
+			}
+			callCount++;
+			if (text.equals("=fail")) {
+				throw new IllegalStateException("failed formula");
+			}
+			if (text.startsWith("=ref ")) {
+				return node.getMap().getNodeForID(text.substring("=ref ".length())).getText();
+			}
+			return text.substring(1);
+		}
+	}
+
+	private static MMapController mapController;
+	private static MTextController textController;
+	private FormulaLikeTransformer transformer;
+	private MapModel map;
+	private NodeModel node;
+
+	@BeforeClass
+	public static void createController() {
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		textController = (MTextController) TextController.getController();
+	}
+
+	@Before
+	public void createMap() throws Exception {
+		transformer = new FormulaLikeTransformer();
+		textController.addTextTransformer(transformer);
+		map = mapController.newModel();
+		map.setURL(Compat.fileToUrl(new File("cache_test.mm")));
+		mapController.newMapView(map);
+		node = mapController.addNewNode(map.getRootNode(), 0, false);
+	}
+
+	@After
+	public void removeTransformer() {
+		textController.removeTextTransformer(transformer);
+	}
+
+	@Test
+	public void textChangesAreShown() {
+		textController.setNodeText(node, "first");
+		Assert.assertEquals("first", textController.getPlainTextContent(node));
+		textController.setNodeText(node, "<html><body><p>second</p></body></html>");
+		Assert.assertEquals("second", textController.getPlainTextContent(node));
+		Assert.assertEquals("second", textController.getTransformedTextNoThrow(node));
+	}
+
+	@Test
+	public void transformedTextsAreCached() throws Exception {
+		textController.setNodeText(node, "=formula");
+		Assert.assertEquals("formula", textController.getTransformedObject(node));
+		Assert.assertEquals("formula", textController.getTransformedObjectNoThrow(node));
+		Assert.assertEquals(1, transformer.callCount);
+	}
+
+	@Test
+	public void formulaRefreshesAreShown() {
+		final NodeModel referencedNode = mapController.addNewNode(map.getRootNode(), 1, false);
+		textController.setNodeText(referencedNode, "old value");
+		textController.setNodeText(node, "=ref " + referencedNode.createID());
+		Assert.assertEquals("old value", textController.getPlainTextContent(node));
+		referencedNode.setText("new value");
+		Assert.assertEquals("old value", textController.getPlainTextContent(node));
+		// the formula plugin refreshes the nodes depending on a changed node
+		mapController.nodeRefresh(node, IContentTransformer.class, null, null);
+		Assert.assertEquals("new value", textController.getPlainTextContent(node));
+	}
+
+	@Test
+	public void transformerChangesAreShown() {
+		textController.setNodeText(node, "=formula");
+		Assert.assertEquals("formula", textController.getPlainTextContent(node));
+		textController.removeTextTransformer(transformer);
+		Assert.assertEquals("=formula", textController.getPlainTextContent(node));
+		textController.addTextTransformer(transformer);
+		Assert.assertEquals("formula", textController.getPlainTextContent(node));
+	}
+
+	@Test
+	public void failuresAreCached() {
+		textController.setNodeText(node, "=fail");
+		final Object error = textController.getTransformedObjectNoThrow(node);
+		final String errorText = textController.getTransformedTextNoThrow(node);
+		final String plainErrorText = textController.getPlainTextContent(node);
+		Assert.assertEquals(2, transformer.callCount);
+		Assert.assertEquals(error, textController.getTransformedObjectNoThrow(node));
+		Assert.assertEquals(errorText, textController.getTransformedTextNoThrow(node));
+		Assert.assertEquals(plainErrorText, textController.getPlainTextContent(node));
+		try {
+			textController.getTransformedObject(node);
+			Assert.fail();
+		}
+		catch (final TransformationException e) {
+			Assert.assertEquals("failed formula", e.getCause().getMessage());
+		}
+		Assert.assertEquals(2, transformer.callCount);
+		textController.setNodeText(node, "=fixed");
+		Assert.assertEquals("fixed", textController.getPlainTextContent(node));
+	}
+
+	@Test
+	public void failuresAreTransformedAgainAfterTransformerChanges() {
+		textController.setNodeText(node, "=fail");
+		textController.getTransformedObjectNoThrow(node);
+		TransformedTextCache.invalidateAll();
+		textController.getTransformedObjectNoThrow(node);
+		Assert.assertEquals(2, transformer.callCount);
+	}
+}
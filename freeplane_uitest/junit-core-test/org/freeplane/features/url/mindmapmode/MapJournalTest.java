@@ -0,0 +1,181 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.Compat;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.map.mindmapmode.MMapModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.TextController;
+import org.freeplane.features.text.mindmapmode.MTextController;
+import org.freeplane.main.headlessmode.FreeplaneHeadlessStarter;
+import org.freeplane.main.headlessmode.HeadlessMModeControllerFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * A map loaded from its file and journal has to be the same as the map which
+ * has been saved.
+ */
+public class MapJournalTest {
+	// the journal is only used if it is small compared to the map file
+	private static final int FILLER_NODE_COUNT = 200;
+	private static MMapController mapController;
+	private static MTextController textController;
+	private static MFileManager fileManager;
+	private File file;
+	private File journalFile;
+	private MMapModel map;
+
+	@BeforeClass
+	public static void createController() {
+		new FreeplaneHeadlessStarter().createController();
+		HeadlessMModeControllerFactory.createModeController();
+		mapController = (MMapController) Controller.getCurrentModeController().getMapController();
+		textController = (MTextController) TextController.getController();
+		fileManager = MFileManager.getController(Controller.getCurrentModeController());
+		ResourceController.getResourceController().setProperty("backup_file_number", "0");
+	}
+
+	@Before
+	public void createMap() throws Exception {
+		ResourceController.getResourceController().setProperty(MapJournal.JOURNALED_SAVE_PROPERTY, true);
+		file = File.createTempFile("journal", ".mm");
+		journalFile = MapJournal.journalFile(file);
+		map = (MMapModel) mapController.newModel();
+		map.setURL(Compat.fileToUrl(file));
+		mapController.newMapView(map);
+		final NodeModel root = map.getRootNode();
+		textController.setNodeText(root, "root");
+		final NodeModel filler = addNode(root, 0, "filler");
+		for (int i = 0; i < FILLER_NODE_COUNT; i++) {
+			addNode(filler, i, "filler node " + i);
+		}
+		final NodeModel a = addNode(root, 1, "a");
+		addNode(a, 0, "a1");
+		addNode(a, 1, "a2");
+		addNode(root, 2, "b");
+		Assert.assertTrue(fileManager.saveInternal(map, file, false));
+		Assert.assertFalse(journalFile.exists());
+	}
+
+	@After
+	public void deleteFiles() {
+		file.delete();
+		journalFile.delete();
+		ResourceController.getResourceController().setProperty(MapJournal.JOURNALED_SAVE_PROPERTY, false);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final int index, final String text) {
+		final NodeModel node = mapController.addNewNode(parent, index, false);
+		textController.setNodeText(node, text);
+		return node;
+	}
+
+	private NodeModel child(final NodeModel parent, final String text) {
+		for (final NodeModel child : parent.getChildren()) {
+			if (text.equals(child.getText())) {
+				return child;
+			}
+		}
+		throw new AssertionError("no child " + text);
+	}
+
+	private String save() {
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		Assert.assertTrue(fileManager.saveInternal(map, file, false));
+		Assert.assertEquals(length, file.length());
+		Assert.assertEquals(lastModified, file.lastModified());
+		Assert.assertTrue(journalFile.exists());
+		return xml(map);
+	}
+
+	private static String xml(final MapModel map) {
+		try {
+			final StringWriter writer = new StringWriter();
+			mapController.getMapWriter().writeMapAsXml(map, writer, Mode.FILE, true, false);
+			return writer.toString();
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private MapModel load() throws Exception {
+		final MMapModel loadedMap = new MMapModel();
+		fileManager.loadTree(loadedMap, file);
+		Assert.assertNotNull(MapJournal.replay(loadedMap, file));
+		return loadedMap;
+	}
+
+	@Test
+	public void changedNodes() throws Exception {
+		final NodeModel root = map.getRootNode();
+		textController.setNodeText(child(root, "a"), "a changed");
+		final String saved = save();
+		Assert.assertEquals(saved, xml(load()));
+	}
+
+	@Test
+	public void insertedMovedAndDeletedNodes() throws Exception {
+		final NodeModel root = map.getRootNode();
+		final NodeModel a = child(root, "a");
+		final NodeModel a1 = child(a, "a1");
+		final NodeModel inserted = addNode(a1, 0, "inserted");
+		addNode(inserted, 0, "inserted child");
+		mapController.moveNode(a1, root, 0);
+		mapController.deleteNode(child(root, "b"));
+		mapController.moveNode(child(a, "a2"), a, 0);
+		save();
+		mapController.deleteNode(a);
+		mapController.moveNode(child(inserted, "inserted child"), root, 1);
+		final String saved = save();
+		Assert.assertEquals(saved, xml(load()));
+	}
+
+	@Test
+	public void incompleteBlockIsIgnored() throws Exception {
+		final NodeModel root = map.getRootNode();
+		addNode(root, 0, "inserted");
+		final String saved = save();
+		final long journalLength = journalFile.length();
+		final FileOutputStream out = new FileOutputStream(journalFile, true);
+		out.write(new byte[] { 0x42, 0x4c, 0x4b, 0x31, 0, 0, 1 });
+		out.close();
+		Assert.assertEquals(saved, xml(load()));
+		Assert.assertEquals(journalLength, journalFile.length());
+	}
+
+	@Test
+	public void journalOfOtherFileVersionIsNotReplayed() throws Exception {
+		addNode(map.getRootNode(), 0, "inserted");
+		save();
+		Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+		final MMapModel loadedMap = new MMapModel();
+		fileManager.loadTree(loadedMap, file);
+		Assert.assertNull(MapJournal.replay(loadedMap, file));
+	}
+
+	@Test
+	public void mapIsWrittenWithoutJournaledSave() throws Exception {
+		addNode(map.getRootNode(), 0, "inserted");
+		save();
+		ResourceController.getResourceController().setProperty(MapJournal.JOURNALED_SAVE_PROPERTY, false);
+		textController.setNodeText(map.getRootNode(), "root changed");
+		Assert.assertTrue(fileManager.saveInternal(map, file, false));
+		Assert.assertFalse(journalFile.exists());
+		final MMapModel loadedMap = new MMapModel();
+		fileManager.loadTree(loadedMap, file);
+		Assert.assertEquals(xml(map), xml(loadedMap));
+	}
+}